@@ -55,6 +55,19 @@ public Checksum( ChecksumAlgorithm checksumAlgorithm )
         }
     }
 
+    /**
+     * Creates a finished checksum with the given value. This can be used, if the checksum
+     * was already calculated, e.g. during the download of the file.
+     *
+     * @param checksumAlgorithm the algorithm of the checksum
+     * @param checksumHex the checksum value as hex string
+     */
+    public Checksum( ChecksumAlgorithm checksumAlgorithm, String checksumHex )
+    {
+        this( checksumAlgorithm );
+        this.result = Hex.decode( checksumHex );
+    }
+
     public String getChecksum()
     {
         if (this.result.length==0) {
@@ -86,7 +99,7 @@ public Checksum update( byte[] buffer, int offset, int size )
         if (this.result.length!=0) {
             reset();
         }
-        md.update( buffer, 0, size );
+        md.update( buffer, offset, size );
         return this;
     }
 
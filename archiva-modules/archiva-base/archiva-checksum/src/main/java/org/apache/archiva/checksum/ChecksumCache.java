@@ -0,0 +1,532 @@
+package org.apache.archiva.checksum;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache for file checksums. The checksums of a file are valid as long as the size and the
+ * modification time of the file are the same as at the time of calculation.
+ *
+ * The entries are kept in a in-memory LRU map with a maximum number of entries. If a journal file
+ * is given, all updates are appended to the journal and the journal is loaded by {@link #load()},
+ * so that the checksums survive a restart. Removed files are journaled too. The journal is compacted during
+ * load and while appending, if it contains more than {@value #COMPACT_FACTOR} times as many lines as live entries.
+ *
+ * The journal is written under its own lock, so lookups do not wait for the journal I/O. The journal lines
+ * are queued in the order of the changes and written by the thread, that holds the journal lock.
+ *
+ * The cache is given to {@link ChecksummedFile} for validating and fixing checksum files. A cache with
+ * a maximum of 0 entries is disabled.
+ */
+public class ChecksumCache
+{
+    /**
+     * The estimated heap size of a single entry with the digests of the default algorithms in bytes.
+     */
+    static final int ESTIMATED_ENTRY_SIZE = 400;
+
+    /**
+     * The minimum default number of entries, if the heap is small.
+     */
+    static final int MIN_DEFAULT_MAX_ENTRIES = 200000;
+
+    /**
+     * The journal is compacted, if it has more lines than this factor times the number of live entries.
+     */
+    static final int COMPACT_FACTOR = 4;
+
+    /**
+     * The minimum number of lines, before the journal is compacted.
+     */
+    static final int MIN_COMPACT_LINES = 10000;
+
+    private static final Logger log = LoggerFactory.getLogger( ChecksumCache.class );
+
+    private static final ChecksumAlgorithm[] ALGORITHMS = ChecksumAlgorithm.values( );
+
+    private static final int FLUSH_INTERVAL = 1000;
+
+    private static final String REMOVED_PREFIX = "-\t";
+
+    private final int maxEntries;
+
+    private final Path journalFile;
+
+    private final int minCompactLines;
+
+    private final Map<String, Entry> entries;
+
+    /**
+     * The journal lines, that are not written yet. Lines are added while holding the lock of the cache.
+     */
+    private final Queue<String> pendingLines = new ConcurrentLinkedQueue<>( );
+
+    /**
+     * Guards the journal. The lock of the cache may be acquired while holding this lock, but not vice versa.
+     */
+    private final Object journalLock = new Object( );
+
+    private BufferedWriter journal;
+
+    private int unflushed = 0;
+
+    private long journalLines = 0;
+
+    private final AtomicLong hits = new AtomicLong( );
+
+    private final AtomicLong misses = new AtomicLong( );
+
+    private static final class Entry
+    {
+        final long size;
+        final long modified;
+        final byte[][] digests;
+
+        Entry( long size, long modified )
+        {
+            this.size = size;
+            this.modified = modified;
+            this.digests = new byte[ALGORITHMS.length][];
+        }
+
+        boolean matches( long size, long modified )
+        {
+            return this.size == size && this.modified == modified;
+        }
+    }
+
+    /**
+     * Creates a cache that is only held in memory.
+     *
+     * @param maxEntries the maximum number of files in the cache
+     */
+    public ChecksumCache( int maxEntries )
+    {
+        this( maxEntries, null );
+    }
+
+    /**
+     * Creates a cache, that is persisted to the given journal file.
+     *
+     * @param maxEntries the maximum number of files in the cache
+     * @param journalFile the journal file, or <code>null</code>, if the cache should not be persisted
+     */
+    public ChecksumCache( final int maxEntries, Path journalFile )
+    {
+        this( maxEntries, journalFile, MIN_COMPACT_LINES );
+    }
+
+    ChecksumCache( final int maxEntries, Path journalFile, int minCompactLines )
+    {
+        this.maxEntries = maxEntries;
+        this.journalFile = journalFile;
+        this.minCompactLines = minCompactLines;
+        this.entries = new LinkedHashMap<String, Entry>( 1024, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest )
+            {
+                return size( ) > ChecksumCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the default maximum number of entries. It is derived from the maximum heap size, so that
+     * a full cache takes about 5 percent of the heap, but it is at least {@value #MIN_DEFAULT_MAX_ENTRIES}.
+     *
+     * @return the default maximum number of entries
+     */
+    public static int getDefaultMaxEntries( )
+    {
+        long heapEntries = Runtime.getRuntime( ).maxMemory( ) / 20 / ESTIMATED_ENTRY_SIZE;
+        return (int) Math.min( Integer.MAX_VALUE, Math.max( MIN_DEFAULT_MAX_ENTRIES, heapEntries ) );
+    }
+
+    /**
+     * Returns <code>true</code>, if the cache stores any entries.
+     */
+    public boolean isEnabled( )
+    {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Loads the entries from the journal file and opens the journal for appending new entries.
+     *
+     * @throws IOException if the journal could not be read or opened
+     */
+    public void load( )
+        throws IOException
+    {
+        if ( journalFile == null || !isEnabled( ) )
+        {
+            return;
+        }
+        synchronized ( journalLock )
+        {
+            closeJournal( );
+            long lines = 0;
+            synchronized ( this )
+            {
+                pendingLines.clear( );
+                if ( Files.exists( journalFile ) )
+                {
+                    try ( BufferedReader reader = Files.newBufferedReader( journalFile, StandardCharsets.UTF_8 ) )
+                    {
+                        String line;
+                        while ( ( line = reader.readLine( ) ) != null )
+                        {
+                            lines++;
+                            readJournalLine( line );
+                        }
+                    }
+                    log.info( "Loaded {} checksum cache entries from {}", entries.size( ), journalFile );
+                }
+                else
+                {
+                    Files.createDirectories( journalFile.getParent( ) );
+                }
+            }
+            journalLines = lines;
+            if ( isCompactionNeeded( ) )
+            {
+                compact( );
+            }
+            openJournal( );
+        }
+    }
+
+    /**
+     * Writes the pending entries to the journal and closes it.
+     */
+    public void close( )
+    {
+        synchronized ( journalLock )
+        {
+            writeJournal( );
+            closeJournal( );
+        }
+    }
+
+    /**
+     * Returns the cached checksums of the file for the given algorithms. Only algorithms with a valid
+     * cached value are contained in the result.
+     *
+     * @param file the file
+     * @param attributes the current attributes of the file
+     * @param algorithms the algorithms to look for
+     * @return the cached checksums, may be empty
+     */
+    public List<Checksum> getChecksums( Path file, BasicFileAttributes attributes, List<ChecksumAlgorithm> algorithms )
+    {
+        Entry entry;
+        synchronized ( this )
+        {
+            entry = entries.get( getKey( file ) );
+        }
+        if ( entry == null || !entry.matches( attributes.size( ), attributes.lastModifiedTime( ).toMillis( ) ) )
+        {
+            misses.incrementAndGet( );
+            return Collections.emptyList( );
+        }
+        List<Checksum> result = new ArrayList<>( algorithms.size( ) );
+        for ( ChecksumAlgorithm algorithm : algorithms )
+        {
+            byte[] digest = entry.digests[algorithm.ordinal( )];
+            if ( digest != null )
+            {
+                result.add( new Checksum( algorithm, Hex.encode( digest ) ) );
+            }
+        }
+        if ( result.size( ) == algorithms.size( ) )
+        {
+            hits.incrementAndGet( );
+        }
+        else
+        {
+            misses.incrementAndGet( );
+        }
+        return result;
+    }
+
+    /**
+     * Stores the checksums of the file.
+     *
+     * @param file the file
+     * @param attributes the attributes of the file at the time the checksums were calculated
+     * @param checksums the finished checksums
+     */
+    public void update( Path file, BasicFileAttributes attributes, List<Checksum> checksums )
+    {
+        if ( checksums.isEmpty( ) )
+        {
+            return;
+        }
+        final String key = getKey( file );
+        final long size = attributes.size( );
+        final long modified = attributes.lastModifiedTime( ).toMillis( );
+        synchronized ( this )
+        {
+            Entry entry = entries.get( key );
+            if ( entry == null || !entry.matches( size, modified ) )
+            {
+                entry = new Entry( size, modified );
+                entries.put( key, entry );
+            }
+            for ( Checksum checksum : checksums )
+            {
+                entry.digests[checksum.getAlgorithm( ).ordinal( )] = checksum.getChecksumBytes( );
+            }
+            if ( isPersistent( ) )
+            {
+                pendingLines.add( toJournalLine( key, entry ) );
+            }
+        }
+        writeJournal( );
+    }
+
+    /**
+     * Removes the file from the cache.
+     *
+     * @param file the file
+     */
+    public void remove( Path file )
+    {
+        final String key = getKey( file );
+        synchronized ( this )
+        {
+            if ( entries.remove( key ) == null || !isPersistent( ) )
+            {
+                return;
+            }
+            pendingLines.add( REMOVED_PREFIX + key );
+        }
+        writeJournal( );
+    }
+
+    public synchronized int size( )
+    {
+        return entries.size( );
+    }
+
+    public int getMaxEntries( )
+    {
+        return maxEntries;
+    }
+
+    public long getHits( )
+    {
+        return hits.get( );
+    }
+
+    public long getMisses( )
+    {
+        return misses.get( );
+    }
+
+    private static String getKey( Path file )
+    {
+        return file.toAbsolutePath( ).normalize( ).toString( );
+    }
+
+    private boolean isPersistent( )
+    {
+        return journalFile != null && isEnabled( );
+    }
+
+    private void readJournalLine( String line )
+    {
+        if ( line.startsWith( REMOVED_PREFIX ) )
+        {
+            entries.remove( line.substring( REMOVED_PREFIX.length( ) ) );
+            return;
+        }
+        // size, modification time, checksums and path, separated by tabs
+        String[] parts = line.split( "\t", 4 );
+        if ( parts.length != 4 )
+        {
+            return;
+        }
+        try
+        {
+            Entry entry = new Entry( Long.parseLong( parts[0] ), Long.parseLong( parts[1] ) );
+            for ( String checksum : parts[2].split( "," ) )
+            {
+                int idx = checksum.indexOf( ':' );
+                if ( idx > 0 )
+                {
+                    ChecksumAlgorithm algorithm = ChecksumAlgorithm.valueOf( checksum.substring( 0, idx ) );
+                    entry.digests[algorithm.ordinal( )] = Hex.decode( checksum.substring( idx + 1 ) );
+                }
+            }
+            entries.put( parts[3], entry );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            log.debug( "Ignoring bad checksum cache entry: {}", line );
+        }
+    }
+
+    private static String toJournalLine( String key, Entry entry )
+    {
+        StringBuilder line = new StringBuilder( );
+        line.append( entry.size ).append( '\t' ).append( entry.modified ).append( '\t' );
+        boolean first = true;
+        for ( ChecksumAlgorithm algorithm : ALGORITHMS )
+        {
+            byte[] digest = entry.digests[algorithm.ordinal( )];
+            if ( digest != null )
+            {
+                if ( !first )
+                {
+                    line.append( ',' );
+                }
+                line.append( algorithm.name( ) ).append( ':' ).append( Hex.encode( digest ) );
+                first = false;
+            }
+        }
+        line.append( '\t' ).append( key );
+        return line.toString( );
+    }
+
+    /**
+     * Writes the pending lines to the journal, if no other thread is writing them.
+     */
+    private void writeJournal( )
+    {
+        synchronized ( journalLock )
+        {
+            String line;
+            while ( ( line = pendingLines.poll( ) ) != null )
+            {
+                if ( journal == null )
+                {
+                    continue;
+                }
+                try
+                {
+                    journal.write( line );
+                    journal.newLine( );
+                    journalLines++;
+                    if ( isCompactionNeeded( ) )
+                    {
+                        closeJournal( );
+                        compact( );
+                        openJournal( );
+                    }
+                    else if ( ++unflushed >= FLUSH_INTERVAL )
+                    {
+                        journal.flush( );
+                        unflushed = 0;
+                    }
+                }
+                catch ( IOException e )
+                {
+                    log.warn( "Could not write checksum cache journal {}: {}", journalFile, e.getMessage( ) );
+                    closeJournal( );
+                }
+            }
+        }
+    }
+
+    private boolean isCompactionNeeded( )
+    {
+        return journalLines > (long) COMPACT_FACTOR * Math.max( size( ), minCompactLines );
+    }
+
+    private void openJournal( )
+        throws IOException
+    {
+        journal = Files.newBufferedWriter( journalFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND );
+    }
+
+    /**
+     * Rewrites the journal with the current entries. The entries are copied while holding the lock of the
+     * cache, the file is written without it. The pending lines are contained in the copy, so they are dropped.
+     */
+    private void compact( )
+        throws IOException
+    {
+        List<Map.Entry<String, Entry>> snapshot;
+        synchronized ( this )
+        {
+            snapshot = new ArrayList<>( entries.size( ) );
+            for ( Map.Entry<String, Entry> entry : entries.entrySet( ) )
+            {
+                Entry copy = new Entry( entry.getValue( ).size, entry.getValue( ).modified );
+                System.arraycopy( entry.getValue( ).digests, 0, copy.digests, 0, copy.digests.length );
+                snapshot.add( new AbstractMap.SimpleImmutableEntry<>( entry.getKey( ), copy ) );
+            }
+            pendingLines.clear( );
+        }
+        Path tmpFile = journalFile.resolveSibling( journalFile.getFileName( ) + ".tmp" );
+        try ( BufferedWriter writer = Files.newBufferedWriter( tmpFile, StandardCharsets.UTF_8 ) )
+        {
+            for ( Map.Entry<String, Entry> entry : snapshot )
+            {
+                writer.write( toJournalLine( entry.getKey( ), entry.getValue( ) ) );
+                writer.newLine( );
+            }
+        }
+        Files.move( tmpFile, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        journalLines = snapshot.size( );
+        log.debug( "Compacted checksum cache journal {}", journalFile );
+    }
+
+    private void closeJournal( )
+    {
+        if ( journal != null )
+        {
+            try
+            {
+                journal.close( );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Could not close checksum cache journal {}: {}", journalFile, e.getMessage( ) );
+            }
+            journal = null;
+            unflushed = 0;
+        }
+    }
+}
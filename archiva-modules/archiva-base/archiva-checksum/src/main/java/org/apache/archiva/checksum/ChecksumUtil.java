@@ -19,37 +19,90 @@
  * under the License.
  */
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
  * Utility class that handles multiple checksums for a single file.
+ *
+ * The file is read once into a reusable buffer and all checksums are updated from the same buffer.
+ * A heap buffer is used, because {@link java.security.MessageDigest} copies the content of direct
+ * or mapped buffers into a temporary array before digesting them.
+ *
+ * For large files with more than one checksum, the checksums are calculated on separate threads. The file is
+ * still read only once: the calling thread reads the next chunk, while the checksums of the previous chunk
+ * are updated on the checksum pool. The minimum file size for parallel calculation can be set by the
+ * system property {@value #PARALLEL_THRESHOLD_PROPERTY}. A value &lt;= 0 disables the parallel calculation.
+ * The checksums are calculated on a dedicated, bounded pool of daemon threads, that are stopped when idle. The
+ * number of threads can be set by the system property {@value #PARALLEL_THREADS_PROPERTY}. If the pool is busy,
+ * the checksums are calculated on the calling thread.
  */
 public class ChecksumUtil {
 
+    public static final String PARALLEL_THRESHOLD_PROPERTY = "archiva.checksum.parallelThreshold";
+
+    static final int BUFFER_SIZE = 256 * 1024;
+
+    static final long DEFAULT_PARALLEL_THRESHOLD = 64L * 1024 * 1024;
+
+    public static final String PARALLEL_THREADS_PROPERTY = "archiva.checksum.parallelThreads";
+
+    private static final int PARALLEL_THREADS = Math.max( 1, Integer.getInteger( PARALLEL_THREADS_PROPERTY,
+        Math.min( 4, Runtime.getRuntime( ).availableProcessors( ) ) ) );
 
-    static final int BUFFER_SIZE = 32768;
+    private static volatile ExecutorService parallelExecutor;
+
+    private static final ThreadLocal<byte[]> READ_BUFFER = ThreadLocal.withInitial( ( ) -> new byte[BUFFER_SIZE] );
+
+    private static long parallelThreshold = Long.getLong( PARALLEL_THRESHOLD_PROPERTY, DEFAULT_PARALLEL_THRESHOLD );
 
     public static void update(List<Checksum> checksumList, Path file ) throws IOException {
-        long fileSize;
+        if (checksumList.size() > 1 && parallelThreshold > 0 && Files.size( file ) >= parallelThreshold) {
+            updateParallel( checksumList, file );
+        } else {
+            updateSequential( checksumList, file );
+        }
+    }
+
+    public static void update(Checksum checksum, Path file)
+        throws IOException
+    {
+        updateSequential( Collections.singletonList( checksum ), file );
+    }
+
+    /**
+     * Reads the file once and updates all checksums with each chunk read.
+     */
+    static void updateSequential( List<Checksum> checksumList, Path file ) throws IOException {
+        updateSequential( checksumList, file, READ_BUFFER.get( ) );
+    }
+
+    private static void updateSequential( List<Checksum> checksumList, Path file, byte[] buffer ) throws IOException {
+        final ByteBuffer byteBuffer = ByteBuffer.wrap( buffer );
         try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ )) {
-            fileSize = channel.size();
-            long pos = 0;
-            while (pos < fileSize) {
-                long bufferSize = Math.min(BUFFER_SIZE, fileSize - pos);
-                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, bufferSize);
-                for (Checksum checksum : checksumList) {
-                    checksum.update(buffer);
-                    buffer.rewind();
+            int read;
+            while ((read = channel.read( byteBuffer )) >= 0) {
+                if (read > 0) {
+                    for (Checksum checksum : checksumList) {
+                        checksum.update( buffer, 0, byteBuffer.position( ) );
+                    }
                 }
-                fileSize = channel.size();
-                pos += BUFFER_SIZE;
+                byteBuffer.clear( );
             }
             for (Checksum checksum : checksumList) {
                 checksum.finish();
@@ -57,26 +110,95 @@ public static void update(List<Checksum> checksumList, Path file ) throws IOExce
         }
     }
 
-    public static void update(Checksum checksum, Path file)
-        throws IOException
-    {
-        long fileSize;
+    /**
+     * Reads the file once and updates each checksum on its own thread. Two buffers are used alternately, so the
+     * next chunk is read, while the checksums are updated from the previous one. The checksums of a chunk are
+     * finished before the following chunk is passed on, so each checksum gets the chunks in order.
+     */
+    static void updateParallel( List<Checksum> checksumList, Path file ) throws IOException {
+        if (checksumList.size( ) < 2) {
+            updateSequential( checksumList, file );
+            return;
+        }
+        final byte[][] buffers = new byte[][]{ READ_BUFFER.get( ), new byte[BUFFER_SIZE] };
+        final ExecutorService executor = getParallelExecutor( );
+        List<Future<?>> tasks = Collections.emptyList( );
         try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ )) {
-            fileSize = channel.size();
-            long pos = 0;
-            while (pos<fileSize)
-            {
-                long bufferSize = Math.min(BUFFER_SIZE, fileSize-pos);
-                MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, pos, bufferSize);
-                checksum.update( buffer );
-                buffer.rewind();
-                fileSize = channel.size();
-                pos += BUFFER_SIZE;
+            int current = 0;
+            while (true) {
+                final byte[] buffer = buffers[current];
+                final int read = channel.read( ByteBuffer.wrap( buffer ) );
+                // the other buffer is reused for the next chunk, when its checksums are updated
+                await( tasks, file );
+                if (read < 0) {
+                    break;
+                }
+                if (read > 0) {
+                    tasks = new ArrayList<>( checksumList.size( ) );
+                    for (final Checksum checksum : checksumList) {
+                        tasks.add( executor.submit( ( ) -> checksum.update( buffer, 0, read ) ) );
+                    }
+                }
+                current = 1 - current;
+            }
+            for (Checksum checksum : checksumList) {
+                checksum.finish();
+            }
+        } finally {
+            for (Future<?> task : tasks) {
+                task.cancel( true );
+            }
+        }
+    }
+
+    private static void await( List<Future<?>> tasks, Path file ) throws IOException {
+        for (Future<?> task : tasks) {
+            try {
+                task.get( );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread( ).interrupt( );
+                throw new IOException( "Interrupted while calculating checksums of " + file, e );
+            } catch ( ExecutionException e ) {
+                throw new IOException( "Could not calculate checksums of " + file + ": " + e.getCause( ), e.getCause( ) );
             }
-            checksum.finish();
         }
     }
 
+    private static ExecutorService getParallelExecutor( ) {
+        ExecutorService executor = parallelExecutor;
+        if (executor == null) {
+            synchronized ( ChecksumUtil.class ) {
+                executor = parallelExecutor;
+                if (executor == null) {
+                    final AtomicInteger counter = new AtomicInteger( );
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor( PARALLEL_THREADS, PARALLEL_THREADS, 30L, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>( PARALLEL_THREADS * 4 ), r -> {
+                            Thread thread = new Thread( r, "archiva-checksum-" + counter.getAndIncrement( ) );
+                            thread.setDaemon( true );
+                            return thread;
+                        }, new ThreadPoolExecutor.CallerRunsPolicy( ) );
+                    pool.allowCoreThreadTimeOut( true );
+                    executor = pool;
+                    parallelExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Sets the minimum file size for calculating multiple checksums in parallel.
+     *
+     * @param threshold the file size in bytes. A value &lt;= 0 disables the parallel calculation.
+     */
+    public static void setParallelThreshold( long threshold ) {
+        parallelThreshold = threshold;
+    }
+
+    public static long getParallelThreshold( ) {
+        return parallelThreshold;
+    }
+
     public static List<Checksum> initializeChecksums(Path file, List<ChecksumAlgorithm> checksumAlgorithms) throws IOException {
         final List<Checksum> checksums = newChecksums(checksumAlgorithms);
         update(checksums, file);
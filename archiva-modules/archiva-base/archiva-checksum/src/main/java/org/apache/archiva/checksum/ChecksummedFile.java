@@ -27,11 +27,16 @@
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -62,21 +67,71 @@
 
     private final Path referenceFile;
 
+    private final Map<ChecksumAlgorithm, Checksum> knownChecksums;
+
+    private final ChecksumCache checksumCache;
+
     /**
      * Construct a ChecksummedFile object.
      *
      * @param referenceFile
      */
     public ChecksummedFile( final Path referenceFile )
+    {
+        this( referenceFile, Collections.emptyList( ) );
+    }
+
+    /**
+     * Construct a ChecksummedFile object with checksums of the reference file, that are already known.
+     * The known checksums are used for validation and fixing instead of reading the file again. Checksums
+     * for other algorithms are calculated from the file content.
+     *
+     * @param referenceFile the reference file
+     * @param knownChecksums the finished checksums of the current content of the reference file
+     */
+    public ChecksummedFile( final Path referenceFile, final List<Checksum> knownChecksums )
+    {
+        this( referenceFile, knownChecksums, null );
+    }
+
+    /**
+     * Construct a ChecksummedFile object, that uses the given cache for checksums of the reference file.
+     *
+     * @param referenceFile the reference file
+     * @param knownChecksums the finished checksums of the current content of the reference file
+     * @param checksumCache the cache for checksums, that are not known, may be <code>null</code>
+     */
+    public ChecksummedFile( final Path referenceFile, final List<Checksum> knownChecksums,
+                            final ChecksumCache checksumCache )
     {
         this.referenceFile = referenceFile;
+        this.checksumCache = checksumCache != null && checksumCache.isEnabled( ) ? checksumCache : null;
+        this.knownChecksums = new EnumMap<>( ChecksumAlgorithm.class );
+        for ( Checksum checksum : knownChecksums )
+        {
+            this.knownChecksums.put( checksum.getAlgorithm( ), checksum );
+        }
     }
 
 
     public static ChecksumReference getFromChecksumFile( Path checksumFile )
+    {
+        return getFromChecksumFile( checksumFile, null );
+    }
+
+    /**
+     * Returns the reference for the given checksum file. The checksums of the reference file are looked up
+     * in the given cache, before they are calculated.
+     *
+     * @param checksumFile the checksum file
+     * @param checksumCache the cache for the checksums of the reference file, may be <code>null</code>
+     * @return the reference to the checksum file and the file it belongs to
+     */
+    public static ChecksumReference getFromChecksumFile( Path checksumFile, ChecksumCache checksumCache )
     {
         ChecksumAlgorithm alg = ChecksumAlgorithm.getByExtension( checksumFile );
-        ChecksummedFile file = new ChecksummedFile( getReferenceFile( checksumFile ) );
+        ChecksummedFile file =
+            new ChecksummedFile( getReferenceFile( checksumFile ), Collections.emptyList( ), checksumCache );
         return new ChecksumReference( file, alg, checksumFile );
     }
 
@@ -96,10 +151,7 @@ private static Path getReferenceFile( Path checksumFile )
     public String calculateChecksum( ChecksumAlgorithm checksumAlgorithm )
         throws IOException
     {
-
-        Checksum checksum = new Checksum( checksumAlgorithm );
-        ChecksumUtil.update(checksum, referenceFile );
-        return checksum.getChecksum( );
+        return getChecksums( Collections.singletonList( checksumAlgorithm ) ).get( 0 ).getChecksum( );
     }
 
     /**
@@ -199,7 +251,7 @@ public boolean isValidChecksums( List<ChecksumAlgorithm> algorithms, boolean thr
         // Parse file once, for all checksums.
         try
         {
-            checksums = ChecksumUtil.initializeChecksums( referenceFile, algorithms );
+            checksums = getChecksums( algorithms );
         }
         catch (IOException e )
         {
@@ -258,6 +310,84 @@ public Path getReferenceFile( )
         return referenceFile;
     }
 
+    /**
+     * Returns the checksums for the given algorithms. Known checksums and valid entries of the
+     * {@link ChecksumCache} are used, the remaining checksums are calculated by reading the reference file once.
+     */
+    private List<Checksum> getChecksums( List<ChecksumAlgorithm> algorithms ) throws IOException
+    {
+        final ChecksumCache cache = checksumCache;
+        if ( knownChecksums.isEmpty( ) && cache == null )
+        {
+            return ChecksumUtil.initializeChecksums( referenceFile, algorithms );
+        }
+        Map<ChecksumAlgorithm, Checksum> found = new EnumMap<>( ChecksumAlgorithm.class );
+        found.putAll( knownChecksums );
+        BasicFileAttributes attributes = null;
+        if ( cache != null )
+        {
+            attributes = readAttributes( );
+            for ( Checksum checksum : cache.getChecksums( referenceFile, attributes, getMissing( algorithms, found ) ) )
+            {
+                found.put( checksum.getAlgorithm( ), checksum );
+            }
+        }
+        List<ChecksumAlgorithm> missing = getMissing( algorithms, found );
+        if ( !missing.isEmpty( ) )
+        {
+            List<Checksum> calculated = ChecksumUtil.initializeChecksums( referenceFile, missing );
+            for ( Checksum checksum : calculated )
+            {
+                found.put( checksum.getAlgorithm( ), checksum );
+            }
+            // Only cache the result, if the file did not change during calculation
+            if ( cache != null && isUnchanged( attributes, readAttributes( ) ) )
+            {
+                cache.update( referenceFile, attributes, calculated );
+            }
+        }
+        else if ( !Files.exists( referenceFile ) )
+        {
+            throw new FileNotFoundException( "File does not exist: " + referenceFile );
+        }
+        List<Checksum> checksums = new ArrayList<>( algorithms.size( ) );
+        for ( ChecksumAlgorithm algorithm : algorithms )
+        {
+            checksums.add( found.get( algorithm ) );
+        }
+        return checksums;
+    }
+
+    private static List<ChecksumAlgorithm> getMissing( List<ChecksumAlgorithm> algorithms, Map<ChecksumAlgorithm, Checksum> found )
+    {
+        List<ChecksumAlgorithm> missing = new ArrayList<>( );
+        for ( ChecksumAlgorithm algorithm : algorithms )
+        {
+            if ( !found.containsKey( algorithm ) )
+            {
+                missing.add( algorithm );
+            }
+        }
+        return missing;
+    }
+
+    private BasicFileAttributes readAttributes( ) throws IOException
+    {
+        try
+        {
+            return Files.readAttributes( referenceFile, BasicFileAttributes.class );
+        }
+        catch ( NoSuchFileException e )
+        {
+            throw new FileNotFoundException( "File does not exist: " + referenceFile );
+        }
+    }
+
+    private static boolean isUnchanged( BasicFileAttributes before, BasicFileAttributes after )
+    {
+        return before.size( ) == after.size( ) && before.lastModifiedTime( ).equals( after.lastModifiedTime( ) );
+    }
+
 
 
     public UpdateStatusList fixChecksum(ChecksumAlgorithm algorithm) {
@@ -280,7 +410,7 @@ public UpdateStatusList fixChecksums( List<ChecksumAlgorithm> algorithms )
         try
         {
             // Parse file once, for all checksums.
-            checksums = ChecksumUtil.initializeChecksums(getReferenceFile(), algorithms);
+            checksums = getChecksums( algorithms );
         }
         catch (IOException e )
         {
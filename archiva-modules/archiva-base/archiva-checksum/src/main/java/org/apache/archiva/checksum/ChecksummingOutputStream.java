@@ -0,0 +1,148 @@
+package org.apache.archiva.checksum;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Output stream that updates the checksums for all given algorithms with the bytes written,
+ * while passing the bytes to the underlying stream. This allows to calculate the checksums
+ * of a file while it is written, without reading the file again.
+ *
+ * If no underlying stream is given, the bytes are only used to update the checksums.
+ */
+public class ChecksummingOutputStream
+    extends OutputStream
+{
+    private final OutputStream out;
+
+    private final List<Checksum> checksums;
+
+    private long byteCount = 0;
+
+    private boolean finished = false;
+
+    /**
+     * Creates a stream that only calculates the checksums.
+     *
+     * @param algorithms the algorithms to calculate
+     */
+    public ChecksummingOutputStream( List<ChecksumAlgorithm> algorithms )
+    {
+        this( null, algorithms );
+    }
+
+    /**
+     * Creates a stream that calculates the checksums and writes to the given stream.
+     *
+     * @param out the underlying stream, may be <code>null</code>
+     * @param algorithms the algorithms to calculate
+     */
+    public ChecksummingOutputStream( OutputStream out, List<ChecksumAlgorithm> algorithms )
+    {
+        this.out = out;
+        this.checksums = ChecksumUtil.newChecksums( algorithms );
+    }
+
+    @Override
+    public void write( int b )
+        throws IOException
+    {
+        write( new byte[]{ (byte) b }, 0, 1 );
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len )
+        throws IOException
+    {
+        if ( out != null )
+        {
+            out.write( b, off, len );
+        }
+        for ( Checksum checksum : checksums )
+        {
+            checksum.update( b, off, len );
+        }
+        byteCount += len;
+    }
+
+    @Override
+    public void flush( )
+        throws IOException
+    {
+        if ( out != null )
+        {
+            out.flush( );
+        }
+    }
+
+    @Override
+    public void close( )
+        throws IOException
+    {
+        if ( out != null )
+        {
+            out.close( );
+        }
+    }
+
+    /**
+     * Returns the finished checksums of all bytes written to this stream.
+     *
+     * @return the list of checksums in the order of the algorithms
+     */
+    public List<Checksum> getChecksums( )
+    {
+        if ( !finished )
+        {
+            for ( Checksum checksum : checksums )
+            {
+                checksum.finish( );
+            }
+            finished = true;
+        }
+        return checksums;
+    }
+
+    /**
+     * Returns the number of bytes written to this stream.
+     *
+     * @return the number of bytes
+     */
+    public long getByteCount( )
+    {
+        return byteCount;
+    }
+
+    /**
+     * Resets the checksums and the byte count.
+     */
+    public void reset( )
+    {
+        for ( Checksum checksum : checksums )
+        {
+            checksum.reset( );
+        }
+        byteCount = 0;
+        finished = false;
+    }
+}
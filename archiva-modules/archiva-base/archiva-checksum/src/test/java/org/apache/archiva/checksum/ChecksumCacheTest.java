@@ -0,0 +1,292 @@
+package org.apache.archiva.checksum;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.utils.FileUtils;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ChecksumCacheTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class ChecksumCacheTest
+    extends AbstractChecksumTestCase
+{
+    private static final String CONTENT_SHA1 = "e396119ae0542e85a74759602fd2f81e5d36d762";
+
+    private static final String CONTENT = "You know, I'm sick of following my dreams, man. "
+        + "I'm just going to ask where they're going and hook up with 'em later. - Mitch Hedberg";
+
+    private static final List<ChecksumAlgorithm> SHA1 = Collections.singletonList( ChecksumAlgorithm.SHA1 );
+
+    @Before
+    public void cleanTestDir( )
+        throws IOException
+    {
+        FileUtils.deleteDirectory( getTestOutputDir( ) );
+    }
+
+    private Path createFile( )
+        throws IOException
+    {
+        Path file = getTestOutputDir( ).resolve( "content.txt" );
+        Files.write( file, CONTENT.getBytes( ) );
+        return file;
+    }
+
+    @Test
+    public void testEntryIsInvalidatedByModification( )
+        throws IOException
+    {
+        Path file = createFile( );
+        ChecksumCache cache = new ChecksumCache( 10 );
+        BasicFileAttributes attributes = Files.readAttributes( file, BasicFileAttributes.class );
+        cache.update( file, attributes, Collections.singletonList( new Checksum( ChecksumAlgorithm.SHA1, CONTENT_SHA1 ) ) );
+
+        List<Checksum> cached = cache.getChecksums( file, attributes, Arrays.asList( ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 ) );
+        assertEquals( 1, cached.size( ) );
+        assertEquals( CONTENT_SHA1, cached.get( 0 ).getChecksum( ) );
+
+        Files.setLastModifiedTime( file, FileTime.fromMillis( attributes.lastModifiedTime( ).toMillis( ) - 10000 ) );
+        attributes = Files.readAttributes( file, BasicFileAttributes.class );
+        assertTrue( cache.getChecksums( file, attributes, SHA1 ).isEmpty( ) );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted( )
+        throws IOException
+    {
+        Path file = createFile( );
+        BasicFileAttributes attributes = Files.readAttributes( file, BasicFileAttributes.class );
+        ChecksumCache cache = new ChecksumCache( 2 );
+        List<Checksum> checksums = Collections.singletonList( new Checksum( ChecksumAlgorithm.SHA1, CONTENT_SHA1 ) );
+        cache.update( file.resolveSibling( "a" ), attributes, checksums );
+        cache.update( file.resolveSibling( "b" ), attributes, checksums );
+        cache.getChecksums( file.resolveSibling( "a" ), attributes, SHA1 );
+        cache.update( file.resolveSibling( "c" ), attributes, checksums );
+
+        assertEquals( 2, cache.size( ) );
+        assertEquals( 1, cache.getChecksums( file.resolveSibling( "a" ), attributes, SHA1 ).size( ) );
+        assertTrue( cache.getChecksums( file.resolveSibling( "b" ), attributes, SHA1 ).isEmpty( ) );
+    }
+
+    @Test
+    public void testJournalIsLoaded( )
+        throws IOException
+    {
+        Path file = createFile( );
+        Path journal = getTestOutputDir( ).resolve( "cache/checksums.journal" );
+        BasicFileAttributes attributes = Files.readAttributes( file, BasicFileAttributes.class );
+
+        ChecksumCache cache = new ChecksumCache( 10, journal );
+        cache.load( );
+        cache.update( file, attributes, Collections.singletonList( new Checksum( ChecksumAlgorithm.SHA1, CONTENT_SHA1 ) ) );
+        cache.close( );
+
+        ChecksumCache loaded = new ChecksumCache( 10, journal );
+        loaded.load( );
+        List<Checksum> cached = loaded.getChecksums( file, attributes, SHA1 );
+        loaded.close( );
+        assertEquals( 1, cached.size( ) );
+        assertEquals( CONTENT_SHA1, cached.get( 0 ).getChecksum( ) );
+    }
+
+    @Test
+    public void testChecksummedFileUsesCache( )
+        throws IOException, ChecksumValidationException
+    {
+        Path file = createFile( );
+        Files.write( file.resolveSibling( "content.txt.sha1" ), ( CONTENT_SHA1 + "  content.txt" ).getBytes( ) );
+        ChecksumCache cache = new ChecksumCache( 10 );
+
+        assertTrue( new ChecksummedFile( file, Collections.emptyList( ), cache ).isValidChecksums( SHA1, true ) );
+        assertEquals( 0, cache.getHits( ) );
+        assertEquals( 1, cache.size( ) );
+
+        assertTrue( new ChecksummedFile( file, Collections.emptyList( ), cache ).isValidChecksums( SHA1, true ) );
+        assertEquals( 1, cache.getHits( ) );
+    }
+
+    @Test
+    public void testDisabledCacheIsNotUsed( )
+        throws IOException, ChecksumValidationException
+    {
+        Path file = createFile( );
+        Files.write( file.resolveSibling( "content.txt.sha1" ), ( CONTENT_SHA1 + "  content.txt" ).getBytes( ) );
+        ChecksumCache cache = new ChecksumCache( 0 );
+
+        assertTrue( new ChecksummedFile( file, Collections.emptyList( ), cache ).isValidChecksums( SHA1, true ) );
+        assertEquals( 0, cache.size( ) );
+        assertEquals( 0, cache.getMisses( ) );
+    }
+
+    @Test
+    public void testEntryIsInvalidatedBySizeChange( )
+        throws IOException
+    {
+        Path file = createFile( );
+        ChecksumCache cache = new ChecksumCache( 10 );
+        BasicFileAttributes attributes = Files.readAttributes( file, BasicFileAttributes.class );
+        cache.update( file, attributes, Collections.singletonList( new Checksum( ChecksumAlgorithm.SHA1, CONTENT_SHA1 ) ) );
+
+        Files.write( file, ( CONTENT + "!" ).getBytes( ) );
+        Files.setLastModifiedTime( file, attributes.lastModifiedTime( ) );
+        BasicFileAttributes changed = Files.readAttributes( file, BasicFileAttributes.class );
+        assertEquals( attributes.lastModifiedTime( ), changed.lastModifiedTime( ) );
+        assertTrue( cache.getChecksums( file, changed, SHA1 ).isEmpty( ) );
+    }
+
+    @Test
+    public void testStaleJournalEntryIsReplaced( )
+        throws IOException
+    {
+        Path file = createFile( );
+        Path journal = getTestOutputDir( ).resolve( "cache/checksums.journal" );
+        BasicFileAttributes attributes = Files.readAttributes( file, BasicFileAttributes.class );
+
+        ChecksumCache cache = new ChecksumCache( 10, journal );
+        cache.load( );
+        cache.update( file, attributes, Collections.singletonList( new Checksum( ChecksumAlgorithm.SHA1, CONTENT_SHA1 ) ) );
+        Files.setLastModifiedTime( file, FileTime.fromMillis( attributes.lastModifiedTime( ).toMillis( ) - 10000 ) );
+        BasicFileAttributes modified = Files.readAttributes( file, BasicFileAttributes.class );
+        cache.update( file, modified, Collections.singletonList( new Checksum( ChecksumAlgorithm.SHA1, CONTENT_SHA1 ) ) );
+        cache.close( );
+
+        // the later journal line wins
+        ChecksumCache loaded = new ChecksumCache( 10, journal );
+        loaded.load( );
+        assertTrue( loaded.getChecksums( file, attributes, SHA1 ).isEmpty( ) );
+        assertEquals( 1, loaded.getChecksums( file, modified, SHA1 ).size( ) );
+        loaded.close( );
+    }
+
+    @Test
+    public void testRemovalIsJournaled( )
+        throws IOException
+    {
+        Path file = createFile( );
+        Path journal = getTestOutputDir( ).resolve( "cache/checksums.journal" );
+        BasicFileAttributes attributes = Files.readAttributes( file, BasicFileAttributes.class );
+
+        ChecksumCache cache = new ChecksumCache( 10, journal );
+        cache.load( );
+        cache.update( file, attributes, Collections.singletonList( new Checksum( ChecksumAlgorithm.SHA1, CONTENT_SHA1 ) ) );
+        cache.remove( file );
+        cache.close( );
+
+        ChecksumCache loaded = new ChecksumCache( 10, journal );
+        loaded.load( );
+        assertEquals( 0, loaded.size( ) );
+        loaded.close( );
+    }
+
+    @Test
+    public void testChecksumReferenceUsesCache( )
+        throws IOException, ChecksumValidationException
+    {
+        Path file = createFile( );
+        Path checksumFile = file.resolveSibling( "content.txt.sha1" );
+        Files.write( checksumFile, ( CONTENT_SHA1 + "  content.txt" ).getBytes( ) );
+        ChecksumCache cache = new ChecksumCache( 10 );
+
+        ChecksumReference reference = ChecksummedFile.getFromChecksumFile( checksumFile, cache );
+        assertTrue( reference.getFile( ).isValidChecksum( reference.getAlgorithm( ), true ) );
+        assertEquals( 1, cache.size( ) );
+
+        reference = ChecksummedFile.getFromChecksumFile( checksumFile, cache );
+        assertTrue( reference.getFile( ).isValidChecksum( reference.getAlgorithm( ), true ) );
+        assertEquals( 1, cache.getHits( ) );
+    }
+
+    @Test
+    public void testJournalIsCompactedWhileAppending( )
+        throws IOException
+    {
+        Path file = createFile( );
+        Path journal = getTestOutputDir( ).resolve( "cache/checksums.journal" );
+        BasicFileAttributes attributes = Files.readAttributes( file, BasicFileAttributes.class );
+        List<Checksum> checksums = Collections.singletonList( new Checksum( ChecksumAlgorithm.SHA1, CONTENT_SHA1 ) );
+
+        ChecksumCache cache = new ChecksumCache( 10, journal, 5 );
+        cache.load( );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            cache.update( file.resolveSibling( "file-" + ( i % 3 ) ), attributes, checksums );
+        }
+        cache.close( );
+
+        long lines = Files.readAllLines( journal ).size( );
+        assertTrue( "Journal was not compacted: " + lines + " lines",
+                    lines <= ChecksumCache.COMPACT_FACTOR * 5 );
+
+        ChecksumCache loaded = new ChecksumCache( 10, journal, 5 );
+        loaded.load( );
+        assertEquals( 3, loaded.size( ) );
+        for ( int i = 0; i < 3; i++ )
+        {
+            assertEquals( 1, loaded.getChecksums( file.resolveSibling( "file-" + i ), attributes, SHA1 ).size( ) );
+        }
+        loaded.close( );
+    }
+
+    @Test
+    public void testJournalIsCompactedOnLoad( )
+        throws IOException
+    {
+        Path file = createFile( );
+        Path journal = getTestOutputDir( ).resolve( "cache/checksums.journal" );
+        BasicFileAttributes attributes = Files.readAttributes( file, BasicFileAttributes.class );
+        List<Checksum> checksums = Collections.singletonList( new Checksum( ChecksumAlgorithm.SHA1, CONTENT_SHA1 ) );
+
+        // the default threshold is not reached while appending
+        ChecksumCache cache = new ChecksumCache( 10, journal );
+        cache.load( );
+        for ( int i = 0; i < 100; i++ )
+        {
+            cache.update( file, attributes, checksums );
+        }
+        cache.close( );
+        assertEquals( 100, Files.readAllLines( journal ).size( ) );
+
+        ChecksumCache loaded = new ChecksumCache( 10, journal, 5 );
+        loaded.load( );
+        loaded.close( );
+        assertEquals( 1, Files.readAllLines( journal ).size( ) );
+        assertEquals( 1, loaded.size( ) );
+    }
+
+    @Test
+    public void testDefaultMaxEntries( )
+    {
+        assertTrue( ChecksumCache.getDefaultMaxEntries( ) >= ChecksumCache.MIN_DEFAULT_MAX_ENTRIES );
+    }
+}
@@ -28,6 +28,7 @@
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -88,6 +89,23 @@ public void testUpdateMany()
         assertEquals( "Checksum MD5", "21c2c5ca87ec018adacb2e2fb3432219", checksumMd5.getChecksum() );
     }
 
+    @Test
+    public void testUpdateManyParallel()
+        throws IOException
+    {
+        List<Checksum> checksums = ChecksumUtil.newChecksums(
+            Arrays.asList( ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 ) );
+
+        Path checkFile = getTestOutputDir().resolve( "test-file1.txt" );
+        FileUtils.writeStringToFile( checkFile, FILE_ENCODING,  "You know, I'm sick of following my dreams, man. "
+            + "I'm just going to ask where they're going and hook up with 'em later. - Mitch Hedberg");
+
+        ChecksumUtil.updateParallel( checksums, checkFile );
+
+        assertEquals( "Checksum SHA1", "e396119ae0542e85a74759602fd2f81e5d36d762", checksums.get( 0 ).getChecksum() );
+        assertEquals( "Checksum MD5", "21c2c5ca87ec018adacb2e2fb3432219", checksums.get( 1 ).getChecksum() );
+    }
+
     @Test
     public void testUpdateWholeUpdatePartial()
     {
@@ -0,0 +1,189 @@
+package org.apache.archiva.checksum;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the checksum calculation of {@link ChecksumUtil} with the former implementation,
+ * that mapped the file in chunks of 32KB and updated each checksum separately.
+ *
+ * The benchmark is not run by the unit tests. Run it by the main method from the test classpath.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ChecksumUtilBenchmark
+{
+    private static final int LEGACY_BUFFER_SIZE = 32768;
+
+    @Param( { "4096", "1048576", "67108864", "268435456" } )
+    public long fileSize;
+
+    @Param( { "SHA1", "SHA1,MD5", "SHA256,SHA1,MD5" } )
+    public String algorithms;
+
+    private Path file;
+
+    private List<ChecksumAlgorithm> algorithmList;
+
+    @Setup( Level.Trial )
+    public void createFile( )
+        throws IOException
+    {
+        algorithmList = ChecksumUtil.getAlgorithms( Arrays.asList( algorithms.split( "," ) ) );
+        file = Files.createTempFile( "checksum-benchmark", ".bin" );
+        Random random = new Random( 42 );
+        byte[] buffer = new byte[64 * 1024];
+        try ( OutputStream out = Files.newOutputStream( file ) )
+        {
+            long written = 0;
+            while ( written < fileSize )
+            {
+                random.nextBytes( buffer );
+                int len = (int) Math.min( buffer.length, fileSize - written );
+                out.write( buffer, 0, len );
+                written += len;
+            }
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void removeFile( )
+        throws IOException
+    {
+        Files.deleteIfExists( file );
+    }
+
+    @Benchmark
+    public void legacyMappedChunks( Blackhole blackhole )
+        throws IOException
+    {
+        List<Checksum> checksums = ChecksumUtil.newChecksums( algorithmList );
+        legacyUpdate( checksums, file );
+        consume( blackhole, checksums );
+    }
+
+    @Benchmark
+    public void sequential( Blackhole blackhole )
+        throws IOException
+    {
+        List<Checksum> checksums = ChecksumUtil.newChecksums( algorithmList );
+        ChecksumUtil.updateSequential( checksums, file );
+        consume( blackhole, checksums );
+    }
+
+    @Benchmark
+    public void parallel( Blackhole blackhole )
+        throws IOException
+    {
+        List<Checksum> checksums = ChecksumUtil.newChecksums( algorithmList );
+        ChecksumUtil.updateParallel( checksums, file );
+        consume( blackhole, checksums );
+    }
+
+    @Benchmark
+    public void update( Blackhole blackhole )
+        throws IOException
+    {
+        List<Checksum> checksums = ChecksumUtil.newChecksums( algorithmList );
+        ChecksumUtil.update( checksums, file );
+        consume( blackhole, checksums );
+    }
+
+    private static void consume( Blackhole blackhole, List<Checksum> checksums )
+    {
+        for ( Checksum checksum : checksums )
+        {
+            blackhole.consume( checksum.getChecksumBytes( ) );
+        }
+    }
+
+    /**
+     * The implementation of ChecksumUtil.update before the buffer rework.
+     */
+    private static void legacyUpdate( List<Checksum> checksumList, Path file )
+        throws IOException
+    {
+        long fileSize;
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            fileSize = channel.size( );
+            long pos = 0;
+            while ( pos < fileSize )
+            {
+                long bufferSize = Math.min( LEGACY_BUFFER_SIZE, fileSize - pos );
+                MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, pos, bufferSize );
+                for ( Checksum checksum : checksumList )
+                {
+                    checksum.update( buffer );
+                    buffer.rewind( );
+                }
+                fileSize = channel.size( );
+                pos += LEGACY_BUFFER_SIZE;
+            }
+            for ( Checksum checksum : checksumList )
+            {
+                checksum.finish( );
+            }
+        }
+    }
+
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        Options options = new OptionsBuilder( )
+            .include( ChecksumUtilBenchmark.class.getSimpleName( ) )
+            .build( );
+        new Runner( options ).run( );
+    }
+}
@@ -0,0 +1,135 @@
+package org.apache.archiva.checksum;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ChecksumUtilTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class ChecksumUtilTest
+    extends AbstractChecksumTestCase
+{
+    private static final List<ChecksumAlgorithm> ALGORITHMS =
+        Arrays.asList( ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5, ChecksumAlgorithm.SHA256 );
+
+    private final long originalThreshold = ChecksumUtil.getParallelThreshold( );
+
+    @After
+    public void resetThreshold( )
+    {
+        ChecksumUtil.setParallelThreshold( originalThreshold );
+    }
+
+    @Test
+    public void testParallelMatchesSequentialBelowBufferSize( )
+        throws IOException
+    {
+        assertSameChecksums( createFile( "small.bin", 1000 ) );
+    }
+
+    @Test
+    public void testParallelMatchesSequentialAboveBufferSize( )
+        throws IOException
+    {
+        assertSameChecksums( createFile( "large.bin", ChecksumUtil.BUFFER_SIZE * 3 + 17 ) );
+    }
+
+    @Test
+    public void testEmptyFile( )
+        throws IOException
+    {
+        assertSameChecksums( createFile( "empty.bin", 0 ) );
+    }
+
+    @Test
+    public void testUpdateAboveAndBelowThreshold( )
+        throws IOException
+    {
+        Path file = createFile( "threshold.bin", ChecksumUtil.BUFFER_SIZE + 1 );
+        List<Checksum> expected = ChecksumUtil.newChecksums( ALGORITHMS );
+        ChecksumUtil.updateSequential( expected, file );
+
+        // above the threshold
+        ChecksumUtil.setParallelThreshold( ChecksumUtil.BUFFER_SIZE );
+        assertEquals( toStrings( expected ), toStrings( ChecksumUtil.initializeChecksums( file, ALGORITHMS ) ) );
+
+        // below the threshold
+        ChecksumUtil.setParallelThreshold( ChecksumUtil.BUFFER_SIZE * 2 );
+        assertEquals( toStrings( expected ), toStrings( ChecksumUtil.initializeChecksums( file, ALGORITHMS ) ) );
+    }
+
+    @Test
+    public void testMissingFileFails( )
+    {
+        try
+        {
+            ChecksumUtil.updateParallel( ChecksumUtil.newChecksums( ALGORITHMS ),
+                                         getTestOutputDir( ).resolve( "missing.bin" ) );
+            fail( "IOException expected" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+    }
+
+    private void assertSameChecksums( Path file )
+        throws IOException
+    {
+        List<Checksum> sequential = ChecksumUtil.newChecksums( ALGORITHMS );
+        ChecksumUtil.updateSequential( sequential, file );
+        List<Checksum> parallel = ChecksumUtil.newChecksums( ALGORITHMS );
+        ChecksumUtil.updateParallel( parallel, file );
+
+        assertEquals( toStrings( sequential ), toStrings( parallel ) );
+    }
+
+    private static List<String> toStrings( List<Checksum> checksums )
+    {
+        String[] result = new String[checksums.size( )];
+        for ( int i = 0; i < result.length; i++ )
+        {
+            result[i] = checksums.get( i ).getAlgorithm( ) + ":" + checksums.get( i ).getChecksum( );
+        }
+        return Arrays.asList( result );
+    }
+
+    private Path createFile( String name, int size )
+        throws IOException
+    {
+        byte[] content = new byte[size];
+        new Random( size ).nextBytes( content );
+        Path file = getTestOutputDir( ).resolve( name );
+        Files.write( file, content );
+        return file;
+    }
+}
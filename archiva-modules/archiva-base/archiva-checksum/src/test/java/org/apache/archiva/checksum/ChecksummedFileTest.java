@@ -161,6 +161,27 @@ public void testFixChecksum()
                     checksummedFile.isValidChecksum( ChecksumAlgorithm.SHA1 ) );
     }
 
+    @Test
+    public void testFixChecksumWithKnownChecksum()
+        throws IOException, ChecksumValidationException
+    {
+        Path jarFile = createTestableJar( "examples/redback-authz-open.jar", false, false );
+
+        // The known checksum is used without reading the file
+        Checksum known = new Checksum( ChecksumAlgorithm.SHA1, "2bb14b388973351b0a4dfe11d171965f59cc61a1" );
+        ChecksummedFile checksummedFile = new ChecksummedFile( jarFile, Arrays.asList( known ) );
+        UpdateStatusList fixed = checksummedFile.fixChecksums( Arrays.asList( ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 ) );
+        assertFalse( fixed.getTotalStatus() == UpdateStatus.ERROR );
+
+        ChecksummedFile checkFile = new ChecksummedFile( jarFile );
+        assertTrue( "ChecksummedFile.isValid(SHA1,MD5)", checkFile.isValidChecksums(
+            Arrays.asList( ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 ) ) );
+
+        Checksum wrong = new Checksum( ChecksumAlgorithm.SHA1, "0000000000000000000000000000000000000000" );
+        ChecksummedFile wrongFile = new ChecksummedFile( jarFile, Arrays.asList( wrong ) );
+        assertFalse( "ChecksummedFile.isValid(SHA1)", wrongFile.isValidChecksum( ChecksumAlgorithm.SHA1 ) );
+    }
+
     @Test
     public void testGetChecksumFile()
     {
@@ -0,0 +1,74 @@
+package org.apache.archiva.checksum;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ChecksummingOutputStreamTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class ChecksummingOutputStreamTest
+    extends AbstractChecksumTestCase
+{
+    private static final String CONTENT = "You know, I'm sick of following my dreams, man. "
+        + "I'm just going to ask where they're going and hook up with 'em later. - Mitch Hedberg";
+
+    @Test
+    public void testChecksumsWhileWriting()
+        throws IOException
+    {
+        ByteArrayOutputStream target = new ByteArrayOutputStream( );
+        byte[] content = CONTENT.getBytes( );
+        try ( ChecksummingOutputStream out = new ChecksummingOutputStream( target,
+            Arrays.asList( ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 ) ) )
+        {
+            out.write( content, 0, 10 );
+            out.write( content, 10, content.length - 10 );
+
+            List<Checksum> checksums = out.getChecksums( );
+            assertEquals( 2, checksums.size( ) );
+            assertEquals( "e396119ae0542e85a74759602fd2f81e5d36d762", checksums.get( 0 ).getChecksum( ) );
+            assertEquals( "21c2c5ca87ec018adacb2e2fb3432219", checksums.get( 1 ).getChecksum( ) );
+            assertEquals( content.length, out.getByteCount( ) );
+        }
+        assertEquals( CONTENT, new String( target.toByteArray( ) ) );
+    }
+
+    @Test
+    public void testChecksumsWithoutTarget()
+        throws IOException
+    {
+        ChecksummingOutputStream out = new ChecksummingOutputStream( Arrays.asList( ChecksumAlgorithm.SHA1 ) );
+        out.write( CONTENT.getBytes( ) );
+        assertEquals( "e396119ae0542e85a74759602fd2f81e5d36d762", out.getChecksums( ).get( 0 ).getChecksum( ) );
+
+        out.reset( );
+        assertEquals( 0, out.getByteCount( ) );
+        assertEquals( "da39a3ee5e6b4b0d3255bfef95601890afd80709", out.getChecksums( ).get( 0 ).getChecksum( ) );
+    }
+}
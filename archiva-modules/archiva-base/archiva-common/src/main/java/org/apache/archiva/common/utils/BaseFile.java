@@ -33,6 +33,11 @@
 {
     private File baseDir;
 
+    /**
+     * The relative path is calculated on first access, as it is requested for each consumer of a scanned file.
+     */
+    private transient String relativePath;
+
     public BaseFile( File pathFile )
     {
         this( pathFile.getAbsolutePath() );
@@ -89,12 +94,17 @@ public File getBaseDir()
 
     public String getRelativePath()
     {
-        return PathUtil.getRelative( this.baseDir.getAbsolutePath(), this.toPath() );
+        if ( relativePath == null )
+        {
+            relativePath = PathUtil.getRelative( this.baseDir.getAbsolutePath(), this.toPath() );
+        }
+        return relativePath;
     }
 
     public void setBaseDir( File baseDir )
     {
         this.baseDir = baseDir;
+        this.relativePath = null;
     }
 
     public void setBaseDir( String repoDir )
@@ -91,6 +91,13 @@
      */
     private List<String> checksumTypes = new ArrayList(Arrays.asList("MD5","SHA1","SHA256"));
 
+    /**
+     * The maximum number of files in the checksum cache. 0
+     * disables the cache, a negative value uses a default size,
+     * that is derived from the heap size.
+     */
+    private int checksumCacheSize = -1;
+
 
       //-----------/
      //- Methods -/
@@ -140,6 +147,18 @@ public String getLanguageRange()
         return this.languageRange;
     } //-- String getLanguageRange()
 
+    /**
+     * Get the maximum number of files in the checksum cache. 0
+     * disables the cache, a negative value uses a default size,
+     * that is derived from the heap size.
+     * 
+     * @return int
+     */
+    public int getChecksumCacheSize()
+    {
+        return this.checksumCacheSize;
+    } //-- int getChecksumCacheSize()
+
     /**
      * Get the base directory for local storage of remote
      * repository data. If not set, it's ${dataDirectory}/remotes.
@@ -227,6 +246,18 @@ public void setLanguageRange( String languageRange )
         this.languageRange = languageRange;
     } //-- void setLanguageRange( String )
 
+    /**
+     * Set the maximum number of files in the checksum cache. 0
+     * disables the cache, a negative value uses a default size,
+     * that is derived from the heap size.
+     * 
+     * @param checksumCacheSize
+     */
+    public void setChecksumCacheSize( int checksumCacheSize )
+    {
+        this.checksumCacheSize = checksumCacheSize;
+    } //-- void setChecksumCacheSize( int )
+
     /**
      * Set the base directory for local storage of remote
      * repository data. If not set, it's ${dataDirectory}/remotes.
@@ -1446,6 +1446,9 @@ private ArchivaRuntimeConfiguration readArchivaRuntimeConfiguration(String prefi
         List<String> checksumTypeList = registry.getList(prefix + "checksumTypes.type");
         value.setChecksumTypes(checksumTypeList);
 
+        int checksumCacheSize = registry.getInt(prefix + "checksumCacheSize", value.getChecksumCacheSize());
+        value.setChecksumCacheSize(checksumCacheSize);
+
         return value;
     }
 
@@ -910,6 +910,11 @@ private void writeArchivaRuntimeConfiguration(String prefix, ArchivaRuntimeConfi
                 registry.setString(prefix + languageRange, value.getLanguageRange());
             }
             writeList(registry, value.getChecksumTypes(), prefix+"checksumTypes", "type");
+            if (value.getChecksumCacheSize() != -1
+            ) {
+                String checksumCacheSize = "checksumCacheSize";
+                registry.setInt(prefix + checksumCacheSize, value.getChecksumCacheSize());
+            }
         }
     }
 
@@ -125,4 +125,15 @@ void processFile( String path, boolean executeOnEntireRepo )
      * @return whether to process the unmodified files
      */
     boolean isProcessUnmodified();
+
+    /**
+     * Whether the consumer can process files from multiple threads at the same time. This is used by the
+     * parallel repository scan. Consumers that are not thread safe get their files from one thread at a time.
+     *
+     * @return true, if {@link #processFile(String, boolean)} may be called concurrently
+     */
+    default boolean isThreadSafe()
+    {
+        return false;
+    }
 }
@@ -49,6 +49,14 @@
 
     private ManagedRepository managedRepository;
 
+    private String relativePath;
+
+    private long lastModified;
+
+    private boolean lastModifiedKnown = false;
+
+    private String indexDirectory;
+
     private Logger logger = LoggerFactory.getLogger( getClass( ) );
 
     /**
@@ -70,7 +78,7 @@ public boolean evaluate( RepositoryContentConsumer object )
         boolean satisfies = false;
 
         RepositoryContentConsumer consumer = (RepositoryContentConsumer) object;
-        if ( wantsFile( consumer, FilenameUtils.separatorsToUnix( basefile.getRelativePath( ) ) ) )
+        if ( wantsFile( consumer, relativePath ) )
         {
             satisfies = true;
 
@@ -80,7 +88,7 @@ public boolean evaluate( RepositoryContentConsumer object )
             if ( !consumer.isProcessUnmodified( ) )
             {
                 // Timestamp finished points to the last successful scan, not this current one.
-                if ( basefile.lastModified( ) < changesSince )
+                if ( getLastModified( ) < changesSince )
                 {
                     // Skip file as no change has occurred.
                     satisfies = false;
@@ -109,9 +117,35 @@ public boolean isCaseSensitive( )
     public void setBasefile( BaseFile basefile )
     {
         this.basefile = basefile;
+        this.relativePath = FilenameUtils.separatorsToUnix( basefile.getRelativePath( ) );
+        this.lastModifiedKnown = false;
         this.wantedFileCount = 0;
     }
 
+    /**
+     * Sets the file to evaluate together with its modification time, if it is already known
+     * by the caller. This avoids reading the file attributes again for each consumer.
+     *
+     * @param basefile the file
+     * @param lastModified the modification time of the file in milliseconds
+     */
+    public void setBasefile( BaseFile basefile, long lastModified )
+    {
+        setBasefile( basefile );
+        this.lastModified = lastModified;
+        this.lastModifiedKnown = true;
+    }
+
+    private long getLastModified( )
+    {
+        if ( !lastModifiedKnown )
+        {
+            lastModified = basefile.lastModified( );
+            lastModifiedKnown = true;
+        }
+        return lastModified;
+    }
+
     public void setCaseSensitive( boolean isCaseSensitive )
     {
         this.isCaseSensitive = isCaseSensitive;
@@ -135,27 +169,7 @@ private boolean wantsFile( RepositoryContentConsumer consumer, String relativePa
 
         if ( managedRepository != null )
         {
-            String indexDirectory;
-            if ( managedRepository.supportsFeature( IndexCreationFeature.class ) )
-            {
-                IndexCreationFeature icf = managedRepository.getFeature( IndexCreationFeature.class ).get( );
-                if ( icf.getIndexPath( ) == null )
-                {
-                    indexDirectory = ".index";
-                }
-                else
-                {
-                    indexDirectory = ( icf.getIndexPath( ).getScheme( ) == null ? Paths.get( icf.getIndexPath( ).getPath( ) ) : Paths.get( icf.getIndexPath( ) ) ).toString( );
-                }
-            }
-            else
-            {
-                indexDirectory = ".index";
-            }
-            if ( StringUtils.isEmpty( indexDirectory ) )
-            {
-                indexDirectory = ".index";
-            }
+            String indexDirectory = getIndexDirectory( );
             if ( StringUtils.startsWith( relativePath, indexDirectory ) )
             {
                 logger.debug( "ignore file {} part of the index directory {}", relativePath, indexDirectory );
@@ -177,6 +191,36 @@ private boolean wantsFile( RepositoryContentConsumer consumer, String relativePa
         return false;
     }
 
+    private String getIndexDirectory( )
+    {
+        if ( indexDirectory == null )
+        {
+            String dir;
+            if ( managedRepository.supportsFeature( IndexCreationFeature.class ) )
+            {
+                IndexCreationFeature icf = managedRepository.getFeature( IndexCreationFeature.class ).get( );
+                if ( icf.getIndexPath( ) == null )
+                {
+                    dir = ".index";
+                }
+                else
+                {
+                    dir = ( icf.getIndexPath( ).getScheme( ) == null ? Paths.get( icf.getIndexPath( ).getPath( ) ) : Paths.get( icf.getIndexPath( ) ) ).toString( );
+                }
+            }
+            else
+            {
+                dir = ".index";
+            }
+            if ( StringUtils.isEmpty( dir ) )
+            {
+                dir = ".index";
+            }
+            indexDirectory = dir;
+        }
+        return indexDirectory;
+    }
+
     public void setChangesSince( long changesSince )
     {
         this.changesSince = changesSince;
@@ -28,6 +28,7 @@
 import org.apache.archiva.repository.ManagedRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 
@@ -38,6 +39,7 @@
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -74,6 +76,9 @@
     private List<String> includes = new ArrayList<>( 0 );
     private List<ChecksumAlgorithm> algorithms;
 
+    @Autowired( required = false )
+    private ChecksumCache checksumCache;
+
     @Inject
     public ArtifactMissingChecksumsConsumer( ArchivaConfiguration configuration, FileTypes filetypes )
     {
@@ -123,6 +128,13 @@ public void completeScan( boolean executeOnEntireRepo )
         completeScan( );
     }
 
+    @Override
+    public boolean isThreadSafe( )
+    {
+        // processFile does not change the state of the consumer
+        return true;
+    }
+
     @Override
     public List<String> getExcludes( )
     {
@@ -140,7 +152,7 @@ public void processFile( String path )
         throws ConsumerException
     {
         Path artifactPath = repositoryDir.resolve(path);
-        ChecksummedFile csFile = new ChecksummedFile(artifactPath);
+        ChecksummedFile csFile = new ChecksummedFile(artifactPath, Collections.emptyList( ), checksumCache);
         UpdateStatusList result = csFile.fixChecksums(algorithms);
         if (result.getTotalStatus()== UpdateStatus.ERROR) {
             log.warn( "Error accessing file {}. ", path );
@@ -20,6 +20,7 @@
  */
 
 import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.ChecksumCache;
 import org.apache.archiva.checksum.ChecksumReference;
 import org.apache.archiva.checksum.ChecksumValidationException;
 import org.apache.archiva.checksum.ChecksummedFile;
@@ -29,10 +30,12 @@
 import org.apache.archiva.repository.ManagedRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.inject.Named;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -69,6 +72,10 @@
 
     private List<String> includes;
 
+    @Autowired( required = false )
+    @Named( "checksumCache#default" )
+    private ChecksumCache checksumCache;
+
     @Override
     public String getId( )
     {
@@ -107,6 +114,13 @@ public void completeScan( boolean executeOnEntireRepo )
         completeScan( );
     }
 
+    @Override
+    public boolean isThreadSafe( )
+    {
+        // processFile does not change the state of the consumer
+        return true;
+    }
+
     @Override
     public List<String> getExcludes( )
     {
@@ -126,7 +140,7 @@ public void processFile( String path )
         Path checksumFile = this.repositoryDir.resolve( path );
         try
         {
-            ChecksumReference cf = ChecksummedFile.getFromChecksumFile( checksumFile );
+            ChecksumReference cf = ChecksummedFile.getFromChecksumFile( checksumFile, checksumCache );
             if ( !cf.getFile().isValidChecksum( cf.getAlgorithm(), true )  )
             {
                 log.warn( "The checksum for {} is invalid.", checksumFile );
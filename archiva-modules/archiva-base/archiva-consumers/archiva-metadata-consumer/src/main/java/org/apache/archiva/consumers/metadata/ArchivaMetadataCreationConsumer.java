@@ -49,11 +49,18 @@
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Take an artifact off of disk and put it into the metadata repository.
+ *
+ * The artifacts are collected by project version and persisted in batches, so the version metadata is read
+ * only once for all files of a version, and a batch of versions is saved in one session. The remaining
+ * versions are persisted with the completion of the scan.
  */
 @Service ("knownRepositoryContentConsumer#create-archiva-metadata")
 @Scope ("prototype")
@@ -93,6 +100,38 @@
 
     private String repoId;
 
+    /**
+     * The number of project versions, that are persisted in one session.
+     */
+    private int batchSize = Integer.getInteger( "archiva.metadata.consumer.batchSize", 50 );
+
+    /**
+     * The artifacts of the scan, that are not persisted yet, by project version.
+     */
+    private final Map<String, ProjectVersionArtifacts> pendingVersions = new LinkedHashMap<>();
+
+    private static final class ProjectVersionArtifacts
+    {
+        final String namespace;
+
+        final String projectId;
+
+        final String projectVersion;
+
+        final List<String> paths = new ArrayList<>();
+
+        final List<ArtifactMetadata> artifacts = new ArrayList<>();
+
+        ProjectVersionMetadata versionMetadata;
+
+        ProjectVersionArtifacts( String namespace, String projectId, String projectVersion )
+        {
+            this.namespace = namespace;
+            this.projectId = projectId;
+            this.projectVersion = projectVersion;
+        }
+    }
+
     @Override
     public String getId()
     {
@@ -122,6 +161,7 @@ public void beginScan( ManagedRepository repo, Date whenGathered )
         throws ConsumerException
     {
         repoId = repo.getId();
+        pendingVersions.clear();
         this.whenGathered = ZonedDateTime.ofInstant(whenGathered.toInstant(), ZoneId.of("GMT"));
     }
 
@@ -136,99 +176,184 @@ public void beginScan( ManagedRepository repository, Date whenGathered, boolean
     public void processFile( String path )
         throws ConsumerException
     {
-
-        RepositorySession repositorySession = null;
+        // note that we do minimal processing including checksums and POM information for performance of
+        // the initial scan. Any request for this information will be intercepted and populated on-demand
+        // or picked up by subsequent scans
+        ArtifactMetadata artifact;
         try
         {
-            repositorySession = repositorySessionFactory.createSession();
+            artifact = repositoryStorage.readArtifactMetadataFromPath( repoId, path );
         }
-        catch ( MetadataRepositoryException e )
+        catch ( RepositoryStorageRuntimeException e )
         {
-            e.printStackTrace( );
+            log.warn(
+                "Error occurred persisting metadata for artifact:{} (repository:{}); message: {}",
+                path, repoId, e.getMessage(), e );
+            return;
         }
-        try
-        {
-            // note that we do minimal processing including checksums and POM information for performance of
-            // the initial scan. Any request for this information will be intercepted and populated on-demand
-            // or picked up by subsequent scans
-
-            ArtifactMetadata artifact = repositoryStorage.readArtifactMetadataFromPath( repoId, path );
+        artifact.setWhenGathered( whenGathered );
 
-            ProjectMetadata project = new ProjectMetadata();
-            project.setNamespace( artifact.getNamespace() );
-            project.setId( artifact.getProject() );
-
-            String projectVersion = VersionUtil.getBaseVersion( artifact.getVersion() );
+        String projectVersion = VersionUtil.getBaseVersion( artifact.getVersion() );
+        String key = artifact.getNamespace() + ":" + artifact.getProject() + ":" + projectVersion;
+        ProjectVersionArtifacts versionArtifacts = pendingVersions.get( key );
+        if ( versionArtifacts == null )
+        {
+            if ( pendingVersions.size() >= batchSize )
+            {
+                flushPendingVersions();
+            }
+            versionArtifacts = new ProjectVersionArtifacts( artifact.getNamespace(), artifact.getProject(),
+                                                            projectVersion );
+            pendingVersions.put( key, versionArtifacts );
+        }
+        versionArtifacts.paths.add( path );
+        versionArtifacts.artifacts.add( artifact );
+    }
 
-            MetadataRepository metadataRepository = repositorySession.getRepository();
+    /**
+     * Persists the artifacts of the pending project versions in one session. The version metadata is read
+     * once for each version. If a version cannot be persisted, the session is reverted and the versions
+     * are persisted one by one in new sessions, so that only the failing version is lost.
+     */
+    private void flushPendingVersions()
+        throws ConsumerException
+    {
+        if ( pendingVersions.isEmpty() )
+        {
+            return;
+        }
+        List<ProjectVersionArtifacts> versions = new ArrayList<>( pendingVersions.values() );
+        pendingVersions.clear();
 
-            boolean createVersionMetadata = false;
+        // the artifacts of a version, whose metadata could not be read, are skipped
+        versions.removeIf( version -> !readVersionMetadata( version ) );
+        if ( versions.isEmpty() )
+        {
+            return;
+        }
 
-            // FIXME: maybe not too efficient since it may have already been read and stored for this artifact
-            ProjectVersionMetadata versionMetadata = null;
-            try
+        try
+        {
+            persistVersions( versions );
+        }
+        catch ( MetadataRepositoryException | RepositoryStorageRuntimeException e )
+        {
+            log.warn( "Error occurred persisting metadata of {} project versions (repository:{}), "
+                          + "persisting them one by one; message: {}", versions.size(), repoId, e.getMessage() );
+            for ( ProjectVersionArtifacts version : versions )
             {
-                ReadMetadataRequest readMetadataRequest =
-                    new ReadMetadataRequest().repositoryId( repoId ).namespace( artifact.getNamespace() ).projectId(
-                        artifact.getProject() ).projectVersion( projectVersion );
-                versionMetadata = repositoryStorage.readProjectVersionMetadata( readMetadataRequest );
-                createVersionMetadata = true;
+                try
+                {
+                    persistVersions( Collections.singletonList( version ) );
+                }
+                catch ( MetadataRepositoryException | RepositoryStorageRuntimeException ex )
+                {
+                    log.warn( "Error occurred persisting metadata for artifacts:{} (repository:{}); message: {}",
+                              version.paths, repoId, ex.getMessage(), ex );
+                }
             }
-            catch ( RepositoryStorageMetadataNotFoundException e )
-            {
-                log.warn( "Missing or invalid POM for artifact:{} (repository:{}); creating empty metadata", path,
-                          repoId );
+        }
+    }
 
-                versionMetadata = new ProjectVersionMetadata();
-                versionMetadata.setId( projectVersion );
-                versionMetadata.setIncomplete( true );
-                createVersionMetadata = true;
-            }
-            catch ( RepositoryStorageMetadataInvalidException e )
+    /**
+     * Persists the given versions in a new session. If a version cannot be persisted, the session is reverted
+     * and the exception is thrown.
+     */
+    private void persistVersions( List<ProjectVersionArtifacts> versions )
+        throws ConsumerException, MetadataRepositoryException
+    {
+        RepositorySession repositorySession;
+        try
+        {
+            repositorySession = repositorySessionFactory.createSession();
+        }
+        catch ( MetadataRepositoryException e )
+        {
+            throw new ConsumerException( "Could not create repository session: " + e.getMessage(), e );
+        }
+        try
+        {
+            try
             {
-                log.warn( "Error occurred resolving POM for artifact:{} (repository:{}); message: {}",
-                          new Object[]{ path, repoId, e.getMessage() } );
+                for ( ProjectVersionArtifacts version : versions )
+                {
+                    updateVersion( repositorySession, version );
+                }
+                repositorySession.save();
             }
-
-            // read the metadata and update it if it is newer or doesn't exist
-            artifact.setWhenGathered( whenGathered );
-            metadataRepository.updateArtifact(repositorySession , repoId, project.getNamespace(), project.getId(),
-                projectVersion, artifact );
-            if ( createVersionMetadata )
+            catch ( MetadataRepositoryException | RepositoryStorageRuntimeException e )
             {
-                metadataRepository.updateProjectVersion(repositorySession , repoId, project.getNamespace(),
-                    project.getId(), versionMetadata );
+                repositorySession.revert();
+                throw e;
             }
-            metadataRepository.updateProject(repositorySession , repoId, project );
-            repositorySession.save();
         }
-        catch ( MetadataRepositoryException e )
+        catch ( MetadataSessionException e )
         {
-            log.warn(
-                "Error occurred persisting metadata for artifact:{} (repository:{}); message: {}" ,
-                path, repoId, e.getMessage(), e );
-            try {
-                repositorySession.revert();
-            } catch (MetadataSessionException ex) {
-                log.error("Reverting failed {}", ex.getMessage());
-            }
+            throw new ConsumerException( e.getMessage(), e );
+        }
+        finally
+        {
+            repositorySession.close();
+        }
+    }
+
+    /**
+     * Reads the metadata of the given version.
+     *
+     * @return <code>false</code>, if the artifacts of the version must not be persisted
+     */
+    private boolean readVersionMetadata( ProjectVersionArtifacts version )
+    {
+        try
+        {
+            ReadMetadataRequest readMetadataRequest =
+                new ReadMetadataRequest().repositoryId( repoId ).namespace( version.namespace ).projectId(
+                    version.projectId ).projectVersion( version.projectVersion );
+            version.versionMetadata = repositoryStorage.readProjectVersionMetadata( readMetadataRequest );
+        }
+        catch ( RepositoryStorageMetadataNotFoundException e )
+        {
+            log.warn( "Missing or invalid POM for artifacts:{} (repository:{}); creating empty metadata",
+                      version.paths, repoId );
+
+            version.versionMetadata = new ProjectVersionMetadata();
+            version.versionMetadata.setId( version.projectVersion );
+            version.versionMetadata.setIncomplete( true );
+        }
+        catch ( RepositoryStorageMetadataInvalidException e )
+        {
+            log.warn( "Error occurred resolving POM for artifacts:{} (repository:{}); message: {}",
+                      version.paths, repoId, e.getMessage() );
         }
         catch ( RepositoryStorageRuntimeException e )
         {
-            log.warn(
-                "Error occurred persisting metadata for artifact:{} (repository:{}); message: {}",
-                path, repoId, e.getMessage(), e );
-            try {
-                repositorySession.revert();
-            } catch (MetadataSessionException ex) {
-                log.error("Reverting failed {}", ex.getMessage());
-            }
-        } catch (MetadataSessionException e) {
-            throw new ConsumerException(e.getMessage(), e);
-        } finally
+            log.warn( "Error occurred persisting metadata for artifacts:{} (repository:{}); message: {}",
+                      version.paths, repoId, e.getMessage(), e );
+            return false;
+        }
+        return true;
+    }
+
+    private void updateVersion( RepositorySession repositorySession, ProjectVersionArtifacts version )
+        throws MetadataRepositoryException
+    {
+        MetadataRepository metadataRepository = repositorySession.getRepository();
+
+        // read the metadata and update it if it is newer or doesn't exist
+        for ( ArtifactMetadata artifact : version.artifacts )
         {
-            repositorySession.close();
+            metadataRepository.updateArtifact( repositorySession, repoId, version.namespace, version.projectId,
+                                               version.projectVersion, artifact );
         }
+        if ( version.versionMetadata != null )
+        {
+            metadataRepository.updateProjectVersion( repositorySession, repoId, version.namespace,
+                                                     version.projectId, version.versionMetadata );
+        }
+        ProjectMetadata project = new ProjectMetadata();
+        project.setNamespace( version.namespace );
+        project.setId( version.projectId );
+        metadataRepository.updateProject( repositorySession, repoId, project );
     }
 
     @Override
@@ -241,7 +366,15 @@ public void processFile( String path, boolean executeOnEntireRepo )
     @Override
     public void completeScan()
     {
-        /* do nothing */
+        try
+        {
+            flushPendingVersions();
+        }
+        catch ( ConsumerException e )
+        {
+            log.error( "Could not persist the metadata of the last project versions (repository:{}): {}", repoId,
+                       e.getMessage(), e );
+        }
     }
 
     @Override
@@ -270,6 +403,16 @@ private void initIncludes()
         includes = new ArrayList<String>( filetypes.getFileTypePatterns( FileTypes.ARTIFACTS ) );
     }
 
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    public void setBatchSize( int batchSize )
+    {
+        this.batchSize = Math.max( 1, batchSize );
+    }
+
     @PostConstruct
     public void initialize()
     {
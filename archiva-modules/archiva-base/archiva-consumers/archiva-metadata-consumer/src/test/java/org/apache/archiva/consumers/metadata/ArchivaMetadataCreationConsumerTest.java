@@ -0,0 +1,247 @@
+package org.apache.archiva.consumers.metadata;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.metadata.model.ArtifactMetadata;
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
+import org.apache.archiva.metadata.repository.MetadataRepository;
+import org.apache.archiva.metadata.repository.MetadataRepositoryException;
+import org.apache.archiva.metadata.repository.RepositorySession;
+import org.apache.archiva.metadata.repository.RepositorySessionFactory;
+import org.apache.archiva.metadata.repository.storage.ReadMetadataRequest;
+import org.apache.archiva.metadata.repository.storage.RepositoryStorage;
+import org.apache.archiva.metadata.repository.storage.RepositoryStorageRuntimeException;
+import org.apache.archiva.repository.ManagedRepository;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * ArchivaMetadataCreationConsumerTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class ArchivaMetadataCreationConsumerTest
+    extends TestCase
+{
+    private static final String REPO_ID = "internal";
+
+    private static final String NAMESPACE = "org.example";
+
+    private static final String PROJECT = "project";
+
+    @Mock
+    private RepositorySessionFactory repositorySessionFactory;
+
+    @Mock
+    private RepositoryStorage repositoryStorage;
+
+    @InjectMocks
+    private ArchivaMetadataCreationConsumer consumer;
+
+    private MetadataRepository metadataRepository;
+
+    private final List<RepositorySession> sessions = new ArrayList<>();
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        MockitoAnnotations.initMocks( this );
+        metadataRepository = mock( MetadataRepository.class );
+        when( repositorySessionFactory.createSession() ).thenAnswer( invocation -> {
+            RepositorySession session = mock( RepositorySession.class );
+            when( session.getRepository() ).thenReturn( metadataRepository );
+            sessions.add( session );
+            return session;
+        } );
+        when( repositoryStorage.readArtifactMetadataFromPath( eq( REPO_ID ), anyString() ) ).thenAnswer(
+            invocation -> createArtifact( (String) invocation.getArguments()[1] ) );
+        when( repositoryStorage.readProjectVersionMetadata( any( ReadMetadataRequest.class ) ) ).thenAnswer(
+            invocation -> {
+                ProjectVersionMetadata versionMetadata = new ProjectVersionMetadata();
+                versionMetadata.setId( ( (ReadMetadataRequest) invocation.getArguments()[0] ).getProjectVersion() );
+                return versionMetadata;
+            } );
+
+        ManagedRepository repository = mock( ManagedRepository.class );
+        when( repository.getId() ).thenReturn( REPO_ID );
+        consumer.beginScan( repository, new Date() );
+    }
+
+    @Test
+    public void testVersionsArePersistedInBatches()
+        throws Exception
+    {
+        consumer.setBatchSize( 2 );
+        consumer.processFile( getPath( "1.0", "jar" ) );
+        consumer.processFile( getPath( "1.0", "pom" ) );
+        consumer.processFile( getPath( "2.0", "jar" ) );
+        verifyZeroInteractions( repositorySessionFactory );
+
+        // the third version exceeds the batch size
+        consumer.processFile( getPath( "3.0", "jar" ) );
+        assertEquals( 1, sessions.size() );
+        verify( sessions.get( 0 ) ).save();
+        verify( sessions.get( 0 ) ).close();
+        verifyArtifacts( "1.0", 2 );
+        verifyArtifacts( "2.0", 1 );
+        verifyArtifacts( "3.0", 0 );
+
+        consumer.processFile( getPath( "3.0", "pom" ) );
+        assertEquals( 1, sessions.size() );
+
+        // the version metadata is read once for each version
+        verify( repositoryStorage, times( 3 ) ).readProjectVersionMetadata( any( ReadMetadataRequest.class ) );
+    }
+
+    @Test
+    public void testCompleteScanPersistsPendingVersions()
+        throws Exception
+    {
+        consumer.processFile( getPath( "1.0", "jar" ) );
+        consumer.processFile( getPath( "2.0", "jar" ) );
+        verifyZeroInteractions( repositorySessionFactory );
+
+        consumer.completeScan();
+
+        assertEquals( 1, sessions.size() );
+        verify( sessions.get( 0 ) ).save();
+        verify( sessions.get( 0 ) ).close();
+        verifyArtifacts( "1.0", 1 );
+        verifyArtifacts( "2.0", 1 );
+        verify( metadataRepository ).updateProjectVersion( any( RepositorySession.class ), eq( REPO_ID ),
+                                                           eq( NAMESPACE ), eq( PROJECT ),
+                                                           any( ProjectVersionMetadata.class ) );
+
+        // nothing is left for a second completion
+        consumer.completeScan();
+        assertEquals( 1, sessions.size() );
+    }
+
+    @Test
+    public void testFailedBatchIsPersistedOneByOne()
+        throws Exception
+    {
+        doThrow( new MetadataRepositoryException( "failed" ) ).when( metadataRepository ).updateArtifact(
+            any( RepositorySession.class ), eq( REPO_ID ), eq( NAMESPACE ), eq( PROJECT ), eq( "2.0" ),
+            any( ArtifactMetadata.class ) );
+        consumer.processFile( getPath( "1.0", "jar" ) );
+        consumer.processFile( getPath( "2.0", "jar" ) );
+        consumer.processFile( getPath( "3.0", "jar" ) );
+
+        consumer.completeScan();
+
+        // the batch session and a new session for each version
+        assertEquals( 4, sessions.size() );
+        RepositorySession batchSession = sessions.get( 0 );
+        verify( batchSession, never() ).save();
+        verify( batchSession ).revert();
+        verify( batchSession ).close();
+
+        verify( sessions.get( 1 ) ).save();
+        verify( sessions.get( 2 ) ).revert();
+        verify( sessions.get( 2 ), never() ).save();
+        verify( sessions.get( 3 ) ).save();
+        for ( RepositorySession session : sessions.subList( 1, 4 ) )
+        {
+            verify( session ).close();
+        }
+        verify( metadataRepository ).updateArtifact( eq( sessions.get( 1 ) ), eq( REPO_ID ), eq( NAMESPACE ),
+                                                     eq( PROJECT ), eq( "1.0" ), any( ArtifactMetadata.class ) );
+        verify( metadataRepository ).updateArtifact( eq( sessions.get( 3 ) ), eq( REPO_ID ), eq( NAMESPACE ),
+                                                     eq( PROJECT ), eq( "3.0" ), any( ArtifactMetadata.class ) );
+    }
+
+    @Test
+    public void testArtifactsAreSkippedIfVersionMetadataCannotBeRead()
+        throws Exception
+    {
+        doThrow( new RepositoryStorageRuntimeException( REPO_ID, "broken" ) ).when(
+            repositoryStorage ).readProjectVersionMetadata( argThat( new ArgumentMatcher<ReadMetadataRequest>()
+        {
+            @Override
+            public boolean matches( Object argument )
+            {
+                return "2.0".equals( ( (ReadMetadataRequest) argument ).getProjectVersion() );
+            }
+        } ) );
+        consumer.processFile( getPath( "1.0", "jar" ) );
+        consumer.processFile( getPath( "2.0", "jar" ) );
+
+        consumer.completeScan();
+
+        assertEquals( 1, sessions.size() );
+        verify( sessions.get( 0 ) ).save();
+        verifyArtifacts( "1.0", 1 );
+        verifyArtifacts( "2.0", 0 );
+    }
+
+    private void verifyArtifacts( String version, int count )
+        throws MetadataRepositoryException
+    {
+        verify( metadataRepository, times( count ) ).updateArtifact( any( RepositorySession.class ), eq( REPO_ID ),
+                                                                     eq( NAMESPACE ), eq( PROJECT ), eq( version ),
+                                                                     any( ArtifactMetadata.class ) );
+    }
+
+    private static String getPath( String version, String extension )
+    {
+        return NAMESPACE.replace( '.', '/' ) + "/" + PROJECT + "/" + version + "/" + PROJECT + "-" + version + "."
+            + extension;
+    }
+
+    private static ArtifactMetadata createArtifact( String path )
+    {
+        String[] parts = path.split( "/" );
+        String version = parts[parts.length - 2];
+        ArtifactMetadata artifact = new ArtifactMetadata();
+        artifact.setRepositoryId( REPO_ID );
+        artifact.setNamespace( NAMESPACE );
+        artifact.setProject( PROJECT );
+        artifact.setVersion( version );
+        artifact.setProjectVersion( version );
+        artifact.setId( parts[parts.length - 1] );
+        return artifact;
+    }
+}
@@ -19,13 +19,16 @@
  * under the License.
  */
 
+import org.apache.archiva.checksum.Checksum;
 import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.ChecksumCache;
 import org.apache.archiva.checksum.ChecksummedFile;
 import org.apache.archiva.checksum.UpdateStatus;
 import org.apache.archiva.repository.storage.StorageAsset;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -50,6 +53,9 @@
 
     private static final String ID = "checksum";
 
+    @Autowired( required = false )
+    private ChecksumCache checksumCache;
+
     /**
      * The IGNORE policy indicates that if the checksum policy is ignored, and
      * the state of, contents of, or validity of the checksum files are not
@@ -71,6 +77,13 @@
      */
     public static final ChecksumOption FIX = ChecksumOption.FIX;
 
+    /**
+     * Prefix of the request properties, that contain the checksums calculated during the download.
+     * The prefix is followed by the default extension of the checksum algorithm, e.g. <code>checksum.sha1</code>.
+     * If present, these checksums are used instead of reading the downloaded file again.
+     */
+    public static final String CHECKSUM_PROPERTY_PREFIX = "checksum.";
+
     private List<ChecksumAlgorithm> algorithms = Arrays.asList( ChecksumAlgorithm.SHA256, ChecksumAlgorithm.SHA1, ChecksumAlgorithm.MD5 );
 
     private List<PolicyOption> options = new ArrayList<>( 3 );
@@ -116,7 +129,7 @@ public void applyPolicy( PolicyOption policySetting, Properties request, Storage
 
         if ( FAIL.equals( policySetting ) && localFile.isFileBased() )
         {
-            ChecksummedFile checksum = new ChecksummedFile( localFile.getFilePath() );
+            ChecksummedFile checksum = new ChecksummedFile( localFile.getFilePath(), getKnownChecksums( request ), checksumCache );
             if ( checksum.isValidChecksums( algorithms ) )
             {
                 return;
@@ -150,7 +163,7 @@ public void applyPolicy( PolicyOption policySetting, Properties request, Storage
 
         if ( FIX.equals( policySetting ) && localFile.isFileBased())
         {
-            ChecksummedFile checksum = new ChecksummedFile( localFile.getFilePath() );
+            ChecksummedFile checksum = new ChecksummedFile( localFile.getFilePath(), getKnownChecksums( request ), checksumCache );
             if ( checksum.fixChecksums( algorithms ).getTotalStatus() != UpdateStatus.ERROR )
             {
                 log.debug( "Checksum policy set to FIX, checksum files have been updated." );
@@ -168,6 +181,20 @@ public void applyPolicy( PolicyOption policySetting, Properties request, Storage
             "Unable to process checksum policy of [" + policySetting + "], please file a bug report." );
     }
 
+    private List<Checksum> getKnownChecksums( Properties request )
+    {
+        List<Checksum> checksums = new ArrayList<>( );
+        for ( ChecksumAlgorithm algorithm : algorithms )
+        {
+            String checksumHex = request.getProperty( CHECKSUM_PROPERTY_PREFIX + algorithm.getDefaultExtension( ) );
+            if ( StringUtils.isNotEmpty( checksumHex ) )
+            {
+                checksums.add( new Checksum( algorithm, checksumHex ) );
+            }
+        }
+        return checksums;
+    }
+
     @Override
     public PolicyOption getDefaultOption()
     {
@@ -19,6 +19,7 @@
  * under the License.
  */
 
+import org.apache.archiva.checksum.Checksum;
 import org.apache.archiva.checksum.ChecksumAlgorithm;
 import org.apache.archiva.checksum.ChecksumUtil;
 import org.apache.archiva.common.filelock.FileLockManager;
@@ -27,6 +28,7 @@
 import org.apache.archiva.configuration.ProxyConnectorRuleConfiguration;
 import org.apache.archiva.model.ArtifactReference;
 import org.apache.archiva.model.Keys;
+import org.apache.archiva.policies.ChecksumPolicy;
 import org.apache.archiva.policies.DownloadErrorPolicy;
 import org.apache.archiva.policies.DownloadPolicy;
 import org.apache.archiva.policies.Policy;
@@ -109,6 +111,12 @@ public abstract class DefaultRepositoryProxyHandler implements RepositoryProxyHa
     private Map<String, NetworkProxy> networkProxyMap = new ConcurrentHashMap<>();
     private List<ChecksumAlgorithm> checksumAlgorithms;
 
+    /**
+     * The transfers that are currently running, keyed by fetch kind, managed repository id and local path.
+     * Concurrent requests for the same resource wait for the running transfer and share its result.
+     */
+    private final ProxyTransferCoalescer transferCoalescer = new ProxyTransferCoalescer( );
+
     @PostConstruct
     public void initialize()
     {
@@ -140,8 +148,15 @@ private List<ProxyConnectorRuleConfiguration> findProxyConnectorRules(String sou
     public StorageAsset fetchFromProxies( ManagedRepository repository, ArtifactReference artifact )
         throws ProxyDownloadException
     {
-        StorageAsset localFile = toLocalFile( repository, artifact );
+        final StorageAsset localFile = toLocalFile( repository, artifact );
+        return transferCoalescer.fetch( repository.getId( ), getTransferKey( "artifact", repository, localFile ),
+                                       ( ) -> fetchArtifactFromProxies( repository, artifact, localFile ) );
+    }
 
+    private StorageAsset fetchArtifactFromProxies( ManagedRepository repository, ArtifactReference artifact,
+                                                   StorageAsset localFile )
+        throws ProxyDownloadException
+    {
         Properties requestProperties = new Properties();
         requestProperties.setProperty( "filetype", "artifact" );
         requestProperties.setProperty( "version", artifact.getVersion() );
@@ -210,7 +225,7 @@ public StorageAsset fetchFromProxies( ManagedRepository repository, ArtifactRefe
     @Override
     public StorageAsset fetchFromProxies( ManagedRepository repository, String path )
     {
-        StorageAsset localFile = repository.getAsset( path );
+        final StorageAsset localFile = repository.getAsset( path );
 
         // no update policies for these paths
         if ( localFile.exists() )
@@ -218,6 +233,21 @@ public StorageAsset fetchFromProxies( ManagedRepository repository, String path
             return null;
         }
 
+        try
+        {
+            return transferCoalescer.fetch( repository.getId( ),
+                                           getTransferKey( "resource", repository, localFile ),
+                                           ( ) -> fetchResourceFromProxies( repository, path, localFile ) );
+        }
+        catch ( ProxyDownloadException e )
+        {
+            log.warn( "Fetch of resource {} from proxies failed: {}", path, e.getMessage( ) );
+            return null;
+        }
+    }
+
+    private StorageAsset fetchResourceFromProxies( ManagedRepository repository, String path, StorageAsset localFile )
+    {
         Properties requestProperties = new Properties();
         requestProperties.setProperty( "filetype", "resource" );
         requestProperties.setProperty( "managedRepositoryId", repository.getId() );
@@ -357,6 +387,42 @@ public ProxyFetchResult fetchMetadataFromProxies( ManagedRepository repository,
         return new ProxyFetchResult( null, false );
     }
 
+    /**
+     * Returns the key of a transfer. Artifact and resource fetches of the same file apply different policies,
+     * so they are not coalesced with each other.
+     */
+    private static String getTransferKey( String kind, ManagedRepository repository, StorageAsset localFile )
+    {
+        return kind + ":" + repository.getId( ) + ":" + localFile.getPath( );
+    }
+
+    /**
+     * Returns the number of fetch requests, that did not start their own transfer, but waited for
+     * a running transfer of the same resource.
+     *
+     * @return the number of coalesced requests since startup
+     */
+    public long getCoalescedRequestCount( )
+    {
+        return transferCoalescer.getCoalescedRequestCount( );
+    }
+
+    /**
+     * Returns the number of fetch requests, that are currently waiting for a running transfer of the same resource.
+     */
+    public int getWaitingRequestCount( )
+    {
+        return transferCoalescer.getWaitingCount( );
+    }
+
+    /**
+     * Returns the number of transfers from the remote repositories, that are currently running.
+     */
+    public int getInFlightTransferCount( )
+    {
+        return transferCoalescer.getInFlightCount( );
+    }
+
     private long getLastModified(StorageAsset file )
     {
         if ( !file.exists() || file.isContainer() )
@@ -519,8 +585,18 @@ protected StorageAsset transferFile( ProxyConnector connector, RemoteRepository
         try
         {
 
-            transferResources( connector, remoteRepository, tmpResource,tmpChecksumFiles , url, remotePath,
+            for ( ChecksumAlgorithm alg : ChecksumAlgorithm.values( ) )
+            {
+                requestProperties.remove( ChecksumPolicy.CHECKSUM_PROPERTY_PREFIX + alg.getDefaultExtension( ) );
+            }
+            List<Checksum> downloadChecksums = transferResources( connector, remoteRepository, tmpResource,tmpChecksumFiles , url, remotePath,
                 resource, workingDirectory, repository );
+            // Checksums calculated during the download are used by the policies instead of reading the file again
+            for ( Checksum checksum : downloadChecksums )
+            {
+                requestProperties.setProperty( ChecksumPolicy.CHECKSUM_PROPERTY_PREFIX + checksum.getAlgorithm( ).getDefaultExtension( ),
+                    checksum.getChecksum( ) );
+            }
 
             // Handle post-download policies.
             try
@@ -564,10 +640,26 @@ protected StorageAsset transferFile( ProxyConnector connector, RemoteRepository
         return resource;
     }
 
-    protected abstract void transferResources( ProxyConnector connector, RemoteRepository remoteRepository,
+    /**
+     * Downloads the resource and the checksum files from the remote repository into the temporary storage.
+     *
+     * @return the checksums of the downloaded resource, that were calculated during the transfer. May be empty,
+     * if the implementation does not calculate the checksums on the fly.
+     */
+    protected abstract List<Checksum> transferResources( ProxyConnector connector, RemoteRepository remoteRepository,
                                                StorageAsset tmpResource, StorageAsset[] checksumFiles, String url, String remotePath, StorageAsset resource, Path workingDirectory,
                                                ManagedRepository repository ) throws ProxyException;
 
+    /**
+     * Returns the checksum algorithms, that are configured for the repositories.
+     *
+     * @return the list of checksum algorithms
+     */
+    protected List<ChecksumAlgorithm> getChecksumAlgorithms( )
+    {
+        return checksumAlgorithms;
+    }
+
     private void queueRepositoryTask(String repositoryId, StorageAsset localFile )
     {
         RepositoryTask task = new RepositoryTask();
@@ -0,0 +1,163 @@
+package org.apache.archiva.proxy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.policies.ProxyDownloadException;
+import org.apache.archiva.repository.storage.StorageAsset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a fetch from the remote repositories only once for concurrent requests of the same resource.
+ * Concurrent callers with the same key wait for the running transfer and get the same result. This applies to
+ * successful downloads, not found results, policy outcomes and download exceptions. The transfer is removed,
+ * when it is finished, so a later request starts a new transfer.
+ */
+class ProxyTransferCoalescer
+{
+    private static final Logger log = LoggerFactory.getLogger( ProxyTransferCoalescer.class );
+
+    /**
+     * A fetch operation against the remote repositories, that may be shared by concurrent callers.
+     */
+    interface ProxyFetch
+    {
+        StorageAsset fetch( ) throws ProxyDownloadException;
+    }
+
+    private final ConcurrentMap<String, CompletableFuture<StorageAsset>> inFlightTransfers = new ConcurrentHashMap<>( );
+
+    private final AtomicLong coalescedRequests = new AtomicLong( );
+
+    private final AtomicInteger waitingRequests = new AtomicInteger( );
+
+    /**
+     * Runs the given fetch, if there is no running transfer for the same key. Otherwise the caller waits for
+     * the running transfer to finish and gets the same result.
+     *
+     * @param repositoryId the id of the managed repository, that is reported by the exceptions of a waiting caller
+     * @param key the key of the transfer. Fetches with the same key must return the same result, so the key
+     *            must contain the kind of the fetch, the managed repository and the local path.
+     * @param fetch the fetch operation to run, if there is no running transfer
+     * @return the file that was obtained, or null if no content was obtained
+     * @throws ProxyDownloadException if the fetch failed, or the wait for the running transfer was interrupted
+     */
+    StorageAsset fetch( String repositoryId, String key, ProxyFetch fetch )
+        throws ProxyDownloadException
+    {
+        CompletableFuture<StorageAsset> transfer = new CompletableFuture<>( );
+        CompletableFuture<StorageAsset> runningTransfer = inFlightTransfers.putIfAbsent( key, transfer );
+        if ( runningTransfer != null )
+        {
+            coalescedRequests.incrementAndGet( );
+            log.debug( "Waiting for running transfer {}", key );
+            waitingRequests.incrementAndGet( );
+            try
+            {
+                return awaitTransfer( runningTransfer, repositoryId );
+            }
+            finally
+            {
+                waitingRequests.decrementAndGet( );
+            }
+        }
+        try
+        {
+            StorageAsset result = fetch.fetch( );
+            transfer.complete( result );
+            return result;
+        }
+        catch ( ProxyDownloadException | RuntimeException e )
+        {
+            transfer.completeExceptionally( e );
+            throw e;
+        }
+        finally
+        {
+            if ( !transfer.isDone( ) )
+            {
+                transfer.completeExceptionally( new IllegalStateException( "Transfer aborted: " + key ) );
+            }
+            inFlightTransfers.remove( key, transfer );
+        }
+    }
+
+    private StorageAsset awaitTransfer( CompletableFuture<StorageAsset> transfer, String repositoryId )
+        throws ProxyDownloadException
+    {
+        try
+        {
+            return transfer.get( );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new ProxyDownloadException( "Interrupted while waiting for running transfer", repositoryId,
+                                              e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause( );
+            if ( cause instanceof ProxyDownloadException )
+            {
+                throw (ProxyDownloadException) cause;
+            }
+            else if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new ProxyDownloadException( "Running transfer failed", repositoryId, e );
+        }
+    }
+
+    /**
+     * Returns the number of running transfers.
+     */
+    int getInFlightCount( )
+    {
+        return inFlightTransfers.size( );
+    }
+
+    /**
+     * Returns the number of callers, that are currently waiting for a running transfer.
+     */
+    int getWaitingCount( )
+    {
+        return waitingRequests.get( );
+    }
+
+    /**
+     * Returns the number of fetch requests, that did not start their own transfer, but waited for
+     * a running transfer of the same resource.
+     *
+     * @return the number of coalesced requests since startup
+     */
+    long getCoalescedRequestCount( )
+    {
+        return coalescedRequests.get( );
+    }
+}
@@ -0,0 +1,276 @@
+package org.apache.archiva.proxy;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.common.filelock.DefaultFileLockManager;
+import org.apache.archiva.policies.ProxyDownloadException;
+import org.apache.archiva.repository.storage.FilesystemStorage;
+import org.apache.archiva.repository.storage.StorageAsset;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ProxyTransferCoalescerTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class ProxyTransferCoalescerTest
+    extends TestCase
+{
+    private static final String REPO_ID = "internal";
+
+    private static final String KEY = "artifact:internal:/org/example/test/1.0/test-1.0.jar";
+
+    private Path repoDir;
+
+    private StorageAsset asset;
+
+    private ProxyTransferCoalescer coalescer;
+
+    private ExecutorService executor;
+
+    @Before
+    @Override
+    public void setUp( )
+        throws Exception
+    {
+        super.setUp( );
+        repoDir = Files.createTempDirectory( "coalescer-test" );
+        asset = new FilesystemStorage( repoDir, new DefaultFileLockManager( ) ).getAsset(
+            "org/example/test/1.0/test-1.0.jar" );
+        coalescer = new ProxyTransferCoalescer( );
+        executor = Executors.newCachedThreadPool( );
+    }
+
+    @After
+    @Override
+    public void tearDown( )
+        throws Exception
+    {
+        executor.shutdownNow( );
+        FileUtils.deleteQuietly( repoDir.toFile( ) );
+        super.tearDown( );
+    }
+
+    @Test
+    public void testConcurrentCallersGetSameResult( )
+        throws Exception
+    {
+        CountDownLatch release = new CountDownLatch( 1 );
+        AtomicInteger fetches = new AtomicInteger( );
+        ProxyTransferCoalescer.ProxyFetch fetch = ( ) -> {
+            fetches.incrementAndGet( );
+            await( release );
+            return asset;
+        };
+
+        Future<StorageAsset> first = executor.submit( ( ) -> coalescer.fetch( REPO_ID, KEY, fetch ) );
+        waitForInFlight( 1 );
+        Future<StorageAsset> second = executor.submit( ( ) -> coalescer.fetch( REPO_ID, KEY, fetch ) );
+        waitForCoalesced( 1 );
+        release.countDown( );
+
+        assertSame( asset, first.get( 10, TimeUnit.SECONDS ) );
+        assertSame( asset, second.get( 10, TimeUnit.SECONDS ) );
+        assertEquals( 1, fetches.get( ) );
+        assertEquals( 0, coalescer.getInFlightCount( ) );
+    }
+
+    @Test
+    public void testFailureIsPropagatedToAllWaiters( )
+        throws Exception
+    {
+        CountDownLatch release = new CountDownLatch( 1 );
+        ProxyDownloadException failure =
+            new ProxyDownloadException( "failed", Collections.singletonMap( "central", new Exception( "down" ) ) );
+        ProxyTransferCoalescer.ProxyFetch fetch = ( ) -> {
+            await( release );
+            throw failure;
+        };
+
+        Future<StorageAsset> first = executor.submit( ( ) -> coalescer.fetch( REPO_ID, KEY, fetch ) );
+        waitForInFlight( 1 );
+        Future<StorageAsset> second = executor.submit( ( ) -> coalescer.fetch( REPO_ID, KEY, fetch ) );
+        waitForCoalesced( 1 );
+        release.countDown( );
+
+        assertSame( failure, getFailure( first ) );
+        assertSame( failure, getFailure( second ) );
+        assertEquals( 0, coalescer.getInFlightCount( ) );
+    }
+
+    @Test
+    public void testInterruptedWaiterReportsRepositoryId( )
+        throws Exception
+    {
+        CountDownLatch release = new CountDownLatch( 1 );
+        ProxyTransferCoalescer.ProxyFetch fetch = ( ) -> {
+            await( release );
+            return asset;
+        };
+
+        Future<StorageAsset> first = executor.submit( ( ) -> coalescer.fetch( REPO_ID, KEY, fetch ) );
+        waitForInFlight( 1 );
+        AtomicReference<ProxyDownloadException> failure = new AtomicReference<>( );
+        Thread waiter = new Thread( ( ) -> {
+            try
+            {
+                coalescer.fetch( REPO_ID, KEY, fetch );
+            }
+            catch ( ProxyDownloadException e )
+            {
+                failure.set( e );
+            }
+        } );
+        waiter.start( );
+        waitForCoalesced( 1 );
+        assertEquals( 1, coalescer.getWaitingCount( ) );
+
+        waiter.interrupt( );
+        waiter.join( 10000 );
+        release.countDown( );
+
+        assertSame( asset, first.get( 10, TimeUnit.SECONDS ) );
+        assertNotNull( failure.get( ) );
+        assertEquals( Collections.singleton( REPO_ID ), failure.get( ).getFailures( ).keySet( ) );
+        assertEquals( 0, coalescer.getWaitingCount( ) );
+    }
+
+    @Test
+    public void testRuntimeExceptionRemovesTransfer( )
+    {
+        try
+        {
+            coalescer.fetch( REPO_ID, KEY, ( ) -> {
+                throw new IllegalStateException( "broken" );
+            } );
+            fail( "Exception expected" );
+        }
+        catch ( IllegalStateException | ProxyDownloadException e )
+        {
+            assertEquals( "broken", e.getMessage( ) );
+        }
+        assertEquals( 0, coalescer.getInFlightCount( ) );
+    }
+
+    @Test
+    public void testLaterRequestStartsNewTransfer( )
+        throws Exception
+    {
+        AtomicInteger fetches = new AtomicInteger( );
+        ProxyTransferCoalescer.ProxyFetch fetch = ( ) -> {
+            fetches.incrementAndGet( );
+            return null;
+        };
+
+        assertNull( coalescer.fetch( REPO_ID, KEY, fetch ) );
+        assertNull( coalescer.fetch( REPO_ID, KEY, fetch ) );
+
+        assertEquals( 2, fetches.get( ) );
+        assertEquals( 0, coalescer.getCoalescedRequestCount( ) );
+    }
+
+    @Test
+    public void testDifferentKeysAreNotCoalesced( )
+        throws Exception
+    {
+        CountDownLatch release = new CountDownLatch( 1 );
+        ProxyTransferCoalescer.ProxyFetch fetch = ( ) -> {
+            await( release );
+            return asset;
+        };
+
+        Future<StorageAsset> artifact = executor.submit( ( ) -> coalescer.fetch( REPO_ID, KEY, fetch ) );
+        Future<StorageAsset> resource =
+            executor.submit( ( ) -> coalescer.fetch( REPO_ID, "resource:internal:/org/example/test/1.0/test-1.0.jar", fetch ) );
+        waitForInFlight( 2 );
+        release.countDown( );
+
+        assertSame( asset, artifact.get( 10, TimeUnit.SECONDS ) );
+        assertSame( asset, resource.get( 10, TimeUnit.SECONDS ) );
+        assertEquals( 0, coalescer.getCoalescedRequestCount( ) );
+    }
+
+    private static void await( CountDownLatch latch )
+        throws ProxyDownloadException
+    {
+        try
+        {
+            latch.await( 10, TimeUnit.SECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            throw new ProxyDownloadException( "interrupted", "test", e );
+        }
+    }
+
+    private static Throwable getFailure( Future<StorageAsset> future )
+        throws Exception
+    {
+        try
+        {
+            future.get( 10, TimeUnit.SECONDS );
+            fail( "Exception expected" );
+            return null;
+        }
+        catch ( ExecutionException e )
+        {
+            return e.getCause( );
+        }
+    }
+
+    private void waitForInFlight( int count )
+        throws InterruptedException
+    {
+        long end = System.currentTimeMillis( ) + 10000;
+        while ( coalescer.getInFlightCount( ) < count && System.currentTimeMillis( ) < end )
+        {
+            Thread.sleep( 5 );
+        }
+        assertEquals( count, coalescer.getInFlightCount( ) );
+    }
+
+    private void waitForCoalesced( long count )
+        throws InterruptedException
+    {
+        long end = System.currentTimeMillis( ) + 10000;
+        while ( coalescer.getCoalescedRequestCount( ) < count && System.currentTimeMillis( ) < end )
+        {
+            Thread.sleep( 5 );
+        }
+        assertEquals( count, coalescer.getCoalescedRequestCount( ) );
+    }
+}
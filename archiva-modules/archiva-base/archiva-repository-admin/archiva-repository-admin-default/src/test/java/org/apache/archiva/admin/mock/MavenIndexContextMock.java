@@ -32,6 +32,7 @@
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.sql.Date;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Set;
 
@@ -152,5 +153,11 @@ public void updateTimestamp(boolean save, ZonedDateTime time) throws IOException
         delegate.updateTimestamp(save, Date.from(time.toInstant()));
     }
 
+    @Override
+    public ZonedDateTime getTimestamp() {
+        java.util.Date timestamp = delegate.getTimestamp();
+        return timestamp == null ? null : ZonedDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault());
+    }
+
 
 }
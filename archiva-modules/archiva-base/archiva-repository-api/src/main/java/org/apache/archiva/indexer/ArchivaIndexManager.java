@@ -21,6 +21,7 @@
 
 import org.apache.archiva.repository.Repository;
 import org.apache.archiva.repository.RepositoryType;
+import org.apache.archiva.repository.storage.StorageAsset;
 
 import java.net.URI;
 import java.util.Collection;
@@ -37,6 +38,18 @@ public interface ArchivaIndexManager {
      */
     void pack(ArchivaIndexingContext context) throws IndexUpdateFailedException;
 
+    /**
+     * Packs the index of the context into the given directory. The index directory of the context
+     * is not changed.
+     *
+     * @param context The context of the index that should be packed
+     * @param destination The directory for the packed index files
+     */
+    default void pack(ArchivaIndexingContext context, StorageAsset destination) throws UnsupportedOperationException,
+            IndexUpdateFailedException {
+        throw new UnsupportedOperationException("Packing into a given directory is not supported");
+    }
+
     /**
      * Rescans the whole repository, this index is associated to.
      * @param context
@@ -118,4 +131,21 @@ public interface ArchivaIndexManager {
     ArchivaIndexingContext mergeContexts(Repository destinationRepo, List<ArchivaIndexingContext> contexts,
                                          boolean packIndex) throws UnsupportedOperationException,
             IndexCreationFailedException;
+
+    /**
+     * Merges a list of contexts into a single one, that stores its index files in the given directory
+     * instead of the local index path of the destination repository.
+     *
+     * @param destinationRepo The destination repository
+     * @param contexts The contexts of the indexes that should be merged.
+     * @param packIndex True, if the merged index should be packed, otherwise false.
+     * @param indexDirectory The directory for the index files of the merged context
+     * @return The merged context
+     * @throws UnsupportedOperationException if the underlying implementation does not allow to merge indexing contexts
+     */
+    default ArchivaIndexingContext mergeContexts(Repository destinationRepo, List<ArchivaIndexingContext> contexts,
+                                                 boolean packIndex, StorageAsset indexDirectory) throws UnsupportedOperationException,
+            IndexCreationFailedException {
+        throw new UnsupportedOperationException("Merging into a given index directory is not supported");
+    }
 }
@@ -142,4 +142,10 @@ public interface ArchivaIndexingContext {
      * @throws IOException
      */
     void updateTimestamp(boolean save, ZonedDateTime time) throws IOException;
+
+    /**
+     * Returns the time of the last update of the index.
+     * @return the timestamp, or <code>null</code>, if the index has no timestamp
+     */
+    ZonedDateTime getTimestamp();
 }
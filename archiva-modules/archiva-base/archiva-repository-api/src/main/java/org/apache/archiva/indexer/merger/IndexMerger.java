@@ -36,6 +36,20 @@
     ArchivaIndexingContext buildMergedIndex(IndexMergerRequest indexMergerRequest )
         throws IndexMergerException;
 
+    /**
+     * Returns a merged index of the repositories of the request, that is shared by all callers with the same
+     * group and the same repositories. The index is packed again, if one of the merged indexes has changed
+     * or the merged index ttl of the request is expired. The new index is packed into a new directory, the
+     * files of the returned index are kept until the caller has released it.
+     *
+     * @param indexMergerRequest
+     * @return the merged index, that must be released by the caller
+     * @throws IndexMergerException
+     * @since 3.0
+     */
+    SharedMergedIndex getSharedMergedIndex( IndexMergerRequest indexMergerRequest )
+        throws IndexMergerException;
+
     void cleanTemporaryGroupIndex( TemporaryGroupIndex temporaryGroupIndex );
 
     Collection<TemporaryGroupIndex> getTemporaryGroupIndexes();
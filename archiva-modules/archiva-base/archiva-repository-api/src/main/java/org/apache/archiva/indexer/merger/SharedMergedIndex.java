@@ -0,0 +1,47 @@
+package org.apache.archiva.indexer.merger;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.indexer.ArchivaIndexingContext;
+import org.apache.archiva.repository.storage.StorageAsset;
+
+/**
+ * A reference to a shared merged index. The files of the index are not modified or deleted, until
+ * the reference is released. A newer index is packed into a new directory, so the reference must be
+ * released as soon as the files are not read any longer.
+ *
+ * @since 3.0
+ */
+public interface SharedMergedIndex
+{
+    /**
+     * Returns the indexing context of the merged index.
+     */
+    ArchivaIndexingContext getContext( );
+
+    /**
+     * Returns the directory, that contains the packed index files.
+     */
+    StorageAsset getDirectory( );
+
+    /**
+     * Releases the reference. Further calls have no effect.
+     */
+    void release( );
+}
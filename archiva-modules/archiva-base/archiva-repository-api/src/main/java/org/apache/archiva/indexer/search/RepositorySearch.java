@@ -22,6 +22,7 @@
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 
 public interface RepositorySearch
@@ -51,6 +52,36 @@ SearchResults search( String principal, List<String> selectedRepos, String term,
     SearchResults search( String principal, SearchFields searchFields, SearchResultLimits limits )
         throws RepositorySearchException;
 
+    /**
+     * Quick search, that returns the found artifacts as a stream. The index is read while the stream is consumed,
+     * so a caller that needs only a part of the result does not load the whole result.
+     * The hits are not merged, each hit contains a single version of an artifact.
+     * The stream must be closed after use.
+     *
+     * @param principal
+     * @param selectedRepos
+     * @param term
+     * @param previousSearchTerms
+     * @return the stream of hits
+     * @since 3.0
+     */
+    Stream<SearchResultHit> searchStream( String principal, List<String> selectedRepos, String term,
+                                          List<String> previousSearchTerms )
+        throws RepositorySearchException;
+
+    /**
+     * Advanced search, that returns the found artifacts as a stream.
+     * The hits are not merged, each hit contains a single version of an artifact.
+     * The stream must be closed after use.
+     *
+     * @param principal
+     * @param searchFields
+     * @return the stream of hits
+     * @since 3.0
+     */
+    Stream<SearchResultHit> searchStream( String principal, SearchFields searchFields )
+        throws RepositorySearchException;
+
     Collection<String> getAllGroupIds( String principal, List<String> selectedRepos )
         throws RepositorySearchException;
 
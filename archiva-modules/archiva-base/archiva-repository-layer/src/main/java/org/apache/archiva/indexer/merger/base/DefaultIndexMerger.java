@@ -20,13 +20,17 @@
 
 import org.apache.archiva.indexer.ArchivaIndexManager;
 import org.apache.archiva.indexer.ArchivaIndexingContext;
+import org.apache.archiva.common.filelock.DefaultFileLockManager;
 import org.apache.archiva.indexer.IndexCreationFailedException;
+import org.apache.archiva.indexer.IndexUpdateFailedException;
 import org.apache.archiva.indexer.merger.IndexMerger;
 import org.apache.archiva.indexer.merger.IndexMergerException;
 import org.apache.archiva.indexer.merger.IndexMergerRequest;
+import org.apache.archiva.indexer.merger.SharedMergedIndex;
 import org.apache.archiva.indexer.merger.TemporaryGroupIndex;
 import org.apache.archiva.repository.Repository;
 import org.apache.archiva.repository.RepositoryRegistry;
+import org.apache.archiva.repository.storage.FilesystemStorage;
 import org.apache.archiva.repository.storage.StorageAsset;
 import org.apache.archiva.repository.storage.StorageUtil;
 import org.apache.commons.lang3.time.StopWatch;
@@ -35,12 +39,24 @@
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -63,6 +79,232 @@
 
     private List<String> runningGroups = new CopyOnWriteArrayList<>();
 
+    /**
+     * The maximum number of shared merged indexes. The least recently used index is removed, if the limit
+     * is reached.
+     */
+    private int sharedIndexCacheSize = Integer.getInteger( "archiva.indexMerger.sharedIndexCacheSize", 20 );
+
+    private final Map<String, SharedGroupIndex> sharedIndexes = new LinkedHashMap<String, SharedGroupIndex>( 16, 0.75f, true )
+    {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, SharedGroupIndex> eldest )
+        {
+            if ( size( ) > sharedIndexCacheSize )
+            {
+                eldest.getValue( ).close( );
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * A merged index, that is shared by all requests for the same group and repositories. The merged context
+     * is a view of the member indexes and is kept until the members change. Each refresh packs the merged
+     * context into its own directory. The current index is replaced by a new one, the files of the previous
+     * index are deleted after the last reader has released it.
+     */
+    private class SharedGroupIndex
+    {
+        final String key;
+
+        final AtomicReference<MergedContext> mergedContext = new AtomicReference<>( );
+
+        final AtomicReference<PackedIndex> current = new AtomicReference<>( );
+
+        volatile boolean closed;
+
+        /**
+         * The merged contexts. If a repository gets a new context, the index is merged again.
+         */
+        List<ArchivaIndexingContext> sourceContexts;
+
+        long packTime;
+
+        long sourceTimestamp;
+
+        SharedGroupIndex( String key )
+        {
+            this.key = key;
+        }
+
+        /**
+         * Makes the given index the current one and releases the previous index.
+         */
+        void replace( PackedIndex index )
+        {
+            retire( current.getAndSet( index ) );
+            if ( closed )
+            {
+                // removed from the cache while the index was merged
+                retire( current.getAndSet( null ) );
+            }
+        }
+
+        /**
+         * Makes the given context the merged context and releases the previous one.
+         */
+        void replaceContext( MergedContext context )
+        {
+            retire( mergedContext.getAndSet( context ) );
+            if ( closed )
+            {
+                retire( mergedContext.getAndSet( null ) );
+            }
+        }
+
+        void close( )
+        {
+            closed = true;
+            retire( current.getAndSet( null ) );
+            retire( mergedContext.getAndSet( null ) );
+        }
+
+        private void retire( RefCounted resource )
+        {
+            if ( resource != null )
+            {
+                resource.release( );
+            }
+        }
+    }
+
+    /**
+     * Reference counter, that deletes the resources, if the last reference is released.
+     */
+    private abstract static class RefCounted
+    {
+        private final AtomicInteger references = new AtomicInteger( 1 );
+
+        /**
+         * Adds a reference, if the resources were not deleted yet.
+         *
+         * @return <code>true</code>, if the reference was added, otherwise <code>false</code>
+         */
+        boolean acquire( )
+        {
+            int count;
+            do
+            {
+                count = references.get( );
+                if ( count <= 0 )
+                {
+                    return false;
+                }
+            }
+            while ( !references.compareAndSet( count, count + 1 ) );
+            return true;
+        }
+
+        void release( )
+        {
+            if ( references.decrementAndGet( ) == 0 )
+            {
+                delete( );
+            }
+        }
+
+        abstract void delete( );
+    }
+
+    /**
+     * The merged context of the members. The context holds a reference for the shared group index and one
+     * for each packed index. The context is closed, if the last reference is released.
+     */
+    private class MergedContext
+        extends RefCounted
+    {
+        final String key;
+
+        final ArchivaIndexingContext context;
+
+        final Path directory;
+
+        MergedContext( String key, ArchivaIndexingContext context, Path directory )
+        {
+            this.key = key;
+            this.context = context;
+            this.directory = directory;
+        }
+
+        @Override
+        void delete( )
+        {
+            log.debug( "Closing merged context of shared group index {}", key );
+            deleteIndex( key, context, directory );
+        }
+    }
+
+    /**
+     * The packed files of one refresh. The index holds a reference for the shared group index and
+     * one for each reader. The files are deleted, if the last reference is released.
+     */
+    private class PackedIndex
+        extends RefCounted
+    {
+        final String key;
+
+        final MergedContext mergedContext;
+
+        final Path directory;
+
+        final StorageAsset asset;
+
+        PackedIndex( String key, MergedContext mergedContext, Path directory, StorageAsset asset )
+        {
+            this.key = key;
+            this.mergedContext = mergedContext;
+            this.directory = directory;
+            this.asset = asset;
+        }
+
+        @Override
+        void delete( )
+        {
+            log.debug( "Deleting shared group index {} in {}", key, directory );
+            deleteIndex( key, null, directory );
+            mergedContext.release( );
+        }
+    }
+
+    /**
+     * A reference of a caller to a packed index.
+     */
+    private static class SharedMergedIndexReference
+        implements SharedMergedIndex
+    {
+        private final PackedIndex index;
+
+        private final AtomicBoolean released = new AtomicBoolean( );
+
+        SharedMergedIndexReference( PackedIndex index )
+        {
+            this.index = index;
+        }
+
+        @Override
+        public ArchivaIndexingContext getContext( )
+        {
+            return index.mergedContext.context;
+        }
+
+        @Override
+        public StorageAsset getDirectory( )
+        {
+            return index.asset;
+        }
+
+        @Override
+        public void release( )
+        {
+            if ( released.compareAndSet( false, true ) )
+            {
+                index.release( );
+            }
+        }
+    }
+
     @Inject
     public DefaultIndexMerger( )
     {
@@ -113,6 +355,236 @@ public ArchivaIndexingContext buildMergedIndex(IndexMergerRequest indexMergerReq
         }
     }
 
+    @Override
+    public SharedMergedIndex getSharedMergedIndex( IndexMergerRequest indexMergerRequest )
+        throws IndexMergerException
+    {
+        String groupId = indexMergerRequest.getGroupId( );
+        SortedSet<String> repositoryIds = new TreeSet<>( indexMergerRequest.getRepositoriesIds( ) );
+        String key = groupId + ":" + String.join( ",", repositoryIds );
+        Repository destinationRepository = repositoryRegistry.getRepository( groupId );
+        if ( destinationRepository == null )
+        {
+            throw new IndexMergerException( "Repository group " + groupId + " does not exist" );
+        }
+        ArchivaIndexManager idxManager = repositoryRegistry.getIndexManager( destinationRepository.getType( ) );
+        List<ArchivaIndexingContext> sourceContexts = new ArrayList<>( );
+        for ( String id : repositoryIds )
+        {
+            Repository repository = repositoryRegistry.getRepository( id );
+            if ( repository != null && repository.getIndexingContext( ) != null )
+            {
+                sourceContexts.add( repository.getIndexingContext( ) );
+            }
+        }
+        long sourceTimestamp = getLatestTimestamp( sourceContexts );
+
+        while ( true )
+        {
+            SharedGroupIndex sharedIndex;
+            synchronized ( sharedIndexes )
+            {
+                sharedIndex = sharedIndexes.computeIfAbsent( key, SharedGroupIndex::new );
+            }
+            // requests for the same index wait for a running merge instead of merging again
+            synchronized ( sharedIndex )
+            {
+                if ( sharedIndex.closed )
+                {
+                    // removed from the cache in the meantime
+                    continue;
+                }
+                long now = System.currentTimeMillis( );
+                PackedIndex index = sharedIndex.current.get( );
+                if ( index != null && !index.acquire( ) )
+                {
+                    index = null;
+                }
+                if ( !isSameContexts( sharedIndex.sourceContexts, sourceContexts ) )
+                {
+                    log.debug( "Members of shared group index {} have changed", key );
+                    if ( index != null )
+                    {
+                        index.release( );
+                        index = null;
+                    }
+                    // the previous context is closed after the last reader has released its index
+                    sharedIndex.replaceContext( null );
+                }
+                else if ( index != null && ( sourceTimestamp > sharedIndex.sourceTimestamp
+                    || now - sharedIndex.packTime > indexMergerRequest.getMergedIndexTtl( ) * 60000L ) )
+                {
+                    log.debug( "Shared group index {} is outdated", key );
+                    index.release( );
+                    index = null;
+                }
+                if ( index == null )
+                {
+                    // the readers of the current index keep their files, the new index is packed into a new directory
+                    StopWatch stopWatch = new StopWatch( );
+                    stopWatch.start( );
+                    try
+                    {
+                        // one reference of the merged context for the packed index
+                        MergedContext mergedContext = sharedIndex.mergedContext.get( );
+                        if ( mergedContext != null && mergedContext.acquire( ) )
+                        {
+                            log.debug( "Reusing merged context of shared group index {}", key );
+                        }
+                        else
+                        {
+                            mergedContext = mergeContext( key, idxManager, destinationRepository, sourceContexts );
+                            mergedContext.acquire( );
+                            sharedIndex.replaceContext( mergedContext );
+                        }
+                        try
+                        {
+                            index = packIndex( key, idxManager, mergedContext );
+                        }
+                        catch ( IndexMergerException e )
+                        {
+                            mergedContext.release( );
+                            throw e;
+                        }
+                    }
+                    catch ( IndexMergerException e )
+                    {
+                        sharedIndex.replace( null );
+                        sharedIndex.replaceContext( null );
+                        sharedIndex.sourceContexts = null;
+                        throw e;
+                    }
+                    // one reference for the caller
+                    index.acquire( );
+                    sharedIndex.replace( index );
+                    sharedIndex.sourceContexts = sourceContexts;
+                    sharedIndex.packTime = now;
+                    sharedIndex.sourceTimestamp = sourceTimestamp;
+                    stopWatch.stop( );
+                    log.info( "packed shared index for group {} and repos {} in {} ms", groupId, repositoryIds,
+                              stopWatch.getTime( ) );
+                }
+                else
+                {
+                    log.debug( "shared index for group {} and repos {} is up to date", groupId, repositoryIds );
+                }
+                return new SharedMergedIndexReference( index );
+            }
+        }
+    }
+
+    private MergedContext mergeContext( String key, ArchivaIndexManager idxManager, Repository destinationRepository,
+                                        List<ArchivaIndexingContext> sourceContexts )
+        throws IndexMergerException
+    {
+        Path directory = null;
+        try
+        {
+            directory = Files.createTempDirectory( "archivaGroupContext" );
+            FilesystemStorage storage = new FilesystemStorage( directory, new DefaultFileLockManager( ) );
+            ArchivaIndexingContext context =
+                idxManager.mergeContexts( destinationRepository, sourceContexts, false, storage.getAsset( "" ) );
+            return new MergedContext( key, context, directory );
+        }
+        catch ( IOException | IndexCreationFailedException | UnsupportedOperationException e )
+        {
+            deleteIndex( key, null, directory );
+            throw new IndexMergerException( "Index merging failed " + e.getMessage( ), e );
+        }
+    }
+
+    /**
+     * Packs the merged context into a new directory. The merged context reads the current member indexes,
+     * so only the packed files are written again. The packed index takes over the given reference of the
+     * merged context.
+     */
+    private PackedIndex packIndex( String key, ArchivaIndexManager idxManager, MergedContext mergedContext )
+        throws IndexMergerException
+    {
+        Path directory = null;
+        try
+        {
+            directory = Files.createTempDirectory( "archivaGroupIndex" );
+            StorageAsset asset = new FilesystemStorage( directory, new DefaultFileLockManager( ) ).getAsset( "" );
+            idxManager.pack( mergedContext.context, asset );
+            return new PackedIndex( key, mergedContext, directory, asset );
+        }
+        catch ( IOException | IndexUpdateFailedException | UnsupportedOperationException e )
+        {
+            deleteIndex( key, null, directory );
+            throw new IndexMergerException( "Index packing failed " + e.getMessage( ), e );
+        }
+    }
+
+    private void deleteIndex( String key, ArchivaIndexingContext context, Path directory )
+    {
+        if ( context != null )
+        {
+            try
+            {
+                context.close( true );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Could not close shared group index {}: {}", key, e.getMessage( ) );
+            }
+        }
+        if ( directory != null )
+        {
+            org.apache.archiva.common.utils.FileUtils.deleteQuietly( directory );
+        }
+    }
+
+    private static long getLatestTimestamp( List<ArchivaIndexingContext> contexts )
+    {
+        long latest = 0;
+        for ( ArchivaIndexingContext context : contexts )
+        {
+            ZonedDateTime timestamp = context.getTimestamp( );
+            if ( timestamp != null )
+            {
+                latest = Math.max( latest, timestamp.toInstant( ).toEpochMilli( ) );
+            }
+        }
+        return latest;
+    }
+
+    private static boolean isSameContexts( List<ArchivaIndexingContext> previous, List<ArchivaIndexingContext> current )
+    {
+        if ( previous == null || previous.size( ) != current.size( ) )
+        {
+            return false;
+        }
+        for ( int i = 0; i < previous.size( ); i++ )
+        {
+            if ( previous.get( i ) != current.get( i ) || !current.get( i ).isOpen( ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void closeSharedIndexes( )
+    {
+        synchronized ( sharedIndexes )
+        {
+            sharedIndexes.values( ).forEach( SharedGroupIndex::close );
+            sharedIndexes.clear( );
+        }
+    }
+
+    public int getSharedIndexCacheSize( )
+    {
+        return sharedIndexCacheSize;
+    }
+
+    public void setSharedIndexCacheSize( int sharedIndexCacheSize )
+    {
+        this.sharedIndexCacheSize = sharedIndexCacheSize;
+    }
+
     @Async
     @Override
     public void cleanTemporaryGroupIndex( TemporaryGroupIndex temporaryGroupIndex )
@@ -0,0 +1,88 @@
+package org.apache.archiva.repository.base;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.checksum.ChecksumCache;
+import org.apache.archiva.configuration.ArchivaConfiguration;
+import org.apache.archiva.configuration.ArchivaRuntimeConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The checksum cache of the archiva instance. The journal is stored in the data directory and the
+ * maximum number of entries is read from the runtime configuration.
+ */
+@Service( "checksumCache#default" )
+public class ArchivaChecksumCache
+    extends ChecksumCache
+{
+    private static final Logger log = LoggerFactory.getLogger( ArchivaChecksumCache.class );
+
+    @Inject
+    public ArchivaChecksumCache( ArchivaConfiguration archivaConfiguration )
+    {
+        super( getMaxEntries( archivaConfiguration ), getJournalFile( archivaConfiguration ) );
+    }
+
+    private static int getMaxEntries( ArchivaConfiguration archivaConfiguration )
+    {
+        ArchivaRuntimeConfiguration runtimeConfiguration =
+            archivaConfiguration.getConfiguration( ).getArchivaRuntimeConfiguration( );
+        int size = runtimeConfiguration == null ? -1 : runtimeConfiguration.getChecksumCacheSize( );
+        return size < 0 ? getDefaultMaxEntries( ) : size;
+    }
+
+    private static Path getJournalFile( ArchivaConfiguration archivaConfiguration )
+    {
+        return archivaConfiguration.getDataDirectory( ).resolve( "checksum-cache" ).resolve( "checksums.journal" );
+    }
+
+    @PostConstruct
+    public void initialize( )
+    {
+        if ( !isEnabled( ) )
+        {
+            log.info( "Checksum cache is disabled" );
+            return;
+        }
+        try
+        {
+            load( );
+        }
+        catch ( IOException e )
+        {
+            // the cache is still usable in memory
+            log.error( "Could not load checksum cache: {}", e.getMessage( ), e );
+        }
+    }
+
+    @PreDestroy
+    public void destroy( )
+    {
+        close( );
+    }
+}
@@ -0,0 +1,283 @@
+package org.apache.archiva.indexer.merger.base;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.indexer.ArchivaIndexManager;
+import org.apache.archiva.indexer.ArchivaIndexingContext;
+import org.apache.archiva.indexer.merger.IndexMergerRequest;
+import org.apache.archiva.indexer.merger.SharedMergedIndex;
+import org.apache.archiva.repository.Repository;
+import org.apache.archiva.repository.RepositoryRegistry;
+import org.apache.archiva.repository.RepositoryType;
+import org.apache.archiva.repository.storage.StorageAsset;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * DefaultIndexMergerTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class DefaultIndexMergerTest
+    extends TestCase
+{
+    private static final String INDEX_FILE = "nexus-maven-repository-index.gz";
+
+    private DefaultIndexMerger indexMerger;
+
+    private ArchivaIndexingContext memberContext;
+
+    private final AtomicInteger merges = new AtomicInteger( );
+
+    private final AtomicInteger packs = new AtomicInteger( );
+
+    private final List<ArchivaIndexingContext> mergedContexts = new CopyOnWriteArrayList<>( );
+
+    private Repository member;
+
+    private ExecutorService executor;
+
+    @Before
+    @Override
+    public void setUp( )
+        throws Exception
+    {
+        super.setUp( );
+        memberContext = mock( ArchivaIndexingContext.class );
+        when( memberContext.isOpen( ) ).thenReturn( true );
+        when( memberContext.getTimestamp( ) ).thenReturn( ZonedDateTime.now( ).minusHours( 1 ) );
+        member = mock( Repository.class );
+        when( member.getIndexingContext( ) ).thenReturn( memberContext );
+
+        ArchivaIndexManager indexManager = mock( ArchivaIndexManager.class );
+        when( indexManager.mergeContexts( any( Repository.class ), anyListOf( ArchivaIndexingContext.class ),
+                                          anyBoolean( ), any( StorageAsset.class ) ) ).thenAnswer( invocation -> {
+            merges.incrementAndGet( );
+            ArchivaIndexingContext context = mock( ArchivaIndexingContext.class );
+            when( context.getPath( ) ).thenReturn( (StorageAsset) invocation.getArguments( )[3] );
+            mergedContexts.add( context );
+            return context;
+        } );
+        doAnswer( invocation -> {
+            StorageAsset directory = (StorageAsset) invocation.getArguments( )[1];
+            Files.write( directory.getFilePath( ).resolve( INDEX_FILE ),
+                         ( "pack " + packs.incrementAndGet( ) ).getBytes( StandardCharsets.UTF_8 ) );
+            return null;
+        } ).when( indexManager ).pack( any( ArchivaIndexingContext.class ), any( StorageAsset.class ) );
+
+        RepositoryRegistry repositoryRegistry = mock( RepositoryRegistry.class );
+        for ( String groupId : Arrays.asList( "group1", "group2" ) )
+        {
+            Repository group = mock( Repository.class );
+            when( group.getType( ) ).thenReturn( RepositoryType.MAVEN );
+            when( repositoryRegistry.getRepository( groupId ) ).thenReturn( group );
+        }
+        when( repositoryRegistry.getRepository( "internal" ) ).thenReturn( member );
+        when( repositoryRegistry.getIndexManager( RepositoryType.MAVEN ) ).thenReturn( indexManager );
+
+        indexMerger = new DefaultIndexMerger( );
+        indexMerger.repositoryRegistry = repositoryRegistry;
+        executor = Executors.newCachedThreadPool( );
+    }
+
+    @After
+    @Override
+    public void tearDown( )
+        throws Exception
+    {
+        executor.shutdownNow( );
+        indexMerger.closeSharedIndexes( );
+        super.tearDown( );
+    }
+
+    @Test
+    public void testIndexIsShared( )
+        throws Exception
+    {
+        SharedMergedIndex first = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+        SharedMergedIndex second = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+
+        assertEquals( first.getDirectory( ).getFilePath( ), second.getDirectory( ).getFilePath( ) );
+        assertEquals( 1, merges.get( ) );
+        first.release( );
+        second.release( );
+        assertTrue( Files.exists( second.getDirectory( ).getFilePath( ) ) );
+    }
+
+    @Test
+    public void testRepackUsesNewDirectory( )
+        throws Exception
+    {
+        SharedMergedIndex first = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+        Path firstDirectory = first.getDirectory( ).getFilePath( );
+        first.release( );
+
+        when( memberContext.getTimestamp( ) ).thenReturn( ZonedDateTime.now( ) );
+        SharedMergedIndex second = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+
+        // the merged context is reused, only the packed files are written again
+        assertEquals( 1, merges.get( ) );
+        assertEquals( 2, packs.get( ) );
+        assertSame( first.getContext( ), second.getContext( ) );
+        assertFalse( firstDirectory.equals( second.getDirectory( ).getFilePath( ) ) );
+        // there is no reader of the first index
+        assertFalse( Files.exists( firstDirectory ) );
+        assertEquals( "pack 2", read( second ) );
+        verify( mergedContexts.get( 0 ), never( ) ).close( anyBoolean( ) );
+        second.release( );
+    }
+
+    @Test
+    public void testDownloadDuringRepack( )
+        throws Exception
+    {
+        SharedMergedIndex download = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+        CountDownLatch repacked = new CountDownLatch( 1 );
+        Future<String> content = executor.submit( ( ) -> {
+            try
+            {
+                assertTrue( repacked.await( 10, TimeUnit.SECONDS ) );
+                return read( download );
+            }
+            finally
+            {
+                download.release( );
+            }
+        } );
+
+        when( memberContext.getTimestamp( ) ).thenReturn( ZonedDateTime.now( ) );
+        SharedMergedIndex repack = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+        repacked.countDown( );
+
+        assertEquals( "pack 1", content.get( 10, TimeUnit.SECONDS ) );
+        assertEquals( "pack 2", read( repack ) );
+        // the files are deleted after the download has finished
+        assertFalse( Files.exists( download.getDirectory( ).getFilePath( ) ) );
+        repack.release( );
+    }
+
+    @Test
+    public void testDownloadDuringEviction( )
+        throws Exception
+    {
+        indexMerger.setSharedIndexCacheSize( 1 );
+        SharedMergedIndex download = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+        CountDownLatch evicted = new CountDownLatch( 1 );
+        Future<String> content = executor.submit( ( ) -> {
+            try
+            {
+                assertTrue( evicted.await( 10, TimeUnit.SECONDS ) );
+                return read( download );
+            }
+            finally
+            {
+                download.release( );
+            }
+        } );
+
+        SharedMergedIndex other = indexMerger.getSharedMergedIndex( createRequest( "group2" ) );
+        evicted.countDown( );
+
+        assertEquals( "pack 1", content.get( 10, TimeUnit.SECONDS ) );
+        assertFalse( Files.exists( download.getDirectory( ).getFilePath( ) ) );
+        verify( mergedContexts.get( 0 ) ).close( true );
+        other.release( );
+        assertTrue( Files.exists( other.getDirectory( ).getFilePath( ) ) );
+
+        // the evicted index is merged again
+        indexMerger.getSharedMergedIndex( createRequest( "group1" ) ).release( );
+        assertEquals( 3, merges.get( ) );
+    }
+
+    @Test
+    public void testChangedMembersAreMergedAgain( )
+        throws Exception
+    {
+        SharedMergedIndex first = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+
+        ArchivaIndexingContext newMemberContext = mock( ArchivaIndexingContext.class );
+        when( newMemberContext.isOpen( ) ).thenReturn( true );
+        when( member.getIndexingContext( ) ).thenReturn( newMemberContext );
+        SharedMergedIndex second = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+
+        assertEquals( 2, merges.get( ) );
+        assertNotSame( first.getContext( ), second.getContext( ) );
+        // the previous context is closed after the last reader has released it
+        verify( mergedContexts.get( 0 ), never( ) ).close( anyBoolean( ) );
+        assertEquals( "pack 1", read( first ) );
+        first.release( );
+        verify( mergedContexts.get( 0 ) ).close( true );
+        verify( mergedContexts.get( 1 ), never( ) ).close( anyBoolean( ) );
+        second.release( );
+    }
+
+    @Test
+    public void testReleaseIsIdempotent( )
+        throws Exception
+    {
+        SharedMergedIndex first = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+        SharedMergedIndex second = indexMerger.getSharedMergedIndex( createRequest( "group1" ) );
+        first.release( );
+        first.release( );
+
+        indexMerger.closeSharedIndexes( );
+        assertTrue( Files.exists( second.getDirectory( ).getFilePath( ) ) );
+        second.release( );
+        assertFalse( Files.exists( second.getDirectory( ).getFilePath( ) ) );
+    }
+
+    private static IndexMergerRequest createRequest( String groupId )
+    {
+        List<String> repositoryIds = Arrays.asList( "internal" );
+        return new IndexMergerRequest( repositoryIds, true, groupId, ".indexer", 30 );
+    }
+
+    private static String read( SharedMergedIndex index )
+        throws Exception
+    {
+        return new String( Files.readAllBytes( index.getDirectory( ).getFilePath( ).resolve( INDEX_FILE ) ),
+                           StandardCharsets.UTF_8 );
+    }
+}
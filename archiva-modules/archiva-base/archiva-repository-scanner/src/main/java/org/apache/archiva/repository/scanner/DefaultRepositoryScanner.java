@@ -20,6 +20,7 @@
  */
 
 import org.apache.archiva.admin.model.RepositoryAdminException;
+import org.apache.archiva.configuration.ArchivaConfiguration;
 import org.apache.archiva.configuration.FileTypes;
 import org.apache.archiva.consumers.InvalidRepositoryContentConsumer;
 import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
@@ -35,7 +36,10 @@
 import java.io.IOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * DefaultRepositoryScanner
@@ -55,8 +59,42 @@
     @Inject
     private RepositoryContentConsumers repositoryContentConsumers;
 
+    @Inject
+    private ArchivaConfiguration archivaConfiguration;
+
     private Set<RepositoryScannerInstance> inProgressScans = new LinkedHashSet<>();
 
+    /**
+     * The number of threads used for scanning a repository. With a value of 1 the repository is walked
+     * sequentially by the calling thread.
+     */
+    private int scanThreads = Integer.getInteger( "archiva.repositoryScanner.threads", 1 );
+
+    /**
+     * The directory depth, up to which the parallel scan creates a separate task for each directory.
+     */
+    private int splitDepth = Integer.getInteger( "archiva.repositoryScanner.splitDepth", 2 );
+
+    /**
+     * If true, the scans record a snapshot of the directory modification times and incremental scans skip
+     * the directories that have not changed since the previous scan.
+     */
+    private boolean incrementalScan = Boolean.getBoolean( "archiva.repositoryScanner.incremental" );
+
+    /**
+     * The directory for the snapshot files. If not set, the snapshots are stored in the directory
+     * <code>scan-snapshots</code> of the archiva data directory.
+     */
+    private Path snapshotDirectory = getSnapshotDirectoryProperty();
+
+    private static final String SNAPSHOT_DIRECTORY = "scan-snapshots";
+
+    private static Path getSnapshotDirectoryProperty()
+    {
+        String dir = System.getProperty( "archiva.repositoryScanner.snapshotDirectory" );
+        return dir == null ? null : Paths.get( dir );
+    }
+
     @Override
     public RepositoryScanStatistics scan( ManagedRepository repository, long changesSince )
         throws RepositoryScannerException
@@ -129,15 +167,42 @@ public RepositoryScanStatistics scan( ManagedRepository repository,
 
         scannerInstance.setFileNameIncludePattern(allIncludes);
         scannerInstance.setFileNameExcludePattern(allExcludes);
+
+        Path snapshotFile = null;
+        if ( incrementalScan )
+        {
+            snapshotFile = getSnapshotFile( repository );
+            scannerInstance.setPreviousSnapshot( readSnapshot( snapshotFile ) );
+        }
         inProgressScans.add( scannerInstance );
 
         RepositoryScanStatistics stats = null;
         try
         {
-            Files.walkFileTree(repositoryBase.getFilePath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, scannerInstance);
+            if ( scanThreads > 1 )
+            {
+                ForkJoinPool pool = new ForkJoinPool( scanThreads );
+                try
+                {
+                    scannerInstance.walkParallel( repositoryBase.getFilePath(), pool, splitDepth );
+                }
+                finally
+                {
+                    pool.shutdown();
+                }
+            }
+            else
+            {
+                Files.walkFileTree( repositoryBase.getFilePath(), EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE, scannerInstance );
+            }
 
             stats = scannerInstance.getStatistics();
 
+            if ( snapshotFile != null && scannerInstance.getSnapshot() != null )
+            {
+                writeSnapshot( scannerInstance.getSnapshot(), snapshotFile );
+            }
+
             stats.setKnownConsumers( gatherIds( knownContentConsumers ) );
             stats.setInvalidConsumers( gatherIds( invalidContentConsumers ) );
         } catch (IOException e) {
@@ -150,6 +215,43 @@ public RepositoryScanStatistics scan( ManagedRepository repository,
         return stats;
     }
 
+    /**
+     * Returns the snapshot file of the repository. The snapshot is not stored in the repository itself,
+     * so it is neither served nor scanned as repository content.
+     */
+    Path getSnapshotFile( ManagedRepository repository )
+    {
+        Path directory = snapshotDirectory == null
+            ? archivaConfiguration.getDataDirectory().resolve( SNAPSHOT_DIRECTORY )
+            : snapshotDirectory;
+        return directory.resolve( repository.getId() + ".snapshot" );
+    }
+
+    private DirectorySnapshot readSnapshot( Path snapshotFile )
+    {
+        try
+        {
+            return DirectorySnapshot.read( snapshotFile );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not read directory snapshot {}, scanning all directories: {}", snapshotFile, e.getMessage() );
+            return null;
+        }
+    }
+
+    private void writeSnapshot( DirectorySnapshot snapshot, Path snapshotFile )
+    {
+        try
+        {
+            snapshot.write( snapshotFile );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not write directory snapshot {}: {}", snapshotFile, e.getMessage() );
+        }
+    }
+
     private List<String> gatherIds( List<? extends RepositoryContentConsumer> consumers )
     {
         List<String> ids = new ArrayList<>();
@@ -160,6 +262,46 @@ private List<String> gatherIds( List<? extends RepositoryContentConsumer> consum
         return ids;
     }
 
+    public int getScanThreads()
+    {
+        return scanThreads;
+    }
+
+    public void setScanThreads( int scanThreads )
+    {
+        this.scanThreads = scanThreads;
+    }
+
+    public int getSplitDepth()
+    {
+        return splitDepth;
+    }
+
+    public void setSplitDepth( int splitDepth )
+    {
+        this.splitDepth = splitDepth;
+    }
+
+    public boolean isIncrementalScan()
+    {
+        return incrementalScan;
+    }
+
+    public void setIncrementalScan( boolean incrementalScan )
+    {
+        this.incrementalScan = incrementalScan;
+    }
+
+    public Path getSnapshotDirectory()
+    {
+        return snapshotDirectory;
+    }
+
+    public void setSnapshotDirectory( Path snapshotDirectory )
+    {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
     @Override
     public Set<RepositoryScannerInstance> getInProgressScans()
     {
@@ -0,0 +1,305 @@
+package org.apache.archiva.repository.scanner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The modification times and file counts of the directories of a repository, as recorded by a scan.
+ *
+ * A directory gets a new modification time, if a file or directory is added, removed or renamed
+ * in it. If a directory and all directories below it have the same modification time as in the
+ * snapshot, the subtree has not changed since the snapshot was taken and an incremental scan
+ * can skip it. The file counts are used to keep the total file count of the scan correct for the
+ * skipped directories.
+ *
+ * Files that are modified in place do not change the modification time of their directory.
+ * Artifacts are deployed as new files, but a full scan is still needed to pick up in place changes.
+ *
+ * The directories are stored by their path relative to the repository base directory, with
+ * <code>/</code> as separator. The repository base directory has the empty path.
+ */
+public class DirectorySnapshot
+{
+    private static final int MAGIC = 0x41534e50;
+
+    private static final int VERSION = 1;
+
+    /**
+     * The modification time of directories, that have been modified too close to the scan, to rely on it.
+     */
+    static final long UNKNOWN_MODIFIED = -1;
+
+    private final String patternKey;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>( );
+
+    private static final class Entry
+    {
+        final long modified;
+
+        final AtomicInteger fileCount;
+
+        Entry( long modified, int fileCount )
+        {
+            this.modified = modified;
+            this.fileCount = new AtomicInteger( fileCount );
+        }
+    }
+
+    /**
+     * @param patternKey the include and exclude patterns of the scan. A snapshot is only valid for a scan
+     *                   with the same patterns, because the file counts depend on them.
+     */
+    public DirectorySnapshot( String patternKey )
+    {
+        this.patternKey = patternKey;
+    }
+
+    public String getPatternKey( )
+    {
+        return patternKey;
+    }
+
+    /**
+     * Records a directory. An existing entry for the directory is replaced and its file count is reset.
+     *
+     * @param path the relative path of the directory
+     * @param modified the modification time of the directory, or {@link #UNKNOWN_MODIFIED}
+     */
+    public void addDirectory( String path, long modified )
+    {
+        entries.put( path, new Entry( modified, 0 ) );
+    }
+
+    /**
+     * Counts a file in the given directory. Files in directories that are not recorded are ignored.
+     *
+     * @param directoryPath the relative path of the directory, that contains the file
+     */
+    public void addFile( String directoryPath )
+    {
+        Entry entry = entries.get( directoryPath );
+        if ( entry != null )
+        {
+            entry.fileCount.incrementAndGet( );
+        }
+    }
+
+    public boolean containsDirectory( String path )
+    {
+        return entries.containsKey( path );
+    }
+
+    public int getFileCount( String path )
+    {
+        Entry entry = entries.get( path );
+        return entry == null ? 0 : entry.fileCount.get( );
+    }
+
+    public int size( )
+    {
+        return entries.size( );
+    }
+
+    /**
+     * Compares the snapshot with the current state of the directories and returns the directories,
+     * where neither the directory nor any directory below has changed. Each directory of the snapshot
+     * is read once.
+     *
+     * @param baseDir the repository base directory
+     * @return the unchanged directories, mapped to the number of files in the whole subtree
+     */
+    public Map<String, Long> findUnchangedSubtrees( Path baseDir )
+    {
+        Set<String> changed = new HashSet<>( );
+        for ( Map.Entry<String, Entry> entry : entries.entrySet( ) )
+        {
+            String path = entry.getKey( );
+            long modified = entry.getValue( ).modified;
+            if ( modified == UNKNOWN_MODIFIED )
+            {
+                changed.add( path );
+                continue;
+            }
+            try
+            {
+                BasicFileAttributes attrs =
+                    Files.readAttributes( path.isEmpty( ) ? baseDir : baseDir.resolve( path ), BasicFileAttributes.class );
+                if ( !attrs.isDirectory( ) || attrs.lastModifiedTime( ).toMillis( ) != modified )
+                {
+                    changed.add( path );
+                }
+            }
+            catch ( IOException e )
+            {
+                // removed
+                changed.add( path );
+            }
+        }
+
+        // a change below a directory changes the whole subtree of the parent directories
+        for ( String path : new ArrayList<>( changed ) )
+        {
+            String parent = getParent( path );
+            while ( parent != null && changed.add( parent ) )
+            {
+                parent = getParent( parent );
+            }
+        }
+
+        Map<String, Long> unchanged = new HashMap<>( );
+        for ( Map.Entry<String, Entry> entry : entries.entrySet( ) )
+        {
+            String path = entry.getKey( );
+            if ( !changed.contains( path ) )
+            {
+                long fileCount = entry.getValue( ).fileCount.get( );
+                unchanged.merge( path, fileCount, Long::sum );
+                // all parents of an unchanged directory up to the first changed one are unchanged, too
+                String parent = getParent( path );
+                while ( parent != null && entries.containsKey( parent ) && !changed.contains( parent ) )
+                {
+                    unchanged.merge( parent, fileCount, Long::sum );
+                    parent = getParent( parent );
+                }
+            }
+        }
+        return unchanged;
+    }
+
+    /**
+     * Copies the entries of the given directories from another snapshot.
+     *
+     * @param other the snapshot to copy from
+     * @param paths the relative paths of the directories
+     */
+    public void copyFrom( DirectorySnapshot other, Set<String> paths )
+    {
+        for ( String path : paths )
+        {
+            Entry entry = other.entries.get( path );
+            if ( entry != null )
+            {
+                entries.put( path, new Entry( entry.modified, entry.fileCount.get( ) ) );
+            }
+        }
+    }
+
+    static String getParent( String path )
+    {
+        if ( path.isEmpty( ) )
+        {
+            return null;
+        }
+        int idx = path.lastIndexOf( '/' );
+        return idx < 0 ? "" : path.substring( 0, idx );
+    }
+
+    /**
+     * Reads a snapshot from the given file.
+     *
+     * @param file the snapshot file
+     * @return the snapshot, or <code>null</code> if the file does not exist
+     * @throws IOException if the file could not be read or has an unknown format
+     */
+    public static DirectorySnapshot read( Path file )
+        throws IOException
+    {
+        if ( !Files.exists( file ) )
+        {
+            return null;
+        }
+        try ( DataInputStream in = new DataInputStream(
+            new BufferedInputStream( new GZIPInputStream( Files.newInputStream( file ) ) ) ) )
+        {
+            if ( in.readInt( ) != MAGIC || in.readInt( ) != VERSION )
+            {
+                throw new IOException( "Unknown directory snapshot format: " + file );
+            }
+            DirectorySnapshot snapshot = new DirectorySnapshot( in.readUTF( ) );
+            int size = in.readInt( );
+            for ( int i = 0; i < size; i++ )
+            {
+                String path = in.readUTF( );
+                long modified = in.readLong( );
+                int fileCount = in.readInt( );
+                snapshot.entries.put( path, new Entry( modified, fileCount ) );
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Writes the snapshot to the given file. The file is replaced atomically, so that a failed write
+     * keeps the previous snapshot.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file could not be written
+     */
+    public void write( Path file )
+        throws IOException
+    {
+        Path parent = file.toAbsolutePath( ).getParent( );
+        Files.createDirectories( parent );
+        Path tmpFile = Files.createTempFile( parent, file.getFileName( ).toString( ), ".tmp" );
+        try
+        {
+            List<Map.Entry<String, Entry>> list = new ArrayList<>( entries.entrySet( ) );
+            try ( DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( new GZIPOutputStream( Files.newOutputStream( tmpFile ) ) ) ) )
+            {
+                out.writeInt( MAGIC );
+                out.writeInt( VERSION );
+                out.writeUTF( patternKey );
+                out.writeInt( list.size( ) );
+                for ( Map.Entry<String, Entry> entry : list )
+                {
+                    out.writeUTF( entry.getKey( ) );
+                    out.writeLong( entry.getValue( ).modified );
+                    out.writeInt( entry.getValue( ).fileCount.get( ) );
+                }
+            }
+            Files.move( tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        finally
+        {
+            Files.deleteIfExists( tmpFile );
+        }
+    }
+}
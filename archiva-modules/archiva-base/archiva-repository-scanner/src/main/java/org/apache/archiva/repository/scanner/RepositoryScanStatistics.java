@@ -100,11 +100,29 @@ public void increaseFileCount()
         this.totalFileCount += 1;
     }
 
+    public void increaseFileCount( long count )
+    {
+        this.totalFileCount += count;
+    }
+
     public void increaseNewFileCount()
     {
         this.newFileCount += 1;
     }
 
+    /**
+     * Adds the file counts and the size of the given statistics to this statistics.
+     * This is used to merge the results of a parallel scan.
+     *
+     * @param other the statistics of a part of the repository
+     */
+    public void merge( RepositoryScanStatistics other )
+    {
+        this.totalFileCount += other.totalFileCount;
+        this.newFileCount += other.newFileCount;
+        this.totalSize += other.totalSize;
+    }
+
     public void setKnownConsumers( List<String> consumers )
     {
         knownConsumers = consumers;
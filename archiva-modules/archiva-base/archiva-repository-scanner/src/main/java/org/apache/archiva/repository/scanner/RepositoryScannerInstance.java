@@ -32,26 +32,34 @@
 import org.apache.commons.collections4.Closure;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.IterableUtils;
-import org.apache.commons.collections4.functors.IfClosure;
 import org.apache.commons.lang3.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * RepositoryScannerInstance
@@ -61,6 +69,11 @@
 {
     private Logger log = LoggerFactory.getLogger( RepositoryScannerInstance.class );
 
+    /**
+     * The resolution of the directory modification times, that is assumed for the snapshot.
+     */
+    private static final long MODIFIED_RESOLUTION = 2000;
+
     /**
      * Consumers that process known content.
      */
@@ -77,9 +90,7 @@
 
     private long changesSince = 0;
 
-    private ConsumerProcessFileClosure consumerProcessFile;
-
-    private ConsumerWantsFilePredicate consumerWantsFile;
+    private ScanPartition mainPartition;
 
     private Map<String, Long> consumerTimings;
 
@@ -89,8 +100,55 @@
     private List<String> fileNameIncludePattern = new ArrayList<>();
     private List<String> fileNameExcludePattern = new ArrayList<>();
 
-    private List<PathMatcher> includeMatcher = new ArrayList<>();
-    private List<PathMatcher> excludeMatcher = new ArrayList<>();
+    private PathMatcher[] includeMatchers = new PathMatcher[0];
+
+    /**
+     * All exclude patterns compiled into one matcher, or <code>null</code> if there are no excludes.
+     */
+    private PathMatcher excludeMatcher;
+
+    /**
+     * Matches the directories, where all files below are excluded. These are the exclude patterns
+     * that end with <code>/**</code>.
+     */
+    private PathMatcher excludeDirectoryMatcher;
+
+    /**
+     * The repository directory as base directory for the files given to the consumers.
+     */
+    private File repositoryDir;
+
+    /**
+     * True, if the walk starts at the repository directory, so that the relative path of the walk can be used
+     * for the consumer files.
+     */
+    private boolean walkFromRepositoryDir;
+
+    /**
+     * The snapshot of the previous scan, that is used for skipping unchanged directories.
+     */
+    private DirectorySnapshot previousSnapshot;
+
+    private boolean recordSnapshot = false;
+
+    /**
+     * The snapshot of this scan, or <code>null</code> if no snapshot is recorded.
+     */
+    private DirectorySnapshot snapshot;
+
+    /**
+     * Set, if a directory could not be read completely, so the file counts of the snapshot may be wrong.
+     */
+    private volatile boolean snapshotIncomplete = false;
+
+    /**
+     * The unchanged directories of the previous snapshot with the file count of their subtree.
+     */
+    private Map<String, Long> unchangedDirectories;
+
+    private final LongAdder skippedDirectories = new LongAdder();
+
+    private long walkStartTime;
 
     private boolean isRunning = false;
 
@@ -101,34 +159,25 @@ public RepositoryScannerInstance( ManagedRepository repository,
                                       List<InvalidRepositoryContentConsumer> invalidConsumerList )
     {
         this.repository = repository;
-        this.knownConsumers = knownConsumerList;
-        this.invalidConsumers = invalidConsumerList;
+        this.knownConsumers = knownConsumerList != null ? knownConsumerList : Collections.<KnownRepositoryContentConsumer>emptyList();
+        this.invalidConsumers = invalidConsumerList != null ? invalidConsumerList : Collections.<InvalidRepositoryContentConsumer>emptyList();
 
         addFileNameIncludePattern("**/*");
 
-        consumerTimings = new HashMap<>();
-        consumerCounts = new HashMap<>();
-
-        this.consumerProcessFile = new ConsumerProcessFileClosure();
-        consumerProcessFile.setExecuteOnEntireRepo( true );
-        consumerProcessFile.setConsumerTimings( consumerTimings );
-        consumerProcessFile.setConsumerCounts( consumerCounts );
-
-        this.consumerWantsFile = new ConsumerWantsFilePredicate( repository );
+        // concurrent maps, because the timings are merged from parallel scans and read by the status service
+        consumerTimings = new ConcurrentHashMap<>();
+        consumerCounts = new ConcurrentHashMap<>();
 
         stats = new RepositoryScanStatistics();
         stats.setRepositoryId( repository.getId() );
 
+        this.mainPartition = new ScanPartition( stats, consumerTimings, consumerCounts );
+
         Closure<RepositoryContentConsumer> triggerBeginScan =
             new TriggerBeginScanClosure( repository, new Date( System.currentTimeMillis() ), true );
 
         IterableUtils.forEach( knownConsumerList, triggerBeginScan );
         IterableUtils.forEach( invalidConsumerList, triggerBeginScan );
-
-        if ( SystemUtils.IS_OS_WINDOWS )
-        {
-            consumerWantsFile.setCaseSensitive( false );
-        }
     }
 
     public RepositoryScannerInstance( ManagedRepository repository,
@@ -138,9 +187,8 @@ public RepositoryScannerInstance( ManagedRepository repository,
     {
         this( repository, knownContentConsumers, invalidContentConsumers );
 
-        consumerWantsFile.setChangesSince( changesSince );
-
         this.changesSince = changesSince;
+        this.mainPartition.consumerWantsFile.setChangesSince( changesSince );
     }
 
     public RepositoryScanStatistics getStatistics()
@@ -173,6 +221,38 @@ public long getChangesSince()
         return changesSince;
     }
 
+    /**
+     * Enables the recording of a directory snapshot. If a previous snapshot is given and this is an incremental
+     * scan, directories that have not changed since the previous snapshot are not scanned.
+     *
+     * @param previousSnapshot the snapshot of the previous scan, or <code>null</code>
+     */
+    public void setPreviousSnapshot( DirectorySnapshot previousSnapshot )
+    {
+        this.previousSnapshot = previousSnapshot;
+        this.recordSnapshot = true;
+    }
+
+    /**
+     * Returns the directory snapshot recorded by this scan.
+     *
+     * @return the snapshot, or <code>null</code> if the recording is not enabled or the scan had errors
+     */
+    public DirectorySnapshot getSnapshot()
+    {
+        return snapshotIncomplete ? null : snapshot;
+    }
+
+    public long getSkippedDirectoryCount()
+    {
+        return skippedDirectories.sum();
+    }
+
+    private String getPatternKey()
+    {
+        return String.join( ",", fileNameIncludePattern ) + "|" + String.join( ",", fileNameExcludePattern );
+    }
+
     public List<String> getFileNameIncludePattern() {
         return fileNameIncludePattern;
     }
@@ -180,14 +260,14 @@ public List<String> getFileNameIncludePattern() {
     public void setFileNameIncludePattern(List<String> fileNamePattern) {
         this.fileNameIncludePattern = fileNamePattern;
         FileSystem sys = FileSystems.getDefault();
-        this.includeMatcher = fileNamePattern.stream().map(ts ->sys
-                .getPathMatcher("glob:" + ts)).collect(Collectors.toList());
+        this.includeMatchers = fileNamePattern.stream().map(ts ->sys
+                .getPathMatcher("glob:" + ts)).toArray(PathMatcher[]::new);
     }
 
     public void addFileNameIncludePattern(String fileNamePattern) {
         if (! this.fileNameIncludePattern.contains(fileNamePattern)) {
             this.fileNameIncludePattern.add(fileNamePattern);
-            this.includeMatcher.add(FileSystems.getDefault().getPathMatcher("glob:" + fileNamePattern));
+            setFileNameIncludePattern( this.fileNameIncludePattern );
         }
     }
 
@@ -197,67 +277,228 @@ public List<String> getFileNameExcludePattern() {
 
     public void setFileNameExcludePattern(List<String> fileNamePattern) {
         this.fileNameExcludePattern = fileNamePattern;
-        FileSystem sys = FileSystems.getDefault();
-        this.excludeMatcher = fileNamePattern.stream().map(ts ->sys
-                .getPathMatcher("glob:" + ts)).collect(Collectors.toList());
+        this.excludeMatcher = compileGlobs( fileNamePattern );
+        List<String> directoryPatterns = new ArrayList<>( );
+        for ( String pattern : fileNamePattern )
+        {
+            if ( pattern.endsWith( "/**" ) && pattern.length( ) > 3 )
+            {
+                directoryPatterns.add( pattern.substring( 0, pattern.length( ) - 3 ) );
+            }
+        }
+        this.excludeDirectoryMatcher = compileGlobs( directoryPatterns );
     }
 
     public void addFileNameExcludePattern(String fileNamePattern) {
         if (! this.fileNameExcludePattern.contains(fileNamePattern)) {
             this.fileNameExcludePattern.add(fileNamePattern);
-            this.excludeMatcher.add(FileSystems.getDefault().getPathMatcher("glob:" + fileNamePattern));
+            setFileNameExcludePattern( this.fileNameExcludePattern );
+        }
+    }
+
+    /**
+     * Compiles the glob patterns into a single matcher that matches, if any of the patterns matches.
+     * The patterns are combined into one glob group, which results in a single regular expression.
+     * Patterns that contain group syntax themselves can not be combined, and are matched one by one.
+     */
+    static PathMatcher compileGlobs( List<String> patterns )
+    {
+        if ( patterns.isEmpty( ) )
+        {
+            return null;
+        }
+        FileSystem sys = FileSystems.getDefault( );
+        if ( patterns.size( ) == 1 )
+        {
+            return sys.getPathMatcher( "glob:" + patterns.get( 0 ) );
+        }
+        boolean combinable = patterns.stream( ).noneMatch( p -> p.indexOf( '{' ) >= 0 || p.indexOf( '}' ) >= 0 || p.indexOf( ',' ) >= 0 );
+        if ( combinable )
+        {
+            return sys.getPathMatcher( "glob:{" + String.join( ",", patterns ) + "}" );
         }
+        final PathMatcher[] matchers = patterns.stream( ).map( p -> sys.getPathMatcher( "glob:" + p ) ).toArray( PathMatcher[]::new );
+        return path -> {
+            for ( PathMatcher matcher : matchers )
+            {
+                if ( matcher.matches( path ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        };
     }
 
 
     @Override
     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
         if (!isRunning) {
-            isRunning = true;
-            this.basePath = dir;
-            log.info( "Walk Started: [{}] {}", this.repository.getId(), this.repository.getLocation() );
-            stats.triggerStart();
+            startWalk( dir );
+            recordDirectory( dir, attrs );
+            return FileVisitResult.CONTINUE;
+        }
+        return enterDirectory( mainPartition, dir, attrs );
+    }
+
+    /**
+     * Decides, if the directory below the base directory is scanned. Excluded directories and directories
+     * that have not changed since the previous snapshot are skipped.
+     */
+    private FileVisitResult enterDirectory( ScanPartition partition, Path dir, BasicFileAttributes attrs )
+    {
+        if ( isExcludedDirectory( dir ) )
+        {
+            return FileVisitResult.SKIP_SUBTREE;
         }
+        if ( unchangedDirectories != null )
+        {
+            Long fileCount = unchangedDirectories.get( toSnapshotPath( basePath.relativize( dir ) ) );
+            if ( fileCount != null )
+            {
+                log.debug( "Skipping unchanged directory {}", dir );
+                partition.partitionStats.increaseFileCount( fileCount );
+                skippedDirectories.increment();
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+        }
+        recordDirectory( dir, attrs );
         return FileVisitResult.CONTINUE;
     }
 
-    @Override
-    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        final Path relativeFile = basePath.relativize( file );
-        if (excludeMatcher.stream().noneMatch(m -> m.matches(relativeFile)) && includeMatcher.stream().allMatch(m -> m.matches(relativeFile))) {
-            log.debug( "Walk Step: {}, {}", file );
+    private void recordDirectory( Path dir, BasicFileAttributes attrs )
+    {
+        if ( snapshot != null )
+        {
+            long modified = attrs.lastModifiedTime().toMillis();
+            // the modification time may have a resolution of seconds, so a change during this scan
+            // could leave the time unchanged
+            if ( modified >= walkStartTime - MODIFIED_RESOLUTION )
+            {
+                modified = DirectorySnapshot.UNKNOWN_MODIFIED;
+            }
+            snapshot.addDirectory( toSnapshotPath( basePath.relativize( dir ) ), modified );
+        }
+    }
+
+    private static String toSnapshotPath( Path relativePath )
+    {
+        if ( relativePath == null )
+        {
+            return "";
+        }
+        String path = relativePath.toString();
+        return File.separatorChar == '/' ? path : path.replace( File.separatorChar, '/' );
+    }
 
-            stats.increaseFileCount();
+    private boolean isExcludedDirectory( Path dir )
+    {
+        return excludeDirectoryMatcher != null && excludeDirectoryMatcher.matches( basePath.relativize( dir ) );
+    }
 
-            // consume files regardless - the predicate will check the timestamp
-            Path repoPath = PathUtil.getPathFromUri( repository.getLocation() );
-            BaseFile basefile = new BaseFile( repoPath.toString(), file.toFile() );
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        mainPartition.processFile( file, attrs );
+        return FileVisitResult.CONTINUE;
+    }
 
-            // Timestamp finished points to the last successful scan, not this current one.
-            if ( Files.getLastModifiedTime(file).toMillis() >= changesSince )
+    /**
+     * Scans the repository with the given pool. The directories down to the given depth are split into separate
+     * tasks, so that the top level groupId directories are processed in parallel. Idle threads of the pool
+     * steal the remaining directory tasks from the busy ones.
+     *
+     * The statistics and consumer timings of the tasks are merged into the statistics of this instance.
+     *
+     * @param baseDir the base directory of the repository
+     * @param pool the pool that executes the directory tasks
+     * @param splitDepth the directory depth, up to which the directories are split into separate tasks
+     */
+    public void walkParallel( Path baseDir, ForkJoinPool pool, int splitDepth )
+    {
+        startWalk( baseDir );
+        try
+        {
+            if ( snapshot != null )
             {
-                stats.increaseNewFileCount();
+                recordDirectory( baseDir, Files.readAttributes( baseDir, BasicFileAttributes.class ) );
             }
+            pool.invoke( new DirectoryScanTask( baseDir, 0, splitDepth ) );
+        }
+        catch ( IOException e )
+        {
+            log.error( "Could not scan directory {}: {}", baseDir, e.getMessage( ), e );
+        }
+        finally
+        {
+            finishWalk( );
+        }
+    }
 
-            consumerProcessFile.setBasefile( basefile );
-            consumerWantsFile.setBasefile( basefile );
-
-            Closure<RepositoryContentConsumer> processIfWanted = IfClosure.ifClosure( consumerWantsFile, consumerProcessFile );
-            IterableUtils.forEach( this.knownConsumers, processIfWanted );
+    private void startWalk( Path dir )
+    {
+        isRunning = true;
+        this.basePath = dir;
+        Path repoPath = PathUtil.getPathFromUri( repository.getLocation() );
+        this.repositoryDir = repoPath.toFile();
+        this.walkFromRepositoryDir = repoPath.toAbsolutePath().normalize().equals( dir.toAbsolutePath().normalize() );
+        this.walkStartTime = System.currentTimeMillis();
+        log.info( "Walk Started: [{}] {}", this.repository.getId(), this.repository.getLocation() );
+        stats.triggerStart();
+        if ( recordSnapshot )
+        {
+            snapshot = new DirectorySnapshot( getPatternKey() );
+        }
+        if ( previousSnapshot != null && changesSince > 0 )
+        {
+            if ( previousSnapshot.getPatternKey().equals( snapshot.getPatternKey() ) )
+            {
+                unchangedDirectories = previousSnapshot.findUnchangedSubtrees( dir );
+                // the skipped directories are not visited, so their entries are taken from the previous snapshot
+                snapshot.copyFrom( previousSnapshot, unchangedDirectories.keySet() );
+                log.debug( "{} of {} directories unchanged since the last scan", unchangedDirectories.size(),
+                           previousSnapshot.size() );
+            }
+            else
+            {
+                log.info( "Ignoring the directory snapshot of repository {}, the scan patterns have changed",
+                          repository.getId() );
+            }
+        }
+    }
 
-            if ( consumerWantsFile.getWantedFileCount() <= 0 )
+    private boolean isIncluded( Path relativeFile )
+    {
+        if ( excludeMatcher != null && excludeMatcher.matches( relativeFile ) )
+        {
+            return false;
+        }
+        for ( PathMatcher matcher : includeMatchers )
+        {
+            if ( !matcher.matches( relativeFile ) )
             {
-                // Nothing known processed this file.  It is invalid!
-                IterableUtils.forEach( this.invalidConsumers, consumerProcessFile );
+                return false;
             }
+        }
+        return true;
+    }
 
+    private synchronized void merge( ScanPartition partition )
+    {
+        stats.merge( partition.partitionStats );
+        for ( Map.Entry<String, Long> entry : partition.partitionTimings.entrySet( ) )
+        {
+            consumerTimings.merge( entry.getKey( ), entry.getValue( ), Long::sum );
+        }
+        for ( Map.Entry<String, Long> entry : partition.partitionCounts.entrySet( ) )
+        {
+            consumerCounts.merge( entry.getKey( ), entry.getValue( ), Long::sum );
         }
-        return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
         log.error("Error occured at {}: {}", file, exc.getMessage(), exc);
+        snapshotIncomplete = true;
         try
         {
             if ( basePath != null && Files.isSameFile( file, basePath ) )
@@ -273,7 +514,8 @@ public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOExce
 
     @Override
     public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-        if (Files.isSameFile(dir, basePath)) {
+        // the walk passes the start path unchanged, so no file system access is needed for the comparison
+        if (dir.equals(basePath)) {
             finishWalk();
         }
         return FileVisitResult.CONTINUE;
@@ -288,8 +530,202 @@ private void finishWalk() {
         stats.setConsumerTimings( consumerTimings );
         stats.setConsumerCounts( consumerCounts );
 
+        if ( unchangedDirectories != null )
+        {
+            log.info( "Skipped {} unchanged directories: [{}]", skippedDirectories.sum(), this.repository.getId() );
+        }
         log.info( "Walk Finished: [{}] {}", this.repository.getId(), this.repository.getLocation() );
         stats.triggerFinished();
         this.basePath = null;
     }
+
+    /**
+     * The per thread state for processing files. The sequential walk uses a single partition that
+     * updates the statistics of the instance directly. The parallel walk creates a partition per task
+     * and merges it into the instance, when the task is finished.
+     */
+    private final class ScanPartition
+    {
+        private final RepositoryScanStatistics partitionStats;
+
+        private final Map<String, Long> partitionTimings;
+
+        private final Map<String, Long> partitionCounts;
+
+        private final ConsumerProcessFileClosure consumerProcessFile;
+
+        private final ConsumerWantsFilePredicate consumerWantsFile;
+
+        ScanPartition( RepositoryScanStatistics partitionStats, Map<String, Long> partitionTimings,
+                       Map<String, Long> partitionCounts )
+        {
+            this.partitionStats = partitionStats;
+            this.partitionTimings = partitionTimings;
+            this.partitionCounts = partitionCounts;
+
+            this.consumerProcessFile = new ConsumerProcessFileClosure();
+            consumerProcessFile.setExecuteOnEntireRepo( true );
+            consumerProcessFile.setConsumerTimings( partitionTimings );
+            consumerProcessFile.setConsumerCounts( partitionCounts );
+
+            this.consumerWantsFile = new ConsumerWantsFilePredicate( repository );
+            consumerWantsFile.setChangesSince( changesSince );
+            if ( SystemUtils.IS_OS_WINDOWS )
+            {
+                consumerWantsFile.setCaseSensitive( false );
+            }
+        }
+
+        ScanPartition( )
+        {
+            this( new RepositoryScanStatistics( ), new HashMap<>( ), new HashMap<>( ) );
+        }
+
+        void processFile( Path file, BasicFileAttributes attrs )
+        {
+            final Path relativeFile = basePath.relativize( file );
+            if ( isIncluded( relativeFile ) )
+            {
+                log.debug( "Walk Step: {}", file );
+
+                partitionStats.increaseFileCount();
+                if ( snapshot != null )
+                {
+                    snapshot.addFile( toSnapshotPath( relativeFile.getParent() ) );
+                }
+
+                // consume files regardless - the predicate will check the timestamp
+                BaseFile basefile = walkFromRepositoryDir ? new BaseFile( repositoryDir, relativeFile.toString() )
+                    : new BaseFile( repositoryDir, file.toFile() );
+
+                // Timestamp finished points to the last successful scan, not this current one.
+                long lastModified = attrs.lastModifiedTime().toMillis();
+                if ( lastModified >= changesSince )
+                {
+                    partitionStats.increaseNewFileCount();
+                }
+
+                consumerProcessFile.setBasefile( basefile );
+                consumerWantsFile.setBasefile( basefile, lastModified );
+
+                for ( KnownRepositoryContentConsumer consumer : knownConsumers )
+                {
+                    if ( consumerWantsFile.evaluate( consumer ) )
+                    {
+                        consumerProcessFile.execute( consumer );
+                    }
+                }
+
+                if ( consumerWantsFile.getWantedFileCount() <= 0 )
+                {
+                    // Nothing known processed this file.  It is invalid!
+                    for ( InvalidRepositoryContentConsumer consumer : invalidConsumers )
+                    {
+                        consumerProcessFile.execute( consumer );
+                    }
+                }
+
+            }
+        }
+    }
+
+    /**
+     * Task that processes the files of a directory and forks a task for each sub directory, until the
+     * split depth is reached. Below the split depth the whole subtree is walked by the task.
+     */
+    private final class DirectoryScanTask
+        extends RecursiveAction
+    {
+        private final Path dir;
+
+        private final int depth;
+
+        private final int splitDepth;
+
+        DirectoryScanTask( Path dir, int depth, int splitDepth )
+        {
+            this.dir = dir;
+            this.depth = depth;
+            this.splitDepth = splitDepth;
+        }
+
+        @Override
+        protected void compute( )
+        {
+            final ScanPartition partition = new ScanPartition( );
+            if ( depth >= splitDepth )
+            {
+                walkSubtree( partition );
+                merge( partition );
+                return;
+            }
+            List<DirectoryScanTask> subTasks = new ArrayList<>( );
+            try ( DirectoryStream<Path> entries = Files.newDirectoryStream( dir ) )
+            {
+                for ( Path entry : entries )
+                {
+                    BasicFileAttributes attrs = Files.readAttributes( entry, BasicFileAttributes.class );
+                    if ( attrs.isDirectory( ) )
+                    {
+                        if ( enterDirectory( partition, entry, attrs ) == FileVisitResult.CONTINUE )
+                        {
+                            subTasks.add( new DirectoryScanTask( entry, depth + 1, splitDepth ) );
+                        }
+                    }
+                    else
+                    {
+                        partition.processFile( entry, attrs );
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                log.error( "Error occured at {}: {}", dir, e.getMessage( ), e );
+                snapshotIncomplete = true;
+            }
+            merge( partition );
+            invokeAll( subTasks );
+        }
+
+        private void walkSubtree( final ScanPartition partition )
+        {
+            try
+            {
+                Files.walkFileTree( dir, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>( )
+                    {
+                        @Override
+                        public FileVisitResult preVisitDirectory( Path subDir, BasicFileAttributes attrs )
+                        {
+                            // the start directory has already been checked by the parent task
+                            if ( subDir.equals( dir ) )
+                            {
+                                return FileVisitResult.CONTINUE;
+                            }
+                            return enterDirectory( partition, subDir, attrs );
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) throws IOException
+                        {
+                            partition.processFile( file, attrs );
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed( Path file, IOException exc )
+                        {
+                            log.error( "Error occured at {}: {}", file, exc.getMessage( ), exc );
+                            snapshotIncomplete = true;
+                            return FileVisitResult.CONTINUE;
+                        }
+                    } );
+            }
+            catch ( IOException e )
+            {
+                log.error( "Could not scan directory {}: {}", dir, e.getMessage( ), e );
+                snapshotIncomplete = true;
+            }
+        }
+    }
 }
@@ -54,7 +54,18 @@ public void execute( RepositoryContentConsumer input )
             log.debug( "Sending to consumer: {}", id );
 
             long startTime = System.currentTimeMillis( );
-            consumer.processFile( basefile.getRelativePath( ), executeOnEntireRepo );
+            if ( consumer.isThreadSafe( ) )
+            {
+                consumer.processFile( basefile.getRelativePath( ), executeOnEntireRepo );
+            }
+            else
+            {
+                // consumers that are not thread safe get one file at a time during parallel scans
+                synchronized ( consumer )
+                {
+                    consumer.processFile( basefile.getRelativePath( ), executeOnEntireRepo );
+                }
+            }
             long endTime = System.currentTimeMillis( );
 
             if ( consumerTimings != null )
@@ -0,0 +1,170 @@
+package org.apache.archiva.repository.scanner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.filelock.DefaultFileLockManager;
+import org.apache.archiva.common.utils.FileUtils;
+import org.apache.archiva.consumers.InvalidRepositoryContentConsumer;
+import org.apache.archiva.consumers.KnownRepositoryContentConsumer;
+import org.apache.archiva.repository.base.BasicManagedRepository;
+import org.apache.archiva.repository.scanner.mock.ManagedRepositoryContentMock;
+import org.apache.archiva.repository.storage.FilesystemStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time for walking a synthetic maven repository with the repository scanner.
+ * The files are empty, so the result is dominated by the per file cost of the scanner and the consumers
+ * filters, not by the consumers themselves.
+ *
+ * The benchmark is not run by the unit tests. Run it by the main method from the test classpath, and
+ * run it on an older revision to compare the per file cost.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class RepositoryScannerBenchmark
+{
+    private static final String[] VERSION_FILES =
+        { "%s-%s.jar", "%s-%s.jar.sha1", "%s-%s.jar.md5", "%s-%s.pom", "%s-%s.pom.sha1", "%s-%s.pom.md5",
+            "%s-%s-sources.jar", "%s-%s-sources.jar.sha1", "%s-%s-javadoc.jar", "%s-%s-javadoc.jar.sha1" };
+
+    @Param( { "1000000" } )
+    public int fileCount;
+
+    private Path repoDir;
+
+    private BasicManagedRepository repository;
+
+    private ForkJoinPool pool;
+
+    @Setup( Level.Trial )
+    public void createRepository( )
+        throws IOException
+    {
+        repoDir = Files.createTempDirectory( "scanner-benchmark" );
+        int versionDirs = fileCount / VERSION_FILES.length;
+        for ( int i = 0; i < versionDirs; i++ )
+        {
+            String artifactId = "artifact" + ( i / 10 ) % 100;
+            String version = "1." + ( i % 10 ) + "." + ( i / 1000 );
+            Path versionDir = repoDir.resolve( "org" ).resolve( "group" + i % 100 ).resolve( artifactId ).resolve( version );
+            Files.createDirectories( versionDir );
+            for ( String file : VERSION_FILES )
+            {
+                Files.createFile( versionDir.resolve( String.format( file, artifactId, version ) ) );
+            }
+        }
+        // excluded content, that is skipped as a whole directory
+        Path reportsDir = repoDir.resolve( ".reports" );
+        Files.createDirectories( reportsDir );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            Files.createFile( reportsDir.resolve( "report-" + i + ".xml" ) );
+        }
+
+        FilesystemStorage storage = new FilesystemStorage( repoDir, new DefaultFileLockManager( ) );
+        repository = new BasicManagedRepository( "benchmark", "Benchmark Repository", storage );
+        repository.setLocation( repoDir.toUri( ) );
+        repository.setContent( new ManagedRepositoryContentMock( repository ) );
+        pool = new ForkJoinPool( Runtime.getRuntime( ).availableProcessors( ) );
+    }
+
+    @TearDown( Level.Trial )
+    public void removeRepository( )
+        throws IOException
+    {
+        pool.shutdown( );
+        FileUtils.deleteDirectory( repoDir );
+    }
+
+    private RepositoryScannerInstance createInstance( KnownScanConsumer consumer )
+    {
+        consumer.setIncludes( new String[]{ "**/*.jar", "**/*.pom" } );
+        InvalidScanConsumer invalidConsumer = new InvalidScanConsumer( );
+        RepositoryScannerInstance instance = new RepositoryScannerInstance( repository,
+            Collections.<KnownRepositoryContentConsumer>singletonList( consumer ),
+            Collections.<InvalidRepositoryContentConsumer>singletonList( invalidConsumer ), RepositoryScanner.FRESH_SCAN );
+        List<String> excludes = Arrays.asList( RepositoryScanner.IGNORABLE_CONTENT );
+        instance.setFileNameIncludePattern( Collections.singletonList( "**/*" ) );
+        instance.setFileNameExcludePattern( excludes );
+        return instance;
+    }
+
+    @Benchmark
+    public void sequential( Blackhole blackhole )
+        throws IOException
+    {
+        KnownScanConsumer consumer = new KnownScanConsumer( );
+        RepositoryScannerInstance instance = createInstance( consumer );
+        Files.walkFileTree( repoDir, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), Integer.MAX_VALUE, instance );
+        blackhole.consume( instance.getStatistics( ).getTotalFileCount( ) );
+        blackhole.consume( consumer.getProcessCount( ) );
+    }
+
+    @Benchmark
+    public void parallel( Blackhole blackhole )
+    {
+        KnownScanConsumer consumer = new KnownScanConsumer( );
+        RepositoryScannerInstance instance = createInstance( consumer );
+        instance.walkParallel( repoDir, pool, 2 );
+        blackhole.consume( instance.getStatistics( ).getTotalFileCount( ) );
+        blackhole.consume( consumer.getProcessCount( ) );
+    }
+
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        Options options = new OptionsBuilder( )
+            .include( RepositoryScannerBenchmark.class.getSimpleName( ) )
+            .build( );
+        new Runner( options ).run( );
+    }
+}
@@ -44,6 +44,7 @@
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
 import java.text.ParseException;
@@ -53,6 +54,7 @@
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.stream.Stream;
 
 /**
  * RepositoryScannerTest
@@ -262,6 +264,138 @@ public void testDefaultRepositoryScanner()
         assertEquals( "Processed Count (of invalid items):" + badconsumer.getPaths(), 6, badconsumer.getProcessCount() );
     }
 
+    @Test
+    public void testParallelRepositoryScanner()
+        throws Exception
+    {
+        ManagedRepository repository = createDefaultRepository();
+
+        KnownScanConsumer consumer = new KnownScanConsumer();
+        consumer.setIncludes( ARTIFACT_PATTERNS );
+        InvalidScanConsumer badconsumer = new InvalidScanConsumer();
+
+        DefaultRepositoryScanner scanner = (DefaultRepositoryScanner) lookupRepositoryScanner();
+        RepositoryScanStatistics sequentialStats =
+            scanner.scan( repository, Arrays.<KnownRepositoryContentConsumer>asList( consumer ),
+                          Arrays.<InvalidRepositoryContentConsumer>asList( badconsumer ), getIgnoreList(),
+                          RepositoryScanner.FRESH_SCAN );
+        int sequentialCount = consumer.getProcessCount();
+        int sequentialInvalidCount = badconsumer.getProcessCount();
+
+        KnownScanConsumer parallelConsumer = new KnownScanConsumer();
+        parallelConsumer.setIncludes( ARTIFACT_PATTERNS );
+        InvalidScanConsumer parallelBadconsumer = new InvalidScanConsumer();
+
+        int scanThreads = scanner.getScanThreads();
+        scanner.setScanThreads( 4 );
+        RepositoryScanStatistics parallelStats;
+        try
+        {
+            parallelStats =
+                scanner.scan( repository, Arrays.<KnownRepositoryContentConsumer>asList( parallelConsumer ),
+                              Arrays.<InvalidRepositoryContentConsumer>asList( parallelBadconsumer ),
+                              getIgnoreList(), RepositoryScanner.FRESH_SCAN );
+        }
+        finally
+        {
+            scanner.setScanThreads( scanThreads );
+        }
+
+        assertNotNull( "Stats should not be null.", parallelStats );
+        assertEquals( "Stats.totalFileCount", sequentialStats.getTotalFileCount(), parallelStats.getTotalFileCount() );
+        assertEquals( "Stats.newFileCount", sequentialStats.getNewFileCount(), parallelStats.getNewFileCount() );
+        assertEquals( "Processed Count", sequentialCount, parallelConsumer.getProcessCount() );
+        assertEquals( "Processed Count (of invalid items)", sequentialInvalidCount,
+                      parallelBadconsumer.getProcessCount() );
+    }
+
+    @Test
+    public void testIncrementalRepositoryScanner()
+        throws Exception
+    {
+        Path srcDir = Paths.get( System.getProperty( "basedir" ), "src/test/repositories/default-repository" );
+        Path repoDir = Paths.get( System.getProperty( "basedir" ), "target/test-repos/incremental-repository" );
+        org.apache.archiva.common.utils.FileUtils.deleteDirectory( repoDir );
+        FileUtils.copyDirectory( srcDir.toFile(), repoDir.toFile() );
+
+        // directories modified during a scan are not trusted by the snapshot, so move them to the past
+        List<Path> directories = new ArrayList<>();
+        try ( Stream<Path> paths = Files.walk( repoDir ) )
+        {
+            paths.filter( Files::isDirectory ).forEach( directories::add );
+        }
+        FileTime past = FileTime.fromMillis( System.currentTimeMillis() - 3600000 );
+        for ( Path dir : directories )
+        {
+            Files.setLastModifiedTime( dir, past );
+        }
+
+        ManagedRepository repository = createRepository( "testIncrementalRepo", "Test Incremental Repository", repoDir );
+        DefaultRepositoryScanner scanner = (DefaultRepositoryScanner) lookupRepositoryScanner();
+        boolean incrementalScan = scanner.isIncrementalScan();
+        scanner.setIncrementalScan( true );
+        Path snapshotFile = scanner.getSnapshotFile( repository );
+        Files.deleteIfExists( snapshotFile );
+        try
+        {
+            KnownScanConsumer consumer = new KnownScanConsumer();
+            consumer.setIncludes( ARTIFACT_PATTERNS );
+            RepositoryScanStatistics fullStats =
+                scanner.scan( repository, Arrays.<KnownRepositoryContentConsumer>asList( consumer ),
+                              Arrays.<InvalidRepositoryContentConsumer>asList( new InvalidScanConsumer() ),
+                              getIgnoreList(), RepositoryScanner.FRESH_SCAN );
+            // the snapshot is stored in the data directory, not in the repository
+            assertTrue( Files.exists( snapshotFile ) );
+            assertFalse( snapshotFile.toAbsolutePath().startsWith( repoDir.toAbsolutePath() ) );
+            assertTrue( snapshotFile.getFileName().toString().startsWith( "testIncrementalRepo" ) );
+            long changesSince = System.currentTimeMillis();
+
+            // nothing changed, all directories below the base directory are skipped
+            consumer = new KnownScanConsumer();
+            consumer.setIncludes( ARTIFACT_PATTERNS );
+            InvalidScanConsumer badconsumer = new InvalidScanConsumer();
+            RepositoryScanStatistics stats =
+                scanner.scan( repository, Arrays.<KnownRepositoryContentConsumer>asList( consumer ),
+                              Arrays.<InvalidRepositoryContentConsumer>asList( badconsumer ), getIgnoreList(),
+                              changesSince );
+            assertEquals( "Stats.totalFileCount", fullStats.getTotalFileCount(), stats.getTotalFileCount() );
+            assertEquals( "Processed Count", 0, consumer.getProcessCount() );
+            assertEquals( "Processed Count (of invalid items)", 0, badconsumer.getProcessCount() );
+
+            Path newVersion = repoDir.resolve( "org/apache/maven/test/1.99" );
+            Files.createDirectories( newVersion );
+            Files.write( newVersion.resolve( "test-1.99.jar" ), new byte[0] );
+
+            consumer = new KnownScanConsumer();
+            consumer.setIncludes( ARTIFACT_PATTERNS );
+            stats = scanner.scan( repository, Arrays.<KnownRepositoryContentConsumer>asList( consumer ),
+                                  Arrays.<InvalidRepositoryContentConsumer>asList( new InvalidScanConsumer() ),
+                                  getIgnoreList(), changesSince );
+            assertEquals( "Stats.totalFileCount", fullStats.getTotalFileCount() + 1, stats.getTotalFileCount() );
+            assertEquals( "Stats.newFileCount", 1, stats.getNewFileCount() );
+            assertEquals( "Processed Count", 1, consumer.getProcessCount() );
+        }
+        finally
+        {
+            scanner.setIncrementalScan( incrementalScan );
+        }
+    }
+
+    @Test
+    public void testCompiledExcludePatterns()
+    {
+        PathMatcher matcher = RepositoryScannerInstance.compileGlobs( getIgnoreList() );
+        assertTrue( matcher.matches( Paths.get( ".reports/report.xml" ) ) );
+        assertTrue( matcher.matches( Paths.get( "org/apache/.svn/entries" ) ) );
+        assertTrue( matcher.matches( Paths.get( "org/apache/README.txt" ) ) );
+        assertFalse( matcher.matches( Paths.get( "org/apache/maven/A/1.0/A-1.0.pom" ) ) );
+
+        matcher = RepositoryScannerInstance.compileGlobs( Arrays.asList( "**/*.{txt,html}", "bin/**" ) );
+        assertTrue( matcher.matches( Paths.get( "org/README.html" ) ) );
+        assertTrue( matcher.matches( Paths.get( "bin/run" ) ) );
+        assertFalse( matcher.matches( Paths.get( "org/a.jar" ) ) );
+    }
+
     @Test
     public void testDefaultRepositoryArtifactScanner()
         throws Exception
@@ -32,11 +32,11 @@
 import java.nio.file.*;
 import java.nio.file.attribute.*;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of an asset that is stored on the filesystem.
@@ -178,44 +178,21 @@ private String normalizePath(final String path) {
     private void init() {
 
         if (setPermissionsForNew) {
-            try {
-                supportsAcl = Files.getFileStore(assetPath.getRoot()).supportsFileAttributeView(AclFileAttributeView.class);
-            } catch (IOException e) {
-                log.error("Could not check filesystem capabilities {}", e.getMessage());
-            }
-            try {
-                supportsPosix = Files.getFileStore(assetPath.getRoot()).supportsFileAttributeView(PosixFileAttributeView.class);
-            } catch (IOException e) {
-                log.error("Could not check filesystem capabilities {}", e.getMessage());
+            FilesystemCapabilities capabilities;
+            if (storage instanceof FilesystemStorage) {
+                capabilities = ((FilesystemStorage) storage).getCapabilities();
+            } else {
+                capabilities = FilesystemCapabilities.probe(basePath != null ? basePath : assetPath.getParent());
             }
-
+            supportsAcl = capabilities.supportsAcl();
+            supportsPosix = capabilities.supportsPosix();
             if (supportsAcl) {
-                AclFileAttributeView aclView = Files.getFileAttributeView(assetPath.getParent(), AclFileAttributeView.class);
-                UserPrincipal owner = null;
-                try {
-                    owner = aclView.getOwner();
-                    setDefaultFileAcls(processPermissions(owner, DEFAULT_ACL_FILE_PERMISSIONS));
-                    setDefaultDirectoryAcls(processPermissions(owner, DEFAULT_ACL_DIR_PERMISSIONS));
-
-                } catch (IOException e) {
-                    supportsAcl = false;
-                }
-
-
+                setDefaultFileAcls(capabilities.getDefaultFileAcls());
+                setDefaultDirectoryAcls(capabilities.getDefaultDirectoryAcls());
             }
         }
     }
 
-    private List<AclEntry> processPermissions(UserPrincipal owner, AclEntryPermission[] defaultAclFilePermissions) {
-        AclEntry.Builder aclBuilder = AclEntry.newBuilder();
-        aclBuilder.setPermissions(defaultAclFilePermissions);
-        aclBuilder.setType(AclEntryType.ALLOW);
-        aclBuilder.setPrincipal(owner);
-        ArrayList<AclEntry> aclList = new ArrayList<>();
-        aclList.add(aclBuilder.build());
-        return aclList;
-    }
-
 
     @Override
     public RepositoryStorage getStorage( )
@@ -265,8 +242,8 @@ public boolean isContainer() {
      */
     @Override
     public List<StorageAsset> list() {
-        try {
-            return Files.list(assetPath).map(p -> new FilesystemAsset(storage, relativePath + "/" + p.getFileName().toString(), assetPath.resolve(p)))
+        try (Stream<Path> entries = Files.list(assetPath)) {
+            return entries.map(p -> new FilesystemAsset(storage, relativePath + "/" + p.getFileName().toString(), assetPath.resolve(p)))
                     .collect(Collectors.toList());
         } catch (IOException e) {
             return Collections.EMPTY_LIST;
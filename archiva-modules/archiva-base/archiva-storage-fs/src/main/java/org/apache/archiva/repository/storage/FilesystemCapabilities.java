@@ -0,0 +1,134 @@
+package org.apache.archiva.repository.storage;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The capabilities of the file store of a storage, that are needed to set the permissions of new files.
+ *
+ * Probing the file store is expensive, e.g. on Linux the mount table is parsed. So the capabilities are
+ * probed once for the base path of a storage and shared by all assets of the storage.
+ */
+final class FilesystemCapabilities {
+
+    private final static Logger log = LoggerFactory.getLogger(FilesystemCapabilities.class);
+
+    private final Path path;
+    private final boolean supportsAcl;
+    private final boolean supportsPosix;
+    private final List<AclEntry> defaultFileAcls;
+    private final List<AclEntry> defaultDirectoryAcls;
+
+    private FilesystemCapabilities(Path path, boolean supportsAcl, boolean supportsPosix,
+                                   List<AclEntry> defaultFileAcls, List<AclEntry> defaultDirectoryAcls) {
+        this.path = path;
+        this.supportsAcl = supportsAcl;
+        this.supportsPosix = supportsPosix;
+        this.defaultFileAcls = defaultFileAcls;
+        this.defaultDirectoryAcls = defaultDirectoryAcls;
+    }
+
+    /**
+     * Probes the file store of the given path. The default ACL entries are granted to the owner of the path.
+     *
+     * @param path The path, usually the base path of a storage. If it does not exist, the nearest existing
+     *             parent is probed.
+     * @return The capabilities of the file store.
+     */
+    static FilesystemCapabilities probe(Path path) {
+        boolean supportsAcl = false;
+        boolean supportsPosix = false;
+        List<AclEntry> defaultFileAcls = null;
+        List<AclEntry> defaultDirectoryAcls = null;
+        Path existingPath = path;
+        while (existingPath != null && !Files.exists(existingPath)) {
+            existingPath = existingPath.getParent();
+        }
+        if (existingPath == null) {
+            existingPath = path.getRoot();
+        }
+        if (existingPath != null) {
+            try {
+                FileStore fileStore = Files.getFileStore(existingPath);
+                supportsAcl = fileStore.supportsFileAttributeView(AclFileAttributeView.class);
+                supportsPosix = fileStore.supportsFileAttributeView(PosixFileAttributeView.class);
+            } catch (IOException e) {
+                log.error("Could not check filesystem capabilities {}", e.getMessage());
+            }
+            if (supportsAcl) {
+                AclFileAttributeView aclView = Files.getFileAttributeView(existingPath, AclFileAttributeView.class);
+                try {
+                    UserPrincipal owner = aclView.getOwner();
+                    defaultFileAcls = processPermissions(owner, FilesystemAsset.DEFAULT_ACL_FILE_PERMISSIONS);
+                    defaultDirectoryAcls = processPermissions(owner, FilesystemAsset.DEFAULT_ACL_DIR_PERMISSIONS);
+                } catch (IOException e) {
+                    supportsAcl = false;
+                }
+            }
+        }
+        return new FilesystemCapabilities(path, supportsAcl, supportsPosix, defaultFileAcls, defaultDirectoryAcls);
+    }
+
+    private static List<AclEntry> processPermissions(UserPrincipal owner, AclEntryPermission[] defaultAclFilePermissions) {
+        AclEntry.Builder aclBuilder = AclEntry.newBuilder();
+        aclBuilder.setPermissions(defaultAclFilePermissions);
+        aclBuilder.setType(AclEntryType.ALLOW);
+        aclBuilder.setPrincipal(owner);
+        ArrayList<AclEntry> aclList = new ArrayList<>();
+        aclList.add(aclBuilder.build());
+        return Collections.unmodifiableList(aclList);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    boolean supportsAcl() {
+        return supportsAcl;
+    }
+
+    boolean supportsPosix() {
+        return supportsPosix;
+    }
+
+    List<AclEntry> getDefaultFileAcls() {
+        return defaultFileAcls;
+    }
+
+    List<AclEntry> getDefaultDirectoryAcls() {
+        return defaultDirectoryAcls;
+    }
+}
@@ -51,6 +51,7 @@ public class FilesystemStorage implements RepositoryStorage {
 
     private Path basePath;
     private final FileLockManager fileLockManager;
+    private volatile FilesystemCapabilities capabilities;
 
     public FilesystemStorage(Path basePath, FileLockManager fileLockManager) throws IOException {
         if (!Files.exists(basePath)) {
@@ -316,6 +317,22 @@ public void updateLocation(URI newLocation) throws IOException {
         }
     }
 
+    /**
+     * Returns the capabilities of the file store of the base path. They are probed once and shared by
+     * all assets of this storage.
+     *
+     * @return The capabilities of the file store.
+     */
+    FilesystemCapabilities getCapabilities() {
+        FilesystemCapabilities result = capabilities;
+        Path path = basePath;
+        if (result == null || !result.getPath().equals(path)) {
+            result = FilesystemCapabilities.probe(path);
+            capabilities = result;
+        }
+        return result;
+    }
+
     @Override
     public StorageAsset getAsset( String path )
     {
@@ -0,0 +1,119 @@
+package org.apache.archiva.repository.storage;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.filelock.DefaultFileLockManager;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the creation of filesystem assets, as done by the storage for new assets and their parents,
+ * and the listing of a directory with many entries, as done by the scans and the browsing.
+ *
+ * The benchmark is not run by the unit tests. Run it by the main method from the test classpath.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class FilesystemAssetBenchmark
+{
+    @Param( { "1000" } )
+    public int entries;
+
+    private Path repoDir;
+
+    private FilesystemStorage storage;
+
+    private StorageAsset directory;
+
+    @Setup( Level.Trial )
+    public void createRepository( )
+        throws Exception
+    {
+        repoDir = Files.createTempDirectory( "asset-benchmark" );
+        Path dir = Files.createDirectories( repoDir.resolve( "org/example/project/1.0" ) );
+        for ( int i = 0; i < entries; i++ )
+        {
+            Files.createFile( dir.resolve( "project-1.0-" + i + ".jar" ) );
+        }
+        storage = new FilesystemStorage( repoDir, new DefaultFileLockManager( ) );
+        directory = storage.getAsset( "org/example/project/1.0" );
+    }
+
+    @TearDown( Level.Trial )
+    public void removeRepository( )
+        throws Exception
+    {
+        FileUtils.deleteQuietly( repoDir.toFile( ) );
+    }
+
+    @Benchmark
+    public void createAsset( Blackhole blackhole )
+    {
+        blackhole.consume( storage.addAsset( "org/example/project/1.0/project-1.0.jar", false ) );
+    }
+
+    @Benchmark
+    public void createAssetWithPermissions( Blackhole blackhole )
+    {
+        Path assetPath = repoDir.resolve( "org/example/project/1.0/project-1.0.jar" );
+        blackhole.consume(
+            new FilesystemAsset( storage, "org/example/project/1.0/project-1.0.jar", assetPath, repoDir, false, true ) );
+    }
+
+    @Benchmark
+    public void listDirectory( Blackhole blackhole )
+    {
+        blackhole.consume( directory.list( ) );
+    }
+
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        Options options = new OptionsBuilder( )
+            .include( FilesystemAssetBenchmark.class.getSimpleName( ) )
+            .build( );
+        new Runner( options ).run( );
+    }
+}
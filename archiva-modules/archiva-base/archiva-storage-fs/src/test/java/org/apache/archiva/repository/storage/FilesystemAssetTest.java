@@ -200,4 +200,15 @@ public void getFilePath() {
         FilesystemAsset asset = new FilesystemAsset(filesystemStorage, "/test1234", assetPathFile);
         Assert.assertEquals(assetPathFile, asset.getFilePath());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void capabilitiesAreProbedOncePerStorage() {
+        FilesystemCapabilities capabilities = filesystemStorage.getCapabilities();
+        Assert.assertSame(capabilities, filesystemStorage.getCapabilities());
+        FilesystemAsset asset = new FilesystemAsset(filesystemStorage, "/test1234", assetPathFile, assetPathDir, false, true);
+        Assert.assertEquals(capabilities.supportsPosix(), asset.supportsPosix);
+        Assert.assertEquals(capabilities.supportsAcl(), asset.supportsAcl);
+        Assert.assertEquals(capabilities.getDefaultFileAcls(), asset.getDefaultFileAcls());
+        Assert.assertSame(capabilities, filesystemStorage.getCapabilities());
+    }
+}
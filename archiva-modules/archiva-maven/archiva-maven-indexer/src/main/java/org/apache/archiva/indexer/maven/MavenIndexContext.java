@@ -35,9 +35,11 @@
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.sql.Date;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * Maven implementation of index context
@@ -51,10 +53,19 @@ public class MavenIndexContext implements ArchivaIndexingContext {
     private IndexingContext delegate;
     private Repository repository;
     private StorageAsset dir = null;
+    private final Consumer<MavenIndexContext> closeListener;
 
     protected MavenIndexContext(Repository repository, IndexingContext delegate) {
+        this(repository, delegate, null);
+    }
+
+    /**
+     * @param closeListener called once, after the context was closed, may be <code>null</code>
+     */
+    MavenIndexContext(Repository repository, IndexingContext delegate, Consumer<MavenIndexContext> closeListener) {
         this.delegate = delegate;
         this.repository = repository;
+        this.closeListener = closeListener;
         this.openStatus.set(true);
 
     }
@@ -116,18 +127,20 @@ public void close(boolean deleteFiles) throws IOException {
                 delegate.close(deleteFiles);
             } catch (NoSuchFileException e) {
                 // Ignore missing directory
+            } finally {
+                fireClosed();
             }
         }
     }
 
     @Override
     public void close() throws IOException {
-        if (openStatus.compareAndSet(true,false)) {
-            try {
-                delegate.close(false);
-            } catch (NoSuchFileException e) {
-                // Ignore missing directory
-            }
+        close(false);
+    }
+
+    private void fireClosed() {
+        if (closeListener != null) {
+            closeListener.accept(this);
         }
     }
 
@@ -171,5 +184,11 @@ public void updateTimestamp(boolean save, ZonedDateTime time) throws IOException
         delegate.updateTimestamp(save, Date.from(time.toInstant()));
     }
 
+    @Override
+    public ZonedDateTime getTimestamp() {
+        java.util.Date timestamp = delegate.getTimestamp();
+        return timestamp == null ? null : ZonedDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault());
+    }
+
 
 }
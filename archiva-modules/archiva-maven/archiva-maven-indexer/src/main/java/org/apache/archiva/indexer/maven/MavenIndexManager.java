@@ -63,6 +63,7 @@
 import org.apache.maven.index.updater.IndexUpdater;
 import org.apache.maven.index.updater.ResourceFetcher;
 import org.apache.maven.index_shaded.lucene.index.IndexFormatTooOldException;
+import org.apache.maven.index_shaded.lucene.search.IndexSearcher;
 import org.apache.maven.wagon.ConnectionException;
 import org.apache.maven.wagon.ResourceDoesNotExistException;
 import org.apache.maven.wagon.StreamWagon;
@@ -90,19 +91,28 @@
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
  * Maven implementation of index manager.
  * The index manager is a singleton, so we try to make sure, that index operations are not running
- * parallel by synchronizing on the index path.
- * A update operation waits for parallel running methods to finish before starting, but after a certain
- * time of retries a IndexUpdateFailedException is thrown.
+ * parallel by locking the index path.
+ * A update operation waits for parallel running methods to finish before starting. The waiting operations
+ * get the index in the order of their arrival, but after a certain time a IndexUpdateFailedException is thrown.
+ * Artifact additions and removals, that arrive while the index is locked, are written together.
  */
 @Service( "archivaIndexManager#maven" )
 public class MavenIndexManager implements ArchivaIndexManager {
@@ -140,10 +150,52 @@ public class MavenIndexManager implements ArchivaIndexManager {
     private ProxyRegistry proxyRegistry;
 
 
-    private ConcurrentSkipListSet<StorageAsset> activeContexts = new ConcurrentSkipListSet<>( );
+    /**
+     * The writer locks of the index contexts, by index path.
+     */
+    private final ConcurrentSkipListMap<StorageAsset, ContextLock> contextLocks = new ConcurrentSkipListMap<>( );
+
+    /**
+     * The time in ms to wait for the release of a context, before the update fails.
+     */
+    private long lockTimeout = Long.getLong( "archiva.indexManager.lockTimeout", 10000 );
+
+    private final AtomicLong lockCount = new AtomicLong( );
+
+    private final AtomicLong lockWaitTime = new AtomicLong( );
+
+    private final AtomicLong maxLockWaitTime = new AtomicLong( );
+
+    private final AtomicLong lockTimeoutCount = new AtomicLong( );
+
+    private final AtomicLong coalescedUpdateCount = new AtomicLong( );
+
+    /**
+     * The lock of a index context. The lock is fair, so waiting updates get the context in the order of their
+     * arrival. Artifact additions and removals are queued, so that the thread, that gets the lock, applies all
+     * of them that are pending at this time.
+     */
+    private static final class ContextLock
+    {
+        final ReentrantLock lock = new ReentrantLock( true );
+
+        final Queue<ArtifactUpdate> pendingUpdates = new ConcurrentLinkedQueue<>( );
+    }
+
+    private static final class ArtifactUpdate
+    {
+        final boolean add;
 
-    private static final int WAIT_TIME = 100;
-    private static final int MAX_WAIT = 10;
+        final Collection<URI> artifactReferences;
+
+        final CompletableFuture<Void> done = new CompletableFuture<>( );
+
+        ArtifactUpdate( boolean add, Collection<URI> artifactReferences )
+        {
+            this.add = add;
+            this.artifactReferences = artifactReferences;
+        }
+    }
 
 
     public static IndexingContext getMvnContext( ArchivaIndexingContext context ) throws UnsupportedBaseContextException
@@ -191,36 +243,239 @@ private void executeUpdateFunction( ArchivaIndexingContext context, IndexUpdateC
         {
             throw new IndexUpdateFailedException( "Maven index is not supported by this context", e );
         }
-        final StorageAsset ctxPath = getIndexPath( context );
-        int loop = MAX_WAIT;
-        boolean active = false;
-        while ( loop-- > 0 && !active )
+        final ContextLock ctxLock = getContextLock( context );
+        lockContext( context, ctxLock );
+        try
+        {
+            function.accept( indexingContext );
+        }
+        finally
         {
-            active = activeContexts.add( ctxPath );
-            try
+            ctxLock.lock.unlock( );
+        }
+    }
+
+    private ContextLock getContextLock( ArchivaIndexingContext context )
+    {
+        return contextLocks.computeIfAbsent( getIndexPath( context ), path -> new ContextLock( ) );
+    }
+
+    /*
+     * Removes the lock of a closed context. A lock, that is held or waited for, is kept, because a new context
+     * for the same index path may use it.
+     */
+    private void removeContextLock( ArchivaIndexingContext context )
+    {
+        StorageAsset path = getIndexPath( context );
+        ContextLock ctxLock = path == null ? null : contextLocks.get( path );
+        if ( ctxLock != null && !ctxLock.lock.isLocked( ) && !ctxLock.lock.hasQueuedThreads( )
+            && ctxLock.pendingUpdates.isEmpty( ) )
+        {
+            contextLocks.remove( path, ctxLock );
+        }
+    }
+
+    /**
+     * @return the number of index contexts with a lock entry
+     */
+    int getContextLockCount( )
+    {
+        return contextLocks.size( );
+    }
+
+    private void lockContext( ArchivaIndexingContext context, ContextLock ctxLock ) throws IndexUpdateFailedException
+    {
+        long start = System.currentTimeMillis( );
+        boolean locked;
+        try
+        {
+            locked = ctxLock.lock.tryLock( lockTimeout, TimeUnit.MILLISECONDS );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new IndexUpdateFailedException( "Interrupted while waiting for index release on context " + context.getId( ), e );
+        }
+        if ( !locked )
+        {
+            lockTimeoutCount.incrementAndGet( );
+            throw new IndexUpdateFailedException( "Timeout while waiting for index release on context " + context.getId( ) );
+        }
+        long waitTime = System.currentTimeMillis( ) - start;
+        lockCount.incrementAndGet( );
+        lockWaitTime.addAndGet( waitTime );
+        maxLockWaitTime.accumulateAndGet( waitTime, Math::max );
+        if ( waitTime > 1000 )
+        {
+            log.debug( "Waited {} ms for index context {}", waitTime, context.getId( ) );
+        }
+    }
+
+    /*
+     * Queues the addition or removal of artifacts. If another thread holds the context, the update is applied
+     * together with the other pending updates by the next thread that gets the context.
+     */
+    private void executeArtifactUpdate( final ArchivaIndexingContext context, final ArtifactUpdate update ) throws IndexUpdateFailedException
+    {
+        final ContextLock ctxLock = getContextLock( context );
+        ctxLock.pendingUpdates.add( update );
+        try
+        {
+            executeUpdateFunction( context, indexingContext -> applyPendingUpdates( context, ctxLock, indexingContext ) );
+        }
+        catch ( IndexUpdateFailedException e )
+        {
+            if ( ctxLock.pendingUpdates.remove( update ) )
             {
-                Thread.currentThread( ).sleep( WAIT_TIME );
+                throw e;
             }
-            catch ( InterruptedException e )
+            // the update was taken by the thread holding the context
+        }
+        try
+        {
+            update.done.get( );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new IndexUpdateFailedException( "Interrupted while waiting for index update on context " + context.getId( ), e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause( ) instanceof IndexUpdateFailedException )
             {
-                // Ignore this
+                throw (IndexUpdateFailedException) e.getCause( );
             }
+            throw new IndexUpdateFailedException( "Error during index update of " + context.getId( ), e.getCause( ) );
         }
-        if ( active )
+    }
+
+    /*
+     * Applies the pending updates in their order. Consecutive updates of the same kind are written with one call.
+     */
+    private void applyPendingUpdates( ArchivaIndexingContext context, ContextLock ctxLock, IndexingContext indexingContext )
+    {
+        List<ArtifactUpdate> updates = new ArrayList<>( );
+        ArtifactUpdate update;
+        while ( ( update = ctxLock.pendingUpdates.poll( ) ) != null )
         {
-            try
+            if ( !updates.isEmpty( ) && updates.get( 0 ).add != update.add )
             {
-                function.accept( indexingContext );
+                applyUpdates( context, indexingContext, updates );
+                updates.clear( );
             }
-            finally
+            updates.add( update );
+        }
+        if ( !updates.isEmpty( ) )
+        {
+            applyUpdates( context, indexingContext, updates );
+        }
+    }
+
+    private void applyUpdates( ArchivaIndexingContext context, IndexingContext indexingContext, List<ArtifactUpdate> updates )
+    {
+        final StorageAsset ctxUri = context.getPath();
+        boolean add = updates.get( 0 ).add;
+        if ( updates.size( ) > 1 )
+        {
+            coalescedUpdateCount.addAndGet( updates.size( ) - 1 );
+        }
+        try
+        {
+            Collection<ArtifactContext> artifacts = updates.stream( ).flatMap( u -> u.artifactReferences.stream( ) )
+                .map(r -> artifactContextProducer.getArtifactContext(indexingContext, Paths.get(ctxUri.getFilePath().toUri().resolve(r)).toFile())).collect(Collectors.toList());
+            if ( add )
+            {
+                indexer.addArtifactsToIndex( artifacts, indexingContext );
+            }
+            else
             {
-                activeContexts.remove( ctxPath );
+                indexer.deleteArtifactsFromIndex( artifacts, indexingContext );
             }
+            updates.forEach( u -> u.done.complete( null ) );
         }
-        else
+        catch ( IOException e )
         {
-            throw new IndexUpdateFailedException( "Timeout while waiting for index release on context " + context.getId( ) );
+            IndexUpdateFailedException failure;
+            if ( add )
+            {
+                log.error("IOException while adding artifact {}", e.getMessage(), e);
+                failure = new IndexUpdateFailedException("Error occured while adding artifact to index of "+context.getId()
+                    + (StringUtils.isNotEmpty(e.getMessage()) ? ": "+e.getMessage() : ""));
+            }
+            else
+            {
+                log.error("IOException while removing artifact {}", e.getMessage(), e);
+                failure = new IndexUpdateFailedException("Error occured while removing artifact from index of "+context.getId()
+                    + (StringUtils.isNotEmpty(e.getMessage()) ? ": "+e.getMessage() : ""));
+            }
+            updates.forEach( u -> u.done.completeExceptionally( failure ) );
         }
+        catch ( RuntimeException e )
+        {
+            updates.forEach( u -> u.done.completeExceptionally( e ) );
+        }
+    }
+
+    /**
+     * @return the number of threads waiting for the release of the given index context
+     */
+    public int getQueueDepth( ArchivaIndexingContext context )
+    {
+        ContextLock ctxLock = contextLocks.get( getIndexPath( context ) );
+        return ctxLock == null ? 0 : ctxLock.lock.getQueueLength( );
+    }
+
+    /**
+     * @return the number of threads waiting for the release of any index context
+     */
+    public int getQueueDepth( )
+    {
+        return contextLocks.values( ).stream( ).mapToInt( l -> l.lock.getQueueLength( ) ).sum( );
+    }
+
+    /**
+     * @return the number of times, a index context was locked for an update
+     */
+    public long getLockCount( )
+    {
+        return lockCount.get( );
+    }
+
+    /**
+     * @return the total time in ms, updates waited for the release of a index context
+     */
+    public long getLockWaitTime( )
+    {
+        return lockWaitTime.get( );
+    }
+
+    public long getMaxLockWaitTime( )
+    {
+        return maxLockWaitTime.get( );
+    }
+
+    public long getLockTimeoutCount( )
+    {
+        return lockTimeoutCount.get( );
+    }
+
+    /**
+     * @return the number of artifact updates, that have been written together with a previous update
+     */
+    public long getCoalescedUpdateCount( )
+    {
+        return coalescedUpdateCount.get( );
+    }
+
+    public long getLockTimeout( )
+    {
+        return lockTimeout;
+    }
+
+    public void setLockTimeout( long lockTimeout )
+    {
+        this.lockTimeout = lockTimeout;
     }
 
     @Override
@@ -245,6 +500,46 @@ public void pack( final ArchivaIndexingContext context ) throws IndexUpdateFaile
 
     }
 
+    @Override
+    public void pack( final ArchivaIndexingContext context, final StorageAsset destination ) throws IndexUpdateFailedException
+    {
+        executeUpdateFunction( context, indexingContext -> {
+                IndexSearcher searcher = null;
+                try
+                {
+                    searcher = indexingContext.acquireIndexSearcher( );
+                    IndexPackingRequest request = new IndexPackingRequest( indexingContext,
+                        searcher.getIndexReader( ), destination.getFilePath( ).toFile( ) );
+                    indexPacker.packIndex( request );
+                }
+                catch ( IOException e )
+                {
+                    log.error( "IOException while packing index of context " + context.getId( ) + ( StringUtils.isNotEmpty( e.getMessage( ) ) ? ": " + e.getMessage( ) : "" ) );
+                    throw new IndexUpdateFailedException( "IOException during packing of " + context.getId( ), e );
+                }
+                finally
+                {
+                    releaseSearcher( indexingContext, searcher );
+                }
+            }
+        );
+    }
+
+    private void releaseSearcher( IndexingContext indexingContext, IndexSearcher searcher )
+    {
+        if ( searcher != null )
+        {
+            try
+            {
+                indexingContext.releaseIndexSearcher( searcher );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Could not release searcher of context {}: {}", indexingContext.getId( ), e.getMessage( ) );
+            }
+        }
+    }
+
     @Override
     public void scan(final ArchivaIndexingContext context) throws IndexUpdateFailedException
     {
@@ -401,34 +696,13 @@ public void update(final ArchivaIndexingContext context, final boolean fullUpdat
     @Override
     public void addArtifactsToIndex( final ArchivaIndexingContext context, final Collection<URI> artifactReference ) throws IndexUpdateFailedException
     {
-        final StorageAsset ctxUri = context.getPath();
-        executeUpdateFunction(context, indexingContext -> {
-            Collection<ArtifactContext> artifacts = artifactReference.stream().map(r -> artifactContextProducer.getArtifactContext(indexingContext, Paths.get(ctxUri.getFilePath().toUri().resolve(r)).toFile())).collect(Collectors.toList());
-            try {
-                indexer.addArtifactsToIndex(artifacts, indexingContext);
-            } catch (IOException e) {
-                log.error("IOException while adding artifact {}", e.getMessage(), e);
-                throw new IndexUpdateFailedException("Error occured while adding artifact to index of "+context.getId()
-                + (StringUtils.isNotEmpty(e.getMessage()) ? ": "+e.getMessage() : ""));
-            }
-        });
+        executeArtifactUpdate( context, new ArtifactUpdate( true, artifactReference ) );
     }
 
     @Override
     public void removeArtifactsFromIndex( ArchivaIndexingContext context, Collection<URI> artifactReference ) throws IndexUpdateFailedException
     {
-        final StorageAsset ctxUri = context.getPath();
-        executeUpdateFunction(context, indexingContext -> {
-            Collection<ArtifactContext> artifacts = artifactReference.stream().map(r -> artifactContextProducer.getArtifactContext(indexingContext, Paths.get(ctxUri.getFilePath().toUri().resolve(r)).toFile())).collect(Collectors.toList());
-            try {
-                indexer.deleteArtifactsFromIndex(artifacts, indexingContext);
-            } catch (IOException e) {
-                log.error("IOException while removing artifact {}", e.getMessage(), e);
-                throw new IndexUpdateFailedException("Error occured while removing artifact from index of "+context.getId()
-                        + (StringUtils.isNotEmpty(e.getMessage()) ? ": "+e.getMessage() : ""));
-            }
-        });
-
+        executeArtifactUpdate( context, new ArtifactUpdate( false, artifactReference ) );
     }
 
     @Override
@@ -464,7 +738,7 @@ else if ( repository instanceof ManagedRepository )
                 + ( StringUtils.isNotEmpty( e.getMessage( ) ) ? ": " + e.getMessage( ) : "" ), e );
         }
 
-        return new MavenIndexContext( repository, mvnCtx );
+        return new MavenIndexContext( repository, mvnCtx, this::removeContextLock );
     }
 
     @Override
@@ -549,6 +823,17 @@ public ArchivaIndexingContext mergeContexts(Repository destinationRepo, List<Arc
         if (!destinationRepo.supportsFeature(IndexCreationFeature.class)) {
             throw new IllegalArgumentException("The given repository does not support the indexcreation feature");
         }
+        IndexCreationFeature indexCreationFeature = destinationRepo.getFeature(IndexCreationFeature.class).get();
+        if (indexCreationFeature.getLocalIndexPath()== null) {
+            throw new IllegalArgumentException("The given repository does not have a local index path");
+        }
+        return mergeContexts(destinationRepo, contexts, packIndex, indexCreationFeature.getLocalIndexPath());
+    }
+
+    @Override
+    public ArchivaIndexingContext mergeContexts(Repository destinationRepo, List<ArchivaIndexingContext> contexts,
+                                                boolean packIndex, StorageAsset destinationPath) throws UnsupportedOperationException,
+            IndexCreationFailedException, IllegalArgumentException {
         Path mergedIndexDirectory = null;
         try {
             mergedIndexDirectory = Files.createTempDirectory("archivaMergedIndex");
@@ -556,11 +841,6 @@ public ArchivaIndexingContext mergeContexts(Repository destinationRepo, List<Arc
             log.error("Could not create temporary directory for merged index: {}", e.getMessage(), e);
             throw new IndexCreationFailedException("IO error while creating temporary directory for merged index: "+e.getMessage(), e);
         }
-        IndexCreationFeature indexCreationFeature = destinationRepo.getFeature(IndexCreationFeature.class).get();
-        if (indexCreationFeature.getLocalIndexPath()== null) {
-            throw new IllegalArgumentException("The given repository does not have a local index path");
-        }
-        StorageAsset destinationPath = indexCreationFeature.getLocalIndexPath();
 
         String tempRepoId = mergedIndexDirectory.getFileName().toString();
 
@@ -590,7 +870,7 @@ public ArchivaIndexingContext mergeContexts(Repository destinationRepo, List<Arc
                 indexPacker.packIndex( request );
             }
 
-            return new MavenIndexContext(destinationRepo, mergedCtx);
+            return new MavenIndexContext(destinationRepo, mergedCtx, this::removeContextLock);
         }
         catch ( IOException e)
         {
@@ -33,6 +33,7 @@
 import org.apache.archiva.indexer.search.SearchResults;
 import org.apache.archiva.indexer.util.SearchUtil;
 import org.apache.archiva.model.ArchivaArtifactModel;
+import org.apache.archiva.redback.components.cache.Cache;
 import org.apache.archiva.repository.RemoteRepository;
 import org.apache.archiva.repository.Repository;
 import org.apache.archiva.repository.RepositoryRegistry;
@@ -42,6 +43,8 @@
 import org.apache.maven.index.FlatSearchRequest;
 import org.apache.maven.index.FlatSearchResponse;
 import org.apache.maven.index.Indexer;
+import org.apache.maven.index.IteratorSearchRequest;
+import org.apache.maven.index.IteratorSearchResponse;
 import org.apache.maven.index.MAVEN;
 import org.apache.maven.index.OSGI;
 import org.apache.maven.index.QueryCreator;
@@ -51,14 +54,17 @@
 import org.apache.maven.index.expr.SearchTyped;
 import org.apache.maven.index.expr.SourcedSearchExpression;
 import org.apache.maven.index.expr.UserInputSearchExpression;
+import org.apache.maven.index_shaded.lucene.index.DirectoryReader;
 import org.apache.maven.index_shaded.lucene.search.BooleanClause;
 import org.apache.maven.index_shaded.lucene.search.BooleanClause.Occur;
 import org.apache.maven.index_shaded.lucene.search.BooleanQuery;
+import org.apache.maven.index_shaded.lucene.search.IndexSearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -67,6 +73,10 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * RepositorySearch implementation which uses the Maven Indexer for searching.
@@ -86,6 +96,22 @@
 
     private ProxyConnectorAdmin proxyConnectorAdmin;
 
+    /**
+     * Search results by query, repositories and index versions. The results must not be modified.
+     */
+    @Inject
+    @Named( value = "cache#searchResults" )
+    private Cache<String, SearchResults> searchResultCache;
+
+    @Inject
+    @Named( value = "cache#searchGroupIds" )
+    private Cache<String, Collection<String>> groupIdCache;
+
+    /**
+     * Results with more hits are not cached, they would use too much memory.
+     */
+    private int maxCachedHits = Integer.getInteger( "archiva.search.cacheMaxHits", 1000 );
+
     protected MavenRepositorySearch()
     {
         // for test purpose
@@ -102,6 +128,16 @@ public MavenRepositorySearch( Indexer nexusIndexer, RepositoryRegistry repositor
         this.proxyConnectorAdmin = proxyConnectorAdmin;
     }
 
+    public void setSearchResultCache( Cache<String, SearchResults> searchResultCache )
+    {
+        this.searchResultCache = searchResultCache;
+    }
+
+    public void setGroupIdCache( Cache<String, Collection<String>> groupIdCache )
+    {
+        this.groupIdCache = groupIdCache;
+    }
+
     /**
      * @see RepositorySearch#search(String, List, String, SearchResultLimits, List)
      */
@@ -112,29 +148,7 @@ public SearchResults search(String principal, List<String> selectedRepos, String
     {
         List<String> indexingContextIds = addIndexingContexts( selectedRepos );
 
-        // since upgrade to nexus 2.0.0, query has changed from g:[QUERIED TERM]* to g:*[QUERIED TERM]*
-        //      resulting to more wildcard searches so we need to increase max clause count
-        BooleanQuery.setMaxClauseCount( Integer.MAX_VALUE );
-        BooleanQuery.Builder qb = new BooleanQuery.Builder();
-
-        if ( previousSearchTerms == null || previousSearchTerms.isEmpty() )
-        {
-            constructQuery( term, qb );
-        }
-        else
-        {
-            for ( String previousTerm : previousSearchTerms )
-            {
-                BooleanQuery.Builder iQuery = new BooleanQuery.Builder();
-                constructQuery( previousTerm, iQuery );
-
-                qb.add( iQuery.build(), BooleanClause.Occur.MUST );
-            }
-
-            BooleanQuery.Builder iQuery = new BooleanQuery.Builder();
-            constructQuery( term, iQuery );
-            qb.add( iQuery.build(), BooleanClause.Occur.MUST );
-        }
+        BooleanQuery.Builder qb = buildQuickSearchQuery( term, previousSearchTerms );
 
         // we retun only artifacts without classifier in quick search, olamy cannot find a way to say with this field empty
         // FIXME  cannot find a way currently to setup this in constructQuery !!!
@@ -145,7 +159,6 @@ public SearchResults search(String principal, List<String> selectedRepos, String
     /**
      * @see RepositorySearch#search(String, SearchFields, SearchResultLimits)
      */
-    @SuppressWarnings( "deprecation" )
     @Override
     public SearchResults search( String principal, SearchFields searchFields, SearchResultLimits limits )
         throws RepositorySearchException
@@ -165,6 +178,85 @@ public SearchResults search( String principal, SearchFields searchFields, Search
             return new SearchResults();
         }
 
+        BooleanQuery qu = buildAdvancedQuery( searchFields );
+
+        return search( limits, qu, indexingContextIds, Collections.<ArtifactInfoFilter>emptyList(),
+                       searchFields.getRepositories(), searchFields.isIncludePomArtifacts() );
+    }
+
+    /**
+     * @see RepositorySearch#searchStream(String, List, String, List)
+     */
+    @Override
+    public Stream<SearchResultHit> searchStream( String principal, List<String> selectedRepos, String term,
+                                                 List<String> previousSearchTerms )
+        throws RepositorySearchException
+    {
+        List<String> indexingContextIds = addIndexingContexts( selectedRepos );
+
+        BooleanQuery.Builder qb = buildQuickSearchQuery( term, previousSearchTerms );
+
+        return searchStream( qb.build(), indexingContextIds, NoClassifierArtifactInfoFilter.LIST, selectedRepos,
+                             true );
+    }
+
+    /**
+     * @see RepositorySearch#searchStream(String, SearchFields)
+     */
+    @Override
+    public Stream<SearchResultHit> searchStream( String principal, SearchFields searchFields )
+        throws RepositorySearchException
+    {
+        if ( searchFields.getRepositories() == null )
+        {
+            throw new RepositorySearchException( "Repositories cannot be null." );
+        }
+
+        List<String> indexingContextIds = addIndexingContexts( searchFields.getRepositories() );
+
+        if ( !searchFields.getRepositories().isEmpty() && indexingContextIds.isEmpty() )
+        {
+            return Stream.empty();
+        }
+
+        return searchStream( buildAdvancedQuery( searchFields ), indexingContextIds,
+                             Collections.<ArtifactInfoFilter>emptyList(), searchFields.getRepositories(),
+                             searchFields.isIncludePomArtifacts() );
+    }
+
+    private BooleanQuery.Builder buildQuickSearchQuery( String term, List<String> previousSearchTerms )
+    {
+        // since upgrade to nexus 2.0.0, query has changed from g:[QUERIED TERM]* to g:*[QUERIED TERM]*
+        //      resulting to more wildcard searches so we need to increase max clause count
+        BooleanQuery.setMaxClauseCount( Integer.MAX_VALUE );
+        BooleanQuery.Builder qb = new BooleanQuery.Builder();
+
+        if ( previousSearchTerms == null || previousSearchTerms.isEmpty() )
+        {
+            constructQuery( term, qb );
+        }
+        else
+        {
+            for ( String previousTerm : previousSearchTerms )
+            {
+                BooleanQuery.Builder iQuery = new BooleanQuery.Builder();
+                constructQuery( previousTerm, iQuery );
+
+                qb.add( iQuery.build(), BooleanClause.Occur.MUST );
+            }
+
+            BooleanQuery.Builder iQuery = new BooleanQuery.Builder();
+            constructQuery( term, iQuery );
+            qb.add( iQuery.build(), BooleanClause.Occur.MUST );
+        }
+
+        return qb;
+    }
+
+    @SuppressWarnings( "deprecation" )
+    private BooleanQuery buildAdvancedQuery( SearchFields searchFields )
+        throws RepositorySearchException
+    {
         BooleanQuery.Builder qb = new BooleanQuery.Builder();
         if ( StringUtils.isNotBlank( searchFields.getGroupId() ) )
         {
@@ -282,8 +374,7 @@ else if ( searchFields.isExactSearch() )
             }
         }
 
-        return search( limits, qu, indexingContextIds, Collections.<ArtifactInfoFilter>emptyList(),
-                       searchFields.getRepositories(), searchFields.isIncludePomArtifacts() );
+        return qu;
     }
 
     private static class NullSearch
@@ -309,20 +400,45 @@ private SearchResults search( SearchResultLimits limits, BooleanQuery q, List<St
                                   boolean includePoms )
         throws RepositorySearchException
     {
+        List<IndexingContext> contexts = getIndexingContexts( indexingContextIds );
+
+        String cacheKey = null;
+        if ( searchResultCache != null )
+        {
+            cacheKey = getCacheKey( contexts, q.toString(), filters.toString(), String.valueOf( includePoms ),
+                                    new TreeSet<>( selectedRepos ).toString(), limits == null ? "all"
+                                        : limits.getSelectedPage() + "/" + limits.getPageSize() );
+            SearchResults cached = cacheKey == null ? null : searchResultCache.get( cacheKey );
+            if ( cached != null )
+            {
+                return cached;
+            }
+        }
+
+        SearchResults results = search( limits, q, contexts, filters, selectedRepos, includePoms );
+        if ( cacheKey != null && results.getHitsMap().size() <= maxCachedHits )
+        {
+            searchResultCache.put( cacheKey, results );
+        }
+        return results;
+    }
+
+    private SearchResults search( SearchResultLimits limits, BooleanQuery q, List<IndexingContext> contexts,
+                                  List<? extends ArtifactInfoFilter> filters, List<String> selectedRepos,
+                                  boolean includePoms )
+        throws RepositorySearchException
+    {
+
+        if ( limits != null && limits.getSelectedPage() != SearchResultLimits.ALL_PAGES )
+        {
+            return searchPage( limits, q, contexts, filters, selectedRepos, includePoms );
+        }
 
         try
         {
             FlatSearchRequest request = new FlatSearchRequest( q );
 
-            request.setContexts( getIndexingContexts( indexingContextIds ) );
-            if ( limits != null )
-            {
-                // we apply limits only when first page asked
-                if ( limits.getSelectedPage() == 0 )
-                {
-                    request.setCount( limits.getPageSize() * ( Math.max( 1, limits.getSelectedPage() ) ) );
-                }
-            }
+            request.setContexts( contexts );
 
             FlatSearchResponse response = indexer.searchFlat( request );
 
@@ -346,6 +462,180 @@ private SearchResults search( SearchResultLimits limits, BooleanQuery q, List<St
 
     }
 
+    /**
+     * Returns the cache key for a query on the given contexts. The key contains the index version and the timestamp
+     * of each context, so a commit to one of the indexes results in a new key and the old entry is never used again.
+     *
+     * @return the key or <code>null</code>, if the version of an index is not known
+     */
+    private String getCacheKey( List<IndexingContext> contexts, String... query )
+    {
+        StringBuilder key = new StringBuilder();
+        for ( String part : query )
+        {
+            key.append( part ).append( '|' );
+        }
+        Map<String, IndexingContext> sortedContexts = new TreeMap<>();
+        for ( IndexingContext context : contexts )
+        {
+            sortedContexts.put( context.getId(), context );
+        }
+        try
+        {
+            for ( IndexingContext context : sortedContexts.values() )
+            {
+                IndexSearcher searcher = context.acquireIndexSearcher();
+                try
+                {
+                    if ( !( searcher.getIndexReader() instanceof DirectoryReader ) )
+                    {
+                        return null;
+                    }
+                    key.append( context.getId() ).append( ':' );
+                    key.append( ( (DirectoryReader) searcher.getIndexReader() ).getVersion() ).append( ':' );
+                    key.append( context.getTimestamp() == null ? 0 : context.getTimestamp().getTime() ).append( ',' );
+                }
+                finally
+                {
+                    context.releaseIndexSearcher( searcher );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            log.debug( "Could not read the index version: {}", e.getMessage() );
+            return null;
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a single page of the search result. The index hits are read lazily in the order of their relevance,
+     * the artifacts of a page are the ones found first. Only the hits of the selected page are converted, for the
+     * hits of the previous pages only the ids are kept. The reading stops at the first hit of the next page, so
+     * the cost depends on the selected page and not on the size of the result.
+     *
+     * Versions of a page artifact that are found after the first hit of the next page are not part of the result.
+     */
+    private SearchResults searchPage( SearchResultLimits limits, BooleanQuery q, List<IndexingContext> contexts,
+                                      List<? extends ArtifactInfoFilter> filters, List<String> selectedRepos,
+                                      boolean includePoms )
+        throws RepositorySearchException
+    {
+        int offset = limits.getSelectedPage() * limits.getPageSize();
+        int end = offset + limits.getPageSize();
+
+        SearchResults results = new SearchResults();
+        results.setLimits( limits );
+
+        IteratorSearchRequest request = new IteratorSearchRequest( q, contexts );
+        try ( IteratorSearchResponse response = indexer.searchIterator( request ) )
+        {
+            if ( response == null || response.getTotalHitsCount() == 0 )
+            {
+                return results;
+            }
+
+            Map<String, List<ProxyConnector>> proxyConnectorMap = proxyConnectorAdmin.getProxyConnectorAsMap();
+            Map<String, SearchResultHit> hitsMap = results.getHitsMap();
+            Set<String> previousPages = new HashSet<>();
+            for ( ArtifactInfo artifactInfo : response )
+            {
+                if ( StringUtils.equalsIgnoreCase( "pom", artifactInfo.getFileExtension() ) && !includePoms )
+                {
+                    continue;
+                }
+                String id = SearchUtil.getHitId( artifactInfo.getGroupId(), //
+                                                 artifactInfo.getArtifactId(), //
+                                                 artifactInfo.getClassifier(), //
+                                                 artifactInfo.getPackaging() );
+                if ( previousPages.contains( id ) || !applyArtifactInfoFilters( artifactInfo, filters, hitsMap ) )
+                {
+                    continue;
+                }
+                SearchResultHit hit = hitsMap.get( id );
+                if ( hit == null && previousPages.size() + hitsMap.size() >= end )
+                {
+                    break;
+                }
+                if ( hit != null )
+                {
+                    if ( !hit.getVersions().contains( artifactInfo.getVersion() ) )
+                    {
+                        hit.addVersion( artifactInfo.getVersion() );
+                    }
+                }
+                else if ( previousPages.size() < offset )
+                {
+                    previousPages.add( id );
+                }
+                else
+                {
+                    results.addHit( id, createHit( artifactInfo, selectedRepos, proxyConnectorMap ) );
+                }
+            }
+
+            results.setTotalHits( response.getTotalHitsCount() );
+            results.setTotalHitsMapSize( previousPages.size() + hitsMap.size() );
+            results.setReturnedHitsCount( hitsMap.size() );
+            return results;
+        }
+        catch ( IOException e )
+        {
+            throw new RepositorySearchException( e.getMessage(), e );
+        }
+        catch ( RepositoryAdminException e )
+        {
+            throw new RepositorySearchException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Returns a stream, that reads the index hits lazily. Each artifact of the index is returned as a separate hit
+     * with a single version. The stream keeps the index searcher open and must be closed.
+     */
+    private Stream<SearchResultHit> searchStream( BooleanQuery q, List<String> indexingContextIds,
+                                                  List<? extends ArtifactInfoFilter> filters,
+                                                  final List<String> selectedRepos, final boolean includePoms )
+        throws RepositorySearchException
+    {
+        final Map<String, List<ProxyConnector>> proxyConnectorMap;
+        final IteratorSearchResponse response;
+        try
+        {
+            proxyConnectorMap = proxyConnectorAdmin.getProxyConnectorAsMap();
+            response = indexer.searchIterator( new IteratorSearchRequest( q, getIndexingContexts( indexingContextIds ) ) );
+        }
+        catch ( IOException e )
+        {
+            throw new RepositorySearchException( e.getMessage(), e );
+        }
+        catch ( RepositoryAdminException e )
+        {
+            throw new RepositorySearchException( e.getMessage(), e );
+        }
+        if ( response == null )
+        {
+            return Stream.empty();
+        }
+
+        final Map<String, SearchResultHit> noHits = Collections.emptyMap();
+        return StreamSupport.stream( response.spliterator(), false ) //
+            .filter( artifactInfo -> includePoms || !StringUtils.equalsIgnoreCase( "pom", artifactInfo.getFileExtension() ) ) //
+            .filter( artifactInfo -> applyArtifactInfoFilters( artifactInfo, filters, noHits ) ) //
+            .map( artifactInfo -> createHit( artifactInfo, selectedRepos, proxyConnectorMap ) ) //
+            .onClose( () -> {
+                try
+                {
+                    response.close();
+                }
+                catch ( IOException e )
+                {
+                    log.warn( "Could not close the search response: {}", e.getMessage() );
+                }
+            } );
+    }
+
     private IndexingContext getIndexingContext(String id) {
         String repoId;
         if (StringUtils.startsWith(id, "remote-")) {
@@ -504,6 +794,13 @@ public Collection<String> getAllGroupIds( String principal, List<String> selecte
             return Collections.emptyList();
         }
 
+        String cacheKey = groupIdCache == null ? null : getCacheKey( indexContexts, "groupIds" );
+        Collection<String> cached = cacheKey == null ? null : groupIdCache.get( cacheKey );
+        if ( cached != null )
+        {
+            return cached;
+        }
+
         try
         {
             Set<String> allGroupIds = new HashSet<>();
@@ -511,6 +808,10 @@ public Collection<String> getAllGroupIds( String principal, List<String> selecte
             {
                 allGroupIds.addAll( indexingContext.getAllGroups() );
             }
+            if ( cacheKey != null )
+            {
+                groupIdCache.put( cacheKey, Collections.unmodifiableSet( allGroupIds ) );
+            }
             return allGroupIds;
         }
         catch ( IOException e )
@@ -527,6 +828,7 @@ private SearchResults convertToSearchResults( FlatSearchResponse response, Searc
     {
         SearchResults results = new SearchResults();
         Set<ArtifactInfo> artifactInfos = response.getResults();
+        Map<String, List<ProxyConnector>> proxyConnectorMap = proxyConnectorAdmin.getProxyConnectorAsMap();
 
         for ( ArtifactInfo artifactInfo : artifactInfos )
         {
@@ -556,28 +858,7 @@ private SearchResults convertToSearchResults( FlatSearchResponse response, Searc
             }
             else
             {
-                hit = new SearchResultHit();
-                hit.setArtifactId( artifactInfo.getArtifactId() );
-                hit.setGroupId( artifactInfo.getGroupId() );
-                hit.setRepositoryId( artifactInfo.getRepository() );
-                hit.addVersion( artifactInfo.getVersion() );
-                hit.setBundleExportPackage( artifactInfo.getBundleExportPackage() );
-                hit.setBundleExportService( artifactInfo.getBundleExportService() );
-                hit.setBundleSymbolicName( artifactInfo.getBundleSymbolicName() );
-                hit.setBundleVersion( artifactInfo.getBundleVersion() );
-                hit.setBundleDescription( artifactInfo.getBundleDescription() );
-                hit.setBundleDocUrl( artifactInfo.getBundleDocUrl() );
-                hit.setBundleRequireBundle( artifactInfo.getBundleRequireBundle() );
-                hit.setBundleImportPackage( artifactInfo.getBundleImportPackage() );
-                hit.setBundleLicense( artifactInfo.getBundleLicense() );
-                hit.setBundleName( artifactInfo.getBundleName() );
-                hit.setContext( artifactInfo.getContext() );
-                hit.setGoals( artifactInfo.getGoals() );
-                hit.setPrefix( artifactInfo.getPrefix() );
-                hit.setPackaging( artifactInfo.getPackaging() );
-                hit.setClassifier( artifactInfo.getClassifier() );
-                hit.setFileExtension( artifactInfo.getFileExtension() );
-                hit.setUrl( getBaseUrl( artifactInfo, selectedRepos ) );
+                hit = createHit( artifactInfo, selectedRepos, proxyConnectorMap );
             }
 
             results.addHit( id, hit );
@@ -598,6 +879,34 @@ private SearchResults convertToSearchResults( FlatSearchResponse response, Searc
         }
     }
 
+    private SearchResultHit createHit( ArtifactInfo artifactInfo, List<String> selectedRepos,
+                                      Map<String, List<ProxyConnector>> proxyConnectorMap )
+    {
+        SearchResultHit hit = new SearchResultHit();
+        hit.setArtifactId( artifactInfo.getArtifactId() );
+        hit.setGroupId( artifactInfo.getGroupId() );
+        hit.setRepositoryId( artifactInfo.getRepository() );
+        hit.addVersion( artifactInfo.getVersion() );
+        hit.setBundleExportPackage( artifactInfo.getBundleExportPackage() );
+        hit.setBundleExportService( artifactInfo.getBundleExportService() );
+        hit.setBundleSymbolicName( artifactInfo.getBundleSymbolicName() );
+        hit.setBundleVersion( artifactInfo.getBundleVersion() );
+        hit.setBundleDescription( artifactInfo.getBundleDescription() );
+        hit.setBundleDocUrl( artifactInfo.getBundleDocUrl() );
+        hit.setBundleRequireBundle( artifactInfo.getBundleRequireBundle() );
+        hit.setBundleImportPackage( artifactInfo.getBundleImportPackage() );
+        hit.setBundleLicense( artifactInfo.getBundleLicense() );
+        hit.setBundleName( artifactInfo.getBundleName() );
+        hit.setContext( artifactInfo.getContext() );
+        hit.setGoals( artifactInfo.getGoals() );
+        hit.setPrefix( artifactInfo.getPrefix() );
+        hit.setPackaging( artifactInfo.getPackaging() );
+        hit.setClassifier( artifactInfo.getClassifier() );
+        hit.setFileExtension( artifactInfo.getFileExtension() );
+        hit.setUrl( getBaseUrl( artifactInfo, selectedRepos, proxyConnectorMap ) );
+        return hit;
+    }
+
     /**
      * calculate baseUrl without the context and base Archiva Url
      *
@@ -606,6 +915,12 @@ private SearchResults convertToSearchResults( FlatSearchResponse response, Searc
      */
     protected String getBaseUrl( ArtifactInfo artifactInfo, List<String> selectedRepos )
         throws RepositoryAdminException
+    {
+        return getBaseUrl( artifactInfo, selectedRepos, proxyConnectorAdmin.getProxyConnectorAsMap() );
+    }
+
+    private String getBaseUrl( ArtifactInfo artifactInfo, List<String> selectedRepos,
+                               Map<String, List<ProxyConnector>> proxyConnectorMap )
     {
         StringBuilder sb = new StringBuilder();
         if ( StringUtils.startsWith( artifactInfo.getContext(), "remote-" ) )
@@ -613,7 +928,8 @@ protected String getBaseUrl( ArtifactInfo artifactInfo, List<String> selectedRep
             // it's a remote index result we search a managed which proxying this remote and on which
             // current user has read karma
             String managedRepoId =
-                getManagedRepoId( StringUtils.substringAfter( artifactInfo.getContext(), "remote-" ), selectedRepos );
+                getManagedRepoId( StringUtils.substringAfter( artifactInfo.getContext(), "remote-" ), selectedRepos,
+                                  proxyConnectorMap );
             if ( managedRepoId != null )
             {
                 sb.append( '/' ).append( managedRepoId );
@@ -652,13 +968,12 @@ protected String getBaseUrl( ArtifactInfo artifactInfo, List<String> selectedRep
      *
      * @param remoteRepo
      * @param selectedRepos
+     * @param proxyConnectorMap the proxy connectors by source repository
      * @return
-     * @throws RepositoryAdminException
      */
-    private String getManagedRepoId( String remoteRepo, List<String> selectedRepos )
-        throws RepositoryAdminException
+    private String getManagedRepoId( String remoteRepo, List<String> selectedRepos,
+                                     Map<String, List<ProxyConnector>> proxyConnectorMap )
     {
-        Map<String, List<ProxyConnector>> proxyConnectorMap = proxyConnectorAdmin.getProxyConnectorAsMap();
         if ( proxyConnectorMap == null || proxyConnectorMap.isEmpty() )
         {
             return null;
@@ -741,16 +1056,17 @@ protected SearchResults paginate( SearchResults results )
         // Goto offset.
         if ( offset < results.getTotalHits() )
         {
+            List<SearchResultHit> hits = results.getHits();
             // only process if the offset is within the hit count.
             for ( int i = 0; i < fetchCount; i++ )
             {
                 // Stop fetching if we are past the total # of available hits.
-                if ( offset + i >= results.getHits().size() )
+                if ( offset + i >= hits.size() )
                 {
                     break;
                 }
 
-                SearchResultHit hit = results.getHits().get( ( offset + i ) );
+                SearchResultHit hit = hits.get( ( offset + i ) );
                 if ( hit != null )
                 {
                     String id = SearchUtil.getHitId( hit.getGroupId(), hit.getArtifactId(), hit.getClassifier(),
@@ -49,7 +49,12 @@
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
@@ -153,6 +158,51 @@ public void addArtifactsToIndex() throws Exception {
         assertEquals(2, mvnCtx.acquireIndexSearcher().count(q));
     }
 
+    @Test
+    public void addArtifactsToIndexConcurrently() throws Exception {
+        ArchivaIndexingContext ctx = createTestContext();
+        Path destDir = repository.getAsset( "" ).getFilePath().resolve("org/apache/archiva/archiva-search/1.0");
+        Path srcDir = Paths.get("src/test/maven-search-test-repo/org/apache/archiva/archiva-search/1.0");
+        org.apache.commons.io.FileUtils.copyDirectory(srcDir.toFile(), destDir.toFile());
+        long lockCount = mavenIndexManager.getLockCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> jar = executor.submit(() -> {
+                mavenIndexManager.addArtifactsToIndex(ctx, Collections.singletonList(destDir.resolve("archiva-search-1.0.jar").toUri()));
+                return null;
+            });
+            Future<?> sources = executor.submit(() -> {
+                mavenIndexManager.addArtifactsToIndex(ctx, Collections.singletonList(destDir.resolve("archiva-search-1.0-sources.jar").toUri()));
+                return null;
+            });
+            jar.get(30, TimeUnit.SECONDS);
+            sources.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        IndexingContext mvnCtx = mavenIndexManager.getMvnContext(ctx);
+        String term = "org.apache.archiva";
+        Query q = new BooleanQuery.Builder().add( queryCreator.constructQuery( MAVEN.GROUP_ID, new UserInputSearchExpression( term ) ),
+                BooleanClause.Occur.SHOULD ).build();
+        assertEquals(2, mvnCtx.acquireIndexSearcher().count(q));
+        assertEquals(lockCount + 2, mavenIndexManager.getLockCount());
+        assertEquals(0, mavenIndexManager.getQueueDepth(ctx));
+    }
+
+    @Test
+    public void closedContextReleasesLock() throws Exception {
+        createTestContext();
+        int lockEntries = mavenIndexManager.getContextLockCount();
+        mavenIndexManager.pack(ctx);
+        assertEquals(lockEntries + 1, mavenIndexManager.getContextLockCount());
+
+        ctx.close(false);
+
+        assertEquals(lockEntries, mavenIndexManager.getContextLockCount());
+    }
+
     @Test
     public void removeArtifactsFromIndex() throws Exception {
         ArchivaIndexingContext ctx = createTestContext();
@@ -0,0 +1,189 @@
+package org.apache.archiva.indexer.maven.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.utils.FileUtils;
+import org.apache.archiva.configuration.Configuration;
+import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
+import org.apache.archiva.indexer.search.SearchResultHit;
+import org.apache.archiva.indexer.search.SearchResultLimits;
+import org.apache.archiva.repository.ManagedRepository;
+import org.apache.archiva.repository.base.ArchivaRepositoryRegistry;
+import org.apache.maven.index.ArtifactContext;
+import org.apache.maven.index.ArtifactInfo;
+import org.apache.maven.index.Indexer;
+import org.apache.maven.index.context.IndexingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the quick search on a synthetic index with the size of a central mirror, for the first page, a deep page,
+ * all pages and a stream, that is read up to a deep page. The query matches every artifact of the index.
+ *
+ * The benchmark is not run by the unit tests. Run it by the main method from the test classpath, and
+ * run it on an older revision to compare the paging cost. Creating the index takes a few minutes.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( value = 1, jvmArgsAppend = "-Xmx4g" )
+public class MavenRepositorySearchBenchmark
+{
+    private static final String REPO_ID = "search-benchmark";
+
+    private static final int VERSIONS = 10;
+
+    private static final int PAGE_SIZE = 30;
+
+    @Param( { "2000000" } )
+    public int artifactCount;
+
+    @Param( { "100" } )
+    public int deepPage;
+
+    private Path repoDir;
+
+    private ClassPathXmlApplicationContext applicationContext;
+
+    private ArchivaRepositoryRegistry repositoryRegistry;
+
+    private MavenRepositorySearch search;
+
+    private List<String> selectedRepos = Collections.singletonList( REPO_ID );
+
+    @Setup( Level.Trial )
+    public void createIndex( )
+        throws Exception
+    {
+        repoDir = Files.createTempDirectory( "search-benchmark" );
+        applicationContext = new ClassPathXmlApplicationContext( "classpath*:/META-INF/spring-context.xml",
+                                                                 "classpath:/spring-context.xml" );
+        repositoryRegistry = applicationContext.getBean( ArchivaRepositoryRegistry.class );
+        search = applicationContext.getBean( "repositorySearch#maven", MavenRepositorySearch.class );
+        Indexer indexer = applicationContext.getBean( Indexer.class );
+
+        ManagedRepositoryConfiguration repositoryConfig = new ManagedRepositoryConfiguration( );
+        repositoryConfig.setId( REPO_ID );
+        repositoryConfig.setName( REPO_ID );
+        repositoryConfig.setLocation( repoDir.toString( ) );
+        repositoryConfig.setLayout( "default" );
+        repositoryConfig.setIndexDir( repoDir.resolve( ".indexer" ).toString( ) );
+        repositoryConfig.setScanned( false );
+        ManagedRepository repository = repositoryRegistry.putRepository( repositoryConfig, new Configuration( ) );
+        IndexingContext context = repository.getIndexingContext( ).getBaseContext( IndexingContext.class );
+
+        List<ArtifactContext> batch = new ArrayList<>( );
+        for ( int i = 0; i < artifactCount; i++ )
+        {
+            int artifact = i / VERSIONS;
+            ArtifactInfo info = new ArtifactInfo( REPO_ID, "org.example.group" + artifact % 20000,
+                                                  "example-artifact" + artifact, "1." + i % VERSIONS, null, "jar" );
+            info.setPackaging( "jar" );
+            batch.add( new ArtifactContext( null, null, null, info, null ) );
+            if ( batch.size( ) == 10000 )
+            {
+                indexer.addArtifactsToIndex( batch, context );
+                batch.clear( );
+            }
+        }
+        indexer.addArtifactsToIndex( batch, context );
+        context.commit( );
+        context.setSearchable( true );
+    }
+
+    @TearDown( Level.Trial )
+    public void removeIndex( )
+        throws Exception
+    {
+        repositoryRegistry.destroy( );
+        applicationContext.close( );
+        FileUtils.deleteDirectory( repoDir );
+    }
+
+    @Benchmark
+    public void firstPage( Blackhole blackhole )
+        throws Exception
+    {
+        blackhole.consume( search.search( null, selectedRepos, "example", new SearchResultLimits( PAGE_SIZE, 0 ),
+                                          null ) );
+    }
+
+    @Benchmark
+    public void deepPage( Blackhole blackhole )
+        throws Exception
+    {
+        blackhole.consume( search.search( null, selectedRepos, "example",
+                                          new SearchResultLimits( PAGE_SIZE, deepPage ), null ) );
+    }
+
+    @Benchmark
+    public void allPages( Blackhole blackhole )
+        throws Exception
+    {
+        blackhole.consume( search.search( null, selectedRepos, "example",
+                                          new SearchResultLimits( SearchResultLimits.ALL_PAGES ), null ) );
+    }
+
+    @Benchmark
+    public void streamDeepPage( Blackhole blackhole )
+        throws Exception
+    {
+        try ( Stream<SearchResultHit> hits = search.searchStream( null, selectedRepos, "example", null ) )
+        {
+            hits.skip( (long) deepPage * PAGE_SIZE ).limit( PAGE_SIZE ).forEach( blackhole::consume );
+        }
+    }
+
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        Options options = new OptionsBuilder( )
+            .include( MavenRepositorySearchBenchmark.class.getSimpleName( ) )
+            .build( );
+        new Runner( options ).run( );
+    }
+}
@@ -26,21 +26,28 @@
 import org.apache.archiva.indexer.search.SearchResultLimits;
 import org.apache.archiva.indexer.search.SearchResults;
 import org.apache.archiva.indexer.util.SearchUtil;
+import org.apache.archiva.redback.components.cache.Cache;
 import org.apache.archiva.test.utils.ArchivaSpringJUnit4ClassRunner;
+import org.apache.maven.index.context.IndexingContext;
 import org.apache.maven.index_shaded.lucene.index.IndexUpgrader;
 import org.easymock.EasyMock;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.test.context.ContextConfiguration;
 
+import javax.inject.Inject;
+import javax.inject.Named;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Stream;
 
 
 @RunWith( ArchivaSpringJUnit4ClassRunner.class )
@@ -49,6 +56,10 @@
     extends AbstractMavenRepositorySearch
 {
 
+    @Inject
+    @Named( value = "cache#searchResults" )
+    Cache<String, SearchResults> searchResultCache;
+
 
     private void createSimpleIndex( boolean scan )
         throws Exception
@@ -334,6 +345,96 @@ public void testQuickSearchWithPagination()
         assertEquals( limits, results.getLimits() );
     }
 
+    @Test
+    public void testQuickSearchPagesAreDistinct()
+        throws Exception
+    {
+        createSimpleIndex( true );
+
+        List<String> selectedRepos = Arrays.asList( TEST_REPO_1 );
+
+        EasyMock.expect( archivaConfig.getDefaultLocale() ).andReturn( Locale.getDefault( ) ).anyTimes();
+        EasyMock.expect( archivaConfig.getConfiguration()).andReturn(config).anyTimes();
+
+        archivaConfigControl.replay();
+
+        SearchResults all = search.search( "user", selectedRepos, "org", new SearchResultLimits(
+            SearchResultLimits.ALL_PAGES ), null );
+
+        Set<String> pagedIds = new HashSet<>();
+        for ( int page = 0; page <= all.getHits().size(); page++ )
+        {
+            SearchResultLimits limits = new SearchResultLimits( 1, page );
+            SearchResults results = search.search( "user", selectedRepos, "org", limits, null );
+            if ( page < all.getHits().size() )
+            {
+                assertEquals( "hits of page " + page, 1, results.getReturnedHitsCount() );
+                assertTrue( "hit of page " + page + " already returned",
+                            pagedIds.addAll( results.getHitsMap().keySet() ) );
+            }
+            else
+            {
+                assertTrue( results.isEmpty() );
+            }
+        }
+
+        long streamed;
+        try ( Stream<SearchResultHit> hits = search.searchStream( "user", selectedRepos, "org", null ) )
+        {
+            streamed = hits.filter( hit -> all.getHitsMap().containsKey(
+                SearchUtil.getHitId( hit.getGroupId(), hit.getArtifactId(), hit.getClassifier(), hit.getPackaging() ) ) )
+                .count();
+        }
+
+        archivaConfigControl.verify();
+
+        assertEquals( all.getHitsMap().keySet(), pagedIds );
+        int versions = 0;
+        for ( SearchResultHit hit : all.getHits() )
+        {
+            versions += hit.getVersions().size();
+        }
+        assertTrue( "streamed " + streamed + " of " + versions + " versions", streamed >= versions );
+    }
+
+    @Test
+    public void testQuickSearchCache()
+        throws Exception
+    {
+        createSimpleIndex( false );
+
+        search.setSearchResultCache( searchResultCache );
+        searchResultCache.clear();
+        long cacheHits = searchResultCache.getStatistics().getCacheHits();
+
+        List<String> selectedRepos = Arrays.asList( TEST_REPO_1 );
+
+        EasyMock.expect( archivaConfig.getDefaultLocale() ).andReturn( Locale.getDefault( ) ).anyTimes();
+        EasyMock.expect( archivaConfig.getConfiguration()).andReturn(config).anyTimes();
+
+        archivaConfigControl.replay();
+
+        SearchResults results = search.search( "user", selectedRepos, "archiva-search", null, null );
+        assertEquals( 1, results.getTotalHits() );
+        assertSame( results, search.search( "user", selectedRepos, "archiva-search", null, null ) );
+        assertEquals( cacheHits + 1, searchResultCache.getStatistics().getCacheHits() );
+
+        // a commit to the index changes the key
+        IndexingContext context =
+            repositoryRegistry.getRepository( TEST_REPO_1 ).getIndexingContext().getBaseContext( IndexingContext.class );
+        Path artifactFile = Paths.get( org.apache.archiva.common.utils.FileUtils.getBasedir(), "target/repos", TEST_REPO_1,
+                                       "org/apache/archiva/archiva-test/1.0/archiva-test-1.0.jar" );
+        indexer.addArtifactToIndex( artifactContextProducer.getArtifactContext( context, artifactFile.toFile() ), context );
+        context.commit();
+
+        SearchResults changed = search.search( "user", selectedRepos, "archiva-search", null, null );
+
+        archivaConfigControl.verify();
+
+        assertNotSame( results, changed );
+        assertEquals( 1, changed.getTotalHits() );
+    }
+
     @Test
     public void testArtifactFoundInMultipleRepositories()
         throws Exception
@@ -0,0 +1,110 @@
+package org.apache.archiva.proxy.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.checksum.Checksum;
+import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.ChecksummingOutputStream;
+import org.apache.maven.wagon.events.TransferEvent;
+import org.apache.maven.wagon.events.TransferListener;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Transfer listener that calculates the checksums of the downloaded bytes, while the wagon
+ * writes them to the destination file.
+ */
+public class ChecksumTransferListener
+    implements TransferListener
+{
+    private final ChecksummingOutputStream checksumStream;
+
+    private boolean failed = false;
+
+    public ChecksumTransferListener( List<ChecksumAlgorithm> algorithms )
+    {
+        this.checksumStream = new ChecksummingOutputStream( algorithms );
+    }
+
+    @Override
+    public void transferInitiated( TransferEvent transferEvent )
+    {
+        // nothing to do
+    }
+
+    @Override
+    public void transferStarted( TransferEvent transferEvent )
+    {
+        checksumStream.reset( );
+        failed = false;
+    }
+
+    @Override
+    public void transferProgress( TransferEvent transferEvent, byte[] buffer, int length )
+    {
+        if ( transferEvent.getRequestType( ) == TransferEvent.REQUEST_GET )
+        {
+            try
+            {
+                checksumStream.write( buffer, 0, length );
+            }
+            catch ( IOException e )
+            {
+                failed = true;
+            }
+        }
+    }
+
+    @Override
+    public void transferCompleted( TransferEvent transferEvent )
+    {
+        // nothing to do
+    }
+
+    @Override
+    public void transferError( TransferEvent transferEvent )
+    {
+        failed = true;
+    }
+
+    @Override
+    public void debug( String message )
+    {
+        // nothing to do
+    }
+
+    /**
+     * Returns true, if the checksums can be used for the file with the given size.
+     * This is only the case, if the transfer did not fail and all bytes of the file were seen by this listener.
+     *
+     * @param fileSize the size of the downloaded file
+     * @return true, if the checksums are valid for the file
+     */
+    public boolean isComplete( long fileSize )
+    {
+        return !failed && checksumStream.getByteCount( ) == fileSize;
+    }
+
+    public List<Checksum> getChecksums( )
+    {
+        return checksumStream.getChecksums( );
+    }
+}
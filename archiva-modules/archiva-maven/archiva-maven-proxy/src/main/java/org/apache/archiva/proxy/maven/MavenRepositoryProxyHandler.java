@@ -19,6 +19,8 @@
  * under the License.
  */
 
+import org.apache.archiva.checksum.Checksum;
+import org.apache.archiva.checksum.ChecksumAlgorithm;
 import org.apache.archiva.model.RepositoryURL;
 import org.apache.archiva.proxy.DefaultRepositoryProxyHandler;
 import org.apache.archiva.proxy.NotFoundException;
@@ -37,19 +39,33 @@
 import org.apache.maven.wagon.WagonException;
 import org.apache.maven.wagon.authentication.AuthenticationException;
 import org.apache.maven.wagon.authentication.AuthenticationInfo;
+import org.apache.maven.wagon.events.TransferEvent;
+import org.apache.maven.wagon.events.TransferListener;
 import org.apache.maven.wagon.proxy.ProxyInfo;
 import org.apache.maven.wagon.repository.Repository;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DefaultRepositoryProxyHandler
@@ -61,6 +77,10 @@ public class MavenRepositoryProxyHandler extends DefaultRepositoryProxyHandler {
 
     private static final List<RepositoryType> REPOSITORY_TYPES = new ArrayList<>();
 
+    public static final String CHECKSUM_THREADS_PROPERTY = "archiva.proxy.checksumTransferThreads";
+
+    private static final int DEFAULT_CHECKSUM_THREADS = 8;
+
     static {
         REPOSITORY_TYPES.add(RepositoryType.MAVEN);
     }
@@ -70,12 +90,44 @@ public class MavenRepositoryProxyHandler extends DefaultRepositoryProxyHandler {
 
     private ConcurrentMap<String, ProxyInfo> networkProxyMap = new ConcurrentHashMap<>();
 
+    private WagonConnectionPool wagonPool = new WagonConnectionPool();
+
+    /**
+     * Executor for the checksum downloads, that run at the same time as the artifact download.
+     * The number of threads can be set by the system property {@value #CHECKSUM_THREADS_PROPERTY}.
+     * The queue holds no more transfers than connections can be opened to a remote repository. If it is
+     * full, the transfer runs in the thread, that started the artifact transfer.
+     */
+    private final ExecutorService checksumExecutor =
+        createChecksumExecutor( wagonPool.getMaxTotalPerRepository( ) );
+
     @Override
     public void initialize() {
         super.initialize();
     }
 
+    @PreDestroy
+    public void shutdown() {
+        checksumExecutor.shutdown();
+        wagonPool.shutdown();
+    }
+
+    private static ExecutorService createChecksumExecutor( int maxConnections ) {
+        int threads = Math.max( 1, Integer.getInteger( CHECKSUM_THREADS_PROPERTY, DEFAULT_CHECKSUM_THREADS ) );
+        final AtomicInteger counter = new AtomicInteger( );
+        ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>( Math.max( 1, maxConnections ) ), r -> {
+                Thread thread = new Thread( r, "archiva-proxy-checksum-" + counter.getAndIncrement( ) );
+                thread.setDaemon( true );
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy( ) );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
     private void updateWagonProxyInfo(Map<String, NetworkProxy> proxyList) {
+        // Connections established with the old proxy settings must not be reused
+        this.wagonPool.close();
         this.networkProxyMap.clear();
         for (Map.Entry<String, NetworkProxy> proxyEntry : proxyList.entrySet()) {
             String key = proxyEntry.getKey();
@@ -109,82 +161,432 @@ public void setNetworkProxies(Map<String, NetworkProxy> networkProxies ) {
      * @param resource
      * @param workingDirectory
      * @param repository
+     * @return the checksums of the artifact, calculated during the download
      * @throws ProxyException
      * @throws NotModifiedException
      */
-    protected void transferResources( ProxyConnector connector, RemoteRepository remoteRepository,
+    protected List<Checksum> transferResources( ProxyConnector connector, RemoteRepository remoteRepository,
                                       StorageAsset tmpResource, StorageAsset[] checksumFiles, String url, String remotePath, StorageAsset resource,
                                       Path workingDirectory, ManagedRepository repository )
             throws ProxyException, NotModifiedException {
-        Wagon wagon = null;
+        // TODO: these should be used to validate the download based on the policies, not always downloaded
+        // to
+        // save on connections since md5 is rarely used
+        final ChecksumTransfers checksumTransfers = new ChecksumTransfers( connector, remoteRepository, remotePath,
+            repository, resource.getFilePath(), checksumFiles );
         try {
-            RepositoryURL repoUrl = remoteRepository.getContent().getURL();
-            String protocol = repoUrl.getProtocol();
-            NetworkProxy networkProxy = null;
-            String proxyId = connector.getProxyId();
-            if (StringUtils.isNotBlank(proxyId)) {
-
-                networkProxy = getNetworkProxy(proxyId);
-            }
-            WagonFactoryRequest wagonFactoryRequest = new WagonFactoryRequest("wagon#" + protocol,
-                    remoteRepository.getExtraHeaders());
-            if (networkProxy == null) {
-
-                log.warn("No network proxy with id {} found for connector {}->{}", proxyId,
-                        connector.getSourceRepository().getId(), connector.getTargetRepository().getId());
-            } else {
-                wagonFactoryRequest = wagonFactoryRequest.networkProxy(networkProxy);
-            }
-            wagon = wagonFactory.getWagon(wagonFactoryRequest);
-            if (wagon == null) {
-                throw new ProxyException("Unsupported target repository protocol: " + protocol);
-            }
-
-            if (wagon == null) {
-                throw new ProxyException("Unsupported target repository protocol: " + protocol);
-            }
-
-            boolean connected = connectToRepository(connector, wagon, remoteRepository);
-            if (connected) {
-                transferArtifact(wagon, remoteRepository, remotePath, repository, resource.getFilePath(), workingDirectory,
-                        tmpResource);
-
-                // TODO: these should be used to validate the download based on the policies, not always downloaded
-                // to
-                // save on connections since md5 is rarely used
-                for (int i=0; i<checksumFiles.length; i++) {
-                    String ext = "."+StringUtils.substringAfterLast(checksumFiles[i].getName( ), "." );
-                    transferChecksum(wagon, remoteRepository, remotePath, repository, resource.getFilePath(), ext,
-                        checksumFiles[i].getFilePath());
+            List<Checksum> checksums = transferWithWagon( connector, remoteRepository, wagon -> {
+                // The checksums are downloaded at the same time, as soon as the remote side started to send the artifact
+                wagon.addTransferListener( checksumTransfers );
+                try {
+                    return transferArtifact( wagon, remoteRepository, remotePath, repository, resource.getFilePath(),
+                        workingDirectory, tmpResource );
+                } finally {
+                    wagon.removeTransferListener( checksumTransfers );
                 }
+            } );
+
+            if (checksums == null) {
+                // Not connected
+                return Collections.emptyList();
             }
+            // Not every wagon reports the start of the transfer
+            checksumTransfers.start();
+            checksumTransfers.await();
+            return checksums;
         } catch (NotFoundException e) {
+            checksumTransfers.abort();
             urlFailureCache.cacheFailure(url);
             throw e;
-        } catch (NotModifiedException e) {
+        } catch (NotModifiedException | ConnectionUnavailableException e) {
+            checksumTransfers.abort();
             // Do not cache url here.
             throw e;
         } catch (ProxyException e) {
+            checksumTransfers.abort();
+            // Failures of pooled connections are retried, so this failure happened on a new connection
             urlFailureCache.cacheFailure(url);
             throw e;
-        } catch (WagonFactoryException e) {
-            throw new ProxyException(e.getMessage(), e);
         } finally {
+            // The working directory is removed after return, so no checksum transfer must be running
+            checksumTransfers.waitForCompletion();
+        }
+    }
+
+    /**
+     * The transfers of the checksum files of an artifact. They are started on the checksum executor, when the
+     * transfer of the artifact has started, so a missing artifact does not cause requests for its checksums.
+     * Each transfer uses a pooled or new wagon connection, so that the checksums are downloaded at the same
+     * time as the artifact. Transfers, that did not start yet, are skipped, if the artifact transfer failed.
+     * The artifact transfer holds a connection, so the checksum transfers do not wait for a connection of the
+     * pool. If none is available, the checksum is downloaded after the artifact, when its connection is released.
+     */
+    private class ChecksumTransfers implements TransferListener
+    {
+        private final ProxyConnector connector;
+        private final RemoteRepository remoteRepository;
+        private final String remotePath;
+        private final ManagedRepository repository;
+        private final Path resource;
+        private final StorageAsset[] checksumFiles;
+        private final AtomicBoolean started = new AtomicBoolean( );
+        private volatile boolean aborted = false;
+        private volatile List<Future<Void>> transfers = Collections.emptyList( );
+        private final ConcurrentLinkedQueue<StorageAsset> deferred = new ConcurrentLinkedQueue<>( );
+
+        ChecksumTransfers( ProxyConnector connector, RemoteRepository remoteRepository, String remotePath,
+                           ManagedRepository repository, Path resource, StorageAsset[] checksumFiles )
+        {
+            this.connector = connector;
+            this.remoteRepository = remoteRepository;
+            this.remotePath = remotePath;
+            this.repository = repository;
+            this.resource = resource;
+            this.checksumFiles = checksumFiles;
+        }
+
+        void start( )
+        {
+            if ( aborted || !started.compareAndSet( false, true ) )
+            {
+                return;
+            }
+            List<Future<Void>> submitted = new ArrayList<>( checksumFiles.length );
+            for ( final StorageAsset checksumFile : checksumFiles )
+            {
+                final String ext = "." + StringUtils.substringAfterLast( checksumFile.getName( ), "." );
+                submitted.add( checksumExecutor.submit( ( ) -> {
+                    if ( !aborted )
+                    {
+                        try
+                        {
+                            transferChecksum( connector, remoteRepository, remotePath, repository, resource, ext,
+                                checksumFile.getFilePath( ), 0 );
+                        }
+                        catch ( ConnectionUnavailableException e )
+                        {
+                            deferred.add( checksumFile );
+                        }
+                    }
+                    return null;
+                } ) );
+            }
+            transfers = submitted;
+        }
+
+        void abort( )
+        {
+            aborted = true;
+        }
+
+        void await( ) throws ProxyException
+        {
+            for ( Future<Void> transfer : transfers )
+            {
+                try
+                {
+                    transfer.get( );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread( ).interrupt( );
+                    throw new ProxyException( "Interrupted while waiting for checksum transfer", e );
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( e.getCause( ) instanceof ProxyException )
+                    {
+                        throw (ProxyException) e.getCause( );
+                    }
+                    throw new ProxyException( "Checksum transfer failed: " + e.getCause( ), e.getCause( ) );
+                }
+            }
+            StorageAsset checksumFile;
+            while ( !aborted && ( checksumFile = deferred.poll( ) ) != null )
+            {
+                String ext = "." + StringUtils.substringAfterLast( checksumFile.getName( ), "." );
+                transferChecksum( connector, remoteRepository, remotePath, repository, resource, ext,
+                    checksumFile.getFilePath( ) );
+            }
+        }
+
+        void waitForCompletion( )
+        {
+            for ( Future<Void> transfer : transfers )
+            {
+                try
+                {
+                    transfer.get( );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread( ).interrupt( );
+                    return;
+                }
+                catch ( ExecutionException e )
+                {
+                    // Already handled, or the artifact transfer failed
+                }
+            }
+        }
+
+        @Override
+        public void transferInitiated( TransferEvent transferEvent )
+        {
+            // nothing to do
+        }
+
+        @Override
+        public void transferStarted( TransferEvent transferEvent )
+        {
+            if ( transferEvent.getRequestType( ) == TransferEvent.REQUEST_GET )
+            {
+                start( );
+            }
+        }
+
+        @Override
+        public void transferProgress( TransferEvent transferEvent, byte[] buffer, int length )
+        {
+            // nothing to do
+        }
+
+        @Override
+        public void transferCompleted( TransferEvent transferEvent )
+        {
+            // nothing to do
+        }
+
+        @Override
+        public void transferError( TransferEvent transferEvent )
+        {
+            // nothing to do
+        }
+
+        @Override
+        public void debug( String message )
+        {
+            // nothing to do
+        }
+    }
+
+    /**
+     * A transfer, that is done on a connected wagon.
+     */
+    private interface WagonTransfer<T>
+    {
+        T transfer( Wagon wagon ) throws ProxyException;
+    }
+
+    /**
+     * Thrown, if no connection to the remote repository was available within the borrow timeout.
+     */
+    private static class ConnectionUnavailableException extends ProxyException
+    {
+        ConnectionUnavailableException( String message, Throwable t )
+        {
+            super( message, t );
+        }
+    }
+
+    private <T> T transferWithWagon( ProxyConnector connector, RemoteRepository remoteRepository,
+                                     WagonTransfer<T> transfer )
+            throws ProxyException {
+        return transferWithWagon( connector, remoteRepository, wagonPool.getBorrowTimeout( ), transfer );
+    }
+
+    /**
+     * Runs the transfer on a connected wagon, that is taken from the pool or newly connected. The server may
+     * have closed the connection of a pooled wagon, so if the transfer fails on a pooled wagon, it is retried
+     * once on a new connection. A resource that is not found or not modified is not retried.
+     *
+     * @param borrowTimeout the maximum time to wait for a connection of the pool in milliseconds
+     * @return the result of the transfer, or <code>null</code>, if no connection could be established
+     * @throws ConnectionUnavailableException if no connection was available within the borrow timeout
+     * @throws ProxyException if the transfer failed
+     */
+    private <T> T transferWithWagon( ProxyConnector connector, RemoteRepository remoteRepository,
+                                     long borrowTimeout, WagonTransfer<T> transfer )
+            throws ProxyException {
+        final String poolKey = getPoolKey( connector, remoteRepository );
+        Wagon wagon;
+        try {
+            wagon = wagonPool.borrow( poolKey, borrowTimeout );
+        } catch (ConnectionException e) {
+            throw new ConnectionUnavailableException(
+                "Could not transfer from " + remoteRepository.getId() + ": " + e.getMessage(), e );
+        }
+        boolean reusable = false;
+        try {
             if (wagon != null) {
                 try {
-                    wagon.disconnect();
-                } catch (ConnectionException e) {
-                    log.warn("Unable to disconnect wagon.", e);
+                    T result = transfer.transfer( wagon );
+                    reusable = true;
+                    return result;
+                } catch (NotFoundException | NotModifiedException e) {
+                    reusable = true;
+                    throw e;
+                } catch (ProxyException e) {
+                    log.debug( "Transfer from {} failed on a pooled connection, retrying on a new connection: {}",
+                        remoteRepository.getId(), e.getMessage() );
+                    // the borrowed connection is used for the new wagon
+                    wagonPool.disconnect( wagon );
+                    wagon = null;
                 }
             }
+
+            wagon = createWagon( connector, remoteRepository );
+            if (!connectToRepository( connector, wagon, remoteRepository )) {
+                return null;
+            }
+            T result = transfer.transfer( wagon );
+            reusable = true;
+            return result;
+        } catch (NotFoundException | NotModifiedException e) {
+            reusable = true;
+            throw e;
+        } catch (WagonFactoryException e) {
+            throw new ProxyException(e.getMessage(), e);
+        } finally {
+            if (reusable) {
+                wagonPool.release( poolKey, wagon );
+            } else {
+                wagonPool.invalidate( poolKey, wagon );
+            }
+        }
+    }
+
+    /**
+     * Transfers the checksum file on a wagon connection, that is taken from the pool or newly connected.
+     *
+     * @param connector        the connector configuration to utilize
+     * @param remoteRepository the remote repository to transfer from.
+     * @param remotePath       the remote path to the resource to get.
+     * @param repository       the managed repository that will hold the file
+     * @param resource         the local file that should contain the downloaded contents
+     * @param ext              the type of checksum to transfer (example: ".md5" or ".sha1")
+     * @param destFile         the file the checksum is downloaded to
+     * @throws ProxyException if copying the downloaded file into place did not succeed.
+     */
+    protected void transferChecksum( ProxyConnector connector, RemoteRepository remoteRepository, String remotePath,
+                                     ManagedRepository repository, Path resource, String ext, Path destFile )
+            throws ProxyException {
+        transferChecksum( connector, remoteRepository, remotePath, repository, resource, ext, destFile,
+            wagonPool.getBorrowTimeout( ) );
+    }
+
+    private void transferChecksum( ProxyConnector connector, RemoteRepository remoteRepository, String remotePath,
+                                   ManagedRepository repository, Path resource, String ext, Path destFile,
+                                   long borrowTimeout )
+            throws ProxyException {
+        String url = remoteRepository.getLocation().toString() + remotePath + ext;
+        if (urlFailureCache.hasFailedBefore(url)) {
+            return;
+        }
+
+        try {
+            transferWithWagon( connector, remoteRepository, borrowTimeout, wagon -> {
+                transferChecksum( wagon, remoteRepository, remotePath, repository, resource, ext, destFile );
+                return null;
+            } );
+        } catch (NotFoundException | NotModifiedException | ConnectionUnavailableException e) {
+            throw e;
+        } catch (ProxyException e) {
+            urlFailureCache.cacheFailure(url);
+            log.warn("Transfer failed on checksum: {} : {}", url, e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new wagon instance for the protocol of the remote repository.
+     *
+     * @param connector        the connector configuration to utilize (for obtaining network proxy configuration from)
+     * @param remoteRepository the remote repository to connect to.
+     * @return the new, not connected wagon instance
+     * @throws ProxyException if there is no wagon for the protocol of the remote repository
+     * @throws WagonFactoryException if the wagon could not be created
+     */
+    protected Wagon createWagon( ProxyConnector connector, RemoteRepository remoteRepository )
+            throws ProxyException, WagonFactoryException {
+        RepositoryURL repoUrl = remoteRepository.getContent().getURL();
+        String protocol = repoUrl.getProtocol();
+        NetworkProxy networkProxy = null;
+        String proxyId = connector.getProxyId();
+        if (StringUtils.isNotBlank(proxyId)) {
+
+            networkProxy = getNetworkProxy(proxyId);
+        }
+        WagonFactoryRequest wagonFactoryRequest = new WagonFactoryRequest("wagon#" + protocol,
+                remoteRepository.getExtraHeaders());
+        if (networkProxy == null) {
+
+            log.warn("No network proxy with id {} found for connector {}->{}", proxyId,
+                    connector.getSourceRepository().getId(), connector.getTargetRepository().getId());
+        } else {
+            wagonFactoryRequest = wagonFactoryRequest.networkProxy(networkProxy);
         }
+        Wagon wagon = wagonFactory.getWagon(wagonFactoryRequest);
+        if (wagon == null) {
+            throw new ProxyException("Unsupported target repository protocol: " + protocol);
+        }
+        return wagon;
     }
 
-    protected void transferArtifact(Wagon wagon, RemoteRepository remoteRepository, String remotePath,
+    /**
+     * Connected wagons are only reused for the same remote location, network proxy and connection settings.
+     * A changed configuration of the remote repository results in a new key, so wagons connected with the old
+     * credentials or timeouts are not reused, but evicted after the idle timeout.
+     */
+    String getPoolKey( ProxyConnector connector, RemoteRepository remoteRepository )
+    {
+        StringBuilder key = new StringBuilder( );
+        key.append( remoteRepository.getId( ) ).append( '|' ).append( remoteRepository.getLocation( ) );
+        key.append( '|' ).append( StringUtils.defaultString( connector.getProxyId( ) ) );
+        key.append( '|' ).append( remoteRepository.getTimeout( ) );
+        key.append( '|' ).append( remoteRepository.getExtraHeaders( ) );
+        RepositoryCredentials credentials = remoteRepository.getLoginCredentials( );
+        if ( credentials instanceof PasswordCredentials )
+        {
+            PasswordCredentials pwdCred = (PasswordCredentials) credentials;
+            key.append( '|' ).append( StringUtils.defaultString( pwdCred.getUsername( ) ) );
+            // The key is logged, so only a digest of the password is part of it
+            byte[] password = pwdCred.getPassword( ) == null ? new byte[0]
+                : new String( pwdCred.getPassword( ) ).getBytes( StandardCharsets.UTF_8 );
+            key.append( '|' ).append(
+                new Checksum( ChecksumAlgorithm.SHA256 ).update( password, 0, password.length ).finish( ).getChecksum( ) );
+        }
+        return key.toString( );
+    }
+
+    /**
+     * Transfers the artifact and calculates the checksums of the configured algorithms, while the
+     * bytes are written to the destination file.
+     *
+     * @return the checksums of the downloaded file, or a empty list, if the checksums could not be calculated
+     * during the transfer
+     */
+    protected List<Checksum> transferArtifact(Wagon wagon, RemoteRepository remoteRepository, String remotePath,
                                     ManagedRepository repository, Path resource, Path tmpDirectory,
                                     StorageAsset destFile)
             throws ProxyException {
-        transferSimpleFile(wagon, remoteRepository, remotePath, repository, resource, destFile.getFilePath());
+        ChecksumTransferListener checksumListener = new ChecksumTransferListener( getChecksumAlgorithms() );
+        wagon.addTransferListener( checksumListener );
+        try {
+            transferSimpleFile(wagon, remoteRepository, remotePath, repository, resource, destFile.getFilePath());
+        } finally {
+            wagon.removeTransferListener( checksumListener );
+        }
+        Path destPath = destFile.getFilePath();
+        try {
+            // Not every wagon reports the transferred bytes, so the checksums are only used, if they cover the whole file
+            if (Files.exists(destPath) && checksumListener.isComplete(Files.size(destPath))) {
+                return checksumListener.getChecksums();
+            }
+        } catch (IOException e) {
+            log.debug("Could not read size of downloaded file {}: {}", destPath, e.getMessage());
+        }
+        return Collections.emptyList();
     }
 
     /**
@@ -221,12 +623,9 @@ protected void transferChecksum( Wagon wagon, RemoteRepository remoteRepository,
         } catch (NotModifiedException e) {
             log.debug("Transfer skipped, checksum not modified: {}", url);
             // Consume it, do not pass this on.
-        } catch (ProxyException e) {
-            urlFailureCache.cacheFailure(url);
-            log.warn("Transfer failed on checksum: {} : {}", url, e.getMessage(), e);
-            // Critical issue, pass it on.
-            throw e;
         }
+        // Other failures are passed on. They are not cached here, because a failure of a pooled
+        // connection is retried.
     }
 
     /**
@@ -358,6 +757,14 @@ protected boolean connectToRepository(ProxyConnector connector, Wagon wagon,
     }
 
 
+    public WagonConnectionPool getWagonPool() {
+        return wagonPool;
+    }
+
+    public void setWagonPool(WagonConnectionPool wagonPool) {
+        this.wagonPool = wagonPool;
+    }
+
     public WagonFactory getWagonFactory() {
         return wagonFactory;
     }
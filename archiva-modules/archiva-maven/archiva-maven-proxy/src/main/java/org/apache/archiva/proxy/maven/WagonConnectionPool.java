@@ -0,0 +1,440 @@
+package org.apache.archiva.proxy.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.wagon.ConnectionException;
+import org.apache.maven.wagon.Wagon;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of connected wagon instances. The pool keeps idle wagons per remote repository, so that
+ * successive downloads from the same remote repository can reuse the open connection instead of
+ * connecting again for each artifact and checksum.
+ *
+ * A wagon is borrowed exclusively by one caller and must be given back by {@link #release(String, Wagon)}
+ * or {@link #invalidate(String, Wagon)}. At most {@link #getMaxTotalPerRepository()} connections per
+ * remote repository are open at the same time, including the idle ones. A caller waits up to the borrow
+ * timeout for a connection, if the maximum is reached. Idle wagons are disconnected by a background task, if
+ * they were not used for longer than the idle timeout, or at release, if the maximum number of idle wagons per
+ * repository is reached.
+ *
+ * The defaults can be changed by the system properties {@value #MAX_TOTAL_PROPERTY}, {@value #MAX_IDLE_PROPERTY},
+ * {@value #IDLE_TIMEOUT_PROPERTY} and {@value #BORROW_TIMEOUT_PROPERTY} (milliseconds).
+ */
+public class WagonConnectionPool
+{
+    public static final String MAX_TOTAL_PROPERTY = "archiva.proxy.wagonPool.maxTotal";
+
+    public static final String MAX_IDLE_PROPERTY = "archiva.proxy.wagonPool.maxIdle";
+
+    public static final String IDLE_TIMEOUT_PROPERTY = "archiva.proxy.wagonPool.idleTimeout";
+
+    public static final String BORROW_TIMEOUT_PROPERTY = "archiva.proxy.wagonPool.borrowTimeout";
+
+    private static final int DEFAULT_MAX_TOTAL = 16;
+
+    private static final int DEFAULT_MAX_IDLE = 8;
+
+    private static final long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    private static final long DEFAULT_BORROW_TIMEOUT = 30000;
+
+    private static final long MIN_EVICTION_INTERVAL = 1000;
+
+    private final Logger log = LoggerFactory.getLogger( WagonConnectionPool.class );
+
+    private final ConcurrentMap<String, RepositoryConnections> connections = new ConcurrentHashMap<>( );
+
+    private int maxTotalPerRepository = Integer.getInteger( MAX_TOTAL_PROPERTY, DEFAULT_MAX_TOTAL );
+
+    private int maxIdlePerRepository = Integer.getInteger( MAX_IDLE_PROPERTY, DEFAULT_MAX_IDLE );
+
+    private long idleTimeout = Long.getLong( IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT );
+
+    private long borrowTimeout = Long.getLong( BORROW_TIMEOUT_PROPERTY, DEFAULT_BORROW_TIMEOUT );
+
+    private ScheduledExecutorService evictionExecutor;
+
+    private static class PooledWagon
+    {
+        final Wagon wagon;
+        final long releaseTime;
+
+        PooledWagon( Wagon wagon, long releaseTime )
+        {
+            this.wagon = wagon;
+            this.releaseTime = releaseTime;
+        }
+    }
+
+    /**
+     * The connections of one remote repository. The open count contains the borrowed and the idle connections.
+     * Waiting callers are notified on the instance, when a connection is given back.
+     */
+    private static class RepositoryConnections
+    {
+        final int maxTotal;
+        final Deque<PooledWagon> idle = new ArrayDeque<>( );
+        int open;
+
+        RepositoryConnections( int maxTotal )
+        {
+            this.maxTotal = Math.max( 1, maxTotal );
+        }
+    }
+
+    /**
+     * Borrows a connection for the given key and waits up to the borrow timeout, if the maximum number of
+     * connections is reached.
+     *
+     * @param key the key of the remote connection
+     * @return the connected idle wagon, or <code>null</code>, if the caller has to connect a new wagon
+     * @throws ConnectionException if no connection was available within the borrow timeout
+     * @see #borrow(String, long)
+     */
+    public Wagon borrow( String key )
+        throws ConnectionException
+    {
+        return borrow( key, borrowTimeout );
+    }
+
+    /**
+     * Borrows a connection for the given key. If there is an idle wagon, it is returned. Otherwise the caller
+     * may connect a new wagon, if the maximum number of connections is not reached. In both cases the caller
+     * must give the connection back by {@link #release(String, Wagon)} or {@link #invalidate(String, Wagon)},
+     * even if a new wagon could not be connected.
+     *
+     * @param key the key of the remote connection
+     * @param timeout the maximum time to wait for a connection in milliseconds
+     * @return the connected idle wagon, or <code>null</code>, if the caller has to connect a new wagon
+     * @throws ConnectionException if no connection was available within the timeout
+     */
+    public Wagon borrow( String key, long timeout )
+        throws ConnectionException
+    {
+        RepositoryConnections repositoryConnections = getConnections( key );
+        long end = System.currentTimeMillis( ) + Math.max( 0, timeout );
+        synchronized ( repositoryConnections )
+        {
+            while ( true )
+            {
+                PooledWagon pooled = repositoryConnections.idle.pollLast( );
+                if ( pooled != null )
+                {
+                    log.debug( "Reusing connected wagon for {}", key );
+                    return pooled.wagon;
+                }
+                if ( repositoryConnections.open < repositoryConnections.maxTotal )
+                {
+                    repositoryConnections.open++;
+                    return null;
+                }
+                long remaining = end - System.currentTimeMillis( );
+                if ( remaining <= 0 )
+                {
+                    throw new ConnectionException(
+                        "No connection available after " + timeout + "ms, the maximum of "
+                            + repositoryConnections.maxTotal + " connections is reached" );
+                }
+                try
+                {
+                    repositoryConnections.wait( remaining );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread( ).interrupt( );
+                    throw new ConnectionException( "Interrupted while waiting for a connection", e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives the connected wagon back to the pool. If the maximum number of idle wagons for the key
+     * is reached, the wagon is disconnected.
+     *
+     * @param key the key of the remote connection
+     * @param wagon the connected wagon, or <code>null</code>, if no wagon was connected
+     */
+    public void release( String key, Wagon wagon )
+    {
+        if ( wagon == null || maxIdlePerRepository <= 0 )
+        {
+            invalidate( key, wagon );
+            return;
+        }
+        RepositoryConnections repositoryConnections = getConnections( key );
+        boolean pooled = false;
+        synchronized ( repositoryConnections )
+        {
+            if ( repositoryConnections.idle.size( ) < maxIdlePerRepository )
+            {
+                repositoryConnections.idle.addLast( new PooledWagon( wagon, System.currentTimeMillis( ) ) );
+                repositoryConnections.notify( );
+                pooled = true;
+            }
+        }
+        if ( pooled )
+        {
+            startEviction( );
+        }
+        else
+        {
+            invalidate( key, wagon );
+        }
+    }
+
+    /**
+     * Disconnects the wagon, without giving it back to the pool, and frees its connection. Should be used, if
+     * the state of the connection is unknown after a failure.
+     *
+     * @param key the key of the remote connection
+     * @param wagon the wagon to disconnect, or <code>null</code>, if no wagon was connected
+     */
+    public void invalidate( String key, Wagon wagon )
+    {
+        disconnect( wagon );
+        closed( getConnections( key ), 1 );
+    }
+
+    /**
+     * Disconnects the wagon. The borrowed connection is still held by the caller and may be used for a new wagon.
+     *
+     * @param wagon the wagon to disconnect
+     */
+    public void disconnect( Wagon wagon )
+    {
+        if ( wagon == null )
+        {
+            return;
+        }
+        try
+        {
+            wagon.disconnect( );
+        }
+        catch ( ConnectionException e )
+        {
+            log.warn( "Unable to disconnect wagon.", e );
+        }
+    }
+
+    /**
+     * Disconnects all wagons that were idle for longer than the idle timeout.
+     */
+    public void evictIdle( )
+    {
+        final long oldest = System.currentTimeMillis( ) - idleTimeout;
+        for ( RepositoryConnections repositoryConnections : connections.values( ) )
+        {
+            List<Wagon> evicted = new ArrayList<>( );
+            synchronized ( repositoryConnections )
+            {
+                Iterator<PooledWagon> it = repositoryConnections.idle.iterator( );
+                while ( it.hasNext( ) )
+                {
+                    PooledWagon pooled = it.next( );
+                    if ( pooled.releaseTime < oldest )
+                    {
+                        it.remove( );
+                        evicted.add( pooled.wagon );
+                    }
+                }
+            }
+            for ( Wagon wagon : evicted )
+            {
+                disconnect( wagon );
+            }
+            closed( repositoryConnections, evicted.size( ) );
+        }
+    }
+
+    /**
+     * Disconnects all idle wagons.
+     */
+    public void close( )
+    {
+        for ( RepositoryConnections repositoryConnections : connections.values( ) )
+        {
+            List<PooledWagon> wagons;
+            synchronized ( repositoryConnections )
+            {
+                wagons = new ArrayList<>( repositoryConnections.idle );
+                repositoryConnections.idle.clear( );
+            }
+            for ( PooledWagon pooled : wagons )
+            {
+                disconnect( pooled.wagon );
+            }
+            closed( repositoryConnections, wagons.size( ) );
+        }
+    }
+
+    /**
+     * Stops the eviction task and disconnects all idle wagons.
+     */
+    public void shutdown( )
+    {
+        synchronized ( this )
+        {
+            if ( evictionExecutor != null )
+            {
+                evictionExecutor.shutdownNow( );
+                evictionExecutor = null;
+            }
+        }
+        close( );
+    }
+
+    private synchronized void startEviction( )
+    {
+        if ( evictionExecutor == null )
+        {
+            evictionExecutor = Executors.newSingleThreadScheduledExecutor( r -> {
+                Thread thread = new Thread( r, "archiva-proxy-wagon-eviction" );
+                thread.setDaemon( true );
+                return thread;
+            } );
+            long interval = Math.max( MIN_EVICTION_INTERVAL, idleTimeout / 2 );
+            evictionExecutor.scheduleWithFixedDelay( this::evictIdle, interval, interval, TimeUnit.MILLISECONDS );
+        }
+    }
+
+    private RepositoryConnections getConnections( String key )
+    {
+        return connections.computeIfAbsent( key, k -> new RepositoryConnections( maxTotalPerRepository ) );
+    }
+
+    private static void closed( RepositoryConnections repositoryConnections, int count )
+    {
+        if ( count <= 0 )
+        {
+            return;
+        }
+        synchronized ( repositoryConnections )
+        {
+            repositoryConnections.open = Math.max( 0, repositoryConnections.open - count );
+            repositoryConnections.notifyAll( );
+        }
+    }
+
+    /**
+     * Returns the number of idle wagons for the given key.
+     *
+     * @param key the key of the remote connection
+     * @return the number of idle wagons
+     */
+    public int getIdleCount( String key )
+    {
+        RepositoryConnections repositoryConnections = connections.get( key );
+        if ( repositoryConnections == null )
+        {
+            return 0;
+        }
+        synchronized ( repositoryConnections )
+        {
+            return repositoryConnections.idle.size( );
+        }
+    }
+
+    /**
+     * Returns the number of idle wagons of all remote repositories.
+     */
+    public int getIdleCount( )
+    {
+        int count = 0;
+        for ( String key : connections.keySet( ) )
+        {
+            count += getIdleCount( key );
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of open connections, borrowed or idle, of all remote repositories.
+     */
+    public int getOpenCount( )
+    {
+        int count = 0;
+        for ( RepositoryConnections repositoryConnections : connections.values( ) )
+        {
+            synchronized ( repositoryConnections )
+            {
+                count += repositoryConnections.open;
+            }
+        }
+        return count;
+    }
+
+    public int getMaxTotalPerRepository( )
+    {
+        return maxTotalPerRepository;
+    }
+
+    /**
+     * Sets the maximum number of open connections per remote repository. The maximum applies to the
+     * repositories, that are connected after the change.
+     */
+    public void setMaxTotalPerRepository( int maxTotalPerRepository )
+    {
+        this.maxTotalPerRepository = maxTotalPerRepository;
+    }
+
+    public int getMaxIdlePerRepository( )
+    {
+        return maxIdlePerRepository;
+    }
+
+    public void setMaxIdlePerRepository( int maxIdlePerRepository )
+    {
+        this.maxIdlePerRepository = maxIdlePerRepository;
+    }
+
+    public long getIdleTimeout( )
+    {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout( long idleTimeout )
+    {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getBorrowTimeout( )
+    {
+        return borrowTimeout;
+    }
+
+    public void setBorrowTimeout( long borrowTimeout )
+    {
+        this.borrowTimeout = borrowTimeout;
+    }
+}
@@ -0,0 +1,391 @@
+package org.apache.archiva.proxy.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.common.filelock.DefaultFileLockManager;
+import org.apache.archiva.common.utils.FileUtils;
+import org.apache.archiva.policies.urlcache.UrlFailureCache;
+import org.apache.archiva.proxy.NotFoundException;
+import org.apache.archiva.proxy.ProxyException;
+import org.apache.archiva.proxy.model.ProxyConnector;
+import org.apache.archiva.repository.ManagedRepository;
+import org.apache.archiva.repository.RemoteRepository;
+import org.apache.archiva.repository.RepositoryCredentials;
+import org.apache.archiva.repository.base.PasswordCredentials;
+import org.apache.archiva.repository.storage.FilesystemStorage;
+import org.apache.archiva.repository.storage.StorageAsset;
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.Wagon;
+import org.apache.maven.wagon.events.TransferEvent;
+import org.apache.maven.wagon.events.TransferListener;
+import org.apache.maven.wagon.resource.Resource;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the use of the wagon pool and the checksum transfers of the proxy handler.
+ */
+public class MavenRepositoryProxyHandlerTransferTest
+{
+    private static final String REMOTE_PATH = "/org/example/test/1.0/test-1.0.jar";
+
+    private static final String URL = "http://repo.example.org/maven2" + REMOTE_PATH;
+
+    private Path baseDir;
+
+    private StorageAsset tmpResource;
+
+    private StorageAsset resource;
+
+    private TestProxyHandler handler;
+
+    private ProxyConnector connector;
+
+    private RemoteRepository remoteRepository;
+
+    private ManagedRepository managedRepository;
+
+    private RepositoryCredentials credentials = new PasswordCredentials( "user", "secret".toCharArray( ) );
+
+    @Before
+    public void setUp( )
+        throws Exception
+    {
+        baseDir = Files.createTempDirectory( "wagon-pool-test" );
+        tmpResource = new FilesystemStorage( baseDir.resolve( "work" ), new DefaultFileLockManager( ) ).getAsset(
+            "test-1.0.jar" );
+        resource = new FilesystemStorage( baseDir.resolve( "managed" ), new DefaultFileLockManager( ) ).getAsset(
+            REMOTE_PATH );
+        handler = new TestProxyHandler( );
+        connector = new ProxyConnector( );
+        remoteRepository = EasyMock.createNiceMock( RemoteRepository.class );
+        EasyMock.expect( remoteRepository.getId( ) ).andStubReturn( "central" );
+        EasyMock.expect( remoteRepository.getLocation( ) ).andStubReturn(
+            new URI( "http://repo.example.org/maven2" ) );
+        EasyMock.expect( remoteRepository.getTimeout( ) ).andStubReturn( Duration.ofSeconds( 60 ) );
+        EasyMock.expect( remoteRepository.getExtraHeaders( ) ).andStubReturn( Collections.emptyMap( ) );
+        EasyMock.expect( remoteRepository.getExtraParameters( ) ).andStubReturn( Collections.emptyMap( ) );
+        EasyMock.expect( remoteRepository.getLoginCredentials( ) ).andStubAnswer( ( ) -> credentials );
+        managedRepository = EasyMock.createNiceMock( ManagedRepository.class );
+        EasyMock.replay( remoteRepository, managedRepository );
+    }
+
+    @After
+    public void tearDown( )
+        throws Exception
+    {
+        handler.shutdown( );
+        FileUtils.deleteQuietly( baseDir );
+    }
+
+    @Test
+    public void testConnectedWagonIsReused( )
+        throws Exception
+    {
+        Wagon wagon = EasyMock.createNiceMock( Wagon.class );
+        EasyMock.replay( wagon );
+        handler.newWagons.add( wagon );
+
+        transfer( );
+        transfer( );
+
+        assertEquals( 1, handler.createdWagons );
+        assertEquals( 1, handler.getWagonPool( ).getIdleCount( getPoolKey( ) ) );
+    }
+
+    @Test
+    public void testStaleConnectionIsRetriedOnNewConnection( )
+        throws Exception
+    {
+        Wagon stale = EasyMock.createMock( Wagon.class );
+        stale.addTransferListener( EasyMock.anyObject( ) );
+        stale.removeTransferListener( EasyMock.anyObject( ) );
+        stale.get( EasyMock.anyString( ), EasyMock.anyObject( File.class ) );
+        EasyMock.expectLastCall( ).andThrow( new TransferFailedException( "Connection reset" ) );
+        stale.disconnect( );
+        EasyMock.replay( stale );
+        Wagon fresh = EasyMock.createNiceMock( Wagon.class );
+        EasyMock.replay( fresh );
+        assertNull( handler.getWagonPool( ).borrow( getPoolKey( ) ) );
+        handler.getWagonPool( ).release( getPoolKey( ), stale );
+        handler.newWagons.add( fresh );
+
+        transfer( );
+
+        EasyMock.verify( stale );
+        assertEquals( 1, handler.createdWagons );
+        assertTrue( handler.failures.isEmpty( ) );
+        assertEquals( 1, handler.getWagonPool( ).getIdleCount( getPoolKey( ) ) );
+    }
+
+    @Test
+    public void testFailureOnNewConnectionIsCached( )
+        throws Exception
+    {
+        Wagon wagon = EasyMock.createNiceMock( Wagon.class );
+        wagon.get( EasyMock.anyString( ), EasyMock.anyObject( File.class ) );
+        EasyMock.expectLastCall( ).andThrow( new TransferFailedException( "Server error" ) );
+        EasyMock.replay( wagon );
+        handler.newWagons.add( wagon );
+
+        try
+        {
+            transfer( );
+            fail( "ProxyException expected" );
+        }
+        catch ( ProxyException e )
+        {
+            // expected
+        }
+
+        assertTrue( handler.failures.contains( URL ) );
+        assertEquals( 0, handler.getWagonPool( ).getIdleCount( getPoolKey( ) ) );
+    }
+
+    @Test
+    public void testChangedConfigurationChangesPoolKey( )
+    {
+        String key = getPoolKey( );
+        assertFalse( key.contains( "secret" ) );
+
+        credentials = new PasswordCredentials( "user", "changed".toCharArray( ) );
+
+        assertNotEquals( key, getPoolKey( ) );
+    }
+
+    @Test
+    public void testChecksumsAreNotRequestedForMissingArtifact( )
+        throws Exception
+    {
+        Wagon wagon = EasyMock.createNiceMock( Wagon.class );
+        wagon.get( EasyMock.anyString( ), EasyMock.anyObject( File.class ) );
+        EasyMock.expectLastCall( ).andThrow( new ResourceDoesNotExistException( "Not found" ) );
+        EasyMock.replay( wagon );
+        handler.newWagons.add( wagon );
+
+        try
+        {
+            transfer( getChecksumFiles( ) );
+            fail( "NotFoundException expected" );
+        }
+        catch ( NotFoundException e )
+        {
+            // expected
+        }
+
+        EasyMock.verify( wagon );
+        assertEquals( 1, handler.createdWagons );
+        assertEquals( Collections.singleton( URL ), handler.failures );
+        assertFalse( Files.exists( baseDir.resolve( "work/test-1.0.jar.sha1" ) ) );
+    }
+
+    @Test
+    public void testChecksumsReusePooledWagon( )
+        throws Exception
+    {
+        Wagon wagon = EasyMock.createNiceMock( Wagon.class );
+        wagon.get( EasyMock.eq( REMOTE_PATH ), EasyMock.anyObject( File.class ) );
+        wagon.get( EasyMock.eq( REMOTE_PATH + ".sha1" ), EasyMock.anyObject( File.class ) );
+        EasyMock.replay( wagon );
+        handler.newWagons.add( wagon );
+
+        transfer( getChecksumFiles( ) );
+
+        EasyMock.verify( wagon );
+        assertEquals( 1, handler.createdWagons );
+        assertTrue( handler.failures.isEmpty( ) );
+    }
+
+    @Test
+    public void testChecksumIsDeferredIfNoConnectionIsAvailable( )
+        throws Exception
+    {
+        WagonConnectionPool wagonPool = new WagonConnectionPool( );
+        wagonPool.setMaxTotalPerRepository( 1 );
+        handler.setWagonPool( wagonPool );
+        final List<TransferListener> listeners = new ArrayList<>( );
+        final AtomicBoolean artifactTransfer = new AtomicBoolean( );
+        final AtomicBoolean overlapping = new AtomicBoolean( );
+        final Wagon wagon = EasyMock.createNiceMock( Wagon.class );
+        wagon.addTransferListener( EasyMock.anyObject( ) );
+        EasyMock.expectLastCall( ).andAnswer( ( ) -> {
+            listeners.add( (TransferListener) EasyMock.getCurrentArguments( )[0] );
+            return null;
+        } ).anyTimes( );
+        wagon.get( EasyMock.eq( REMOTE_PATH ), EasyMock.anyObject( File.class ) );
+        EasyMock.expectLastCall( ).andAnswer( ( ) -> {
+            artifactTransfer.set( true );
+            TransferEvent event = new TransferEvent( wagon, new Resource( REMOTE_PATH ), TransferEvent.TRANSFER_STARTED,
+                                                     TransferEvent.REQUEST_GET );
+            for ( TransferListener listener : listeners )
+            {
+                listener.transferStarted( event );
+            }
+            artifactTransfer.set( false );
+            return null;
+        } );
+        wagon.get( EasyMock.eq( REMOTE_PATH + ".sha1" ), EasyMock.anyObject( File.class ) );
+        EasyMock.expectLastCall( ).andAnswer( ( ) -> {
+            overlapping.compareAndSet( false, artifactTransfer.get( ) );
+            return null;
+        } );
+        EasyMock.replay( wagon );
+        handler.newWagons.add( wagon );
+
+        transfer( getChecksumFiles( ) );
+
+        // the checksum is downloaded on the connection of the artifact, after the artifact transfer released it
+        EasyMock.verify( wagon );
+        assertFalse( overlapping.get( ) );
+        assertEquals( 1, handler.createdWagons );
+        assertEquals( 1, wagonPool.getOpenCount( ) );
+        assertTrue( handler.failures.isEmpty( ) );
+    }
+
+    @Test
+    public void testChecksumFailureIsPassedOn( )
+        throws Exception
+    {
+        Wagon wagon = createChecksumFailingWagon( );
+        Wagon retryWagon = createChecksumFailingWagon( );
+        handler.newWagons.add( wagon );
+        handler.newWagons.add( retryWagon );
+
+        try
+        {
+            transfer( getChecksumFiles( ) );
+            fail( "ProxyException expected" );
+        }
+        catch ( ProxyException e )
+        {
+            // expected
+        }
+
+        // the checksum is retried once on a new connection, before the failure is cached
+        assertEquals( 2, handler.createdWagons );
+        assertTrue( handler.failures.contains( URL + ".sha1" ) );
+    }
+
+    private Wagon createChecksumFailingWagon( )
+        throws Exception
+    {
+        Wagon wagon = EasyMock.createNiceMock( Wagon.class );
+        wagon.get( EasyMock.endsWith( ".sha1" ), EasyMock.anyObject( File.class ) );
+        EasyMock.expectLastCall( ).andThrow( new TransferFailedException( "Server error" ) ).anyTimes( );
+        EasyMock.replay( wagon );
+        return wagon;
+    }
+
+    private StorageAsset[] getChecksumFiles( )
+    {
+        return new StorageAsset[]{ tmpResource.getStorage( ).getAsset( "test-1.0.jar.sha1" ) };
+    }
+
+    private String getPoolKey( )
+    {
+        return handler.getPoolKey( connector, remoteRepository );
+    }
+
+    private void transfer( )
+        throws ProxyException
+    {
+        transfer( new StorageAsset[0] );
+    }
+
+    private void transfer( StorageAsset[] checksumFiles )
+        throws ProxyException
+    {
+        handler.transferResources( connector, remoteRepository, tmpResource, checksumFiles, URL, REMOTE_PATH,
+                                   resource, baseDir.resolve( "work" ), managedRepository );
+    }
+
+    private static class TestProxyHandler
+        extends MavenRepositoryProxyHandler
+    {
+        final Deque<Wagon> newWagons = new ArrayDeque<>( );
+
+        final Set<String> failures = new HashSet<>( );
+
+        int createdWagons;
+
+        TestProxyHandler( )
+        {
+            urlFailureCache = new UrlFailureCache( )
+            {
+                @Override
+                public void cacheFailure( String url )
+                {
+                    failures.add( url );
+                }
+
+                @Override
+                public boolean hasFailedBefore( String url )
+                {
+                    return failures.contains( url );
+                }
+            };
+        }
+
+        @Override
+        protected Wagon createWagon( ProxyConnector connector, RemoteRepository remoteRepository )
+        {
+            createdWagons++;
+            return newWagons.remove( );
+        }
+
+        @Override
+        protected boolean connectToRepository( ProxyConnector connector, Wagon wagon,
+                                               RemoteRepository remoteRepository )
+        {
+            return true;
+        }
+
+        @Override
+        protected List<ChecksumAlgorithm> getChecksumAlgorithms( )
+        {
+            return Collections.emptyList( );
+        }
+    }
+}
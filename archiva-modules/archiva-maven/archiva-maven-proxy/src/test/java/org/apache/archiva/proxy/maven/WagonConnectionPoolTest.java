@@ -0,0 +1,208 @@
+package org.apache.archiva.proxy.maven;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.wagon.ConnectionException;
+import org.apache.maven.wagon.Wagon;
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Test the reuse and eviction of connected wagons.
+ */
+public class WagonConnectionPoolTest
+{
+
+    @Test
+    public void testReleasedWagonIsReused( )
+        throws Exception
+    {
+        WagonConnectionPool pool = new WagonConnectionPool( );
+        Wagon wagon = EasyMock.createMock( Wagon.class );
+        EasyMock.replay( wagon );
+
+        assertNull( pool.borrow( "central" ) );
+        pool.release( "central", wagon );
+        assertEquals( 1, pool.getIdleCount( "central" ) );
+        assertNull( pool.borrow( "other" ) );
+        assertSame( wagon, pool.borrow( "central" ) );
+        assertEquals( 0, pool.getIdleCount( "central" ) );
+
+        EasyMock.verify( wagon );
+    }
+
+    @Test
+    public void testMaxIdleDisconnectsWagon( )
+        throws Exception
+    {
+        WagonConnectionPool pool = new WagonConnectionPool( );
+        pool.setMaxIdlePerRepository( 1 );
+        Wagon first = EasyMock.createMock( Wagon.class );
+        Wagon second = EasyMock.createMock( Wagon.class );
+        second.disconnect( );
+        EasyMock.expectLastCall( );
+        EasyMock.replay( first, second );
+
+        assertNull( pool.borrow( "central" ) );
+        assertNull( pool.borrow( "central" ) );
+        pool.release( "central", first );
+        pool.release( "central", second );
+        assertEquals( 1, pool.getOpenCount( ) );
+        assertEquals( 1, pool.getIdleCount( "central" ) );
+
+        EasyMock.verify( first, second );
+    }
+
+    @Test
+    public void testIdleWagonIsEvicted( )
+        throws Exception
+    {
+        WagonConnectionPool pool = new WagonConnectionPool( );
+        pool.setIdleTimeout( -1 );
+        Wagon wagon = EasyMock.createMock( Wagon.class );
+        wagon.disconnect( );
+        EasyMock.expectLastCall( );
+        EasyMock.replay( wagon );
+
+        assertNull( pool.borrow( "central" ) );
+        pool.release( "central", wagon );
+        pool.evictIdle( );
+        assertEquals( 0, pool.getIdleCount( "central" ) );
+        assertEquals( 0, pool.getOpenCount( ) );
+
+        EasyMock.verify( wagon );
+    }
+
+    @Test
+    public void testCloseDisconnectsIdleWagons( )
+        throws Exception
+    {
+        WagonConnectionPool pool = new WagonConnectionPool( );
+        Wagon wagon = EasyMock.createMock( Wagon.class );
+        wagon.disconnect( );
+        EasyMock.expectLastCall( );
+        EasyMock.replay( wagon );
+
+        pool.release( "central", wagon );
+        pool.close( );
+        assertEquals( 0, pool.getIdleCount( "central" ) );
+
+        EasyMock.verify( wagon );
+    }
+
+    @Test
+    public void testMaxTotalLimitsOpenConnections( )
+        throws Exception
+    {
+        WagonConnectionPool pool = new WagonConnectionPool( );
+        pool.setMaxTotalPerRepository( 2 );
+        pool.setBorrowTimeout( 50 );
+        Wagon wagon = EasyMock.createNiceMock( Wagon.class );
+        EasyMock.replay( wagon );
+
+        assertNull( pool.borrow( "central" ) );
+        assertNull( pool.borrow( "central" ) );
+        assertEquals( 2, pool.getOpenCount( ) );
+        try
+        {
+            pool.borrow( "central" );
+            fail( "ConnectionException expected" );
+        }
+        catch ( ConnectionException e )
+        {
+            // expected
+        }
+        // the other remote repository has its own connections
+        assertNull( pool.borrow( "other" ) );
+
+        // a failed connection is given back
+        pool.invalidate( "central", null );
+        assertNull( pool.borrow( "central", 0 ) );
+
+        // an idle wagon is reused, although the maximum is reached
+        pool.release( "central", wagon );
+        assertSame( wagon, pool.borrow( "central", 0 ) );
+    }
+
+    @Test
+    public void testWaitingCallerGetsReleasedWagon( )
+        throws Exception
+    {
+        WagonConnectionPool pool = new WagonConnectionPool( );
+        pool.setMaxTotalPerRepository( 1 );
+        Wagon wagon = EasyMock.createNiceMock( Wagon.class );
+        EasyMock.replay( wagon );
+        assertNull( pool.borrow( "central" ) );
+
+        ExecutorService executor = Executors.newSingleThreadExecutor( );
+        try
+        {
+            Future<Wagon> waiting = executor.submit( ( ) -> pool.borrow( "central", 10000 ) );
+            Thread.sleep( 50 );
+            assertFalse( waiting.isDone( ) );
+
+            pool.release( "central", wagon );
+            assertSame( wagon, waiting.get( 10, TimeUnit.SECONDS ) );
+            assertEquals( 1, pool.getOpenCount( ) );
+        }
+        finally
+        {
+            executor.shutdownNow( );
+        }
+    }
+
+    @Test
+    public void testIdleWagonIsEvictedInBackground( )
+        throws Exception
+    {
+        WagonConnectionPool pool = new WagonConnectionPool( );
+        pool.setIdleTimeout( 0 );
+        Wagon wagon = EasyMock.createNiceMock( Wagon.class );
+        EasyMock.replay( wagon );
+        try
+        {
+            assertNull( pool.borrow( "central" ) );
+            pool.release( "central", wagon );
+
+            long end = System.currentTimeMillis( ) + 10000;
+            while ( pool.getIdleCount( "central" ) > 0 && System.currentTimeMillis( ) < end )
+            {
+                Thread.sleep( 20 );
+            }
+            assertEquals( 0, pool.getIdleCount( "central" ) );
+            assertEquals( 0, pool.getOpenCount( ) );
+        }
+        finally
+        {
+            pool.shutdown( );
+        }
+    }
+}
@@ -20,6 +20,7 @@
  */
 
 import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.ChecksumCache;
 import org.apache.archiva.checksum.ChecksummedFile;
 import org.apache.archiva.common.Try;
 import org.apache.archiva.common.utils.VersionUtil;
@@ -52,6 +53,7 @@
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
@@ -91,6 +93,11 @@
 
     private ModelBuilder builder;
 
+    /**
+     * The parent POMs read by the model builder, shared by all requests.
+     */
+    private RepositoryModelCache modelCache;
+
     @Inject
     RepositoryRegistry repositoryRegistry;
 
@@ -114,6 +121,9 @@
     @Inject
     private MavenSystemManager mavenSystemManager;
 
+    @Autowired(required = false)
+    private ChecksumCache checksumCache;
+
     private static final String METADATA_FILENAME_START = "maven-metadata";
 
     private static final String METADATA_FILENAME = METADATA_FILENAME_START + ".xml";
@@ -127,7 +137,7 @@
     @PostConstruct
     public void initialize() {
         builder = new DefaultModelBuilderFactory().newInstance();
-
+        modelCache = new RepositoryModelCache(Integer.getInteger("archiva.maven2.modelCacheSize", 2000));
     }
 
     @Override
@@ -234,9 +244,12 @@ public ProjectVersionMetadata readProjectVersionMetadata(ReadMetadataRequest rea
         req.setSystemProperties(System.getProperties());
 
         // MRM-1411
-        req.setModelResolver(
+        RepositoryModelResolver modelResolver =
                 new RepositoryModelResolver(managedRepository, pathTranslator, wagonFactory, remoteRepositories,
-                        networkProxies, managedRepository, mavenSystemManager));
+                        networkProxies, managedRepository, mavenSystemManager);
+        modelResolver.setModelCache(modelCache);
+        req.setModelResolver(modelResolver);
+        req.setModelCache(modelCache.forRepository(managedRepository.getAsset("")));
 
         Model model;
         try {
@@ -741,10 +754,10 @@ private static String removePrefix(final String href) {
         return joinedString;
     }
 
-    private static void populateArtifactMetadataFromFile(ArtifactMetadata metadata, StorageAsset file) throws IOException {
+    private void populateArtifactMetadataFromFile(ArtifactMetadata metadata, StorageAsset file) throws IOException {
         metadata.setWhenGathered(ZonedDateTime.now(ZoneId.of("GMT")));
         metadata.setFileLastModified(file.getModificationTime().toEpochMilli());
-        ChecksummedFile checksummedFile = new ChecksummedFile(file.getFilePath());
+        ChecksummedFile checksummedFile = new ChecksummedFile(file.getFilePath(), Collections.emptyList(), checksumCache);
         try {
             metadata.setMd5(checksummedFile.calculateChecksum(ChecksumAlgorithm.MD5));
         } catch (IOException e) {
@@ -0,0 +1,278 @@
+package org.apache.archiva.metadata.repository.storage.maven2;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.utils.VersionUtil;
+import org.apache.archiva.repository.storage.StorageAsset;
+import org.apache.maven.model.building.ModelCache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the parent POMs, that are resolved and read while the effective models of the POMs of a repository
+ * are built. Most artifacts of a repository share a few parent hierarchies, so without the cache the same
+ * parent POMs are resolved and parsed again for each project version.
+ *
+ * The cache keeps the files, that the {@link RepositoryModelResolver} resolved for a parent, and the raw models,
+ * that the model builder read from these files. An entry is only valid, as long as the file has the same
+ * modification time and size as at the time it was resolved. The entries are kept per repository, because
+ * a parent may only be available in some of the repositories. Snapshot versions are not cached, as a newer
+ * snapshot may be resolved to a different file.
+ *
+ * The imported dependency management is not cached, because it depends on the parents of the imported POM,
+ * that are not known to the cache.
+ *
+ * The number of entries is limited, the least recently used entry is removed first.
+ */
+public class RepositoryModelCache
+{
+    /**
+     * The tag of the model builder for raw parent models.
+     */
+    private static final String RAW_TAG = "raw";
+
+    private final int maxEntries;
+
+    private final Map<String, Path> resolvedFiles;
+
+    private final Map<String, Entry> models;
+
+    private final AtomicLong hits = new AtomicLong( );
+
+    private final AtomicLong misses = new AtomicLong( );
+
+    private static final class Entry
+    {
+        final Path file;
+
+        final long modified;
+
+        final long size;
+
+        final Object data;
+
+        Entry( Path file, long modified, long size, Object data )
+        {
+            this.file = file;
+            this.modified = modified;
+            this.size = size;
+            this.data = data;
+        }
+    }
+
+    public RepositoryModelCache( int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+        this.resolvedFiles = createLruMap( );
+        this.models = createLruMap( );
+    }
+
+    private <V> Map<String, V> createLruMap( )
+    {
+        return new LinkedHashMap<String, V>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, V> eldest )
+            {
+                return size( ) > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache for the model builder, that is used to read the POMs of the given repository.
+     *
+     * @param basedir the base directory of the repository
+     * @return the model cache of the repository
+     */
+    public ModelCache forRepository( StorageAsset basedir )
+    {
+        final String repository = getRepositoryKey( basedir );
+        return new ModelCache( )
+        {
+            @Override
+            public void put( String groupId, String artifactId, String version, String tag, Object data )
+            {
+                putModel( repository, groupId, artifactId, version, tag, data );
+            }
+
+            @Override
+            public Object get( String groupId, String artifactId, String version, String tag )
+            {
+                return getModel( repository, groupId, artifactId, version, tag );
+            }
+        };
+    }
+
+    /**
+     * Returns the POM file, that was resolved for the given coordinates, if the file is unchanged.
+     *
+     * @return the file or <code>null</code>, if the POM must be resolved again
+     */
+    public Path getResolvedFile( StorageAsset basedir, String groupId, String artifactId, String version )
+    {
+        if ( VersionUtil.isSnapshot( version ) )
+        {
+            return null;
+        }
+        String key = getKey( getRepositoryKey( basedir ), groupId, artifactId, version );
+        Path file;
+        synchronized ( resolvedFiles )
+        {
+            file = resolvedFiles.get( key );
+        }
+        if ( file != null && Files.isRegularFile( file ) )
+        {
+            return file;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the POM file, that was resolved for the given coordinates.
+     */
+    public void putResolvedFile( StorageAsset basedir, String groupId, String artifactId, String version, Path file )
+    {
+        if ( VersionUtil.isSnapshot( version ) )
+        {
+            return;
+        }
+        String key = getKey( getRepositoryKey( basedir ), groupId, artifactId, version );
+        synchronized ( resolvedFiles )
+        {
+            resolvedFiles.put( key, file );
+        }
+    }
+
+    private Object getModel( String repository, String groupId, String artifactId, String version, String tag )
+    {
+        if ( !RAW_TAG.equals( tag ) || VersionUtil.isSnapshot( version ) )
+        {
+            return null;
+        }
+        String key = getKey( repository, groupId, artifactId, version ) + ":" + tag;
+        Entry entry;
+        synchronized ( models )
+        {
+            entry = models.get( key );
+        }
+        if ( entry != null )
+        {
+            try
+            {
+                BasicFileAttributes attrs = Files.readAttributes( entry.file, BasicFileAttributes.class );
+                if ( attrs.lastModifiedTime( ).toMillis( ) == entry.modified && attrs.size( ) == entry.size )
+                {
+                    hits.incrementAndGet( );
+                    return entry.data;
+                }
+            }
+            catch ( IOException e )
+            {
+                // removed
+            }
+            synchronized ( models )
+            {
+                models.remove( key, entry );
+            }
+        }
+        misses.incrementAndGet( );
+        return null;
+    }
+
+    private void putModel( String repository, String groupId, String artifactId, String version, String tag,
+                           Object data )
+    {
+        if ( !RAW_TAG.equals( tag ) || VersionUtil.isSnapshot( version ) )
+        {
+            return;
+        }
+        String key = getKey( repository, groupId, artifactId, version );
+        Path file;
+        synchronized ( resolvedFiles )
+        {
+            file = resolvedFiles.get( key );
+        }
+        if ( file == null )
+        {
+            // not resolved by the repository, e.g. a parent found by the relative path
+            return;
+        }
+        try
+        {
+            BasicFileAttributes attrs = Files.readAttributes( file, BasicFileAttributes.class );
+            Entry entry = new Entry( file, attrs.lastModifiedTime( ).toMillis( ), attrs.size( ), data );
+            synchronized ( models )
+            {
+                models.put( key + ":" + tag, entry );
+            }
+        }
+        catch ( IOException e )
+        {
+            // not cached
+        }
+    }
+
+    private static String getRepositoryKey( StorageAsset basedir )
+    {
+        return basedir.getFilePath( ).toString( );
+    }
+
+    private static String getKey( String repository, String groupId, String artifactId, String version )
+    {
+        return repository + ":" + groupId + ":" + artifactId + ":" + version;
+    }
+
+    public void clear( )
+    {
+        synchronized ( resolvedFiles )
+        {
+            resolvedFiles.clear( );
+        }
+        synchronized ( models )
+        {
+            models.clear( );
+        }
+    }
+
+    public int size( )
+    {
+        synchronized ( models )
+        {
+            return models.size( );
+        }
+    }
+
+    public long getHits( )
+    {
+        return hits.get( );
+    }
+
+    public long getMisses( )
+    {
+        return misses.get( );
+    }
+}
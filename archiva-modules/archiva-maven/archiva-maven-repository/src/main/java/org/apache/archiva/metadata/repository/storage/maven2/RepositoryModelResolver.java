@@ -99,6 +99,8 @@
 
     private ManagedRepository managedRepository;
 
+    private RepositoryModelCache modelCache;
+
     public RepositoryModelResolver(StorageAsset basedir, RepositoryPathTranslator pathTranslator )
     {
         this.basedir = basedir;
@@ -132,10 +134,27 @@ public RepositoryModelResolver(ManagedRepository managedRepository, RepositoryPa
     }
 
 
+    /**
+     * Sets the cache, that remembers the resolved POM files of the repository.
+     */
+    public void setModelCache( RepositoryModelCache modelCache )
+    {
+        this.modelCache = modelCache;
+    }
+
     @Override
     public ModelSource resolveModel( String groupId, String artifactId, String version )
         throws UnresolvableModelException
     {
+        if ( modelCache != null )
+        {
+            Path cachedModel = modelCache.getResolvedFile( basedir, groupId, artifactId, version );
+            if ( cachedModel != null )
+            {
+                return new FileModelSource( cachedModel.toFile() );
+            }
+        }
+
         String filename = artifactId + "-" + version + ".pom";
         // TODO: we need to convert 1.0-20091120.112233-1 type paths to baseVersion for the below call - add a test
 
@@ -186,6 +205,11 @@ public ModelSource resolveModel( String groupId, String artifactId, String versi
             }
         }
 
+        if ( modelCache != null && model.exists() )
+        {
+            modelCache.putResolvedFile( basedir, groupId, artifactId, version, model.getFilePath() );
+        }
+
         return new FileModelSource( model.getFilePath().toFile() );
     }
 
@@ -285,8 +309,11 @@ public void addRepository( Repository repository, boolean b ) throws InvalidRepo
     @Override
     public ModelResolver newCopy()
     {
-        return new RepositoryModelResolver( managedRepository,  pathTranslator, wagonFactory, remoteRepositories, 
-                                            networkProxyMap, targetRepository, mavenSystemManager);
+        RepositoryModelResolver resolver =
+            new RepositoryModelResolver( managedRepository,  pathTranslator, wagonFactory, remoteRepositories,
+                                         networkProxyMap, targetRepository, mavenSystemManager);
+        resolver.setModelCache( modelCache );
+        return resolver;
     }
 
     // FIXME: we need to do some refactoring, we cannot re-use the proxy components of archiva-proxy in maven2-repository
@@ -0,0 +1,168 @@
+package org.apache.archiva.metadata.repository.storage.maven2;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.common.filelock.DefaultFileLockManager;
+import org.apache.archiva.common.utils.FileUtils;
+import org.apache.archiva.repository.storage.FilesystemStorage;
+import org.apache.archiva.repository.storage.StorageAsset;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the building of the effective models of the project versions of a repository, where all projects
+ * share a deep parent hierarchy with dependency management, as in the large multi module projects. Each
+ * operation builds the models of all projects, with and without the model cache.
+ *
+ * The benchmark is not run by the unit tests. Run it by the main method from the test classpath.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class RepositoryModelCacheBenchmark
+{
+    private static final int DEPENDENCIES = 50;
+
+    @Param( { "10" } )
+    public int depth;
+
+    @Param( { "100" } )
+    public int projects;
+
+    @Param( { "true", "false" } )
+    public boolean cached;
+
+    private Path repoDir;
+
+    private StorageAsset basedir;
+
+    private ModelBuilder builder;
+
+    private RepositoryModelCache cache;
+
+    @Setup( Level.Trial )
+    public void createRepository( )
+        throws Exception
+    {
+        repoDir = Files.createTempDirectory( "model-cache-benchmark" );
+        for ( int level = 0; level < depth; level++ )
+        {
+            StringBuilder content = new StringBuilder( "<packaging>pom</packaging>" );
+            if ( level > 0 )
+            {
+                content.append( "<parent><groupId>org.example</groupId><artifactId>parent-" ).append(
+                    level - 1 ).append( "</artifactId><version>1.0</version></parent>" );
+            }
+            content.append( "<properties><level" ).append( level ).append( ".version>1." ).append( level ).append(
+                "</level" ).append( level ).append( ".version></properties><dependencyManagement><dependencies>" );
+            for ( int i = 0; i < DEPENDENCIES; i++ )
+            {
+                content.append( "<dependency><groupId>org.example.level" ).append( level ).append(
+                    "</groupId><artifactId>dependency-" ).append( i ).append( "</artifactId><version>${level" ).append(
+                    level ).append( ".version}</version></dependency>" );
+            }
+            content.append( "</dependencies></dependencyManagement>" );
+            writePom( "parent-" + level, content.toString( ) );
+        }
+        for ( int i = 0; i < projects; i++ )
+        {
+            writePom( "project-" + i, "<parent><groupId>org.example</groupId><artifactId>parent-" + ( depth - 1 )
+                + "</artifactId><version>1.0</version></parent>" );
+        }
+        basedir = new FilesystemStorage( repoDir, new DefaultFileLockManager( ) ).getAsset( "" );
+        builder = new DefaultModelBuilderFactory( ).newInstance( );
+        cache = new RepositoryModelCache( 2000 );
+    }
+
+    @TearDown( Level.Trial )
+    public void removeRepository( )
+        throws Exception
+    {
+        FileUtils.deleteDirectory( repoDir );
+    }
+
+    @Benchmark
+    public void buildModels( Blackhole blackhole )
+        throws Exception
+    {
+        for ( int i = 0; i < projects; i++ )
+        {
+            RepositoryModelResolver resolver =
+                new RepositoryModelResolver( basedir, new Maven2RepositoryPathTranslator( ) );
+            ModelBuildingRequest req = new DefaultModelBuildingRequest( ).setProcessPlugins( false ).setPomFile(
+                repoDir.resolve( "org/example/project-" + i + "/1.0/project-" + i + "-1.0.pom" ).toFile( ) )
+                .setTwoPhaseBuilding( false ).setValidationLevel( ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL );
+            req.setSystemProperties( System.getProperties( ) );
+            if ( cached )
+            {
+                resolver.setModelCache( cache );
+                req.setModelCache( cache.forRepository( basedir ) );
+            }
+            req.setModelResolver( resolver );
+            blackhole.consume( builder.build( req ).getEffectiveModel( ) );
+        }
+    }
+
+    private void writePom( String artifactId, String content )
+        throws Exception
+    {
+        Path dir = repoDir.resolve( "org/example/" + artifactId + "/1.0" );
+        Files.createDirectories( dir );
+        Files.write( dir.resolve( artifactId + "-1.0.pom" ), (
+            "<project><modelVersion>4.0.0</modelVersion><groupId>org.example</groupId><artifactId>" + artifactId
+                + "</artifactId><version>1.0</version>" + content + "</project>" ).getBytes( "UTF-8" ) );
+    }
+
+    public static void main( String[] args )
+        throws RunnerException
+    {
+        Options options = new OptionsBuilder( )
+            .include( RepositoryModelCacheBenchmark.class.getSimpleName( ) )
+            .build( );
+        new Runner( options ).run( );
+    }
+}
@@ -0,0 +1,149 @@
+package org.apache.archiva.metadata.repository.storage.maven2;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.common.filelock.DefaultFileLockManager;
+import org.apache.archiva.common.utils.FileUtils;
+import org.apache.archiva.repository.storage.FilesystemStorage;
+import org.apache.archiva.repository.storage.StorageAsset;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * RepositoryModelCacheTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class RepositoryModelCacheTest
+    extends TestCase
+{
+    private static final int DEPTH = 4;
+
+    private Path repoDir;
+
+    private StorageAsset basedir;
+
+    private ModelBuilder builder;
+
+    private RepositoryModelCache cache;
+
+    @Before
+    @Override
+    public void setUp( )
+        throws Exception
+    {
+        super.setUp( );
+        repoDir = Paths.get( "target/model-cache-repository" ).toAbsolutePath( );
+        FileUtils.deleteDirectory( repoDir );
+        for ( int i = 0; i < DEPTH; i++ )
+        {
+            writeParent( i, "value" );
+        }
+        writePom( "child", "<parent><groupId>org.example</groupId><artifactId>parent-" + ( DEPTH - 1 )
+            + "</artifactId><version>1.0</version></parent>" );
+        basedir = new FilesystemStorage( repoDir, new DefaultFileLockManager( ) ).getAsset( "" );
+        builder = new DefaultModelBuilderFactory( ).newInstance( );
+        cache = new RepositoryModelCache( 100 );
+    }
+
+    @Test
+    public void testParentsAreCached( )
+        throws Exception
+    {
+        assertEquals( "value", buildChild( ).getProperties( ).getProperty( "root.property" ) );
+        assertEquals( 0, cache.getHits( ) );
+        assertEquals( DEPTH, cache.size( ) );
+
+        assertEquals( "value", buildChild( ).getProperties( ).getProperty( "root.property" ) );
+        assertEquals( DEPTH, cache.getHits( ) );
+    }
+
+    @Test
+    public void testChangedParentIsReadAgain( )
+        throws Exception
+    {
+        buildChild( );
+
+        Path root = writeParent( 0, "changed" );
+        Files.setLastModifiedTime( root, FileTime.fromMillis( System.currentTimeMillis( ) - 60000 ) );
+
+        assertEquals( "changed", buildChild( ).getProperties( ).getProperty( "root.property" ) );
+    }
+
+    @Test
+    public void testRepositoriesAreSeparated( )
+        throws Exception
+    {
+        buildChild( );
+
+        StorageAsset otherBasedir =
+            new FilesystemStorage( Paths.get( "target/model-cache-other" ).toAbsolutePath( ),
+                                   new DefaultFileLockManager( ) ).getAsset( "" );
+        assertNull( cache.getResolvedFile( otherBasedir, "org.example", "parent-0", "1.0" ) );
+        assertNull( cache.forRepository( otherBasedir ).get( "org.example", "parent-0", "1.0", "raw" ) );
+        assertNotNull( cache.getResolvedFile( basedir, "org.example", "parent-0", "1.0" ) );
+    }
+
+    private Model buildChild( )
+        throws Exception
+    {
+        RepositoryModelResolver resolver =
+            new RepositoryModelResolver( basedir, new Maven2RepositoryPathTranslator( ) );
+        resolver.setModelCache( cache );
+        ModelBuildingRequest req = new DefaultModelBuildingRequest( ).setProcessPlugins( false ).setPomFile(
+            repoDir.resolve( "org/example/child/1.0/child-1.0.pom" ).toFile( ) ).setTwoPhaseBuilding(
+            false ).setValidationLevel( ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL );
+        req.setModelResolver( resolver );
+        req.setModelCache( cache.forRepository( basedir ) );
+        return builder.build( req ).getEffectiveModel( );
+    }
+
+    private Path writeParent( int level, String value )
+        throws Exception
+    {
+        String content = level == 0
+            ? "<properties><root.property>" + value + "</root.property></properties>"
+            : "<parent><groupId>org.example</groupId><artifactId>parent-" + ( level - 1 )
+                + "</artifactId><version>1.0</version></parent>";
+        return writePom( "parent-" + level, "<packaging>pom</packaging>" + content );
+    }
+
+    private Path writePom( String artifactId, String content )
+        throws Exception
+    {
+        Path dir = repoDir.resolve( "org/example/" + artifactId + "/1.0" );
+        Files.createDirectories( dir );
+        return Files.write( dir.resolve( artifactId + "-1.0.pom" ), (
+            "<project><modelVersion>4.0.0</modelVersion><groupId>org.example</groupId><artifactId>" + artifactId
+                + "</artifactId><version>1.0</version>" + content + "</project>" ).getBytes( "UTF-8" ) );
+    }
+}
@@ -23,6 +23,8 @@
 import org.apache.archiva.indexer.ArchivaIndexingContext;
 import org.apache.archiva.indexer.UnsupportedBaseContextException;
 import org.apache.archiva.redback.components.taskqueue.Task;
+import org.apache.archiva.redback.components.taskqueue.TaskQueue;
+import org.apache.archiva.redback.components.taskqueue.TaskQueueException;
 import org.apache.archiva.redback.components.taskqueue.execution.TaskExecutionException;
 import org.apache.archiva.redback.components.taskqueue.execution.TaskExecutor;
 import org.apache.archiva.repository.ManagedRepository;
@@ -50,8 +52,19 @@
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * ArchivaIndexingTaskExecutor Executes all indexing tasks. Adding, updating and removing artifacts from the index are
@@ -79,10 +92,53 @@
     @Inject
     IndexerEngine indexerEngine;
 
+    @Inject
+    @Named( value = "taskQueue#indexing" )
+    private TaskQueue<ArtifactIndexingTask> indexingQueue;
+
+    /**
+     * The maximum number of queued add and delete tasks, that are indexed together with one commit.
+     */
+    private int maxBatchSize = Integer.getInteger( "archiva.indexing.batchSize", 500 );
+
+    /**
+     * The repositories with indexed artifacts, that are not optimized and packed yet. The index is finished,
+     * when there are no more tasks for the repository in the queue.
+     */
+    private final Map<String, PendingFinish> pendingFinish = new LinkedHashMap<>( );
+
+    private final AtomicLong batchCount = new AtomicLong( );
+
+    private final AtomicLong batchedTaskCount = new AtomicLong( );
+
+    private volatile int lastBatchSize;
+
+    private volatile int maxBatchSizeReached;
+
+    private volatile long lastQueueLag;
+
+    private volatile long maxQueueLag;
+
+    private static final class PendingFinish
+    {
+        final ArtifactIndexingTask task;
+
+        final IndexingContext context;
+
+        PendingFinish( ArtifactIndexingTask task, IndexingContext context )
+        {
+            this.task = task;
+            this.context = context;
+        }
+    }
+
     /**
      * depending on current {@link Task} you have.
      * If {@link org.apache.archiva.scheduler.indexing.ArtifactIndexingTask.Action#FINISH} &amp;&amp; isExecuteOnEntireRepo:
      * repository will be scanned.
+     * Otherwise the add and delete tasks for the same repository, that follow the task in the queue, are taken from
+     * the queue and indexed together with one commit. The index is optimized and packed, when there are no more
+     * tasks for the repository in the queue.
      *
      * @param task
      * @throws TaskExecutionException
@@ -94,20 +150,11 @@ public void executeTask( Task task )
         ArtifactIndexingTask indexingTask = (ArtifactIndexingTask) task;
 
         ManagedRepository repository = indexingTask.getRepository( );
-        ArchivaIndexingContext archivaContext = indexingTask.getContext( );
-        IndexingContext context = null;
-        try
-        {
-            context = archivaContext.getBaseContext( IndexingContext.class );
-        }
-        catch ( UnsupportedBaseContextException e )
-        {
-            throw new TaskExecutionException( "Bad repository type.", e );
-        }
 
         if ( ArtifactIndexingTask.Action.FINISH.equals( indexingTask.getAction( ) )
             && indexingTask.isExecuteOnEntireRepo( ) )
         {
+            IndexingContext context = getBaseContext( indexingTask.getContext( ) );
             long start = System.currentTimeMillis( );
             try
             {
@@ -131,122 +178,285 @@ public void executeTask( Task task )
             log.info( "indexed maven repository: {}, onlyUpdate: {}, time {} ms", repository.getId( ),
                 indexingTask.isOnlyUpdate( ), ( end - start ) );
             log.debug( "Finishing indexing task on repo: {}", repository.getId( ) );
+            synchronized ( pendingFinish )
+            {
+                pendingFinish.remove( repository.getId( ) );
+            }
             finishIndexingTask( indexingTask, repository, context );
         }
         else
         {
-            // create context if not a repo scan request
-            if ( !indexingTask.isExecuteOnEntireRepo( ) )
+            executeBatch( drainBatch( indexingTask ) );
+        }
+        finishIdleRepositories( );
+    }
+
+    /**
+     * Returns the given task and the add and delete tasks for the same repository, that directly follow
+     * in the queue. The returned tasks are removed from the queue.
+     */
+    private List<ArtifactIndexingTask> drainBatch( ArtifactIndexingTask first )
+    {
+        List<ArtifactIndexingTask> batch = new ArrayList<>( );
+        batch.add( first );
+        if ( indexingQueue == null || maxBatchSize <= 1 || first.getResourceFile( ) == null )
+        {
+            return batch;
+        }
+        try
+        {
+            for ( ArtifactIndexingTask queued : indexingQueue.getQueueSnapshot( ) )
             {
-                try
+                // a task for a file already in the batch must see the committed result of the first one
+                if ( batch.size( ) >= maxBatchSize || !isBatchable( first, queued ) || batch.contains( queued ) )
                 {
-                    log.debug( "Creating indexing context on resource: {}", //
-                        ( indexingTask.getResourceFile( ) == null
-                            ? "none"
-                            : indexingTask.getResourceFile( ) ) );
-                    archivaContext = repository.getIndexingContext( );
-                    context = archivaContext.getBaseContext( IndexingContext.class );
+                    break;
                 }
-                catch ( UnsupportedBaseContextException e )
+                // the task may have been taken by another thread in the meantime
+                if ( indexingQueue.remove( queued ) )
                 {
-                    log.error( "Error occurred while creating context: {}", e.getMessage( ) );
-                    throw new TaskExecutionException( "Error occurred while creating context: " + e.getMessage( ), e );
+                    batch.add( queued );
                 }
             }
+        }
+        catch ( TaskQueueException e )
+        {
+            log.warn( "Could not read the indexing queue, indexing a single task: {}", e.getMessage( ) );
+        }
+        return batch;
+    }
 
-            if ( context == null || context.getIndexDirectory( ) == null )
+    private static boolean isBatchable( ArtifactIndexingTask first, ArtifactIndexingTask queued )
+    {
+        return !ArtifactIndexingTask.Action.FINISH.equals( queued.getAction( ) ) && queued.getResourceFile( ) != null
+            && first.getRepository( ).getId( ).equals( queued.getRepository( ).getId( ) );
+    }
+
+    private void executeBatch( List<ArtifactIndexingTask> batch )
+        throws TaskExecutionException
+    {
+        long lag = System.currentTimeMillis( ) - batch.get( 0 ).getCreationTime( );
+        Set<IndexingContext> contexts = Collections.newSetFromMap( new IdentityHashMap<>( ) );
+        TaskExecutionException failure = null;
+        for ( ArtifactIndexingTask indexingTask : batch )
+        {
+            try
             {
-                throw new TaskExecutionException( "Trying to index an artifact but the context is already closed" );
+                IndexingContext context = getIndexingContext( indexingTask );
+                indexArtifact( indexingTask, context );
+                contexts.add( context );
+                if ( !indexingTask.isExecuteOnEntireRepo( ) )
+                {
+                    synchronized ( pendingFinish )
+                    {
+                        pendingFinish.put( indexingTask.getRepository( ).getId( ),
+                                           new PendingFinish( indexingTask, context ) );
+                    }
+                }
             }
+            catch ( TaskExecutionException e )
+            {
+                // index the remaining tasks of the batch and report the first failure
+                if ( failure == null )
+                {
+                    failure = e;
+                }
+            }
+        }
 
+        for ( IndexingContext context : contexts )
+        {
             try
             {
-                Path artifactFile = indexingTask.getResourceFile( );
-                if ( artifactFile == null )
+                context.updateTimestamp( );
+                context.commit( );
+            }
+            catch ( IOException e )
+            {
+                log.error( "Error occurred while committing index {}: {}", context.getId( ), e.getMessage( ), e );
+                if ( failure == null )
                 {
-                    log.debug( "no artifact pass in indexing task so skip it" );
+                    failure = new TaskExecutionException( "Error occurred while committing index " + context.getId( ), e );
+                }
+            }
+        }
+
+        batchCount.incrementAndGet( );
+        batchedTaskCount.addAndGet( batch.size( ) );
+        lastBatchSize = batch.size( );
+        maxBatchSizeReached = Math.max( maxBatchSizeReached, batch.size( ) );
+        lastQueueLag = lag;
+        maxQueueLag = Math.max( maxQueueLag, lag );
+        log.debug( "Indexed {} tasks of repository {} with one commit, queue lag {} ms", batch.size( ),
+                   batch.get( 0 ).getRepository( ).getId( ), lag );
+
+        if ( failure != null )
+        {
+            throw failure;
+        }
+    }
+
+    private IndexingContext getIndexingContext( ArtifactIndexingTask indexingTask )
+        throws TaskExecutionException
+    {
+        ArchivaIndexingContext archivaContext = indexingTask.getContext( );
+        // create context if not a repo scan request
+        if ( !indexingTask.isExecuteOnEntireRepo( ) )
+        {
+            log.debug( "Creating indexing context on resource: {}", //
+                ( indexingTask.getResourceFile( ) == null
+                    ? "none"
+                    : indexingTask.getResourceFile( ) ) );
+            archivaContext = indexingTask.getRepository( ).getIndexingContext( );
+        }
+        IndexingContext context = getBaseContext( archivaContext );
+
+        if ( context == null || context.getIndexDirectory( ) == null )
+        {
+            throw new TaskExecutionException( "Trying to index an artifact but the context is already closed" );
+        }
+        return context;
+    }
+
+    private IndexingContext getBaseContext( ArchivaIndexingContext archivaContext )
+        throws TaskExecutionException
+    {
+        try
+        {
+            return archivaContext.getBaseContext( IndexingContext.class );
+        }
+        catch ( UnsupportedBaseContextException e )
+        {
+            log.error( "Error occurred while creating context: {}", e.getMessage( ) );
+            throw new TaskExecutionException( "Bad repository type.", e );
+        }
+    }
+
+    /**
+     * Adds, updates or removes the artifact of the task. The changes are not committed.
+     */
+    private void indexArtifact( ArtifactIndexingTask indexingTask, IndexingContext context )
+        throws TaskExecutionException
+    {
+        try
+        {
+            Path artifactFile = indexingTask.getResourceFile( );
+            if ( artifactFile == null )
+            {
+                log.debug( "no artifact pass in indexing task so skip it" );
+                return;
+            }
+            ArtifactContext ac = artifactContextProducer.getArtifactContext( context, artifactFile.toFile( ) );
+
+            if ( ac != null )
+            {
+                // MRM-1779 pom must be indexed too
+                // TODO make that configurable?
+                if ( artifactFile.getFileName( ).toString( ).endsWith( ".pom" ) )
+                {
+                    ac.getArtifactInfo( ).setFileExtension( "pom" );
+                    ac.getArtifactInfo( ).setPackaging( "pom" );
+                    ac.getArtifactInfo( ).setClassifier( "pom" );
+                }
+                if ( indexingTask.getAction( ).equals( ArtifactIndexingTask.Action.ADD ) )
+                {
+                    //IndexSearcher s = context.getIndexSearcher();
+                    //String uinfo = ac.getArtifactInfo().getUinfo();
+                    //TopDocs d = s.search( new TermQuery( new Term( ArtifactInfo.UINFO, uinfo ) ), 1 );
+
+                    BooleanQuery.Builder qb = new BooleanQuery.Builder();
+                    qb.add( indexer.constructQuery( MAVEN.GROUP_ID, new SourcedSearchExpression(
+                        ac.getArtifactInfo( ).getGroupId( ) ) ), BooleanClause.Occur.MUST );
+                    qb.add( indexer.constructQuery( MAVEN.ARTIFACT_ID, new SourcedSearchExpression(
+                        ac.getArtifactInfo( ).getArtifactId( ) ) ), BooleanClause.Occur.MUST );
+                    qb.add( indexer.constructQuery( MAVEN.VERSION, new SourcedSearchExpression(
+                        ac.getArtifactInfo( ).getVersion( ) ) ), BooleanClause.Occur.MUST );
+                    if ( ac.getArtifactInfo( ).getClassifier( ) != null )
+                    {
+                        qb.add( indexer.constructQuery( MAVEN.CLASSIFIER, new SourcedSearchExpression(
+                            ac.getArtifactInfo( ).getClassifier( ) ) ), BooleanClause.Occur.MUST );
+                    }
+                    if ( ac.getArtifactInfo( ).getPackaging( ) != null )
+                    {
+                        qb.add( indexer.constructQuery( MAVEN.PACKAGING, new SourcedSearchExpression(
+                            ac.getArtifactInfo( ).getPackaging( ) ) ), BooleanClause.Occur.MUST );
+                    }
+                    FlatSearchRequest flatSearchRequest = new FlatSearchRequest( qb.build(), context );
+                    FlatSearchResponse flatSearchResponse = indexer.searchFlat( flatSearchRequest );
+                    if ( flatSearchResponse.getResults( ).isEmpty( ) )
+                    {
+                        log.debug( "Adding artifact '{}' to index..", ac.getArtifactInfo( ) );
+                        indexerEngine.index( context, ac );
+                    }
+                    else
+                    {
+                        log.debug( "Updating artifact '{}' in index..", ac.getArtifactInfo( ) );
+                        // TODO check if update exists !!
+                        indexerEngine.update( context, ac );
+                    }
                 }
                 else
                 {
-                    ArtifactContext ac = artifactContextProducer.getArtifactContext( context, artifactFile.toFile( ) );
+                    log.debug( "Removing artifact '{}' from index..", ac.getArtifactInfo( ) );
+                    indexerEngine.remove( context, ac );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            log.error( "Error occurred while executing indexing task '{}': {}", indexingTask, e.getMessage( ),
+                e );
+            throw new TaskExecutionException( "Error occurred while executing indexing task '" + indexingTask + "'",
+                e );
+        }
+    }
 
-                    if ( ac != null )
+    /**
+     * Optimizes and packs the indexes of the repositories, that have no more tasks in the queue.
+     */
+    private void finishIdleRepositories( )
+        throws TaskExecutionException
+    {
+        List<PendingFinish> idle = new ArrayList<>( );
+        synchronized ( pendingFinish )
+        {
+            if ( pendingFinish.isEmpty( ) )
+            {
+                return;
+            }
+            Set<String> queuedRepositories = new HashSet<>( );
+            if ( indexingQueue != null )
+            {
+                try
+                {
+                    for ( ArtifactIndexingTask queued : indexingQueue.getQueueSnapshot( ) )
                     {
-                        // MRM-1779 pom must be indexed too
-                        // TODO make that configurable?
-                        if ( artifactFile.getFileName( ).toString( ).endsWith( ".pom" ) )
-                        {
-                            ac.getArtifactInfo( ).setFileExtension( "pom" );
-                            ac.getArtifactInfo( ).setPackaging( "pom" );
-                            ac.getArtifactInfo( ).setClassifier( "pom" );
-                        }
-                        if ( indexingTask.getAction( ).equals( ArtifactIndexingTask.Action.ADD ) )
-                        {
-                            //IndexSearcher s = context.getIndexSearcher();
-                            //String uinfo = ac.getArtifactInfo().getUinfo();
-                            //TopDocs d = s.search( new TermQuery( new Term( ArtifactInfo.UINFO, uinfo ) ), 1 );
-
-                            BooleanQuery.Builder qb = new BooleanQuery.Builder();
-                            qb.add( indexer.constructQuery( MAVEN.GROUP_ID, new SourcedSearchExpression(
-                                ac.getArtifactInfo( ).getGroupId( ) ) ), BooleanClause.Occur.MUST );
-                            qb.add( indexer.constructQuery( MAVEN.ARTIFACT_ID, new SourcedSearchExpression(
-                                ac.getArtifactInfo( ).getArtifactId( ) ) ), BooleanClause.Occur.MUST );
-                            qb.add( indexer.constructQuery( MAVEN.VERSION, new SourcedSearchExpression(
-                                ac.getArtifactInfo( ).getVersion( ) ) ), BooleanClause.Occur.MUST );
-                            if ( ac.getArtifactInfo( ).getClassifier( ) != null )
-                            {
-                                qb.add( indexer.constructQuery( MAVEN.CLASSIFIER, new SourcedSearchExpression(
-                                    ac.getArtifactInfo( ).getClassifier( ) ) ), BooleanClause.Occur.MUST );
-                            }
-                            if ( ac.getArtifactInfo( ).getPackaging( ) != null )
-                            {
-                                qb.add( indexer.constructQuery( MAVEN.PACKAGING, new SourcedSearchExpression(
-                                    ac.getArtifactInfo( ).getPackaging( ) ) ), BooleanClause.Occur.MUST );
-                            }
-                            FlatSearchRequest flatSearchRequest = new FlatSearchRequest( qb.build(), context );
-                            FlatSearchResponse flatSearchResponse = indexer.searchFlat( flatSearchRequest );
-                            if ( flatSearchResponse.getResults( ).isEmpty( ) )
-                            {
-                                log.debug( "Adding artifact '{}' to index..", ac.getArtifactInfo( ) );
-                                indexerEngine.index( context, ac );
-                            }
-                            else
-                            {
-                                log.debug( "Updating artifact '{}' in index..", ac.getArtifactInfo( ) );
-                                // TODO check if update exists !!
-                                indexerEngine.update( context, ac );
-                            }
-
-                            context.updateTimestamp( );
-                            context.commit( );
-
-
-                        }
-                        else
-                        {
-                            log.debug( "Removing artifact '{}' from index..", ac.getArtifactInfo( ) );
-                            indexerEngine.remove( context, ac );
-                        }
+                        queuedRepositories.add( queued.getRepository( ).getId( ) );
                     }
                 }
-                // close the context if not a repo scan request
-                if ( !indexingTask.isExecuteOnEntireRepo( ) )
+                catch ( TaskQueueException e )
                 {
-                    log.debug( "Finishing indexing task on resource file : {}", indexingTask.getResourceFile( ) != null
-                        ? indexingTask.getResourceFile( )
-                        : " none " );
-                    finishIndexingTask( indexingTask, repository, context );
+                    log.warn( "Could not read the indexing queue: {}", e.getMessage( ) );
                 }
             }
-            catch ( IOException e )
+            Iterator<Map.Entry<String, PendingFinish>> it = pendingFinish.entrySet( ).iterator( );
+            while ( it.hasNext( ) )
             {
-                log.error( "Error occurred while executing indexing task '{}': {}", indexingTask, e.getMessage( ),
-                    e );
-                throw new TaskExecutionException( "Error occurred while executing indexing task '" + indexingTask + "'",
-                    e );
+                Map.Entry<String, PendingFinish> entry = it.next( );
+                if ( !queuedRepositories.contains( entry.getKey( ) ) )
+                {
+                    idle.add( entry.getValue( ) );
+                    it.remove( );
+                }
             }
         }
-
+        for ( PendingFinish finish : idle )
+        {
+            log.debug( "Finishing indexing task on resource file : {}", finish.task.getResourceFile( ) != null
+                ? finish.task.getResourceFile( )
+                : " none " );
+            finishIndexingTask( finish.task, finish.task.getRepository( ), finish.context );
+        }
     }
 
     private void finishIndexingTask( ArtifactIndexingTask indexingTask, ManagedRepository repository,
@@ -299,4 +509,66 @@ public void setIndexPacker( IndexPacker indexPacker )
         this.indexPacker = indexPacker;
     }
 
+    public IndexPacker getIndexPacker( )
+    {
+        return indexPacker;
+    }
+
+    /**
+     * Sets the queue, from which the tasks following an executed task are taken for the same batch.
+     */
+    public void setIndexingQueue( TaskQueue<ArtifactIndexingTask> indexingQueue )
+    {
+        this.indexingQueue = indexingQueue;
+    }
+
+    public int getMaxBatchSize( )
+    {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize( int maxBatchSize )
+    {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return the number of commits of add and delete tasks
+     */
+    public long getBatchCount( )
+    {
+        return batchCount.get( );
+    }
+
+    /**
+     * @return the number of add and delete tasks, that have been indexed
+     */
+    public long getBatchedTaskCount( )
+    {
+        return batchedTaskCount.get( );
+    }
+
+    public int getLastBatchSize( )
+    {
+        return lastBatchSize;
+    }
+
+    public int getMaxBatchSizeReached( )
+    {
+        return maxBatchSizeReached;
+    }
+
+    /**
+     * @return the time in ms, the oldest task of the last batch was waiting in the queue
+     */
+    public long getLastQueueLag( )
+    {
+        return lastQueueLag;
+    }
+
+    public long getMaxQueueLag( )
+    {
+        return maxQueueLag;
+    }
+
 }
@@ -22,6 +22,8 @@
 import junit.framework.TestCase;
 import org.apache.archiva.indexer.ArchivaIndexingContext;
 import org.apache.archiva.indexer.UnsupportedBaseContextException;
+import org.apache.archiva.redback.components.taskqueue.DefaultTaskQueue;
+import org.apache.archiva.redback.components.taskqueue.TaskQueue;
 import org.apache.archiva.repository.base.ArchivaRepositoryRegistry;
 import org.apache.archiva.repository.base.BasicManagedRepository;
 import org.apache.archiva.repository.ManagedRepository;
@@ -38,6 +40,7 @@
 import org.apache.maven.index.context.IndexingContext;
 import org.apache.maven.index.expr.SourcedSearchExpression;
 import org.apache.maven.index.expr.StringSearchExpression;
+import org.apache.maven.index.packer.IndexPacker;
 import org.apache.maven.index.updater.DefaultIndexUpdater;
 import org.apache.maven.index.updater.IndexUpdateRequest;
 import org.apache.maven.index.updater.IndexUpdater;
@@ -53,11 +56,13 @@
 import org.springframework.test.context.ContextConfiguration;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ArchivaIndexingTaskExecutorTest
@@ -81,6 +86,10 @@
     @Inject
     private Indexer indexer;
 
+    @Inject
+    @Named( value = "taskQueue#indexing" )
+    private TaskQueue<ArtifactIndexingTask> indexingQueue;
+
     @Before
     @Override
     public void setUp()
@@ -207,6 +216,84 @@ public void testUpdateArtifactInIndex()
         assertEquals( 1, topDocs.totalHits );
     }
 
+    @Test
+    public void testBatchStatistics()
+        throws Exception
+    {
+        Path basePath = repo.getAsset("").getFilePath();
+        Path artifactFile = basePath.resolve(
+                                      "org/apache/archiva/archiva-index-methods-jar-test/1.0/archiva-index-methods-jar-test-1.0.jar" );
+
+        long batchCount = indexingExecutor.getBatchCount( );
+        long taskCount = indexingExecutor.getBatchedTaskCount( );
+
+        ArtifactIndexingTask task =
+            new ArtifactIndexingTask( repo, artifactFile, ArtifactIndexingTask.Action.ADD,
+                                      repo.getIndexingContext() );
+        indexingExecutor.executeTask( task );
+
+        assertEquals( batchCount + 1, indexingExecutor.getBatchCount( ) );
+        assertEquals( taskCount + 1, indexingExecutor.getBatchedTaskCount( ) );
+        assertEquals( 1, indexingExecutor.getLastBatchSize( ) );
+        assertTrue( indexingExecutor.getLastQueueLag( ) >= 0 );
+        assertTrue( indexingExecutor.getMaxQueueLag( ) >= indexingExecutor.getLastQueueLag( ) );
+    }
+
+    @Test
+    public void testQueuedTasksAreIndexedInOneBatch()
+        throws Exception
+    {
+        Path basePath = repo.getAsset("").getFilePath();
+        Path versionDir = basePath.resolve( "org/apache/archiva/archiva-index-methods-jar-test/1.0" );
+        Path artifactFile = versionDir.resolve( "archiva-index-methods-jar-test-1.0.jar" );
+        Path pomFile = versionDir.resolve( "archiva-index-methods-jar-test-1.0.pom" );
+
+        // the tasks are taken from a private queue, that is not consumed by the indexing thread
+        TaskQueue<ArtifactIndexingTask> queue = new DefaultTaskQueue<>( );
+        queue.put( new ArtifactIndexingTask( repo, pomFile, ArtifactIndexingTask.Action.ADD,
+                                             repo.getIndexingContext() ) );
+        queue.put( new ArtifactIndexingTask( repo, artifactFile, ArtifactIndexingTask.Action.DELETE,
+                                             repo.getIndexingContext() ) );
+        queue.put( new ArtifactIndexingTask( repo, null, ArtifactIndexingTask.Action.FINISH,
+                                             repo.getIndexingContext() ) );
+        final AtomicInteger packed = new AtomicInteger( );
+        final IndexPacker indexPacker = indexingExecutor.getIndexPacker( );
+        indexingExecutor.setIndexPacker( request -> {
+            packed.incrementAndGet( );
+            indexPacker.packIndex( request );
+        } );
+        indexingExecutor.setIndexingQueue( queue );
+        try
+        {
+            long batchCount = indexingExecutor.getBatchCount( );
+            long taskCount = indexingExecutor.getBatchedTaskCount( );
+
+            indexingExecutor.executeTask( new ArtifactIndexingTask( repo, artifactFile, ArtifactIndexingTask.Action.ADD,
+                                                                    repo.getIndexingContext() ) );
+
+            // the add and delete tasks are committed together, the finish task stays in the queue
+            assertEquals( batchCount + 1, indexingExecutor.getBatchCount( ) );
+            assertEquals( taskCount + 3, indexingExecutor.getBatchedTaskCount( ) );
+            assertEquals( 3, indexingExecutor.getLastBatchSize( ) );
+            assertEquals( 1, queue.getQueueSnapshot( ).size( ) );
+            // the repository is not finished, while tasks for it are queued
+            assertEquals( 0, packed.get( ) );
+
+            queue.take( );
+            indexingExecutor.executeTask( new ArtifactIndexingTask( repo, pomFile, ArtifactIndexingTask.Action.ADD,
+                                                                    repo.getIndexingContext() ) );
+
+            assertEquals( batchCount + 2, indexingExecutor.getBatchCount( ) );
+            // optimized and packed once, when the queue is empty
+            assertEquals( 1, packed.get( ) );
+        }
+        finally
+        {
+            indexingExecutor.setIndexingQueue( indexingQueue );
+            indexingExecutor.setIndexPacker( indexPacker );
+        }
+    }
+
     @Test
     public void testRemoveArtifactFromIndex()
         throws Exception
@@ -51,6 +51,11 @@
      */
     private boolean onlyUpdate = false;
 
+    /**
+     * The time the task was created, used to measure how long tasks wait in the queue.
+     */
+    private final long creationTime = System.currentTimeMillis();
+
     public ArtifactIndexingTask( ManagedRepository repository, Path resourceFile, Action action,
                                  ArchivaIndexingContext context )
     {
@@ -116,6 +121,11 @@ public ArchivaIndexingContext getContext()
         return context;
     }
 
+    public long getCreationTime()
+    {
+        return creationTime;
+    }
+
     public boolean isOnlyUpdate()
     {
         return onlyUpdate;
@@ -25,6 +25,7 @@
 import org.apache.archiva.metadata.repository.MetadataRepositoryException;
 import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.metadata.repository.RepositorySessionFactory;
+import org.apache.archiva.metadata.repository.StorageListingCache;
 import org.apache.archiva.metadata.repository.stats.model.RepositoryStatistics;
 import org.apache.archiva.metadata.repository.stats.model.RepositoryStatisticsManager;
 import org.apache.archiva.redback.components.taskqueue.Task;
@@ -80,6 +81,9 @@
     @Inject
     private RepositorySessionFactory repositorySessionFactory;
 
+    @Inject
+    private StorageListingCache storageListingCache;
+
     @PostConstruct
     public void initialize()
     {
@@ -119,6 +123,7 @@ public void executeTask( RepositoryTask task )
                 {
                     consumers.executeConsumers( arepo, task.getResourceFile( ).getFilePath(), task.isUpdateRelatedArtifacts( ) );
                 }
+                storageListingCache.invalidate( repoId, task.getResourceFile( ).getPath( ) );
             }
             else
             {
@@ -161,6 +166,8 @@ public void executeTask( RepositoryTask task )
 
                     log.info( "Finished first scan: {}", stats.toDump( arepo ) );
 
+                    storageListingCache.invalidate( repoId );
+
                     // further statistics will be populated by the following method
                     Date endTime = new Date( stats.getWhenGathered().getTime() + stats.getDuration() );
 
@@ -33,6 +33,8 @@
 import org.apache.archiva.redback.components.scheduler.Scheduler;
 import org.apache.archiva.redback.components.taskqueue.TaskQueue;
 import org.apache.archiva.redback.components.taskqueue.TaskQueueException;
+import org.apache.archiva.repository.ManagedRepository;
+import org.apache.archiva.repository.RepositoryRegistry;
 import org.apache.archiva.scheduler.repository.model.RepositoryArchivaTaskScheduler;
 import org.apache.archiva.scheduler.repository.model.RepositoryTask;
 import org.apache.commons.lang3.time.StopWatch;
@@ -51,10 +53,14 @@
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Default implementation of a scheduling component for archiva.
@@ -88,6 +94,9 @@
     @Inject
     private RepositorySessionFactory repositorySessionFactory;
 
+    @Inject
+    private RepositoryRegistry repositoryRegistry;
+
     private static final String REPOSITORY_SCAN_GROUP = "rg";
 
     private static final String REPOSITORY_JOB = "rj";
@@ -104,6 +113,19 @@
 
     private List<String> queuedRepos = new ArrayList<>();
 
+    /**
+     * If true, the directories of the scanned repositories are watched for new files, which are queued
+     * as repository tasks. The scheduled scans are still executed.
+     */
+    private boolean watchRepositories = Boolean.getBoolean( "archiva.repositoryWatcher.enabled" );
+
+    /**
+     * The time without further events for a file, until the file is queued.
+     */
+    private long watchDebounceMillis = Long.getLong( "archiva.repositoryWatcher.debounce", 2000 );
+
+    private Map<String, RepositoryWatcher> watchers = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void startup()
         throws ArchivaException
@@ -142,6 +164,8 @@ public void startup()
                         throw new ArchivaException( "Unable to start scheduler: " + e.getMessage(), e );
                     }
 
+                    startWatcher( repoConfig );
+
                     try
                     {
                         if ( !isPreviouslyScanned( repoConfig, metadataRepository ) )
@@ -177,7 +201,7 @@ public void stop()
         }
         jobs.clear();
         queuedRepos.clear();
-
+        stopWatchers();
     }
 
     @SuppressWarnings( "unchecked" )
@@ -248,11 +272,28 @@ public void queueTask( RepositoryTask task )
             else
             {
                 // add check if the task is already queued if it is a file scan
+                notifyWatcher( task );
                 repositoryScanningQueue.put( task );
             }
         }
     }
 
+    /**
+     * Tells the watcher of the repository, that the file of the task is already queued, so it is not queued
+     * a second time, when the watcher sees the change.
+     */
+    private void notifyWatcher( RepositoryTask task )
+    {
+        if ( task.getResourceFile() != null && task.getResourceFile().isFileBased() )
+        {
+            RepositoryWatcher watcher = watchers.get( task.getRepositoryId() );
+            if ( watcher != null )
+            {
+                watcher.fileQueued( task.getResourceFile().getFilePath() );
+            }
+        }
+    }
+
     @Override
     public boolean unQueueTask( RepositoryTask task )
         throws TaskQueueException
@@ -291,6 +332,7 @@ public void configurationEvent( ConfigurationEvent event )
 
             List<ManagedRepositoryConfiguration> repositories =
                 archivaConfiguration.getConfiguration().getManagedRepositories();
+            stopChangedWatchers( repositories );
 
             for ( ManagedRepositoryConfiguration repoConfig : repositories )
             {
@@ -305,10 +347,105 @@ public void configurationEvent( ConfigurationEvent event )
                         log.error( "error restarting job: '{}' : '{}'", REPOSITORY_JOB, repoConfig.getId() );
                     }
                 }
+                if ( repoConfig.isScanned() )
+                {
+                    startWatcher( repoConfig );
+                }
+            }
+        }
+    }
+
+    synchronized void startWatcher( ManagedRepositoryConfiguration repoConfig )
+    {
+        if ( !watchRepositories || watchers.containsKey( repoConfig.getId() ) )
+        {
+            return;
+        }
+        ManagedRepository repository = repositoryRegistry.getManagedRepository( repoConfig.getId() );
+        if ( repository == null || !repository.getAsset( "" ).isFileBased() )
+        {
+            log.warn( "Skipping watcher, repository {} is not available on the file system", repoConfig.getId() );
+            return;
+        }
+        try
+        {
+            RepositoryWatcher watcher =
+                new RepositoryWatcher( repository, repository.getAsset( "" ).getFilePath(), this, watchDebounceMillis );
+            // the directories are registered by the watcher thread
+            watcher.start();
+            watchers.put( repoConfig.getId(), watcher );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to watch repository {}, changes are detected by the scheduled scans only: {}",
+                      repoConfig.getId(), e.getMessage() );
+        }
+    }
+
+    /**
+     * Stops the watchers of the repositories, that were removed, are not scanned anymore or have a new location.
+     * The other watchers keep running, so their directories are not registered again.
+     */
+    synchronized void stopChangedWatchers( List<ManagedRepositoryConfiguration> repositories )
+    {
+        Set<String> scannedIds = new HashSet<>();
+        for ( ManagedRepositoryConfiguration repoConfig : repositories )
+        {
+            if ( repoConfig.isScanned() )
+            {
+                scannedIds.add( repoConfig.getId() );
+            }
+        }
+        Iterator<Map.Entry<String, RepositoryWatcher>> it = watchers.entrySet().iterator();
+        while ( it.hasNext() )
+        {
+            Map.Entry<String, RepositoryWatcher> entry = it.next();
+            RepositoryWatcher watcher = entry.getValue();
+            ManagedRepository repository = scannedIds.contains( entry.getKey() )
+                ? repositoryRegistry.getManagedRepository( entry.getKey() ) : null;
+            if ( repository != null && repository.getAsset( "" ).isFileBased()
+                && watcher.getBaseDir().equals( repository.getAsset( "" ).getFilePath() ) )
+            {
+                watcher.setRepository( repository );
+            }
+            else
+            {
+                log.debug( "Stopping watcher of changed repository {}", entry.getKey() );
+                watcher.close();
+                it.remove();
             }
         }
     }
 
+    private synchronized void stopWatchers()
+    {
+        for ( RepositoryWatcher watcher : watchers.values() )
+        {
+            watcher.close();
+        }
+        watchers.clear();
+    }
+
+    public boolean isWatchRepositories()
+    {
+        return watchRepositories;
+    }
+
+    public void setWatchRepositories( boolean watchRepositories )
+    {
+        this.watchRepositories = watchRepositories;
+    }
+
+    RepositoryWatcher getWatcher( String repositoryId )
+    {
+        return watchers.get( repositoryId );
+    }
+
+    public void setRepositoryRegistry( RepositoryRegistry repositoryRegistry )
+    {
+        this.repositoryRegistry = repositoryRegistry;
+    }
+
     private boolean isPreviouslyScanned( ManagedRepositoryConfiguration repoConfig,
                                          MetadataRepository metadataRepository )
         throws MetadataRepositoryException
@@ -0,0 +1,459 @@
+package org.apache.archiva.scheduler.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.redback.components.taskqueue.TaskQueueException;
+import org.apache.archiva.repository.ManagedRepository;
+import org.apache.archiva.scheduler.ArchivaTaskScheduler;
+import org.apache.archiva.scheduler.repository.model.RepositoryTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directories of a managed repository and queues a repository task for each new or modified
+ * file. Files that are copied into the repository directory without Archiva, e.g. by rsync, are processed
+ * by the consumers a few seconds later, instead of with the next scheduled scan.
+ *
+ * Events for the same file are collected, until there was no event for the debounce time. So a file that is
+ * written in several steps is processed only once. If the watch service reports lost events for a directory,
+ * the subtree of the directory is walked and the files modified since the last quiet time are queued.
+ *
+ * Hidden files and directories, like the index directory, are ignored. Checksum and metadata files are
+ * ignored too, because they are written by the consumers. Files that Archiva queued itself, e.g. WebDAV uploads
+ * and proxy downloads, are reported by {@link #fileQueued(Path)} and not queued a second time. Removed files are
+ * not handled, they are still detected by the scheduled scans.
+ *
+ * The directories are registered by the watcher thread, so starting a watcher does not block for large
+ * repositories.
+ */
+public class RepositoryWatcher
+    implements Runnable, Closeable
+{
+    private static final Logger log = LoggerFactory.getLogger( RepositoryWatcher.class );
+
+    private static final String[] IGNORED_EXTENSIONS = { ".md5", ".sha1", ".sha256", ".sha512" };
+
+    private static final String METADATA_PREFIX = "maven-metadata";
+
+    /**
+     * The minimum time, a file queued by Archiva is remembered.
+     */
+    private static final long QUEUED_FILE_EXPIRY = 60000;
+
+    private volatile ManagedRepository repository;
+
+    private final Path baseDir;
+
+    private final ArchivaTaskScheduler<RepositoryTask> scheduler;
+
+    private final long debounceMillis;
+
+    private final WatchService watchService;
+
+    private final Map<WatchKey, Path> keys = new HashMap<>( );
+
+    private final Set<Path> watchedDirectories = new HashSet<>( );
+
+    /**
+     * The changed files with the time of the last event.
+     */
+    private final Map<Path, Long> pending = new LinkedHashMap<>( );
+
+    /**
+     * The last time, where all changes had been queued.
+     */
+    private long quietTime;
+
+    /**
+     * The files queued by Archiva with the time, they were queued.
+     */
+    private final Map<Path, Long> queuedFiles = new ConcurrentHashMap<>( );
+
+    private final CountDownLatch registered = new CountDownLatch( 1 );
+
+    private volatile boolean running = false;
+
+    private Thread thread;
+
+    public RepositoryWatcher( ManagedRepository repository, Path baseDir,
+                              ArchivaTaskScheduler<RepositoryTask> scheduler, long debounceMillis )
+        throws IOException
+    {
+        this.repository = repository;
+        this.baseDir = baseDir;
+        this.scheduler = scheduler;
+        this.debounceMillis = debounceMillis;
+        this.watchService = baseDir.getFileSystem( ).newWatchService( );
+    }
+
+    /**
+     * Starts the watcher thread. The thread registers all directories of the repository, before it processes
+     * the events. If the directories could not be registered, e.g. because of the limit of the watches of the
+     * operating system, the watcher stops and the changes are detected by the scheduled scans only.
+     */
+    public void start( )
+    {
+        running = true;
+        thread = new Thread( this, "repository-watcher-" + repository.getId( ) );
+        thread.setDaemon( true );
+        thread.start( );
+    }
+
+    /**
+     * Waits until the directories of the repository are registered.
+     *
+     * @return <code>true</code>, if the directories were registered
+     */
+    public boolean awaitRegistration( long timeout, TimeUnit unit )
+        throws InterruptedException
+    {
+        return registered.await( timeout, unit ) && running;
+    }
+
+    @Override
+    public void close( )
+    {
+        running = false;
+        try
+        {
+            watchService.close( );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not close the watch service of repository {}: {}", repository.getId( ), e.getMessage( ) );
+        }
+        if ( thread != null )
+        {
+            thread.interrupt( );
+        }
+    }
+
+    public ManagedRepository getRepository( )
+    {
+        return repository;
+    }
+
+    /**
+     * Sets the repository instance, if the repository was reloaded with the same location.
+     */
+    public void setRepository( ManagedRepository repository )
+    {
+        this.repository = repository;
+    }
+
+    public Path getBaseDir( )
+    {
+        return baseDir;
+    }
+
+    /**
+     * Reports a file, that was queued by Archiva, e.g. after an upload or a proxy download. The file is not
+     * queued by the watcher, unless it is modified again after this call.
+     *
+     * @param file the file in the repository directory
+     */
+    public void fileQueued( Path file )
+    {
+        // the tasks of the watcher itself do not need to be remembered
+        if ( Thread.currentThread( ) != thread )
+        {
+            queuedFiles.put( file.toAbsolutePath( ).normalize( ), System.currentTimeMillis( ) );
+        }
+    }
+
+    @Override
+    public void run( )
+    {
+        quietTime = System.currentTimeMillis( );
+        try
+        {
+            register( baseDir, Long.MAX_VALUE );
+            log.info( "Watching {} directories of repository {}", keys.size( ), repository.getId( ) );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Unable to watch repository {}, changes are detected by the scheduled scans only: {}",
+                      repository.getId( ), e.getMessage( ) );
+            close( );
+        }
+        catch ( ClosedWatchServiceException e )
+        {
+            // closed during the registration
+        }
+        finally
+        {
+            registered.countDown( );
+        }
+        try
+        {
+            while ( running )
+            {
+                WatchKey key = pending.isEmpty( ) ? watchService.take( )
+                    : watchService.poll( debounceMillis, TimeUnit.MILLISECONDS );
+                while ( key != null )
+                {
+                    processEvents( key );
+                    key = watchService.poll( );
+                }
+                queuePending( System.currentTimeMillis( ) );
+            }
+        }
+        catch ( ClosedWatchServiceException | InterruptedException e )
+        {
+            // closed
+        }
+        catch ( RuntimeException e )
+        {
+            log.error( "Watcher of repository {} stopped: {}", repository.getId( ), e.getMessage( ), e );
+        }
+        log.debug( "Watcher of repository {} stopped", repository.getId( ) );
+    }
+
+    private void processEvents( WatchKey key )
+    {
+        Path dir = keys.get( key );
+        if ( dir == null )
+        {
+            key.cancel( );
+            return;
+        }
+        long now = System.currentTimeMillis( );
+        for ( WatchEvent<?> event : key.pollEvents( ) )
+        {
+            if ( event.kind( ) == StandardWatchEventKinds.OVERFLOW )
+            {
+                log.info( "Lost file events of repository {}, rescanning {}", repository.getId( ), dir );
+                registerQuietly( dir, quietTime );
+                continue;
+            }
+            Path file = dir.resolve( (Path) event.context( ) );
+            if ( isIgnored( file ) )
+            {
+                continue;
+            }
+            if ( event.kind( ) == StandardWatchEventKinds.ENTRY_DELETE )
+            {
+                pending.remove( file );
+            }
+            else if ( event.kind( ) == StandardWatchEventKinds.ENTRY_CREATE
+                && Files.isDirectory( file, LinkOption.NOFOLLOW_LINKS ) )
+            {
+                // the content may have been created before the directory was registered
+                registerQuietly( file, 0 );
+            }
+            else
+            {
+                pending.put( file, now );
+            }
+        }
+        if ( !key.reset( ) )
+        {
+            watchedDirectories.remove( keys.remove( key ) );
+        }
+    }
+
+    /**
+     * Queues the files without an event for the debounce time.
+     */
+    private void queuePending( long now )
+    {
+        Iterator<Map.Entry<Path, Long>> it = pending.entrySet( ).iterator( );
+        while ( it.hasNext( ) )
+        {
+            Map.Entry<Path, Long> entry = it.next( );
+            if ( now - entry.getValue( ) >= debounceMillis )
+            {
+                it.remove( );
+                queueFile( entry.getKey( ) );
+            }
+        }
+        if ( pending.isEmpty( ) )
+        {
+            quietTime = now - debounceMillis;
+        }
+        long expiry = Math.max( QUEUED_FILE_EXPIRY, 10 * debounceMillis );
+        queuedFiles.values( ).removeIf( queued -> now - queued > expiry );
+    }
+
+    private void queueFile( Path file )
+    {
+        if ( !Files.isRegularFile( file ) || isQueuedByArchiva( file ) )
+        {
+            return;
+        }
+        String path = baseDir.relativize( file ).toString( );
+        if ( File.separatorChar != '/' )
+        {
+            path = path.replace( File.separatorChar, '/' );
+        }
+        RepositoryTask task = new RepositoryTask( );
+        task.setRepositoryId( repository.getId( ) );
+        task.setResourceFile( repository.getAsset( path ) );
+        task.setUpdateRelatedArtifacts( true );
+        try
+        {
+            log.debug( "Queueing changed file {} of repository {}", path, repository.getId( ) );
+            scheduler.queueTask( task );
+        }
+        catch ( TaskQueueException e )
+        {
+            log.error( "Unable to queue repository task for file {}: {}", file, e.getMessage( ) );
+        }
+    }
+
+    private boolean isQueuedByArchiva( Path file )
+    {
+        Long queued = queuedFiles.remove( file.toAbsolutePath( ).normalize( ) );
+        if ( queued == null )
+        {
+            return false;
+        }
+        try
+        {
+            return Files.getLastModifiedTime( file ).toMillis( ) <= queued;
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+    }
+
+    private void registerQuietly( Path dir, long modifiedSince )
+    {
+        try
+        {
+            register( dir, modifiedSince );
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Could not watch directory {} of repository {}: {}", dir, repository.getId( ), e.getMessage( ) );
+        }
+    }
+
+    /**
+     * Registers the directory and all directories below. The files modified since the given time
+     * are added to the pending files.
+     */
+    private void register( Path dir, final long modifiedSince )
+        throws IOException
+    {
+        final long now = System.currentTimeMillis( );
+        Files.walkFileTree( dir, new SimpleFileVisitor<Path>( )
+        {
+            @Override
+            public FileVisitResult preVisitDirectory( Path subDir, BasicFileAttributes attrs )
+                throws IOException
+            {
+                if ( !running )
+                {
+                    return FileVisitResult.TERMINATE;
+                }
+                if ( !subDir.equals( baseDir ) && isHidden( subDir ) )
+                {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if ( watchedDirectories.add( subDir ) )
+                {
+                    WatchKey key = subDir.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                                    StandardWatchEventKinds.ENTRY_MODIFY,
+                                                    StandardWatchEventKinds.ENTRY_DELETE );
+                    keys.put( key, subDir );
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+            {
+                if ( !isIgnored( file ) && attrs.lastModifiedTime( ).toMillis( ) >= modifiedSince )
+                {
+                    pending.put( file, now );
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed( Path file, IOException exc )
+            {
+                // removed while walking
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    private static boolean isHidden( Path file )
+    {
+        Path name = file.getFileName( );
+        return name != null && name.toString( ).startsWith( "." );
+    }
+
+    /**
+     * Returns true for hidden files and for the checksum and metadata files, that are written by the consumers.
+     */
+    static boolean isIgnored( Path file )
+    {
+        if ( isHidden( file ) )
+        {
+            return true;
+        }
+        Path name = file.getFileName( );
+        if ( name == null )
+        {
+            return false;
+        }
+        String fileName = name.toString( );
+        if ( fileName.startsWith( METADATA_PREFIX ) )
+        {
+            return true;
+        }
+        for ( String extension : IGNORED_EXTENSIONS )
+        {
+            if ( fileName.endsWith( extension ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
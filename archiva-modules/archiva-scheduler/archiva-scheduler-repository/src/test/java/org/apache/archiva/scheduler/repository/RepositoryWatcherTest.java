@@ -0,0 +1,229 @@
+package org.apache.archiva.scheduler.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.common.filelock.DefaultFileLockManager;
+import org.apache.archiva.common.utils.FileUtils;
+import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
+import org.apache.archiva.repository.RepositoryRegistry;
+import org.apache.archiva.repository.base.BasicManagedRepository;
+import org.apache.archiva.repository.storage.FilesystemStorage;
+import org.apache.archiva.scheduler.ArchivaTaskScheduler;
+import org.apache.archiva.scheduler.repository.model.RepositoryTask;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * RepositoryWatcherTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class RepositoryWatcherTest
+    extends TestCase
+{
+    // the polling watch service of some platforms reports changes only every few seconds
+    private static final long TIMEOUT = 30000;
+
+    private Path repoDir;
+
+    private RepositoryWatcher watcher;
+
+    private BasicManagedRepository repository;
+
+    private final Set<String> queuedFiles = new HashSet<>( );
+
+    @Before
+    @Override
+    public void setUp( )
+        throws Exception
+    {
+        super.setUp( );
+        repoDir = Paths.get( System.getProperty( "basedir" ), "target/test-repos/watched-repository" );
+        FileUtils.deleteDirectory( repoDir );
+        Files.createDirectories( repoDir.resolve( "org/apache/archiva/archiva-test/1.0" ) );
+        Files.createDirectories( repoDir.resolve( ".indexer" ) );
+
+        repository = createRepository( "watched", repoDir );
+
+        ArchivaTaskScheduler<RepositoryTask> scheduler = task -> {
+            synchronized ( queuedFiles )
+            {
+                queuedFiles.add( task.getResourceFile( ).getPath( ) );
+                queuedFiles.notifyAll( );
+            }
+        };
+        watcher = new RepositoryWatcher( repository, repoDir, scheduler, 100 );
+        watcher.start( );
+        assertTrue( watcher.awaitRegistration( TIMEOUT, TimeUnit.MILLISECONDS ) );
+    }
+
+    private static BasicManagedRepository createRepository( String id, Path dir )
+        throws Exception
+    {
+        FilesystemStorage storage = new FilesystemStorage( dir, new DefaultFileLockManager( ) );
+        BasicManagedRepository repository = new BasicManagedRepository( id, id, storage );
+        repository.setLocation( dir.toUri( ) );
+        return repository;
+    }
+
+    @After
+    @Override
+    public void tearDown( )
+        throws Exception
+    {
+        watcher.close( );
+        super.tearDown( );
+    }
+
+    @Test
+    public void testNewFilesAreQueued( )
+        throws Exception
+    {
+        Files.write( repoDir.resolve( "org/apache/archiva/archiva-test/1.0/archiva-test-1.0.pom" ), "<project/>".getBytes( ) );
+        // the files of a new directory tree may be created before the directory is watched
+        Path newVersion = repoDir.resolve( "org/apache/archiva/archiva-test/1.1" );
+        Files.createDirectories( newVersion );
+        Files.write( newVersion.resolve( "archiva-test-1.1.jar" ), new byte[0] );
+        Files.write( repoDir.resolve( ".indexer/_0.cfs" ), new byte[0] );
+
+        waitForQueuedFiles( 2 );
+
+        assertTrue( queuedFiles.toString( ),
+                    queuedFiles.contains( "/org/apache/archiva/archiva-test/1.0/archiva-test-1.0.pom" ) );
+        assertTrue( queuedFiles.toString( ),
+                    queuedFiles.contains( "/org/apache/archiva/archiva-test/1.1/archiva-test-1.1.jar" ) );
+        assertEquals( queuedFiles.toString( ), 2, queuedFiles.size( ) );
+    }
+
+    @Test
+    public void testFilesQueuedByArchivaAreSkipped( )
+        throws Exception
+    {
+        Path versionDir = repoDir.resolve( "org/apache/archiva/archiva-test/1.0" );
+        Path uploaded = versionDir.resolve( "archiva-test-1.0.jar" );
+        Files.write( uploaded, new byte[0] );
+        // the upload queues its own task
+        watcher.fileQueued( uploaded );
+        Files.write( versionDir.resolve( "archiva-test-1.0.jar.sha1" ), "1234".getBytes( ) );
+        Files.write( versionDir.resolve( "maven-metadata.xml" ), "<metadata/>".getBytes( ) );
+        Files.write( versionDir.resolve( "archiva-test-1.0.pom" ), "<project/>".getBytes( ) );
+
+        waitForQueuedFiles( 1 );
+        // give the watcher the time to queue the other files, if it would
+        Thread.sleep( 500 );
+
+        assertEquals( queuedFiles.toString( ), 1, queuedFiles.size( ) );
+        assertTrue( queuedFiles.toString( ),
+                    queuedFiles.contains( "/org/apache/archiva/archiva-test/1.0/archiva-test-1.0.pom" ) );
+    }
+
+    @Test
+    public void testIgnoredFiles( )
+    {
+        assertTrue( RepositoryWatcher.isIgnored( Paths.get( "org/a/1.0/a-1.0.jar.md5" ) ) );
+        assertTrue( RepositoryWatcher.isIgnored( Paths.get( "org/a/1.0/a-1.0.jar.sha256" ) ) );
+        assertTrue( RepositoryWatcher.isIgnored( Paths.get( "org/a/maven-metadata.xml" ) ) );
+        assertTrue( RepositoryWatcher.isIgnored( Paths.get( "org/a/maven-metadata-central.xml" ) ) );
+        assertTrue( RepositoryWatcher.isIgnored( Paths.get( ".indexer/_0.cfs" ) ) );
+        assertFalse( RepositoryWatcher.isIgnored( Paths.get( "org/a/1.0/a-1.0.jar" ) ) );
+        assertFalse( RepositoryWatcher.isIgnored( Paths.get( "org/a/1.0/a-1.0.jar.asc" ) ) );
+    }
+
+    @Test
+    public void testOnlyChangedWatchersAreRestarted( )
+        throws Exception
+    {
+        Path otherDir = Paths.get( System.getProperty( "basedir" ), "target/test-repos/other-watched-repository" );
+        FileUtils.deleteDirectory( otherDir );
+        Files.createDirectories( otherDir );
+        BasicManagedRepository other = createRepository( "other", otherDir );
+
+        RepositoryRegistry registry = mock( RepositoryRegistry.class );
+        when( registry.getManagedRepository( "watched" ) ).thenReturn( repository );
+        when( registry.getManagedRepository( "other" ) ).thenReturn( other );
+
+        DefaultRepositoryArchivaTaskScheduler scheduler = new DefaultRepositoryArchivaTaskScheduler( );
+        scheduler.setWatchRepositories( true );
+        scheduler.setRepositoryRegistry( registry );
+        ManagedRepositoryConfiguration watchedConfig = createConfiguration( "watched" );
+        ManagedRepositoryConfiguration otherConfig = createConfiguration( "other" );
+        try
+        {
+            scheduler.startWatcher( watchedConfig );
+            scheduler.startWatcher( otherConfig );
+            RepositoryWatcher watched = scheduler.getWatcher( "watched" );
+            assertNotNull( watched );
+            assertNotNull( scheduler.getWatcher( "other" ) );
+
+            // the other repository is not scanned anymore
+            otherConfig.setScanned( false );
+            scheduler.stopChangedWatchers( Arrays.asList( watchedConfig, otherConfig ) );
+            assertSame( watched, scheduler.getWatcher( "watched" ) );
+            assertNull( scheduler.getWatcher( "other" ) );
+
+            // the repository was moved
+            BasicManagedRepository moved = createRepository( "watched", otherDir );
+            when( registry.getManagedRepository( "watched" ) ).thenReturn( moved );
+            scheduler.stopChangedWatchers( Arrays.asList( watchedConfig, otherConfig ) );
+            assertNull( scheduler.getWatcher( "watched" ) );
+        }
+        finally
+        {
+            otherConfig.setScanned( true );
+            scheduler.stopChangedWatchers( Collections.<ManagedRepositoryConfiguration>emptyList( ) );
+        }
+    }
+
+    private static ManagedRepositoryConfiguration createConfiguration( String id )
+    {
+        ManagedRepositoryConfiguration config = new ManagedRepositoryConfiguration( );
+        config.setId( id );
+        config.setScanned( true );
+        return config;
+    }
+
+    private void waitForQueuedFiles( int count )
+        throws InterruptedException
+    {
+        long end = System.currentTimeMillis( ) + TIMEOUT;
+        synchronized ( queuedFiles )
+        {
+            while ( queuedFiles.size( ) < count && System.currentTimeMillis( ) < end )
+            {
+                queuedFiles.wait( 100 );
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.apache.archiva.rest.api.model;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * Statistics of the artifact indexing tasks, that are indexed together in batches, and of the updates
+ * of the index contexts.
+ *
+ * @since 3.0
+ */
+@XmlRootElement( name = "indexingStatistics" )
+public class IndexingStatistics
+    implements Serializable
+{
+    private long batchCount;
+
+    private long batchedTaskCount;
+
+    private int lastBatchSize;
+
+    private int maxBatchSize;
+
+    private long lastQueueLag;
+
+    private long maxQueueLag;
+
+    private int contextQueueDepth;
+
+    private long contextLockWaitTime;
+
+    private long maxContextLockWaitTime;
+
+    private long coalescedUpdateCount;
+
+    public IndexingStatistics()
+    {
+        // no op
+    }
+
+    /**
+     * Returns the number of batches since startup. Each batch is committed once.
+     */
+    public long getBatchCount()
+    {
+        return batchCount;
+    }
+
+    public void setBatchCount( long batchCount )
+    {
+        this.batchCount = batchCount;
+    }
+
+    public long getBatchedTaskCount()
+    {
+        return batchedTaskCount;
+    }
+
+    public void setBatchedTaskCount( long batchedTaskCount )
+    {
+        this.batchedTaskCount = batchedTaskCount;
+    }
+
+    public int getLastBatchSize()
+    {
+        return lastBatchSize;
+    }
+
+    public void setLastBatchSize( int lastBatchSize )
+    {
+        this.lastBatchSize = lastBatchSize;
+    }
+
+    public int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize( int maxBatchSize )
+    {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Returns the time in ms, the oldest task of the last batch was waiting in the queue.
+     */
+    public long getLastQueueLag()
+    {
+        return lastQueueLag;
+    }
+
+    public void setLastQueueLag( long lastQueueLag )
+    {
+        this.lastQueueLag = lastQueueLag;
+    }
+
+    public long getMaxQueueLag()
+    {
+        return maxQueueLag;
+    }
+
+    public void setMaxQueueLag( long maxQueueLag )
+    {
+        this.maxQueueLag = maxQueueLag;
+    }
+
+    /**
+     * Returns the number of updates, that are currently waiting for the release of a index context.
+     */
+    public int getContextQueueDepth()
+    {
+        return contextQueueDepth;
+    }
+
+    public void setContextQueueDepth( int contextQueueDepth )
+    {
+        this.contextQueueDepth = contextQueueDepth;
+    }
+
+    /**
+     * Returns the total time in ms, updates waited for the release of a index context.
+     */
+    public long getContextLockWaitTime()
+    {
+        return contextLockWaitTime;
+    }
+
+    public void setContextLockWaitTime( long contextLockWaitTime )
+    {
+        this.contextLockWaitTime = contextLockWaitTime;
+    }
+
+    public long getMaxContextLockWaitTime()
+    {
+        return maxContextLockWaitTime;
+    }
+
+    public void setMaxContextLockWaitTime( long maxContextLockWaitTime )
+    {
+        this.maxContextLockWaitTime = maxContextLockWaitTime;
+    }
+
+    /**
+     * Returns the number of artifact updates, that were written together with a previous update.
+     */
+    public long getCoalescedUpdateCount()
+    {
+        return coalescedUpdateCount;
+    }
+
+    public void setCoalescedUpdateCount( long coalescedUpdateCount )
+    {
+        this.coalescedUpdateCount = coalescedUpdateCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( "IndexingStatistics" );
+        sb.append( "{batchCount=" ).append( batchCount );
+        sb.append( ", batchedTaskCount=" ).append( batchedTaskCount );
+        sb.append( ", lastBatchSize=" ).append( lastBatchSize );
+        sb.append( ", maxBatchSize=" ).append( maxBatchSize );
+        sb.append( ", lastQueueLag=" ).append( lastQueueLag );
+        sb.append( ", maxQueueLag=" ).append( maxQueueLag );
+        sb.append( ", contextQueueDepth=" ).append( contextQueueDepth );
+        sb.append( ", contextLockWaitTime=" ).append( contextLockWaitTime );
+        sb.append( ", maxContextLockWaitTime=" ).append( maxContextLockWaitTime );
+        sb.append( ", coalescedUpdateCount=" ).append( coalescedUpdateCount );
+        sb.append( '}' );
+        return sb.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package org.apache.archiva.rest.api.model;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * Statistics of the transfers of a repository proxy handler.
+ *
+ * @since 3.0
+ */
+@XmlRootElement( name = "proxyStatistics" )
+public class ProxyStatistics
+    implements Serializable
+{
+    private String repositoryType;
+
+    private long coalescedRequestCount;
+
+    private int waitingRequestCount;
+
+    private int inFlightTransferCount;
+
+    private int openConnectionCount;
+
+    private int idleConnectionCount;
+
+    public ProxyStatistics()
+    {
+        // no op
+    }
+
+    public String getRepositoryType()
+    {
+        return repositoryType;
+    }
+
+    public void setRepositoryType( String repositoryType )
+    {
+        this.repositoryType = repositoryType;
+    }
+
+    /**
+     * Returns the number of requests since startup, that waited for a running transfer of the same resource.
+     */
+    public long getCoalescedRequestCount()
+    {
+        return coalescedRequestCount;
+    }
+
+    public void setCoalescedRequestCount( long coalescedRequestCount )
+    {
+        this.coalescedRequestCount = coalescedRequestCount;
+    }
+
+    /**
+     * Returns the number of requests, that are currently waiting for a running transfer.
+     */
+    public int getWaitingRequestCount()
+    {
+        return waitingRequestCount;
+    }
+
+    public void setWaitingRequestCount( int waitingRequestCount )
+    {
+        this.waitingRequestCount = waitingRequestCount;
+    }
+
+    public int getInFlightTransferCount()
+    {
+        return inFlightTransferCount;
+    }
+
+    public void setInFlightTransferCount( int inFlightTransferCount )
+    {
+        this.inFlightTransferCount = inFlightTransferCount;
+    }
+
+    /**
+     * Returns the number of open connections to the remote repositories, including the idle ones.
+     */
+    public int getOpenConnectionCount()
+    {
+        return openConnectionCount;
+    }
+
+    public void setOpenConnectionCount( int openConnectionCount )
+    {
+        this.openConnectionCount = openConnectionCount;
+    }
+
+    public int getIdleConnectionCount()
+    {
+        return idleConnectionCount;
+    }
+
+    public void setIdleConnectionCount( int idleConnectionCount )
+    {
+        this.idleConnectionCount = idleConnectionCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( "ProxyStatistics" );
+        sb.append( "{repositoryType='" ).append( repositoryType ).append( '\'' );
+        sb.append( ", coalescedRequestCount=" ).append( coalescedRequestCount );
+        sb.append( ", waitingRequestCount=" ).append( waitingRequestCount );
+        sb.append( ", inFlightTransferCount=" ).append( inFlightTransferCount );
+        sb.append( ", openConnectionCount=" ).append( openConnectionCount );
+        sb.append( ", idleConnectionCount=" ).append( idleConnectionCount );
+        sb.append( '}' );
+        return sb.toString();
+    }
+}
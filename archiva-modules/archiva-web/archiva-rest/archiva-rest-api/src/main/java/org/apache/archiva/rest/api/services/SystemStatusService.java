@@ -20,6 +20,8 @@
 
 import org.apache.archiva.redback.authorization.RedbackAuthorization;
 import org.apache.archiva.rest.api.model.CacheEntry;
+import org.apache.archiva.rest.api.model.IndexingStatistics;
+import org.apache.archiva.rest.api.model.ProxyStatistics;
 import org.apache.archiva.rest.api.model.QueueEntry;
 import org.apache.archiva.rest.api.model.RepositoryScannerStatistics;
 import org.apache.archiva.security.common.ArchivaRoleConstants;
@@ -88,4 +90,24 @@ Boolean clearAllCaches()
     List<RepositoryScannerStatistics> getRepositoryScannerStatistics()
         throws ArchivaRestServiceException;
 
+    /**
+     * @since 3.0
+     */
+    @Path( "proxyStatistics" )
+    @GET
+    @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+    @RedbackAuthorization( permissions = ArchivaRoleConstants.OPERATION_MANAGE_CONFIGURATION )
+    List<ProxyStatistics> getProxyStatistics()
+        throws ArchivaRestServiceException;
+
+    /**
+     * @since 3.0
+     */
+    @Path( "indexingStatistics" )
+    @GET
+    @Produces( { MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML } )
+    @RedbackAuthorization( permissions = ArchivaRoleConstants.OPERATION_MANAGE_CONFIGURATION )
+    IndexingStatistics getIndexingStatistics()
+        throws ArchivaRestServiceException;
+
 }
@@ -54,6 +54,7 @@
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
@@ -64,6 +65,8 @@
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
@@ -90,6 +93,17 @@
     @Named( value = "browse#versionMetadata" )
     private Cache<String, ProjectVersionMetadata> versionMetadataCache;
 
+    private int versionResolutionsPerRequest =
+        Math.max( 1, Integer.getInteger( "archiva.browse.versionResolutionsPerRequest", 4 ) );
+
+    /**
+     * The executor of the version resolutions. The queue is bounded, if it is full the version is resolved
+     * in the request thread.
+     */
+    @Inject
+    @Named( value = "taskExecutor#versionResolution" )
+    private AsyncTaskExecutor versionResolutionExecutor;
+
     private ManagedRepositoryContent getManagedRepositoryContent(String id) throws RepositoryException
     {
         org.apache.archiva.repository.ManagedRepository repo = repositoryRegistry.getManagedRepository( id );
@@ -329,6 +343,13 @@ public ProjectVersionMetadata getProjectMetadata( String groupId, String artifac
 
     }
 
+    /**
+     * Returns the model, that is shared by all versions of the project. The versions are resolved on the version
+     * resolution executor, at most <code>versionResolutionsPerRequest</code> at the same time, and the released
+     * versions are cached. The versions are merged in order into a copy of the first version, see
+     * {@link #mergeSharedModel(ProjectVersionMetadata, ProjectVersionMetadata)}. The remaining versions are not
+     * resolved, as soon as no later version can change the shared model.
+     */
     @Override
     public ProjectVersionMetadata getProjectVersionMetadata( String groupId, String artifactId, String repositoryId )
         throws ArchivaRestServiceException
@@ -336,70 +357,26 @@ public ProjectVersionMetadata getProjectVersionMetadata( String groupId, String
 
         List<String> selectedRepos = getSelectedRepos( repositoryId );
 
-        RepositorySession repositorySession = null;
+        Deque<Future<ProjectVersionMetadata>> futures = new ArrayDeque<>();
         try
         {
 
-            Collection<String> projectVersions = getVersions( selectedRepos, groupId, artifactId );
+            Iterator<String> projectVersions = getVersions( selectedRepos, groupId, artifactId ).iterator();
 
-            repositorySession = repositorySessionFactory.createSession();
-
-            MetadataResolver metadataResolver = repositorySession.getResolver();
-
-            ProjectVersionMetadata sharedModel = new ProjectVersionMetadata();
-
-            MavenProjectFacet mavenFacet = new MavenProjectFacet();
-            mavenFacet.setGroupId( groupId );
-            mavenFacet.setArtifactId( artifactId );
-            sharedModel.addFacet( mavenFacet );
+            while ( projectVersions.hasNext() && futures.size() < versionResolutionsPerRequest )
+            {
+                futures.add( submitResolution( selectedRepos, groupId, artifactId, projectVersions.next() ) );
+            }
 
-            boolean isFirstVersion = true;
+            ProjectVersionMetadata sharedModel = null;
 
-            for ( String version : projectVersions )
+            while ( !futures.isEmpty() )
             {
-                ProjectVersionMetadata versionMetadata = null;
-                for ( String repoId : selectedRepos )
-                {
-                    if ( versionMetadata == null || versionMetadata.isIncomplete() )
-                    {
-                        try
-                        {
-                            ProjectVersionMetadata projectVersionMetadataResolved = null;
-                            boolean useCache = !StringUtils.endsWith( version, VersionUtil.SNAPSHOT );
-                            String cacheKey = null;
-                            boolean cacheToUpdate = false;
-                            // FIXME a bit maven centric!!!
-                            // not a snapshot so get it from cache
-                            if ( useCache )
-                            {
-                                cacheKey = repoId + groupId + artifactId + version;
-                                projectVersionMetadataResolved = versionMetadataCache.get( cacheKey );
-                            }
-                            if ( useCache && projectVersionMetadataResolved != null )
-                            {
-                                versionMetadata = projectVersionMetadataResolved;
-                            }
-                            else
-                            {
-                                projectVersionMetadataResolved =
-                                    metadataResolver.resolveProjectVersion( repositorySession, repoId, groupId,
-                                                                            artifactId, version );
-                                versionMetadata = projectVersionMetadataResolved;
-                                cacheToUpdate = true;
-                            }
+                ProjectVersionMetadata versionMetadata = futures.poll().get();
 
-                            if ( useCache && cacheToUpdate )
-                            {
-                                versionMetadataCache.put( cacheKey, projectVersionMetadataResolved );
-                            }
-
-                        }
-                        catch ( MetadataResolutionException e )
-                        {
-                            log.error( "Skipping invalid metadata while compiling shared model for " + groupId + ":"
-                                           + artifactId + " in repo " + repoId + ": " + e.getMessage() );
-                        }
-                    }
+                if ( projectVersions.hasNext() )
+                {
+                    futures.add( submitResolution( selectedRepos, groupId, artifactId, projectVersions.next() ) );
                 }
 
                 if ( versionMetadata == null )
@@ -407,79 +384,117 @@ public ProjectVersionMetadata getProjectVersionMetadata( String groupId, String
                     continue;
                 }
 
-                if ( isFirstVersion )
+                if ( sharedModel == null )
                 {
-                    sharedModel = versionMetadata;
-                    sharedModel.setId( null );
+                    sharedModel = copySharedModel( versionMetadata, groupId, artifactId );
                 }
                 else
                 {
-                    MavenProjectFacet versionMetadataMavenFacet =
-                        (MavenProjectFacet) versionMetadata.getFacet( MavenProjectFacet.FACET_ID );
-                    if ( versionMetadataMavenFacet != null )
+                    mergeSharedModel( sharedModel, versionMetadata );
+                    if ( isFinal( sharedModel ) )
                     {
-                        if ( mavenFacet.getPackaging() != null //
-                            && !StringUtils.equalsIgnoreCase( mavenFacet.getPackaging(),
-                                                              versionMetadataMavenFacet.getPackaging() ) )
-                        {
-                            mavenFacet.setPackaging( null );
-                        }
+                        log.debug( "Shared model of {}:{} cannot change anymore, remaining versions are skipped",
+                                   groupId, artifactId );
+                        break;
                     }
+                }
+            }
 
-                    if ( StringUtils.isEmpty( sharedModel.getName() ) //
-                        && !StringUtils.isEmpty( versionMetadata.getName() ) )
-                    {
-                        sharedModel.setName( versionMetadata.getName() );
-                    }
+            if ( sharedModel == null )
+            {
+                sharedModel = new ProjectVersionMetadata();
+                MavenProjectFacet mavenFacet = new MavenProjectFacet();
+                mavenFacet.setGroupId( groupId );
+                mavenFacet.setArtifactId( artifactId );
+                sharedModel.addFacet( mavenFacet );
+            }
+            return sharedModel;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new ArchivaRestServiceException( e.getMessage(),
+                                                   Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new ArchivaRestServiceException( e.getCause().getMessage(),
+                                                   Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
+                                                   e.getCause() );
+        }
+        catch ( MetadataResolutionException e )
+        {
+            throw new ArchivaRestServiceException( e.getMessage(),
+                                                   Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e );
+        }
+        finally
+        {
+            // the versions, that are not needed anymore, are not resolved
+            for ( Future<ProjectVersionMetadata> future : futures )
+            {
+                future.cancel( false );
+            }
+        }
+    }
 
-                    if ( sharedModel.getDescription() != null //
-                        && !StringUtils.equalsIgnoreCase( sharedModel.getDescription(),
-                                                          versionMetadata.getDescription() ) )
-                    {
-                        sharedModel.setDescription( StringUtils.isNotEmpty( versionMetadata.getDescription() )
-                                                        ? versionMetadata.getDescription()
-                                                        : "" );
-                    }
+    private Future<ProjectVersionMetadata> submitResolution( List<String> selectedRepos, String groupId,
+                                                             String artifactId, String version )
+    {
+        return versionResolutionExecutor.submit(
+            () -> resolveProjectVersion( selectedRepos, groupId, artifactId, version ) );
+    }
 
-                    if ( sharedModel.getIssueManagement() != null //
-                        && versionMetadata.getIssueManagement() != null //
-                        && !StringUtils.equalsIgnoreCase( sharedModel.getIssueManagement().getUrl(),
-                                                          versionMetadata.getIssueManagement().getUrl() ) )
+    /**
+     * Resolves the metadata of the version from the first repository, that has complete metadata. The released
+     * versions are taken from the cache, a session is only created, if a version must be resolved.
+     */
+    private ProjectVersionMetadata resolveProjectVersion( List<String> selectedRepos, String groupId,
+                                                          String artifactId, String version )
+        throws MetadataRepositoryException
+    {
+        // FIXME a bit maven centric!!!
+        boolean useCache = !StringUtils.endsWith( version, VersionUtil.SNAPSHOT );
+        ProjectVersionMetadata versionMetadata = null;
+        RepositorySession repositorySession = null;
+        try
+        {
+            for ( String repoId : selectedRepos )
+            {
+                if ( versionMetadata != null && !versionMetadata.isIncomplete() )
+                {
+                    break;
+                }
+                String cacheKey = repoId + groupId + artifactId + version;
+                ProjectVersionMetadata projectVersionMetadataResolved =
+                    useCache ? versionMetadataCache.get( cacheKey ) : null;
+                if ( projectVersionMetadataResolved == null )
+                {
+                    if ( repositorySession == null )
                     {
-                        sharedModel.setIssueManagement( versionMetadata.getIssueManagement() );
+                        repositorySession = repositorySessionFactory.createSession();
                     }
-
-                    if ( sharedModel.getCiManagement() != null //
-                        && versionMetadata.getCiManagement() != null //
-                        && !StringUtils.equalsIgnoreCase( sharedModel.getCiManagement().getUrl(),
-                                                          versionMetadata.getCiManagement().getUrl() ) )
+                    try
                     {
-                        sharedModel.setCiManagement( versionMetadata.getCiManagement() );
+                        projectVersionMetadataResolved = repositorySession.getResolver().resolveProjectVersion(
+                            repositorySession, repoId, groupId, artifactId, version );
                     }
-
-                    if ( sharedModel.getOrganization() != null //
-                        && versionMetadata.getOrganization() != null //
-                        && !StringUtils.equalsIgnoreCase( sharedModel.getOrganization().getName(),
-                                                          versionMetadata.getOrganization().getName() ) )
+                    catch ( MetadataResolutionException e )
                     {
-                        sharedModel.setOrganization( versionMetadata.getOrganization() );
+                        log.error( "Skipping invalid metadata while compiling shared model for " + groupId + ":"
+                                       + artifactId + " in repo " + repoId + ": " + e.getMessage() );
+                        continue;
                     }
-
-                    if ( sharedModel.getUrl() != null //
-                        && !StringUtils.equalsIgnoreCase( sharedModel.getUrl(), versionMetadata.getUrl() ) )
+                    if ( useCache && projectVersionMetadataResolved != null )
                     {
-                        sharedModel.setUrl( versionMetadata.getUrl() );
+                        versionMetadataCache.put( cacheKey, projectVersionMetadataResolved );
                     }
                 }
-
-                isFirstVersion = false;
+                if ( projectVersionMetadataResolved != null )
+                {
+                    versionMetadata = projectVersionMetadataResolved;
+                }
             }
-            return sharedModel;
-        }
-        catch (MetadataResolutionException | MetadataRepositoryException e )
-        {
-            throw new ArchivaRestServiceException( e.getMessage(),
-                                                   Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e );
+            return versionMetadata;
         }
         finally
         {
@@ -490,6 +505,125 @@ public ProjectVersionMetadata getProjectVersionMetadata( String groupId, String
         }
     }
 
+    /**
+     * Copies the metadata of the first version, as the metadata in the cache must not be changed by the merge.
+     */
+    private ProjectVersionMetadata copySharedModel( ProjectVersionMetadata versionMetadata, String groupId,
+                                                    String artifactId )
+    {
+        ProjectVersionMetadata sharedModel = new ProjectVersionMetadata();
+        sharedModel.setName( versionMetadata.getName() );
+        sharedModel.setDescription( versionMetadata.getDescription() );
+        sharedModel.setUrl( versionMetadata.getUrl() );
+        sharedModel.setOrganization( versionMetadata.getOrganization() );
+        sharedModel.setIssueManagement( versionMetadata.getIssueManagement() );
+        sharedModel.setCiManagement( versionMetadata.getCiManagement() );
+        sharedModel.setScm( versionMetadata.getScm() );
+        sharedModel.setLicenses( new ArrayList<>( versionMetadata.getLicenses() ) );
+        sharedModel.setMailingLists( new ArrayList<>( versionMetadata.getMailingLists() ) );
+        sharedModel.setDependencies( new ArrayList<>( versionMetadata.getDependencies() ) );
+        sharedModel.setProperties( new HashMap<>( versionMetadata.getProperties() ) );
+        sharedModel.setIncomplete( versionMetadata.isIncomplete() );
+        for ( MetadataFacet facet : versionMetadata.getFacetList() )
+        {
+            if ( !MavenProjectFacet.FACET_ID.equals( facet.getFacetId() ) )
+            {
+                sharedModel.addFacet( facet );
+            }
+        }
+
+        MavenProjectFacet mavenFacet = new MavenProjectFacet();
+        mavenFacet.setGroupId( groupId );
+        mavenFacet.setArtifactId( artifactId );
+        MavenProjectFacet versionMavenFacet =
+            (MavenProjectFacet) versionMetadata.getFacet( MavenProjectFacet.FACET_ID );
+        if ( versionMavenFacet != null )
+        {
+            mavenFacet.setPackaging( versionMavenFacet.getPackaging() );
+            mavenFacet.setParent( versionMavenFacet.getParent() );
+        }
+        sharedModel.addFacet( mavenFacet );
+        return sharedModel;
+    }
+
+    /**
+     * Merges a later version into the shared model. The name is the first name found, the packaging is cleared, if
+     * it differs, and the other fields take the value of the later version, if it differs. A field, that is not set
+     * in the shared model, stays empty.
+     */
+    private void mergeSharedModel( ProjectVersionMetadata sharedModel, ProjectVersionMetadata versionMetadata )
+    {
+        MavenProjectFacet mavenFacet = (MavenProjectFacet) sharedModel.getFacet( MavenProjectFacet.FACET_ID );
+        MavenProjectFacet versionMetadataMavenFacet =
+            (MavenProjectFacet) versionMetadata.getFacet( MavenProjectFacet.FACET_ID );
+        if ( versionMetadataMavenFacet != null )
+        {
+            if ( mavenFacet.getPackaging() != null //
+                && !StringUtils.equalsIgnoreCase( mavenFacet.getPackaging(),
+                                                  versionMetadataMavenFacet.getPackaging() ) )
+            {
+                mavenFacet.setPackaging( null );
+            }
+        }
+
+        if ( StringUtils.isEmpty( sharedModel.getName() ) //
+            && !StringUtils.isEmpty( versionMetadata.getName() ) )
+        {
+            sharedModel.setName( versionMetadata.getName() );
+        }
+
+        if ( sharedModel.getDescription() != null //
+            && !StringUtils.equalsIgnoreCase( sharedModel.getDescription(), versionMetadata.getDescription() ) )
+        {
+            sharedModel.setDescription( StringUtils.isNotEmpty( versionMetadata.getDescription() )
+                                            ? versionMetadata.getDescription()
+                                            : "" );
+        }
+
+        if ( sharedModel.getIssueManagement() != null //
+            && versionMetadata.getIssueManagement() != null //
+            && !StringUtils.equalsIgnoreCase( sharedModel.getIssueManagement().getUrl(),
+                                              versionMetadata.getIssueManagement().getUrl() ) )
+        {
+            sharedModel.setIssueManagement( versionMetadata.getIssueManagement() );
+        }
+
+        if ( sharedModel.getCiManagement() != null //
+            && versionMetadata.getCiManagement() != null //
+            && !StringUtils.equalsIgnoreCase( sharedModel.getCiManagement().getUrl(),
+                                              versionMetadata.getCiManagement().getUrl() ) )
+        {
+            sharedModel.setCiManagement( versionMetadata.getCiManagement() );
+        }
+
+        if ( sharedModel.getOrganization() != null //
+            && versionMetadata.getOrganization() != null //
+            && !StringUtils.equalsIgnoreCase( sharedModel.getOrganization().getName(),
+                                              versionMetadata.getOrganization().getName() ) )
+        {
+            sharedModel.setOrganization( versionMetadata.getOrganization() );
+        }
+
+        if ( sharedModel.getUrl() != null //
+            && !StringUtils.equalsIgnoreCase( sharedModel.getUrl(), versionMetadata.getUrl() ) )
+        {
+            sharedModel.setUrl( versionMetadata.getUrl() );
+        }
+    }
+
+    /**
+     * Returns <code>true</code>, if the shared model cannot be changed by later versions: the name is known and all
+     * other fields are empty, as an empty field is never set again by the merge.
+     */
+    private boolean isFinal( ProjectVersionMetadata sharedModel )
+    {
+        MavenProjectFacet mavenFacet = (MavenProjectFacet) sharedModel.getFacet( MavenProjectFacet.FACET_ID );
+        return StringUtils.isNotEmpty( sharedModel.getName() ) && mavenFacet.getPackaging() == null
+            && sharedModel.getDescription() == null && sharedModel.getIssueManagement() == null
+            && sharedModel.getCiManagement() == null && sharedModel.getOrganization() == null
+            && sharedModel.getUrl() == null;
+    }
+
     @Override
     public List<TreeEntry> getTreeEntries( String groupId, String artifactId, String version, String repositoryId )
         throws ArchivaRestServiceException
@@ -1356,4 +1490,14 @@ public void setVersionMetadataCache( Cache<String, ProjectVersionMetadata> versi
     {
         this.versionMetadataCache = versionMetadataCache;
     }
+
+    public AsyncTaskExecutor getVersionResolutionExecutor()
+    {
+        return versionResolutionExecutor;
+    }
+
+    public void setVersionResolutionExecutor( AsyncTaskExecutor versionResolutionExecutor )
+    {
+        this.versionResolutionExecutor = versionResolutionExecutor;
+    }
 }
@@ -26,6 +26,7 @@
 import org.apache.archiva.indexer.search.SearchResultHit;
 import org.apache.archiva.indexer.search.SearchResultLimits;
 import org.apache.archiva.indexer.search.SearchResults;
+import org.apache.archiva.indexer.util.SearchUtil;
 import org.apache.archiva.maven2.model.Artifact;
 import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.repository.MetadataRepository;
@@ -50,9 +51,11 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.stream.Stream;
 
 /**
  * @author Olivier Lamy
@@ -142,8 +145,7 @@ public List<Artifact> getArtifactVersions( String groupId, String artifactId, St
 
         try
         {
-            SearchResults searchResults = repositorySearch.search( getPrincipal(), searchField, null );
-            return getArtifacts( searchResults );
+            return getArtifacts( repositorySearch.searchStream( getPrincipal(), searchField ) );
         }
         catch ( RepositorySearchException e )
         {
@@ -485,5 +487,37 @@ protected List<Artifact> getArtifacts( SearchResults searchResults )
         return artifacts;
     }
 
+    /**
+     * Reads the hits of the stream and returns one artifact per version. Versions found in more than one
+     * repository are returned once. The stream is closed.
+     */
+    protected List<Artifact> getArtifacts( Stream<SearchResultHit> hits )
+        throws ArchivaRestServiceException
+    {
+        List<Artifact> artifacts = new ArrayList<>();
+        Set<String> found = new HashSet<>();
+        try ( Stream<SearchResultHit> stream = hits )
+        {
+            Iterator<SearchResultHit> it = stream.iterator();
+            while ( it.hasNext() )
+            {
+                SearchResultHit hit = it.next();
+                String id =
+                    SearchUtil.getHitId( hit.getGroupId(), hit.getArtifactId(), hit.getClassifier(), hit.getPackaging() );
+                for ( String version : hit.getVersions() )
+                {
+                    if ( StringUtils.isNotBlank( version ) && found.add( id + ":" + version ) )
+                    {
+                        Artifact versionned = getModelMapper().map( hit, Artifact.class );
+                        versionned.setVersion( version );
+                        versionned.setUrl( getArtifactUrl( versionned ) );
+                        artifacts.add( versionned );
+                    }
+                }
+            }
+        }
+        return artifacts;
+    }
+
 
 }
@@ -20,23 +20,34 @@
 
 import org.apache.archiva.admin.model.RepositoryAdminException;
 import org.apache.archiva.admin.model.managed.ManagedRepositoryAdmin;
+import org.apache.archiva.indexer.maven.MavenIndexManager;
+import org.apache.archiva.proxy.DefaultRepositoryProxyHandler;
+import org.apache.archiva.proxy.ProxyRegistry;
+import org.apache.archiva.proxy.maven.MavenRepositoryProxyHandler;
+import org.apache.archiva.proxy.maven.WagonConnectionPool;
+import org.apache.archiva.proxy.model.RepositoryProxyHandler;
 import org.apache.archiva.redback.components.cache.Cache;
 import org.apache.archiva.redback.components.cache.CacheStatistics;
 import org.apache.archiva.redback.components.taskqueue.TaskQueue;
 import org.apache.archiva.redback.components.taskqueue.TaskQueueException;
+import org.apache.archiva.repository.RepositoryType;
 import org.apache.archiva.repository.scanner.RepositoryScanner;
 import org.apache.archiva.repository.scanner.RepositoryScannerInstance;
 import org.apache.archiva.rest.api.model.CacheEntry;
 import org.apache.archiva.rest.api.model.ConsumerScanningStatistics;
+import org.apache.archiva.rest.api.model.IndexingStatistics;
+import org.apache.archiva.rest.api.model.ProxyStatistics;
 import org.apache.archiva.rest.api.model.QueueEntry;
 import org.apache.archiva.rest.api.model.RepositoryScannerStatistics;
 import org.apache.archiva.rest.api.services.ArchivaRestServiceException;
 import org.apache.archiva.rest.api.services.SystemStatusService;
 import org.apache.archiva.rest.services.utils.ConsumerScanningStatisticsComparator;
+import org.apache.archiva.scheduler.indexing.maven.ArchivaIndexingTaskExecutor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.ws.rs.core.Response;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
@@ -68,6 +79,17 @@
 
     ManagedRepositoryAdmin managedRepositoryAdmin;
 
+    @Inject
+    private ProxyRegistry proxyRegistry;
+
+    @Inject
+    @Named( value = "taskExecutor#indexing" )
+    private ArchivaIndexingTaskExecutor indexingTaskExecutor;
+
+    @Inject
+    @Named( value = "archivaIndexManager#maven" )
+    private MavenIndexManager indexManager;
+
     // display spring scheduled
     //@Inject @Named (value="springScheduler");
 
@@ -248,4 +270,52 @@ private List<ConsumerScanningStatistics> mapConsumerScanningStatistics( Reposito
         Collections.sort( ret, ConsumerScanningStatisticsComparator.INSTANCE );
         return ret;
     }
+
+    @Override
+    public List<ProxyStatistics> getProxyStatistics()
+        throws ArchivaRestServiceException
+    {
+        List<ProxyStatistics> proxyStatisticsList = new ArrayList<>();
+        for ( Map.Entry<RepositoryType, List<RepositoryProxyHandler>> entry : proxyRegistry.getAllHandler().entrySet() )
+        {
+            for ( RepositoryProxyHandler handler : entry.getValue() )
+            {
+                if ( handler instanceof DefaultRepositoryProxyHandler )
+                {
+                    DefaultRepositoryProxyHandler proxyHandler = (DefaultRepositoryProxyHandler) handler;
+                    ProxyStatistics proxyStatistics = new ProxyStatistics();
+                    proxyStatistics.setRepositoryType( entry.getKey().name() );
+                    proxyStatistics.setCoalescedRequestCount( proxyHandler.getCoalescedRequestCount() );
+                    proxyStatistics.setWaitingRequestCount( proxyHandler.getWaitingRequestCount() );
+                    proxyStatistics.setInFlightTransferCount( proxyHandler.getInFlightTransferCount() );
+                    if ( handler instanceof MavenRepositoryProxyHandler )
+                    {
+                        WagonConnectionPool wagonPool = ( (MavenRepositoryProxyHandler) handler ).getWagonPool();
+                        proxyStatistics.setOpenConnectionCount( wagonPool.getOpenCount() );
+                        proxyStatistics.setIdleConnectionCount( wagonPool.getIdleCount() );
+                    }
+                    proxyStatisticsList.add( proxyStatistics );
+                }
+            }
+        }
+        return proxyStatisticsList;
+    }
+
+    @Override
+    public IndexingStatistics getIndexingStatistics()
+        throws ArchivaRestServiceException
+    {
+        IndexingStatistics indexingStatistics = new IndexingStatistics();
+        indexingStatistics.setBatchCount( indexingTaskExecutor.getBatchCount() );
+        indexingStatistics.setBatchedTaskCount( indexingTaskExecutor.getBatchedTaskCount() );
+        indexingStatistics.setLastBatchSize( indexingTaskExecutor.getLastBatchSize() );
+        indexingStatistics.setMaxBatchSize( indexingTaskExecutor.getMaxBatchSizeReached() );
+        indexingStatistics.setLastQueueLag( indexingTaskExecutor.getLastQueueLag() );
+        indexingStatistics.setMaxQueueLag( indexingTaskExecutor.getMaxQueueLag() );
+        indexingStatistics.setContextQueueDepth( indexManager.getQueueDepth() );
+        indexingStatistics.setContextLockWaitTime( indexManager.getLockWaitTime() );
+        indexingStatistics.setMaxContextLockWaitTime( indexManager.getMaxLockWaitTime() );
+        indexingStatistics.setCoalescedUpdateCount( indexManager.getCoalescedUpdateCount() );
+        return indexingStatistics;
+    }
 }
@@ -0,0 +1,259 @@
+package org.apache.archiva.rest.services;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.metadata.model.IssueManagement;
+import org.apache.archiva.metadata.model.Organization;
+import org.apache.archiva.metadata.model.ProjectVersionMetadata;
+import org.apache.archiva.metadata.repository.MetadataResolver;
+import org.apache.archiva.metadata.repository.RepositorySession;
+import org.apache.archiva.metadata.repository.RepositorySessionFactory;
+import org.apache.archiva.metadata.repository.storage.maven2.MavenProjectFacet;
+import org.apache.archiva.redback.components.cache.Cache;
+import org.apache.archiva.redback.configuration.UserConfiguration;
+import org.apache.archiva.security.UserRepositories;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * DefaultBrowseServiceTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class DefaultBrowseServiceTest
+    extends TestCase
+{
+    private static final String REPO_ID = "internal";
+
+    private static final String GROUP_ID = "org.example";
+
+    private static final String ARTIFACT_ID = "project";
+
+    @Mock
+    private UserRepositories userRepositories;
+
+    @Mock
+    private UserConfiguration config;
+
+    @Mock
+    private RepositorySessionFactory repositorySessionFactory;
+
+    @Mock
+    private Cache<String, ProjectVersionMetadata> versionMetadataCache;
+
+    @InjectMocks
+    private DefaultBrowseService browseService;
+
+    private ThreadPoolTaskExecutor versionResolutionExecutor;
+
+    private MetadataResolver metadataResolver;
+
+    private final Map<String, ProjectVersionMetadata> versions = new LinkedHashMap<>();
+
+    private final AtomicInteger resolutions = new AtomicInteger();
+
+    private final AtomicInteger maxResolutions = new AtomicInteger();
+
+    @Before
+    @Override
+    public void setUp()
+        throws Exception
+    {
+        super.setUp();
+        MockitoAnnotations.initMocks( this );
+        versionResolutionExecutor = new ThreadPoolTaskExecutor();
+        versionResolutionExecutor.setCorePoolSize( 8 );
+        versionResolutionExecutor.setMaxPoolSize( 8 );
+        versionResolutionExecutor.setQueueCapacity( 64 );
+        versionResolutionExecutor.initialize();
+        browseService.setVersionResolutionExecutor( versionResolutionExecutor );
+        when( config.getString( anyString() ) ).thenReturn( "guest" );
+        when( userRepositories.getObservableRepositoryIds( anyString() ) ).thenReturn(
+            Collections.singletonList( REPO_ID ) );
+
+        metadataResolver = mock( MetadataResolver.class );
+        when( repositorySessionFactory.createSession() ).thenAnswer( invocation -> {
+            RepositorySession session = mock( RepositorySession.class );
+            when( session.getResolver() ).thenReturn( metadataResolver );
+            return session;
+        } );
+        when( metadataResolver.resolveProjectVersions( any( RepositorySession.class ), eq( REPO_ID ),
+                                                       eq( GROUP_ID ), eq( ARTIFACT_ID ) ) ).thenAnswer(
+            invocation -> new ArrayList<>( versions.keySet() ) );
+        when( metadataResolver.resolveProjectVersion( any( RepositorySession.class ), eq( REPO_ID ), eq( GROUP_ID ),
+                                                      eq( ARTIFACT_ID ), anyString() ) ).thenAnswer( invocation -> {
+            int running = resolutions.incrementAndGet();
+            maxResolutions.accumulateAndGet( running, Math::max );
+            try
+            {
+                Thread.sleep( 10 );
+                return versions.get( (String) invocation.getArguments()[4] );
+            }
+            finally
+            {
+                resolutions.decrementAndGet();
+            }
+        } );
+    }
+
+    @After
+    @Override
+    public void tearDown()
+        throws Exception
+    {
+        versionResolutionExecutor.shutdown();
+        super.tearDown();
+    }
+
+    @Test
+    public void testLaterVersionsOverrideSharedFields()
+        throws Exception
+    {
+        ProjectVersionMetadata first = addVersion( "1.0", null, "jar" );
+        first.setDescription( "First" );
+        first.setUrl( "http://example.org/1" );
+        first.setOrganization( new Organization( "Example", null ) );
+        first.setIssueManagement( new IssueManagement( "jira", "http://issues.example.org/1" ) );
+
+        ProjectVersionMetadata second = addVersion( "2.0", "Project", "jar" );
+        second.setDescription( "Second" );
+        second.setUrl( "http://example.org/2" );
+        second.setIssueManagement( new IssueManagement( "jira", "http://issues.example.org/2" ) );
+
+        ProjectVersionMetadata third = addVersion( "3.0", "Renamed", "jar" );
+        third.setUrl( "http://example.org/3" );
+        third.setOrganization( new Organization( "Other", null ) );
+
+        ProjectVersionMetadata sharedModel =
+            browseService.getProjectVersionMetadata( GROUP_ID, ARTIFACT_ID, null );
+
+        // the name is the first name found, the other fields are taken from the later versions
+        assertEquals( "Project", sharedModel.getName() );
+        assertEquals( "", sharedModel.getDescription() );
+        assertEquals( "http://example.org/3", sharedModel.getUrl() );
+        assertEquals( "Other", sharedModel.getOrganization().getName() );
+        // a version without issue management does not clear it
+        assertEquals( "http://issues.example.org/2", sharedModel.getIssueManagement().getUrl() );
+        assertNull( sharedModel.getCiManagement() );
+        MavenProjectFacet mavenFacet = (MavenProjectFacet) sharedModel.getFacet( MavenProjectFacet.FACET_ID );
+        assertEquals( GROUP_ID, mavenFacet.getGroupId() );
+        assertEquals( ARTIFACT_ID, mavenFacet.getArtifactId() );
+        assertEquals( "jar", mavenFacet.getPackaging() );
+
+        // the resolved metadata is not changed by the merge
+        assertNull( first.getName() );
+        assertEquals( "First", first.getDescription() );
+        assertEquals( "http://example.org/1", first.getUrl() );
+    }
+
+    @Test
+    public void testRemainingVersionsAreSkippedIfSharedModelIsFinal()
+        throws Exception
+    {
+        addVersion( "1.0", "Project", "jar" );
+        addVersion( "2.0", "Project", "pom" );
+        for ( int i = 3; i <= 12; i++ )
+        {
+            addVersion( i + ".0", "Project", "jar" );
+        }
+
+        ProjectVersionMetadata sharedModel =
+            browseService.getProjectVersionMetadata( GROUP_ID, ARTIFACT_ID, null );
+
+        assertEquals( "Project", sharedModel.getName() );
+        assertNull( ( (MavenProjectFacet) sharedModel.getFacet( MavenProjectFacet.FACET_ID ) ).getPackaging() );
+        // the versions after the window of the merged versions are never resolved
+        for ( int i = 7; i <= 12; i++ )
+        {
+            verify( metadataResolver, never() ).resolveProjectVersion( any( RepositorySession.class ), eq( REPO_ID ),
+                                                                       eq( GROUP_ID ), eq( ARTIFACT_ID ),
+                                                                       eq( i + ".0" ) );
+        }
+    }
+
+    @Test
+    public void testSharedModelIsNotFinalWhileFieldsCanChange()
+        throws Exception
+    {
+        addVersion( "1.0", "Project", "jar" ).setUrl( "http://example.org/1" );
+        addVersion( "2.0", "Project", "pom" ).setUrl( "http://example.org/2" );
+        addVersion( "3.0", "Project", "pom" ).setUrl( "http://example.org/3" );
+
+        ProjectVersionMetadata sharedModel =
+            browseService.getProjectVersionMetadata( GROUP_ID, ARTIFACT_ID, null );
+
+        assertEquals( "http://example.org/3", sharedModel.getUrl() );
+    }
+
+    @Test
+    public void testConcurrentResolutionsAreLimitedPerRequest()
+        throws Exception
+    {
+        for ( int i = 1; i <= 20; i++ )
+        {
+            // the name is never known, so all versions are merged
+            addVersion( i + ".0", null, "jar" );
+        }
+
+        browseService.getProjectVersionMetadata( GROUP_ID, ARTIFACT_ID, null );
+
+        for ( int i = 1; i <= 20; i++ )
+        {
+            verify( metadataResolver ).resolveProjectVersion( any( RepositorySession.class ), eq( REPO_ID ),
+                                                              eq( GROUP_ID ), eq( ARTIFACT_ID ), eq( i + ".0" ) );
+        }
+        assertTrue( "max resolutions " + maxResolutions.get(), maxResolutions.get() <= 4 );
+    }
+
+    private ProjectVersionMetadata addVersion( String version, String name, String packaging )
+    {
+        ProjectVersionMetadata versionMetadata = new ProjectVersionMetadata();
+        versionMetadata.setId( version );
+        versionMetadata.setName( name );
+        MavenProjectFacet mavenFacet = new MavenProjectFacet();
+        mavenFacet.setGroupId( GROUP_ID );
+        mavenFacet.setArtifactId( ARTIFACT_ID );
+        mavenFacet.setPackaging( packaging );
+        versionMetadata.addFacet( mavenFacet );
+        versions.put( version, versionMetadata );
+        return versionMetadata;
+    }
+}
@@ -19,6 +19,7 @@
  * under the License.
  */
 
+import org.apache.archiva.checksum.ChecksumCache;
 import org.apache.archiva.common.ArchivaException;
 import org.apache.archiva.redback.components.scheduler.DefaultScheduler;
 import org.apache.archiva.redback.components.taskqueue.Task;
@@ -49,6 +50,8 @@
 
     private DefaultRepositoryArchivaTaskScheduler repositoryTaskScheduler;
 
+    private ChecksumCache checksumCache;
+
     @Override
     public void contextInitialized( ServletContextEvent contextEvent )
     {
@@ -66,6 +69,8 @@ public void contextInitialized( ServletContextEvent contextEvent )
 
         tqeIndexing = wac.getBean( "taskQueueExecutor#indexing", ThreadedTaskQueueExecutor.class );
 
+        // the journal of the checksum cache is loaded, before the first scan starts
+        checksumCache = wac.getBean( "checksumCache#default", ChecksumCache.class );
 
         try
         {
@@ -131,6 +136,12 @@ public void contextDestroyed( ServletContextEvent contextEvent )
                 }
             }
 
+            // the application context is not closed, so the pending journal entries are written here
+            if ( checksumCache != null )
+            {
+                checksumCache.close();
+            }
+
             // close the application context
             //applicationContext.close();
             // TODO fix close call
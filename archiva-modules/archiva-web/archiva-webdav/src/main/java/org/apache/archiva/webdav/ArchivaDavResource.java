@@ -19,7 +19,13 @@
  * under the License.
  */
 
+import org.apache.archiva.checksum.Checksum;
+import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.ChecksumCache;
+import org.apache.archiva.checksum.ChecksummingOutputStream;
+import org.apache.archiva.common.utils.VersionUtil;
 import org.apache.archiva.metadata.model.facets.AuditEvent;
+import org.apache.archiva.metadata.repository.StorageListingCache;
 import org.apache.archiva.repository.LayoutException;
 import org.apache.archiva.repository.storage.RepositoryStorage;
 import org.apache.archiva.repository.storage.StorageAsset;
@@ -30,6 +36,7 @@
 import org.apache.archiva.webdav.util.IndexWriter;
 import org.apache.archiva.webdav.util.MimeTypes;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.util.Text;
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.DavResource;
@@ -60,13 +67,26 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -108,6 +128,29 @@
 
     private StorageAsset asset;
 
+    private String etag;
+
+    private List<ChecksumAlgorithm> checksumAlgorithms = Collections.emptyList();
+
+    private ChecksumCache checksumCache;
+
+    private StorageListingCache storageListingCache;
+
+    private static final String CHECKSUM_HEADER_PREFIX = "X-Checksum-";
+
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The time in seconds, that the clients may cache released files.
+     */
+    private static final long RELEASE_MAX_AGE = Long.getLong( "archiva.webdav.releaseMaxAge", 86400 );
+
+    private static final String[] ETAG_CHECKSUM_EXTENSIONS = { ".sha1", ".md5" };
+
+    private static final long MAX_CHECKSUM_FILE_SIZE = 1024;
+
+    private static final Pattern CHECKSUM_PATTERN = Pattern.compile( "[0-9a-fA-F]{32,128}" );
+
     public ArchivaDavResource( StorageAsset localResource, String logicalResource, RepositoryStorage repositoryStorage,
                                DavSession session, ArchivaDavResourceLocator locator, DavResourceFactory factory,
                                MimeTypes mimeTypes, List<AuditListener> auditListeners,
@@ -205,12 +248,14 @@ public void spool( OutputContext outputContext )
         if ( !isCollection() )
         {
             outputContext.setContentLength( asset.getSize());
-            outputContext.setContentType( mimeTypes.getMimeType( asset.getName() ) );
+            outputContext.setContentType( getContentType() );
+            outputContext.setETag( getETag() );
+            outputContext.setProperty( "Cache-Control", getCacheControl() );
         }
 
         if ( !isCollection() && outputContext.hasStream() )
         {
-            repositoryStorage.consumeData( asset, is -> {copyStream(is, outputContext.getOutputStream());}, true );
+            spool( outputContext.getOutputStream(), 0, asset.getSize() );
         }
         else if ( outputContext.hasStream() )
         {
@@ -219,10 +264,48 @@ else if ( outputContext.hasStream() )
         }
     }
 
-    private void copyStream(InputStream is, OutputStream os) throws RuntimeException {
+    /**
+     * Writes the given part of the file to the stream. The data is transferred by the file channel, if the
+     * storage is file based. This is not a zero-copy transfer: the target is a channel over the stream of the
+     * response, so the file channel copies the data in small chunks through a buffer into the stream.
+     *
+     * @param os the stream of the response
+     * @param start the first byte
+     * @param length the number of bytes
+     */
+    public void spool( OutputStream os, long start, long length )
+        throws IOException
+    {
+        repositoryStorage.consumeDataFromChannel( asset, channel -> transferData( channel, os, start, length ),
+                                                  true );
+    }
+
+    private void transferData( ReadableByteChannel channel, OutputStream os, long start, long length )
+        throws RuntimeException
+    {
         try
         {
-            IOUtils.copy(is, os);
+            if ( channel instanceof FileChannel )
+            {
+                FileChannel fileChannel = (FileChannel) channel;
+                WritableByteChannel target = Channels.newChannel( os );
+                long position = start;
+                long end = start + length;
+                while ( position < end )
+                {
+                    long transferred = fileChannel.transferTo( position, end - position, target );
+                    if ( transferred <= 0 )
+                    {
+                        // the file was truncated
+                        break;
+                    }
+                    position += transferred;
+                }
+            }
+            else
+            {
+                IOUtils.copyLarge( Channels.newInputStream( channel ), os, start, length );
+            }
         }
         catch ( IOException e )
         {
@@ -230,6 +313,75 @@ private void copyStream(InputStream is, OutputStream os) throws RuntimeException
         }
     }
 
+    public String getContentType()
+    {
+        return mimeTypes.getMimeType( asset.getName() );
+    }
+
+    /**
+     * Returns the strong entity tag of the file. This is the stored SHA-1 or MD5 checksum, if the checksum file is
+     * not older than the file. Otherwise the tag is built from the size and the modification time.
+     */
+    public String getETag()
+    {
+        if ( etag == null )
+        {
+            String checksum = readStoredChecksum();
+            etag = checksum != null
+                ? "\"" + checksum + "\""
+                : "\"" + Long.toHexString( asset.getSize() ) + "-" + Long.toHexString( getModificationTime() ) + "\"";
+        }
+        return etag;
+    }
+
+    private String readStoredChecksum()
+    {
+        if ( !asset.hasParent() )
+        {
+            return null;
+        }
+        for ( String extension : ETAG_CHECKSUM_EXTENSIONS )
+        {
+            StorageAsset checksumFile = asset.getParent().resolve( asset.getName() + extension );
+            if ( checksumFile.exists() && !checksumFile.isContainer()
+                && checksumFile.getSize() <= MAX_CHECKSUM_FILE_SIZE
+                && !checksumFile.getModificationTime().isBefore( asset.getModificationTime() ) )
+            {
+                try ( InputStream is = checksumFile.getReadStream() )
+                {
+                    // the checksum may be followed by the file name
+                    String[] tokens = IOUtils.toString( is, StandardCharsets.US_ASCII ).trim().split( "\\s+" );
+                    if ( CHECKSUM_PATTERN.matcher( tokens[0] ).matches() )
+                    {
+                        return tokens[0].toLowerCase( Locale.ROOT );
+                    }
+                }
+                catch ( IOException e )
+                {
+                    log.debug( "Could not read checksum file {}: {}", checksumFile, e.getMessage() );
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the Cache-Control header of the file. The released files do not change, so the clients may cache
+     * them. The metadata, the snapshots and the hidden files must be validated on each request.
+     */
+    public String getCacheControl()
+    {
+        String path = logicalResource == null ? "" : logicalResource;
+        String name = asset.getName();
+        if ( isCollection() || name.startsWith( "maven-metadata" ) || name.startsWith( "archetype-catalog" )
+            || path.contains( VersionUtil.SNAPSHOT ) || path.startsWith( HIDDEN_PATH_PREFIX )
+            || path.contains( "/" + HIDDEN_PATH_PREFIX ) )
+        {
+            return "no-cache";
+        }
+        return "public, max-age=" + RELEASE_MAX_AGE;
+    }
+
     @Override
     public DavPropertyName[] getPropertyNames()
     {
@@ -304,29 +456,41 @@ public void addMember( DavResource resource, InputContext inputContext )
         throws DavException
     {
         // Path localFile = localResource.resolve( resource.getDisplayName() );
-        boolean exists = asset.exists();
         final String newPath = asset.getPath()+"/"+resource.getDisplayName();
 
         if ( isCollection() && inputContext.hasStream() ) // New File
         {
-            Path tempFile = null;
+            StorageAsset member = repositoryStorage.getAsset( newPath );
+            boolean memberExists = member.exists();
+            // the upload is written next to the file, so that it can be renamed to the file
+            StorageAsset tempFile = repositoryStorage.addAsset(
+                asset.getPath() + "/" + HIDDEN_PATH_PREFIX + resource.getDisplayName() + "."
+                    + Long.toHexString( ThreadLocalRandom.current().nextLong() ) + ".upload", false );
             try
             {
-                tempFile = Files.createTempFile( "archiva_upload","dat" );
-                try(OutputStream os = Files.newOutputStream( tempFile, StandardOpenOption.CREATE ))
+                Map<ChecksumAlgorithm, String> expectedChecksums = getExpectedChecksums( inputContext );
+                List<ChecksumAlgorithm> algorithms = new ArrayList<>( expectedChecksums.keySet() );
+                for ( ChecksumAlgorithm algorithm : getUploadChecksumAlgorithms( resource.getDisplayName() ) )
                 {
-                    IOUtils.copy( inputContext.getInputStream( ), os );
+                    if ( !algorithms.contains( algorithm ) )
+                    {
+                        algorithms.add( algorithm );
+                    }
                 }
-                long expectedContentLength = inputContext.getContentLength();
-                long actualContentLength = 0;
+
+                tempFile.create();
+                ChecksummingOutputStream os =
+                    new ChecksummingOutputStream( tempFile.getWriteStream( true ), algorithms );
                 try
                 {
-                    actualContentLength = Files.size(tempFile);
+                    IOUtils.copyLarge( inputContext.getInputStream( ), os, new byte[UPLOAD_BUFFER_SIZE] );
                 }
-                catch ( IOException e )
+                finally
                 {
-                    log.error( "Could not get length of file {}: {}", tempFile, e.getMessage(), e );
+                    os.close();
                 }
+                long expectedContentLength = inputContext.getContentLength();
+                long actualContentLength = os.getByteCount();
                 // length of -1 is given for a chunked request or unknown length, in which case we accept what was uploaded
                 if ( expectedContentLength >= 0 && expectedContentLength != actualContentLength )
                 {
@@ -334,33 +498,64 @@ public void addMember( DavResource resource, InputContext inputContext )
                     log.debug( "Upload failed: {}", msg );
                     throw new DavException( HttpServletResponse.SC_BAD_REQUEST, msg );
                 }
-                StorageAsset member = repositoryStorage.addAsset( newPath, false );
-                member.create();
-                member.replaceDataFromFile( tempFile );
+                for ( Checksum checksum : os.getChecksums() )
+                {
+                    String expected = expectedChecksums.get( checksum.getAlgorithm() );
+                    if ( expected != null && !expected.equalsIgnoreCase( checksum.getChecksum() ) )
+                    {
+                        String msg = checksum.getAlgorithm().getType() + " checksum was " + expected + " but was "
+                            + checksum.getChecksum();
+                        log.debug( "Upload failed: {}", msg );
+                        throw new DavException( HttpServletResponse.SC_BAD_REQUEST, msg );
+                    }
+                }
+
+                try
+                {
+                    repositoryStorage.moveAsset( tempFile, member, StandardCopyOption.REPLACE_EXISTING,
+                                                 StandardCopyOption.ATOMIC_MOVE );
+                }
+                catch ( AtomicMoveNotSupportedException e )
+                {
+                    repositoryStorage.moveAsset( tempFile, member, StandardCopyOption.REPLACE_EXISTING );
+                }
+
+                // the checksum consumers of the repository scan do not have to read the file again
+                if ( checksumCache != null && member.isFileBased() )
+                {
+                    checksumCache.update( member.getFilePath(),
+                                          Files.readAttributes( member.getFilePath(), BasicFileAttributes.class ),
+                                          os.getChecksums() );
+                }
             }
             catch ( IOException e )
             {
                 throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e );
             } finally {
-                if (tempFile!=null)
+                try
                 {
-                    try
-                    {
-                        Files.deleteIfExists( tempFile );
-                    }
-                    catch ( IOException e )
+                    if ( tempFile.exists() )
                     {
-                        log.error("Could not delete temporary file {}", tempFile);
+                        repositoryStorage.removeAsset( tempFile );
                     }
                 }
+                catch ( IOException e )
+                {
+                    log.error("Could not delete temporary file {}", tempFile);
+                }
             }
 
             // queueRepositoryTask( asset );
 
             log.debug( "File '{}{}(current user '{}')", resource.getDisplayName(),
-                       ( exists ? "' modified " : "' created " ), this.principal );
+                       ( memberExists ? "' modified " : "' created " ), this.principal );
 
-            // triggerAuditEvent( resource, exists ? AuditEvent.MODIFY_FILE : AuditEvent.CREATE_FILE );
+            // triggerAuditEvent( resource, memberExists ? AuditEvent.MODIFY_FILE : AuditEvent.CREATE_FILE );
+
+            if ( storageListingCache != null )
+            {
+                storageListingCache.invalidate( locator.getRepositoryId(), newPath );
+            }
         }
         else if ( !inputContext.hasStream() && isCollection() ) // New directory
         {
@@ -387,6 +582,67 @@ else if ( !inputContext.hasStream() && isCollection() ) // New directory
         }
     }
 
+    /**
+     * Returns the checksums, that the client sent with the upload in the X-Checksum-* headers.
+     */
+    private Map<ChecksumAlgorithm, String> getExpectedChecksums( InputContext inputContext )
+    {
+        Map<ChecksumAlgorithm, String> checksums = new LinkedHashMap<>();
+        for ( ChecksumAlgorithm algorithm : ChecksumAlgorithm.values() )
+        {
+            if ( algorithm == ChecksumAlgorithm.ASC )
+            {
+                continue;
+            }
+            String value = inputContext.getProperty( CHECKSUM_HEADER_PREFIX + algorithm.getType() );
+            if ( StringUtils.isNotBlank( value ) )
+            {
+                checksums.put( algorithm, value.trim() );
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Returns the configured checksum algorithms, that are calculated while a file is uploaded. No checksums are
+     * calculated for checksum files and signatures.
+     */
+    private List<ChecksumAlgorithm> getUploadChecksumAlgorithms( String fileName )
+    {
+        String extension = StringUtils.substringAfterLast( fileName, "." ).toLowerCase( Locale.ROOT );
+        if ( ChecksumAlgorithm.getAllExtensions().contains( extension ) )
+        {
+            return Collections.emptyList();
+        }
+        return checksumAlgorithms.stream().filter( algorithm -> algorithm != ChecksumAlgorithm.ASC ).collect(
+            Collectors.toList() );
+    }
+
+    /**
+     * Sets the configured checksum algorithms. The checksums of uploaded files are calculated while the file is
+     * written and stored in the checksum cache.
+     */
+    public void setChecksumAlgorithms( List<ChecksumAlgorithm> checksumAlgorithms )
+    {
+        this.checksumAlgorithms = checksumAlgorithms;
+    }
+
+    /**
+     * Sets the cache, that stores the checksums of uploaded files.
+     */
+    public void setChecksumCache( ChecksumCache checksumCache )
+    {
+        this.checksumCache = checksumCache;
+    }
+
+    /**
+     * Sets the cache of the storage listings, that is invalidated for uploaded files.
+     */
+    public void setStorageListingCache( StorageListingCache storageListingCache )
+    {
+        this.storageListingCache = storageListingCache;
+    }
+
     public StorageAsset getAsset() {
         return asset;
     }
@@ -23,6 +23,7 @@
 import org.apache.archiva.admin.model.remote.RemoteRepositoryAdmin;
 import org.apache.archiva.audit.Auditable;
 import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.ChecksumCache;
 import org.apache.archiva.checksum.ChecksumUtil;
 import org.apache.archiva.checksum.StreamingChecksum;
 import org.apache.archiva.common.filelock.DefaultFileLockManager;
@@ -31,17 +32,15 @@
 import org.apache.archiva.common.utils.PathUtil;
 import org.apache.archiva.common.utils.VersionUtil;
 import org.apache.archiva.configuration.ArchivaConfiguration;
-import org.apache.archiva.indexer.ArchivaIndexingContext;
 import org.apache.archiva.indexer.merger.IndexMerger;
 import org.apache.archiva.indexer.merger.IndexMergerException;
 import org.apache.archiva.indexer.merger.IndexMergerRequest;
-import org.apache.archiva.indexer.merger.base.MergedRemoteIndexesTask;
-import org.apache.archiva.indexer.merger.base.MergedRemoteIndexesTaskRequest;
-import org.apache.archiva.indexer.merger.TemporaryGroupIndex;
+import org.apache.archiva.indexer.merger.SharedMergedIndex;
 import org.apache.archiva.indexer.search.RepositorySearch;
 import org.apache.archiva.indexer.search.RepositorySearchException;
 import org.apache.archiva.maven2.metadata.MavenMetadataReader;
 import org.apache.archiva.metadata.model.facets.AuditEvent;
+import org.apache.archiva.metadata.repository.StorageListingCache;
 import org.apache.archiva.metadata.repository.storage.RelocationException;
 import org.apache.archiva.metadata.repository.storage.RepositoryStorage;
 import org.apache.archiva.model.ArchivaRepositoryMetadata;
@@ -76,8 +75,8 @@
 import org.apache.archiva.repository.metadata.base.RepositoryMetadataWriter;
 import org.apache.archiva.scheduler.repository.model.RepositoryArchivaTaskScheduler;
 import org.apache.archiva.security.ServletAuthenticator;
+import org.apache.archiva.webdav.util.MergedMetadataCache;
 import org.apache.archiva.webdav.util.MimeTypes;
-import org.apache.archiva.webdav.util.TemporaryGroupIndexSessionCleaner;
 import org.apache.archiva.webdav.util.WebdavMethodUtil;
 import org.apache.archiva.xml.XMLException;
 import org.apache.commons.io.FilenameUtils;
@@ -95,15 +94,16 @@
 import org.codehaus.plexus.digest.DigesterException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MarkerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -112,12 +112,15 @@
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -131,6 +134,12 @@
 
     private static final String HTTP_PUT_METHOD = "PUT";
 
+    /**
+     * The request attribute with the shared merged indexes, that are read by the response. They are released
+     * by {@link #releaseMergedIndexes(HttpServletRequest)}, when the request is finished.
+     */
+    private static final String MERGED_INDEXES_ATTRIBUTE = ArchivaDavResourceFactory.class.getName( ) + ".mergedIndexes";
+
     private Logger log = LoggerFactory.getLogger( ArchivaDavResourceFactory.class );
 
     @Inject
@@ -169,6 +178,33 @@
     @Inject
     private RepositorySearch repositorySearch;
 
+    /**
+     * If true, the members of a group are not asked one after another, but the proxies of all members
+     * are asked at the same time.
+     */
+    private boolean parallelGroupResolution = Boolean.getBoolean( "archiva.repositoryGroup.parallelResolution" );
+
+    /**
+     * A parallel group resolution, that takes at least this number of milliseconds, is logged with the time
+     * of each member at info level. A negative value disables the log.
+     */
+    private long slowGroupResolutionThreshold =
+        Long.getLong( "archiva.repositoryGroup.slowResolutionThreshold", 1000 );
+
+    /**
+     * The executor of the parallel group resolution. The queue is bounded, if it is full the group is
+     * resolved sequentially.
+     */
+    @Inject
+    @Named( value = "taskExecutor#groupResolution" )
+    private AsyncTaskExecutor groupResolutionExecutor;
+
+    /**
+     * The merged metadata files of the repository groups, that are still valid.
+     */
+    private final MergedMetadataCache mergedMetadataCache =
+        new MergedMetadataCache( Integer.getInteger( "archiva.webdav.mergedMetadataCacheSize", 10000 ) );
+
     /**
      * Lock Manager - use simple implementation from JackRabbit
      */
@@ -182,6 +218,12 @@
     @Named( value = "fileLockManager#default" )
     private FileLockManager fileLockManager;
 
+    @Autowired( required = false )
+    private ChecksumCache checksumCache;
+
+    @Autowired( required = false )
+    private StorageListingCache storageListingCache;
+
     private ApplicationContext applicationContext;
 
 
@@ -197,7 +239,12 @@ public ArchivaDavResourceFactory( ApplicationContext applicationContext, Archiva
     @PostConstruct
     public void initialize() throws IOException
     {
-
+        if ( Boolean.getBoolean( "archiva.groupIndex.prebuild" ) )
+        {
+            Thread thread = new Thread( this::prebuildMergedIndexes, "merged-group-index-prebuild" );
+            thread.setDaemon( true );
+            thread.start( );
+        }
     }
 
 
@@ -334,31 +381,46 @@ public DavResource createResource( final DavResourceLocator locator, final DavSe
                 {
                     if ( resourcesInAbsolutePath != null && resourcesInAbsolutePath.size() > 1 )
                     {
-                        // merge the metadata of all repos under group
+                        List<Path> memberFiles = resourcesInAbsolutePath.stream( ).map( Paths::get ).collect( Collectors.toList( ) );
+                        String cacheKey = repoGroup.getId( ) + ":" + newPath;
+                        List<MergedMetadataCache.FileSignature> signatures = MergedMetadataCache.getSignatures( memberFiles );
+                        StorageAsset cachedFile = mergedMetadataCache.get( cacheKey, signatures );
                         ArchivaRepositoryMetadata mergedMetadata = new ArchivaRepositoryMetadata();
-                        for ( String resourceAbsPath : resourcesInAbsolutePath )
+                        if ( cachedFile == null )
                         {
-                            try
+                            // merge the metadata of all repos under group
+                            for ( Path metadataFile : memberFiles )
                             {
-                                Path metadataFile = Paths.get( resourceAbsPath );
-                                ArchivaRepositoryMetadata repoMetadata = MavenMetadataReader.read( metadataFile );
-                                mergedMetadata = RepositoryMetadataMerge.merge( mergedMetadata, repoMetadata );
-                            }
-                            catch (XMLException e )
-                            {
-                                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                                                        "Error occurred while reading metadata file." );
-                            }
-                            catch ( RepositoryMetadataException r )
-                            {
-                                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                                                        "Error occurred while merging metadata file." );
+                                try
+                                {
+                                    ArchivaRepositoryMetadata repoMetadata = MavenMetadataReader.read( metadataFile );
+                                    mergedMetadata = RepositoryMetadataMerge.merge( mergedMetadata, repoMetadata );
+                                }
+                                catch (XMLException e )
+                                {
+                                    throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                                            "Error occurred while reading metadata file." );
+                                }
+                                catch ( RepositoryMetadataException r )
+                                {
+                                    throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                                            "Error occurred while merging metadata file." );
+                                }
                             }
                         }
 
                         try
                         {
-                            StorageAsset resourceFile = writeMergedMetadataToFile( repoGroup, mergedMetadata, newPath );
+                            StorageAsset resourceFile = cachedFile;
+                            if ( resourceFile == null )
+                            {
+                                // users with access to different members write the same file
+                                synchronized ( mergedMetadataCache.getLock( cacheKey ) )
+                                {
+                                    resourceFile = writeMergedMetadataToFile( repoGroup, mergedMetadata, newPath );
+                                    mergedMetadataCache.put( cacheKey, signatures, resourceFile );
+                                }
+                            }
 
                             LogicalResource logicalResource =
                                 new LogicalResource( getLogicalResource( archivaLocator, null, false ) );
@@ -444,41 +506,15 @@ private DavResource processRepositoryGroup( final DavServletRequest request,
         }
         else
         {
-            for ( ManagedRepository repository : repoGroup.getRepositories() )
+            if ( parallelGroupResolution && !archivaLocator.getHref( false ).endsWith( "/" ) )
             {
-                String repositoryId = repository.getId();
-                ManagedRepositoryContent managedRepositoryContent;
-                ManagedRepository managedRepository = repositoryRegistry.getManagedRepository( repositoryId );
-                if (managedRepository==null) {
-                    throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not find repository with id "+repositoryId );
-                }
-                managedRepositoryContent = managedRepository.getContent();
-                if (managedRepositoryContent==null) {
-                    log.error("Inconsistency detected. Repository content not found for '{}'",repositoryId);
-                    throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not find repository content with id "+repositoryId );
-                }
-                try
-                {
-                    DavResource updatedResource =
-                        processRepository( request, archivaLocator, activePrincipal, managedRepositoryContent,
-                                           managedRepository );
-                    if ( resource == null )
-                    {
-                        resource = updatedResource;
-                    }
-
-                    String logicalResource = getLogicalResource( archivaLocator, null, false );
-                    if ( logicalResource.endsWith( "/" ) )
-                    {
-                        logicalResource = logicalResource.substring( 1 );
-                    }
-                    resourcesInAbsolutePath.add(
-                        Paths.get( managedRepositoryContent.getRepoRoot(), logicalResource ).toAbsolutePath().toString() );
-                }
-                catch ( DavException e )
-                {
-                    storedExceptions.add( e );
-                }
+                resource = processRepositoryGroupParallel( request, archivaLocator, activePrincipal,
+                                                           resourcesInAbsolutePath, repoGroup );
+            }
+            if ( resource == null )
+            {
+                resource = processRepositoryGroupMembers( request, archivaLocator, activePrincipal,
+                                                          resourcesInAbsolutePath, repoGroup, storedExceptions );
             }
         }
         if ( resource == null )
@@ -504,6 +540,437 @@ private DavResource processRepositoryGroup( final DavServletRequest request,
         return resource;
     }
 
+    /**
+     * Resolves a file of a repository group by asking the members one after another.
+     */
+    private DavResource processRepositoryGroupMembers( final DavServletRequest request,
+                                                       ArchivaDavResourceLocator archivaLocator,
+                                                       String activePrincipal, List<String> resourcesInAbsolutePath,
+                                                       RepositoryGroup repoGroup, List<DavException> storedExceptions )
+        throws DavException
+    {
+        DavResource resource = null;
+        for ( ManagedRepository repository : repoGroup.getRepositories() )
+        {
+            String repositoryId = repository.getId();
+            ManagedRepositoryContent managedRepositoryContent;
+            ManagedRepository managedRepository = repositoryRegistry.getManagedRepository( repositoryId );
+            if (managedRepository==null) {
+                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not find repository with id "+repositoryId );
+            }
+            managedRepositoryContent = managedRepository.getContent();
+            if (managedRepositoryContent==null) {
+                log.error("Inconsistency detected. Repository content not found for '{}'",repositoryId);
+                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not find repository content with id "+repositoryId );
+            }
+            try
+            {
+                DavResource updatedResource =
+                    processRepository( request, archivaLocator, activePrincipal, managedRepositoryContent,
+                                       managedRepository );
+                if ( resource == null )
+                {
+                    resource = updatedResource;
+                }
+
+                String logicalResource = getLogicalResource( archivaLocator, null, false );
+                if ( logicalResource.endsWith( "/" ) )
+                {
+                    logicalResource = logicalResource.substring( 1 );
+                }
+                resourcesInAbsolutePath.add(
+                    Paths.get( managedRepositoryContent.getRepoRoot(), logicalResource ).toAbsolutePath().toString() );
+            }
+            catch ( DavException e )
+            {
+                storedExceptions.add( e );
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * A member repository of a group, that is resolved by the parallel group resolution.
+     */
+    private static final class GroupMember
+    {
+        final ManagedRepository repository;
+
+        final LogicalResource logicalResource;
+
+        final boolean existedLocally;
+
+        boolean fromProxy;
+
+        boolean found;
+
+        DavException error;
+
+        long time;
+
+        GroupMember( ManagedRepository repository, LogicalResource logicalResource, boolean existedLocally )
+        {
+            this.repository = repository;
+            this.logicalResource = logicalResource;
+            this.existedLocally = existedLocally;
+        }
+
+        @Override
+        public String toString( )
+        {
+            String state;
+            if ( error != null )
+            {
+                state = "error " + error.getErrorCode( );
+            }
+            else if ( fromProxy )
+            {
+                state = "proxied";
+            }
+            else if ( found )
+            {
+                state = existedLocally ? "local" : "found";
+            }
+            else
+            {
+                state = "missing";
+            }
+            return repository.getId( ) + "=" + state + " " + time + " ms";
+        }
+    }
+
+    /**
+     * Resolves a file of a repository group. The local storage of all members is checked first, and a file
+     * found there is used in group order. Otherwise the file is fetched from the proxies of all members at
+     * the same time, and the first member that could fetch it wins. The fetches of the other members are
+     * skipped, if they have not started yet. Metadata is fetched for all members, because it is merged in
+     * group order afterwards. If the queue of the executor is full, the group is resolved sequentially.
+     *
+     * Only the fetch from the proxies runs outside of the request thread, the authorization and the
+     * resource creation are done in the request thread.
+     *
+     * @return the resource, or <code>null</code> if the request must be resolved sequentially
+     */
+    private DavResource processRepositoryGroupParallel( final DavServletRequest request,
+                                                        ArchivaDavResourceLocator archivaLocator,
+                                                        String activePrincipal, List<String> resourcesInAbsolutePath,
+                                                        RepositoryGroup repoGroup )
+        throws DavException
+    {
+        long resolutionStart = System.currentTimeMillis( );
+        List<GroupMember> members = new ArrayList<>( );
+        List<DavException> storedExceptions = new ArrayList<>( );
+        for ( ManagedRepository repository : repoGroup.getRepositories( ) )
+        {
+            ManagedRepository managedRepository = repositoryRegistry.getManagedRepository( repository.getId( ) );
+            if ( managedRepository == null || managedRepository.getContent( ) == null )
+            {
+                return null;
+            }
+            long start = System.currentTimeMillis( );
+            try
+            {
+                if ( !isAuthorized( request, managedRepository.getId( ) ) )
+                {
+                    continue;
+                }
+                String path = evaluatePathWithVersion( archivaLocator, managedRepository.getContent( ),
+                                                       request.getContextPath( ) );
+                if ( path.startsWith( "/" ) )
+                {
+                    path = path.substring( 1 );
+                }
+                StorageAsset asset = managedRepository.getAsset( path );
+                if ( asset.isContainer( ) )
+                {
+                    // collections are not fetched from proxies
+                    return null;
+                }
+                GroupMember member = new GroupMember( managedRepository, new LogicalResource( path ), asset.exists( ) );
+                member.time = System.currentTimeMillis( ) - start;
+                members.add( member );
+            }
+            catch ( DavException e )
+            {
+                storedExceptions.add( e );
+            }
+        }
+        if ( members.isEmpty( ) )
+        {
+            throwGroupException( storedExceptions );
+        }
+
+        RepositoryRequestInfo requestInfo = members.get( 0 ).repository.getRequestInfo( );
+        String firstPath = members.get( 0 ).logicalResource.getPath( );
+        boolean metadata = requestInfo.isMetadata( firstPath ) || requestInfo.isMetadataSupportFile( firstPath );
+        String remoteAddr = request.getRemoteAddr( );
+        String groupRepositoryId = archivaLocator.getRepositoryId( );
+
+        CompletionService<GroupMember> completionService = new ExecutorCompletionService<>( groupResolutionExecutor );
+        GroupMember winner = null;
+        if ( metadata )
+        {
+            List<Future<GroupMember>> futures =
+                submitFetches( completionService, members, remoteAddr, groupRepositoryId, activePrincipal );
+            if ( futures == null )
+            {
+                return null;
+            }
+            fetchAll( futures );
+        }
+        else
+        {
+            // a file in the local storage is used in group order, the proxies of the other members are not asked
+            for ( GroupMember member : members )
+            {
+                if ( member.existedLocally )
+                {
+                    fetchMember( member, remoteAddr, groupRepositoryId, activePrincipal );
+                    if ( member.found )
+                    {
+                        winner = member;
+                        break;
+                    }
+                }
+            }
+            if ( winner == null )
+            {
+                List<Future<GroupMember>> futures =
+                    submitFetches( completionService, members, remoteAddr, groupRepositoryId, activePrincipal );
+                if ( futures == null )
+                {
+                    return null;
+                }
+                winner = fetchFirst( completionService, futures );
+            }
+        }
+
+        String logicalPath = getLogicalResource( archivaLocator, null, false );
+        if ( logicalPath.endsWith( "/" ) )
+        {
+            logicalPath = logicalPath.substring( 1 );
+        }
+        DavResource resource = null;
+        for ( GroupMember member : members )
+        {
+            if ( member.error != null )
+            {
+                storedExceptions.add( member.error );
+            }
+            if ( member.found && ( winner == null || winner == member ) )
+            {
+                if ( resource == null )
+                {
+                    try
+                    {
+                        resource = new ArchivaDavResource( member.repository.getAsset( member.logicalResource.getPath( ) ),
+                                                           member.logicalResource.getPath( ), member.repository,
+                                                           remoteAddr, activePrincipal, request.getDavSession( ),
+                                                           archivaLocator, this, mimeTypes, auditListeners, scheduler );
+                    }
+                    catch ( LayoutException e )
+                    {
+                        storedExceptions.add( new DavException( HttpServletResponse.SC_NOT_FOUND, e ) );
+                        continue;
+                    }
+                }
+                resourcesInAbsolutePath.add(
+                    Paths.get( member.repository.getContent( ).getRepoRoot( ), logicalPath ).toAbsolutePath( ).toString( ) );
+            }
+        }
+        long resolutionTime = System.currentTimeMillis( ) - resolutionStart;
+        if ( slowGroupResolutionThreshold >= 0 && resolutionTime >= slowGroupResolutionThreshold )
+        {
+            log.info( "Group {} resolved {} in {} ms: {}", repoGroup.getId( ), archivaLocator.getResourcePath( ),
+                      resolutionTime, members );
+        }
+        else
+        {
+            log.debug( "Group {} resolved {} in {} ms: {}", repoGroup.getId( ), archivaLocator.getResourcePath( ),
+                       resolutionTime, members );
+        }
+        if ( resource == null )
+        {
+            throwGroupException( storedExceptions );
+        }
+        return resource;
+    }
+
+    /**
+     * Submits the fetches of the given members. If the queue of the executor is full, the fetches that were
+     * already submitted are cancelled.
+     *
+     * @return the futures of the fetches, or <code>null</code> if the group must be resolved sequentially
+     */
+    private List<Future<GroupMember>> submitFetches( CompletionService<GroupMember> completionService,
+                                                     List<GroupMember> members, String remoteAddr,
+                                                     String groupRepositoryId, String activePrincipal )
+    {
+        List<Future<GroupMember>> futures = new ArrayList<>( );
+        try
+        {
+            for ( GroupMember member : members )
+            {
+                futures.add( completionService.submit( ( ) -> {
+                    fetchMember( member, remoteAddr, groupRepositoryId, activePrincipal );
+                    return member;
+                } ) );
+            }
+            return futures;
+        }
+        catch ( RejectedExecutionException e )
+        {
+            log.debug( "Group resolution queue is full, resolving the group sequentially" );
+            cancelFetches( futures );
+            return null;
+        }
+    }
+
+    private void fetchAll( List<Future<GroupMember>> futures )
+        throws DavException
+    {
+        for ( Future<GroupMember> future : futures )
+        {
+            try
+            {
+                future.get( );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new DavException( HttpServletResponse.SC_SERVICE_UNAVAILABLE, e );
+            }
+            catch ( ExecutionException e )
+            {
+                log.error( "Fetching from group member failed: {}", e.getMessage( ), e );
+            }
+        }
+    }
+
+    /**
+     * Returns the first member, that has fetched the file. The fetches of the other members are cancelled,
+     * if they have not started yet.
+     */
+    private GroupMember fetchFirst( CompletionService<GroupMember> completionService,
+                                    List<Future<GroupMember>> futures )
+        throws DavException
+    {
+        try
+        {
+            for ( int i = 0; i < futures.size( ); i++ )
+            {
+                try
+                {
+                    GroupMember member = completionService.take( ).get( );
+                    if ( member.found )
+                    {
+                        return member;
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread( ).interrupt( );
+                    throw new DavException( HttpServletResponse.SC_SERVICE_UNAVAILABLE, e );
+                }
+                catch ( ExecutionException e )
+                {
+                    log.error( "Fetching from group member failed: {}", e.getMessage( ), e );
+                }
+            }
+            return null;
+        }
+        finally
+        {
+            cancelFetches( futures );
+        }
+    }
+
+    /*
+     * Running fetches are not interrupted, because other requests may wait for the same transfer.
+     */
+    private static void cancelFetches( List<Future<GroupMember>> futures )
+    {
+        for ( Future<GroupMember> future : futures )
+        {
+            future.cancel( false );
+        }
+    }
+
+    /*
+     * Runs outside of the request thread, so it must not use the request.
+     */
+    private void fetchMember( GroupMember member, String remoteAddr, String groupRepositoryId, String activePrincipal )
+    {
+        long start = System.currentTimeMillis( );
+        try
+        {
+            member.fromProxy = fetchContentFromProxies( member.repository, null, member.logicalResource );
+            member.found = member.repository.getAsset( member.logicalResource.getPath( ) ).exists( );
+            if ( member.fromProxy )
+            {
+                String action = ( member.existedLocally ? AuditEvent.MODIFY_FILE : AuditEvent.CREATE_FILE )
+                    + PROXIED_SUFFIX;
+                triggerAuditEvent( remoteAddr, groupRepositoryId, member.logicalResource.getPath( ), action,
+                                   activePrincipal );
+                invalidateStorageListings( member.repository.getId( ), member.logicalResource.getPath( ) );
+            }
+        }
+        catch ( DavException e )
+        {
+            member.error = e;
+        }
+        finally
+        {
+            member.time += System.currentTimeMillis( ) - start;
+        }
+    }
+
+    /**
+     * The audit event of a download through a group has the id of the group, so the listings of the
+     * managed repository, that stores the downloaded file, are invalidated here.
+     */
+    private void invalidateStorageListings( String repositoryId, String path )
+    {
+        if ( storageListingCache != null )
+        {
+            storageListingCache.invalidate( repositoryId, path );
+        }
+    }
+
+    private void throwGroupException( List<DavException> storedExceptions )
+        throws DavException
+    {
+        // MRM-1232
+        for ( DavException e : storedExceptions )
+        {
+            if ( 401 == e.getErrorCode( ) )
+            {
+                throw e;
+            }
+        }
+        throw new DavException( HttpServletResponse.SC_NOT_FOUND );
+    }
+
+    public boolean isParallelGroupResolution( )
+    {
+        return parallelGroupResolution;
+    }
+
+    public void setParallelGroupResolution( boolean parallelGroupResolution )
+    {
+        this.parallelGroupResolution = parallelGroupResolution;
+    }
+
+    public long getSlowGroupResolutionThreshold( )
+    {
+        return slowGroupResolutionThreshold;
+    }
+
+    public void setSlowGroupResolutionThreshold( long slowGroupResolutionThreshold )
+    {
+        this.slowGroupResolutionThreshold = slowGroupResolutionThreshold;
+    }
+
     private String getLogicalResource( ArchivaDavResourceLocator archivaLocator, org.apache.archiva.repository.ManagedRepository managedRepository,
                                        boolean useOrigResourcePath )
     {
@@ -634,6 +1101,7 @@ private DavResource processRepository( final DavServletRequest request, ArchivaD
 
                             triggerAuditEvent( request.getRemoteAddr(), archivaLocator.getRepositoryId(),
                                                logicalResource.getPath(), action, activePrincipal );
+                            invalidateStorageListings( managedRepository.getId(), logicalResource.getPath() );
                         }
 
                         if ( !resourceAsset.exists() )
@@ -739,9 +1207,15 @@ public DavResource createResource( final DavResourceLocator locator, final DavSe
         StorageAsset resourceAsset = repo.getAsset( logicalResource );
         try
         {
-            resource = new ArchivaDavResource( resourceAsset, logicalResource,
+            ArchivaDavResource davResource = new ArchivaDavResource( resourceAsset, logicalResource,
                                                repo, davSession, archivaLocator,
                                                this, mimeTypes, auditListeners, scheduler);
+            // this is the collection, that the uploaded files are added to
+            davResource.setChecksumAlgorithms( ChecksumUtil.getAlgorithms(
+                archivaConfiguration.getConfiguration( ).getArchivaRuntimeConfiguration( ).getChecksumTypes( ) ) );
+            davResource.setChecksumCache( checksumCache );
+            davResource.setStorageListingCache( storageListingCache );
+            resource = davResource;
         }
         catch ( LayoutException e )
         {
@@ -1253,9 +1727,10 @@ private StorageAsset writeMergedMetadataToFile( RepositoryGroup repoGroup, Archi
         throws RepositoryMetadataException, DigesterException, IOException
     {
         StorageAsset asset = repoGroup.addAsset( outputFilename, false );
-        OutputStream stream = asset.getWriteStream( true );
-        OutputStreamWriter sw = new OutputStreamWriter( stream, "UTF-8" );
-        RepositoryMetadataWriter.write( mergedMetadata, sw );
+        try ( OutputStreamWriter sw = new OutputStreamWriter( asset.getWriteStream( true ), "UTF-8" ) )
+        {
+            RepositoryMetadataWriter.write( mergedMetadata, sw );
+        }
 
         createChecksumFiles( repoGroup, outputFilename );
         return asset;
@@ -1310,35 +1785,7 @@ protected StorageAsset buildMergedIndexDirectory( String activePrincipal,
         try
         {
             final List<ManagedRepository> repositories = repositoryGroup.getRepositories();
-            HttpSession session = request.getSession();
-
-            @SuppressWarnings( "unchecked" ) Map<String, TemporaryGroupIndex> temporaryGroupIndexMap =
-                (Map<String, TemporaryGroupIndex>) session.getAttribute(
-                    TemporaryGroupIndexSessionCleaner.TEMPORARY_INDEX_SESSION_KEY );
-            if ( temporaryGroupIndexMap == null )
-            {
-                temporaryGroupIndexMap = new HashMap<>();
-            }
-
             final String id = repositoryGroup.getId();
-            TemporaryGroupIndex tmp = temporaryGroupIndexMap.get(id);
-
-            if ( tmp != null && tmp.getDirectory() != null && tmp.getDirectory().exists())
-            {
-                if ( System.currentTimeMillis() - tmp.getCreationTime() > (
-                    repositoryGroup.getMergedIndexTTL() * 60 * 1000 ) )
-                {
-                    log.debug( MarkerFactory.getMarker( "group.merged.index" ),
-                               "tmp group index '{}' is too old so delete it", id);
-                    indexMerger.cleanTemporaryGroupIndex( tmp );
-                }
-                else
-                {
-                    log.debug( MarkerFactory.getMarker( "group.merged.index" ),
-                               "merged index for group '{}' found in cache", id);
-                    return tmp.getDirectory();
-                }
-            }
 
             Set<String> authzRepos = new HashSet<String>();
 
@@ -1364,44 +1811,12 @@ protected StorageAsset buildMergedIndexDirectory( String activePrincipal,
 
             }
 
-            log.info( "generate temporary merged index for repository group '{}' for repositories '{}'",
-                    id, authzRepos );
+            log.debug( "get merged index for repository group '{}' for repositories '{}'", id, authzRepos );
 
-            IndexCreationFeature indexCreationFeature = repositoryGroup.getFeature( IndexCreationFeature.class ).get();
-            Path indexPath = indexCreationFeature.getLocalIndexPath().getFilePath();
-            if (indexPath!=null)
-            {
-                Path tempRepoFile = Files.createTempDirectory( "temp" );
-                tempRepoFile.toFile( ).deleteOnExit( );
-                FilesystemStorage storage = new FilesystemStorage(tempRepoFile, new DefaultFileLockManager());
-                StorageAsset tmpAsset = storage.getAsset("");
-
-                IndexMergerRequest indexMergerRequest =
-                    new IndexMergerRequest( authzRepos, true, id,
-                        indexPath.toString( ),
-                        repositoryGroup.getMergedIndexTTL( ) ).mergedIndexDirectory(
-                        tmpAsset ).temporary( true );
-
-                MergedRemoteIndexesTaskRequest taskRequest =
-                    new MergedRemoteIndexesTaskRequest( indexMergerRequest, indexMerger );
-
-                MergedRemoteIndexesTask job = new MergedRemoteIndexesTask( taskRequest );
-
-                ArchivaIndexingContext indexingContext = job.execute( ).getIndexingContext( );
-
-                StorageAsset mergedRepoDir = indexingContext.getPath( );
-                TemporaryGroupIndex temporaryGroupIndex =
-                    new TemporaryGroupIndex( mergedRepoDir, indexingContext.getId( ), id,
-                        repositoryGroup.getMergedIndexTTL( ) ) //
-                        .setCreationTime( new Date( ).getTime( ) );
-                temporaryGroupIndexMap.put( id, temporaryGroupIndex );
-                session.setAttribute( TemporaryGroupIndexSessionCleaner.TEMPORARY_INDEX_SESSION_KEY,
-                    temporaryGroupIndexMap );
-                return mergedRepoDir;
-            } else {
-                log.error("Local index path for repository group {} does not exist.", repositoryGroup.getId());
-                throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
-            }
+            SharedMergedIndex mergedIndex = getSharedMergedIndex( repositoryGroup, authzRepos );
+            // the files of the index are kept until the response is written
+            holdMergedIndex( request, mergedIndex );
+            return mergedIndex.getDirectory( );
         }
         catch ( RepositorySearchException e )
         {
@@ -1411,9 +1826,85 @@ protected StorageAsset buildMergedIndexDirectory( String activePrincipal,
         {
             throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e );
         }
-        catch ( IOException e )
+    }
+
+    /**
+     * Returns the merged index of the given repositories of the group. The index is shared by all sessions,
+     * so clients that get a new session with each request do not cause a new merge.
+     */
+    private SharedMergedIndex getSharedMergedIndex( RepositoryGroup repositoryGroup, Set<String> repositoryIds )
+        throws IndexMergerException, DavException
+    {
+        IndexCreationFeature indexCreationFeature = repositoryGroup.getFeature( IndexCreationFeature.class ).get();
+        Path indexPath = indexCreationFeature.getLocalIndexPath().getFilePath();
+        if ( indexPath == null )
         {
-            throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e );
+            log.error("Local index path for repository group {} does not exist.", repositoryGroup.getId());
+            throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+        }
+        IndexMergerRequest indexMergerRequest =
+            new IndexMergerRequest( repositoryIds, true, repositoryGroup.getId(), indexPath.toString( ),
+                                    repositoryGroup.getMergedIndexTTL( ) );
+        SharedMergedIndex mergedIndex = indexMerger.getSharedMergedIndex( indexMergerRequest );
+        if ( mergedIndex == null )
+        {
+            throw new DavException( HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+        }
+        return mergedIndex;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static void holdMergedIndex( HttpServletRequest request, SharedMergedIndex mergedIndex )
+    {
+        List<SharedMergedIndex> mergedIndexes = (List<SharedMergedIndex>) request.getAttribute( MERGED_INDEXES_ATTRIBUTE );
+        if ( mergedIndexes == null )
+        {
+            mergedIndexes = new ArrayList<>( );
+            request.setAttribute( MERGED_INDEXES_ATTRIBUTE, mergedIndexes );
+        }
+        mergedIndexes.add( mergedIndex );
+    }
+
+    /**
+     * Releases the merged indexes, that were used by the given request.
+     */
+    @SuppressWarnings( "unchecked" )
+    public static void releaseMergedIndexes( HttpServletRequest request )
+    {
+        List<SharedMergedIndex> mergedIndexes = (List<SharedMergedIndex>) request.getAttribute( MERGED_INDEXES_ATTRIBUTE );
+        if ( mergedIndexes != null )
+        {
+            request.removeAttribute( MERGED_INDEXES_ATTRIBUTE );
+            mergedIndexes.forEach( SharedMergedIndex::release );
+        }
+    }
+
+    /**
+     * Builds the merged indexes of all repository groups for the users, that may read all member repositories.
+     */
+    private void prebuildMergedIndexes( )
+    {
+        for ( RepositoryGroup repositoryGroup : repositoryRegistry.getRepositoryGroups( ) )
+        {
+            if ( !repositoryGroup.supportsFeature( IndexCreationFeature.class ) )
+            {
+                continue;
+            }
+            try
+            {
+                Set<String> repositoryIds = new HashSet<>( );
+                for ( ManagedRepository repository : repositoryGroup.getRepositories( ) )
+                {
+                    repositoryIds.add( repository.getId( ) );
+                    repositoryIds.addAll( repositorySearch.getRemoteIndexingContextIds( repository.getId( ) ) );
+                }
+                getSharedMergedIndex( repositoryGroup, repositoryIds ).release( );
+            }
+            catch ( RepositorySearchException | IndexMergerException | DavException | RuntimeException e )
+            {
+                log.warn( "Could not build merged index of repository group {}: {}", repositoryGroup.getId( ),
+                          e.getMessage( ) );
+            }
         }
     }
 
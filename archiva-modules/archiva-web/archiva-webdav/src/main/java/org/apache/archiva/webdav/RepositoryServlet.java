@@ -28,6 +28,7 @@
 import org.apache.archiva.repository.ManagedRepository;
 import org.apache.archiva.repository.RepositoryRegistry;
 import org.apache.archiva.security.ServletAuthenticator;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.jackrabbit.webdav.DavException;
 import org.apache.jackrabbit.webdav.DavLocatorFactory;
 import org.apache.jackrabbit.webdav.DavMethods;
@@ -154,6 +155,7 @@ else if ( e.getCause() != null )
         }
         finally
         {
+            ArchivaDavResourceFactory.releaseMergedIndexes( request );
             getDavSessionProvider().releaseSession( webdavRequest );
         }
     }
@@ -228,6 +230,209 @@ protected boolean isPreconditionValid( final WebdavRequest request, final DavRes
         return true;
     }
 
+    @Override
+    protected void doGet( WebdavRequest request, WebdavResponse response, DavResource resource )
+        throws IOException, DavException
+    {
+        if ( !spoolFile( request, response, resource, true ) )
+        {
+            super.doGet( request, response, resource );
+        }
+    }
+
+    @Override
+    protected void doHead( WebdavRequest request, WebdavResponse response, DavResource resource )
+        throws IOException, DavException
+    {
+        if ( !spoolFile( request, response, resource, false ) )
+        {
+            super.doHead( request, response, resource );
+        }
+    }
+
+    /**
+     * Sends a file of a repository. The file is not sent, if the client has the same version (If-None-Match,
+     * If-Modified-Since), and a single byte range is sent, if requested (Range, If-Range), so that downloads can
+     * be resumed.
+     *
+     * @return <code>false</code>, if the resource is not a file and is sent by the default implementation
+     */
+    private boolean spoolFile( WebdavRequest request, WebdavResponse response, DavResource resource,
+                               boolean sendContent )
+        throws IOException
+    {
+        if ( !( resource instanceof ArchivaDavResource ) || !resource.exists() || resource.isCollection() )
+        {
+            return false;
+        }
+        ArchivaDavResource davResource = (ArchivaDavResource) resource;
+        String etag = davResource.getETag();
+        long modificationTime = davResource.getModificationTime();
+        long size = davResource.getAsset().getSize();
+
+        response.setHeader( "ETag", etag );
+        response.setHeader( "Cache-Control", davResource.getCacheControl() );
+        response.setHeader( "Accept-Ranges", "bytes" );
+        if ( !response.containsHeader( "Last-Modified" ) )
+        {
+            // not set by the resource factory for every resource, e.g. of a repository group
+            response.setDateHeader( "Last-Modified", modificationTime );
+        }
+
+        if ( isNotModified( request, etag, modificationTime ) )
+        {
+            response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+            return true;
+        }
+
+        long start = 0;
+        long length = size;
+        String range = request.getHeader( "Range" );
+        if ( range != null && isRangeValid( request, etag, modificationTime ) )
+        {
+            long[] bounds = parseRange( range, size );
+            if ( bounds != null && bounds.length == 0 )
+            {
+                response.setHeader( "Content-Range", "bytes */" + size );
+                response.sendError( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+                return true;
+            }
+            if ( bounds != null )
+            {
+                start = bounds[0];
+                length = bounds[1] - bounds[0] + 1;
+                response.setStatus( HttpServletResponse.SC_PARTIAL_CONTENT );
+                response.setHeader( "Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + size );
+            }
+        }
+
+        response.setContentType( davResource.getContentType() );
+        response.setHeader( "Content-Length", Long.toString( length ) );
+        if ( sendContent )
+        {
+            davResource.spool( response.getOutputStream(), start, length );
+        }
+        return true;
+    }
+
+    private boolean isNotModified( HttpServletRequest request, String etag, long modificationTime )
+    {
+        String ifNoneMatch = request.getHeader( "If-None-Match" );
+        if ( ifNoneMatch != null )
+        {
+            for ( String tag : ifNoneMatch.split( "," ) )
+            {
+                tag = tag.trim();
+                // weak comparison, as required for GET
+                if ( "*".equals( tag ) || etag.equals( StringUtils.removeStart( tag, "W/" ) ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        try
+        {
+            long ifModifiedSince = request.getDateHeader( "If-Modified-Since" );
+            // the dates of the headers have no milliseconds
+            return ifModifiedSince >= 0 && modificationTime / 1000 * 1000 <= ifModifiedSince;
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Returns <code>true</code>, if the client has the same version of the file, of which it requests a range.
+     */
+    private boolean isRangeValid( HttpServletRequest request, String etag, long modificationTime )
+    {
+        String ifRange = request.getHeader( "If-Range" );
+        if ( ifRange == null )
+        {
+            return true;
+        }
+        if ( ifRange.startsWith( "\"" ) || ifRange.startsWith( "W/" ) )
+        {
+            // strong comparison
+            return etag.equals( ifRange.trim() );
+        }
+        try
+        {
+            return modificationTime / 1000 * 1000 == request.getDateHeader( "If-Range" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Parses a single byte range of the Range header.
+     *
+     * @param range the value of the header
+     * @param size the size of the file
+     * @return the first and the last byte of the range, an empty array, if the range cannot be satisfied, or
+     * <code>null</code>, if the header is not supported and the whole file must be sent
+     */
+    static long[] parseRange( String range, long size )
+    {
+        String spec = range.trim();
+        if ( !spec.startsWith( "bytes=" ) || spec.indexOf( ',' ) >= 0 )
+        {
+            // multiple ranges are not supported
+            return null;
+        }
+        spec = spec.substring( "bytes=".length() );
+        int dash = spec.indexOf( '-' );
+        if ( dash < 0 )
+        {
+            return null;
+        }
+        String first = spec.substring( 0, dash ).trim();
+        String last = spec.substring( dash + 1 ).trim();
+        try
+        {
+            long start;
+            long end;
+            if ( first.isEmpty() )
+            {
+                if ( last.isEmpty() )
+                {
+                    return null;
+                }
+                // the last bytes of the file
+                long suffixLength = Long.parseLong( last );
+                if ( suffixLength <= 0 )
+                {
+                    return new long[0];
+                }
+                start = Math.max( 0, size - suffixLength );
+                end = size - 1;
+            }
+            else
+            {
+                start = Long.parseLong( first );
+                end = last.isEmpty() ? size - 1 : Long.parseLong( last );
+                if ( start < 0 || end < start )
+                {
+                    return null;
+                }
+                end = Math.min( end, size - 1 );
+            }
+            if ( start >= size )
+            {
+                return new long[0];
+            }
+            return new long[]{ start, end };
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
     @Override
     public DavSessionProvider getDavSessionProvider()
     {
@@ -0,0 +1,221 @@
+package org.apache.archiva.webdav.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.archiva.repository.storage.StorageAsset;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the merged <code>maven-metadata.xml</code> files of repository groups, that have been written
+ * together with their checksum files. A merged file is still valid, as long as the metadata files of
+ * the member repositories have the same modification time and size as at the time of the merge.
+ * So a request for unchanged metadata is served from the written file without reading and merging
+ * the metadata of all members again.
+ *
+ * The number of entries is limited, the least recently used entry is removed first.
+ */
+public class MergedMetadataCache
+{
+    private final int maxEntries;
+
+    private final Map<String, Entry> entries;
+
+    private final Object[] locks = new Object[64];
+
+    private final AtomicLong hits = new AtomicLong( );
+
+    private final AtomicLong misses = new AtomicLong( );
+
+    private static final class Entry
+    {
+        final List<FileSignature> members;
+
+        final StorageAsset mergedFile;
+
+        Entry( List<FileSignature> members, StorageAsset mergedFile )
+        {
+            this.members = members;
+            this.mergedFile = mergedFile;
+        }
+    }
+
+    /**
+     * The state of a member metadata file.
+     */
+    public static final class FileSignature
+    {
+        final Path file;
+
+        final long modified;
+
+        final long size;
+
+        FileSignature( Path file, long modified, long size )
+        {
+            this.file = file;
+            this.modified = modified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( !( o instanceof FileSignature ) )
+            {
+                return false;
+            }
+            FileSignature that = (FileSignature) o;
+            return modified == that.modified && size == that.size && file.equals( that.file );
+        }
+
+        @Override
+        public int hashCode( )
+        {
+            return file.hashCode( ) * 31 + Long.hashCode( modified );
+        }
+    }
+
+    public MergedMetadataCache( int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest )
+            {
+                return size( ) > MergedMetadataCache.this.maxEntries;
+            }
+        };
+        for ( int i = 0; i < locks.length; i++ )
+        {
+            locks[i] = new Object( );
+        }
+    }
+
+    /**
+     * Returns the lock, that must be held while the merged file of the given key is written and stored.
+     */
+    public Object getLock( String key )
+    {
+        return locks[( key.hashCode( ) & 0x7fffffff ) % locks.length];
+    }
+
+    /**
+     * Reads the current state of the member metadata files. The signatures must be read before the files
+     * are merged, so that a change during the merge invalidates the entry.
+     *
+     * @param memberFiles the metadata files of the member repositories
+     * @return the signatures of the files
+     */
+    public static List<FileSignature> getSignatures( List<Path> memberFiles )
+    {
+        List<FileSignature> signatures = new ArrayList<>( memberFiles.size( ) );
+        for ( Path file : memberFiles )
+        {
+            try
+            {
+                BasicFileAttributes attrs = Files.readAttributes( file, BasicFileAttributes.class );
+                signatures.add( new FileSignature( file, attrs.lastModifiedTime( ).toMillis( ), attrs.size( ) ) );
+            }
+            catch ( IOException e )
+            {
+                signatures.add( new FileSignature( file, -1, -1 ) );
+            }
+        }
+        return signatures;
+    }
+
+    /**
+     * Returns the merged file, if the member files have not changed since the merge.
+     *
+     * @param key the group and the path of the merged file
+     * @param members the current signatures of the member files
+     * @return the merged file, or <code>null</code> if the files must be merged again
+     */
+    public StorageAsset get( String key, List<FileSignature> members )
+    {
+        Entry entry;
+        synchronized ( entries )
+        {
+            entry = entries.get( key );
+        }
+        if ( entry != null && entry.members.equals( members ) && entry.mergedFile.exists( ) )
+        {
+            hits.incrementAndGet( );
+            return entry.mergedFile;
+        }
+        misses.incrementAndGet( );
+        return null;
+    }
+
+    /**
+     * Stores the merged file, after the file and its checksum files have been written.
+     *
+     * @param key the group and the path of the merged file
+     * @param members the signatures of the member files, read before the merge
+     * @param mergedFile the merged file
+     */
+    public void put( String key, List<FileSignature> members, StorageAsset mergedFile )
+    {
+        synchronized ( entries )
+        {
+            entries.put( key, new Entry( members, mergedFile ) );
+        }
+    }
+
+    public void clear( )
+    {
+        synchronized ( entries )
+        {
+            entries.clear( );
+        }
+    }
+
+    public int size( )
+    {
+        synchronized ( entries )
+        {
+            return entries.size( );
+        }
+    }
+
+    public long getHits( )
+    {
+        return hits.get( );
+    }
+
+    public long getMisses( )
+    {
+        return misses.get( );
+    }
+}
@@ -21,16 +21,22 @@
 
 import com.gargoylesoftware.htmlunit.WebRequest;
 import com.gargoylesoftware.htmlunit.WebResponse;
+import org.apache.archiva.checksum.Checksum;
+import org.apache.archiva.checksum.ChecksumAlgorithm;
 import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
 import org.apache.archiva.webdav.httpunit.MkColMethodWebRequest;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.stream.Stream;
 
 
 /**
@@ -291,6 +297,49 @@ public void testArtifactsDeploymentArtifactIsSnapshot()
 
     }
     
+    @Test
+    public void testPutWithChecksumHeader()
+        throws Exception
+    {
+        setupCleanRepo( repoRootInternal );
+
+        byte[] content = "artifact.jar\n".getBytes( StandardCharsets.UTF_8 );
+        String sha1 =
+            new Checksum( ChecksumAlgorithm.SHA1 ).update( content, 0, content.length ).finish().getChecksum();
+
+        MockHttpServletResponse response =
+            execute( createPutRequest( content, "0000000000000000000000000000000000000000" ) );
+        assertEquals( HttpServletResponse.SC_BAD_REQUEST, response.getStatus() );
+        Path artifactDir = repoRootInternal.resolve( "path/to/artifact/1.0.0" );
+        if ( Files.exists( artifactDir ) )
+        {
+            try ( Stream<Path> files = Files.list( artifactDir ) )
+            {
+                assertEquals( "No file or temporary file expected", 0, files.count() );
+            }
+        }
+
+        response = execute( createPutRequest( content, sha1.toUpperCase() ) );
+        assertEquals( HttpServletResponse.SC_CREATED, response.getStatus() );
+        assertFileContents( "artifact.jar\n", repoRootInternal, ARTIFACT_DEFAULT_LAYOUT );
+        try ( Stream<Path> files = Files.list( artifactDir ) )
+        {
+            assertEquals( 1, files.count() );
+        }
+    }
+
+    private MockHttpServletRequest createPutRequest( byte[] content, String sha1 )
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI( "/repository/internal" + ARTIFACT_DEFAULT_LAYOUT );
+        request.addHeader( "User-Agent", "Apache Archiva unit test" );
+        request.addHeader( "X-Checksum-Sha1", sha1 );
+        request.setMethod( "PUT" );
+        request.setContentType( "application/octet-stream" );
+        request.setContent( content );
+        return request;
+    }
+
     protected void assertResponseNoContent( WebResponse response )
     {
         assertNotNull( "Should have recieved a response", response );
@@ -582,4 +582,90 @@ public void testGetNoProxySnapshotRedirectToTimestampedSnapshot()
                       response.getHeader("Location") );
     }
 
+    @Test
+    public void testGetRangeOfArtifact()
+        throws Exception
+    {
+        String commonsLangJar = "commons-lang/commons-lang/2.1/commons-lang-2.1.jar";
+        String checksum = "2d1f9e4f9b2c6f3d3e9a0d9c8a5b6e7f8a9b0c1d";
+        writeArtifact( commonsLangJar, "0123456789", checksum );
+
+        MockHttpServletRequest request = createGetRequest( commonsLangJar );
+        request.addHeader( "Range", "bytes=2-5" );
+        MockHttpServletResponse response = execute( request );
+
+        assertEquals( HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus() );
+        assertEquals( "bytes 2-5/10", response.getHeader( "Content-Range" ) );
+        assertEquals( "2345", response.getContentAsString() );
+        assertEquals( "\"" + checksum + "\"", response.getHeader( "ETag" ) );
+        assertTrue( response.getHeader( "Cache-Control" ).startsWith( "public" ) );
+
+        request = createGetRequest( commonsLangJar );
+        request.addHeader( "Range", "bytes=20-" );
+        response = execute( request );
+
+        assertEquals( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus() );
+        assertEquals( "bytes */10", response.getHeader( "Content-Range" ) );
+
+        request = createGetRequest( commonsLangJar );
+        request.addHeader( "Range", "bytes=2-5" );
+        request.addHeader( "If-Range", "\"outdated\"" );
+        response = execute( request );
+
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        assertEquals( "0123456789", response.getContentAsString() );
+    }
+
+    @Test
+    public void testGetNotModifiedArtifact()
+        throws Exception
+    {
+        String commonsLangJar = "commons-lang/commons-lang/2.1/commons-lang-2.1.jar";
+        writeArtifact( commonsLangJar, "dummy-commons-lang-artifact", null );
+
+        MockHttpServletResponse response = execute( createGetRequest( commonsLangJar ) );
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        String etag = response.getHeader( "ETag" );
+        assertNotNull( etag );
+
+        MockHttpServletRequest request = createGetRequest( commonsLangJar );
+        request.addHeader( "If-None-Match", etag );
+        response = execute( request );
+
+        assertEquals( HttpServletResponse.SC_NOT_MODIFIED, response.getStatus() );
+        assertEquals( 0, response.getContentAsByteArray().length );
+
+        writeArtifact( commonsLangJar, "changed-commons-lang-artifact-content", null );
+        request = createGetRequest( commonsLangJar );
+        request.addHeader( "If-None-Match", etag );
+        response = execute( request );
+
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        assertEquals( "changed-commons-lang-artifact-content", response.getContentAsString() );
+    }
+
+    private void writeArtifact( String path, String content, String checksum )
+        throws Exception
+    {
+        Path artifactFile = repoRootInternal.resolve( path );
+        Files.createDirectories( artifactFile.getParent() );
+        org.apache.archiva.common.utils.FileUtils.writeStringToFile( artifactFile, Charset.defaultCharset(), content );
+        if ( checksum != null )
+        {
+            Path checksumFile = repoRootInternal.resolve( path + ".sha1" );
+            org.apache.archiva.common.utils.FileUtils.writeStringToFile( checksumFile, Charset.defaultCharset(),
+                                                                         checksum );
+            Files.setLastModifiedTime( checksumFile, Files.getLastModifiedTime( artifactFile ) );
+        }
+    }
+
+    private MockHttpServletRequest createGetRequest( String path )
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI( "/repository/internal/" + path );
+        request.addHeader( "User-Agent", "Apache Archiva unit test" );
+        request.setMethod( "GET" );
+        return request;
+    }
+
 }
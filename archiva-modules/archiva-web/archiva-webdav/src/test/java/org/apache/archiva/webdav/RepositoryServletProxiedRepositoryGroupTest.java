@@ -0,0 +1,70 @@
+package org.apache.archiva.webdav;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import org.apache.archiva.configuration.RepositoryGroupConfiguration;
+import org.apache.archiva.metadata.repository.StorageListingCache;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * RepositoryServlet Tests, Proxied, Get of resources through a repository group.
+ */
+public class RepositoryServletProxiedRepositoryGroupTest
+    extends AbstractRepositoryServletProxiedTestCase
+{
+    private static final String REPO_GROUP = "proxied-group";
+
+    private static final String PATH = "org/apache/archiva/test/1.0/test-1.0.jar";
+
+    @Test
+    public void testProxiedDownloadInvalidatesListingsOfMember()
+        throws Exception
+    {
+        setupCentralRemoteRepo();
+        setupCleanInternalRepo();
+        populateRepo( remoteCentral, PATH, "dummy-content" );
+        setupConnector( REPOID_INTERNAL, remoteCentral );
+
+        RepositoryGroupConfiguration repoGroup = new RepositoryGroupConfiguration();
+        repoGroup.setId( REPO_GROUP );
+        repoGroup.setRepositories( Collections.singletonList( REPOID_INTERNAL ) );
+        archivaConfiguration.getConfiguration().addRepositoryGroup( repoGroup );
+        saveConfiguration();
+
+        StorageListingCache storageListingCache = applicationContext.getBean( StorageListingCache.class );
+        storageListingCache.put( storageListingCache.getKey( REPOID_INTERNAL, StorageListingCache.ROOT_LISTING ),
+                                 Collections.singletonList( "com" ) );
+        assertNotNull(
+            storageListingCache.get( storageListingCache.getKey( REPOID_INTERNAL, StorageListingCache.ROOT_LISTING ) ) );
+
+        WebRequest request = new GetMethodWebRequest( "http://machine.com/repository/" + REPO_GROUP + "/" + PATH );
+        WebResponse response = getServletUnitClient().getResponse( request );
+
+        assertResponseOK( response, PATH );
+        assertEquals( "Expected remote file contents", "dummy-content", response.getContentAsString() );
+        // the audit event has the id of the group, the listings of the member must be invalidated anyway
+        assertNull(
+            storageListingCache.get( storageListingCache.getKey( REPOID_INTERNAL, StorageListingCache.ROOT_LISTING ) ) );
+    }
+}
@@ -32,6 +32,8 @@
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.InputStream;
@@ -193,6 +195,67 @@ public void testGetFromLastManagedRepositoryReturnOk()
         assertThat( response.getContentAsString() ).isEqualTo( "last" );
     }
 
+    @Test
+    public void testGetFromRepositoryGroupHasCacheHeaders()
+        throws Exception
+    {
+        String resourceName = "dummy/dummy-cached-resource/1.0/dummy-cached-resource-1.0.txt";
+
+        Path dummyResourceFile = repoRootLast.resolve( resourceName );
+        Files.createDirectories( dummyResourceFile.getParent() );
+        org.apache.archiva.common.utils.FileUtils.writeStringToFile( dummyResourceFile, Charset.defaultCharset(), "cached" );
+
+        MockHttpServletResponse response = execute( createGetRequest( resourceName ) );
+
+        assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+        assertEquals( "cached", response.getContentAsString() );
+        String lastModified = response.getHeader( "Last-Modified" );
+        assertNotNull( lastModified );
+        assertNotNull( response.getHeader( "ETag" ) );
+
+        MockHttpServletRequest request = createGetRequest( resourceName );
+        request.addHeader( "If-Modified-Since", lastModified );
+        response = execute( request );
+
+        assertEquals( HttpServletResponse.SC_NOT_MODIFIED, response.getStatus() );
+        assertEquals( 0, response.getContentAsByteArray().length );
+    }
+
+    @Test
+    public void testGetFromLastManagedRepositoryParallelReturnOk()
+        throws Exception
+    {
+        String resourceName = "dummy/dummy-parallel-resource/1.0/dummy-parallel-resource-1.0.txt";
+
+        Path dummyReleasesResourceFile = repoRootLast.resolve( resourceName );
+        Files.createDirectories( dummyReleasesResourceFile.getParent() );
+        org.apache.archiva.common.utils.FileUtils.writeStringToFile( dummyReleasesResourceFile, Charset.defaultCharset(), "last" );
+
+        ArchivaDavResourceFactory resourceFactory =
+            applicationContext.getBean( "davResourceFactory#archiva", ArchivaDavResourceFactory.class );
+        boolean parallel = resourceFactory.isParallelGroupResolution();
+        resourceFactory.setParallelGroupResolution( true );
+        try
+        {
+            WebRequest request = new GetMethodWebRequest(
+                "http://machine.com/repository/" + REPO_GROUP_WITH_VALID_REPOS + "/" + resourceName );
+            WebResponse response = getServletUnitClient().getResponse( request );
+
+            assertResponseOK( response );
+            assertThat( response.getContentAsString() ).isEqualTo( "last" );
+
+            request = new GetMethodWebRequest( "http://machine.com/repository/" + REPO_GROUP_WITH_VALID_REPOS
+                                                   + "/dummy/dummy-parallel-resource/1.0/missing-1.0.txt" );
+            response = getServletUnitClient().getResponse( request );
+
+            assertResponseNotFound( response );
+        }
+        finally
+        {
+            resourceFactory.setParallelGroupResolution( parallel );
+        }
+    }
+
     /*
     * Test Case 3.b
     */
@@ -342,4 +405,13 @@ protected RepositoryGroupConfiguration createRepositoryGroup( String id, List<St
         repoGroupConfiguration.setRepositories( repositories );
         return repoGroupConfiguration;
     }
+
+    private MockHttpServletRequest createGetRequest( String resourceName )
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRequestURI( "/repository/" + REPO_GROUP_WITH_VALID_REPOS + "/" + resourceName );
+        request.addHeader( "User-Agent", "Apache Archiva unit test" );
+        request.setMethod( "GET" );
+        return request;
+    }
 }
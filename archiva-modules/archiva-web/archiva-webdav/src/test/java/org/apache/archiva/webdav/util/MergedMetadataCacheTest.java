@@ -0,0 +1,119 @@
+package org.apache.archiva.webdav.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.common.filelock.DefaultFileLockManager;
+import org.apache.archiva.common.utils.FileUtils;
+import org.apache.archiva.repository.storage.FilesystemStorage;
+import org.apache.archiva.repository.storage.StorageAsset;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MergedMetadataCacheTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class MergedMetadataCacheTest
+    extends TestCase
+{
+    private Path baseDir;
+
+    private Path memberOne;
+
+    private Path memberTwo;
+
+    private StorageAsset mergedFile;
+
+    @Before
+    @Override
+    public void setUp( )
+        throws Exception
+    {
+        super.setUp( );
+        baseDir = Paths.get( "target/merged-metadata-cache" ).toAbsolutePath( );
+        FileUtils.deleteDirectory( baseDir );
+        Files.createDirectories( baseDir );
+        memberOne = Files.write( baseDir.resolve( "one.xml" ), "<metadata/>".getBytes( ) );
+        memberTwo = Files.write( baseDir.resolve( "two.xml" ), "<metadata/>".getBytes( ) );
+        Files.write( baseDir.resolve( "maven-metadata-group.xml" ), "<metadata/>".getBytes( ) );
+        FilesystemStorage storage = new FilesystemStorage( baseDir, new DefaultFileLockManager( ) );
+        mergedFile = storage.getAsset( "maven-metadata-group.xml" );
+    }
+
+    @Test
+    public void testUnchangedMembers( )
+    {
+        MergedMetadataCache cache = new MergedMetadataCache( 10 );
+        List<Path> members = Arrays.asList( memberOne, memberTwo );
+        assertNull( cache.get( "group:/path", MergedMetadataCache.getSignatures( members ) ) );
+
+        cache.put( "group:/path", MergedMetadataCache.getSignatures( members ), mergedFile );
+
+        assertSame( mergedFile, cache.get( "group:/path", MergedMetadataCache.getSignatures( members ) ) );
+        assertNull( cache.get( "group:/other", MergedMetadataCache.getSignatures( members ) ) );
+        assertEquals( 1, cache.getHits( ) );
+        assertEquals( 2, cache.getMisses( ) );
+    }
+
+    @Test
+    public void testChangedMembers( )
+        throws Exception
+    {
+        MergedMetadataCache cache = new MergedMetadataCache( 10 );
+        List<Path> members = Arrays.asList( memberOne, memberTwo );
+        cache.put( "group:/path", MergedMetadataCache.getSignatures( members ), mergedFile );
+
+        Files.setLastModifiedTime( memberTwo, FileTime.fromMillis( System.currentTimeMillis( ) - 60000 ) );
+        assertNull( cache.get( "group:/path", MergedMetadataCache.getSignatures( members ) ) );
+
+        // a user with access to other members
+        cache.put( "group:/path", MergedMetadataCache.getSignatures( members ), mergedFile );
+        assertNull( cache.get( "group:/path", MergedMetadataCache.getSignatures( Arrays.asList( memberOne ) ) ) );
+
+        Files.delete( baseDir.resolve( "maven-metadata-group.xml" ) );
+        assertNull( cache.get( "group:/path", MergedMetadataCache.getSignatures( members ) ) );
+    }
+
+    @Test
+    public void testLimit( )
+    {
+        MergedMetadataCache cache = new MergedMetadataCache( 2 );
+        List<MergedMetadataCache.FileSignature> signatures =
+            MergedMetadataCache.getSignatures( Arrays.asList( memberOne ) );
+        cache.put( "group:/a", signatures, mergedFile );
+        cache.put( "group:/b", signatures, mergedFile );
+        cache.get( "group:/a", signatures );
+        cache.put( "group:/c", signatures, mergedFile );
+
+        assertEquals( 2, cache.size( ) );
+        assertNotNull( cache.get( "group:/a", signatures ) );
+        assertNull( cache.get( "group:/b", signatures ) );
+    }
+}
@@ -24,6 +24,7 @@
 import org.apache.archiva.metadata.model.ProjectVersionMetadata;
 import org.apache.archiva.metadata.model.ProjectVersionReference;
 import org.apache.archiva.filter.ExcludesFilter;
+import org.apache.archiva.filter.Filter;
 import org.apache.archiva.metadata.repository.storage.ReadMetadataRequest;
 import org.apache.archiva.metadata.repository.storage.RepositoryStorage;
 import org.apache.archiva.metadata.repository.storage.RepositoryStorageMetadataInvalidException;
@@ -39,8 +40,14 @@
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -61,6 +68,12 @@
  * having a bi-directional link with the session factory, and saving the existing session might save other changes
  * unknowingly by the caller.
  * </p>
+ * <p>
+ * The entries found in the storage in addition to the metadata repository are cached by the
+ * {@link StorageListingCache}. For repositories that are fully scanned, the storage may be skipped completely
+ * by the system property <code>archiva.browse.metadataOnlyRepositories</code>, a comma separated list of
+ * repository ids, or <code>*</code> for all repositories.
+ * </p>
  */
 @Service("metadataResolver#default")
 public class DefaultMetadataResolver
@@ -95,6 +108,15 @@
     @Named( value = "cache#namespaces" )
     private Cache<String, Collection<String>> namespacesCache;
 
+    @Inject
+    private StorageListingCache storageListingCache;
+
+    /**
+     * The repositories that are browsed from the metadata repository only.
+     */
+    private Set<String> metadataOnlyRepositories =
+        parseRepositoryIds( System.getProperty( "archiva.browse.metadataOnlyRepositories", "" ) );
+
     @Override
     public ProjectVersionMetadata resolveProjectVersion( RepositorySession session, String repoId, String namespace,
                                                          String projectId, String projectVersion )
@@ -202,7 +224,8 @@ public Collection<String> resolveRootNamespaces( RepositorySession session, Stri
             MetadataRepository metadataRepository = session.getRepository();
             namespaces = metadataRepository.getRootNamespaces( session, repoId );
             Collection<String> storageNamespaces =
-                repositoryStorage.listRootNamespaces( repoId, new ExcludesFilter<String>( namespaces ) );
+                listStorage( repoId, StorageListingCache.ROOT_LISTING, namespaces,
+                             filter -> repositoryStorage.listRootNamespaces( repoId, filter ) );
             if ( storageNamespaces != null && !storageNamespaces.isEmpty() )
             {
 
@@ -255,7 +278,8 @@ public Collection<String> resolveNamespaces( RepositorySession session, String r
             Collection<String> exclusions = new ArrayList<>( namespaces );
             exclusions.addAll( metadataRepository.getProjects( session, repoId, namespace ) );
             Collection<String> storageNamespaces =
-                repositoryStorage.listNamespaces( repoId, namespace, new ExcludesFilter<String>( exclusions ) );
+                listStorage( repoId, StorageListingCache.NAMESPACES_LISTING + namespace, exclusions,
+                             filter -> repositoryStorage.listNamespaces( repoId, namespace, filter ) );
             if ( storageNamespaces != null && !storageNamespaces.isEmpty() )
             {
 
@@ -309,7 +333,8 @@ public Collection<String> resolveProjects( RepositorySession session, String rep
             exclusions.addAll( namespaces );
 
             Collection<String> storageProjects =
-                repositoryStorage.listProjects( repoId, namespace, new ExcludesFilter<>( exclusions ) );
+                listStorage( repoId, StorageListingCache.PROJECTS_LISTING + namespace, exclusions,
+                             filter -> repositoryStorage.listProjects( repoId, namespace, filter ) );
             if ( storageProjects != null && !storageProjects.isEmpty() )
             {
 
@@ -354,8 +379,9 @@ public Collection<String> resolveProjectVersions( RepositorySession session, Str
 
             Collection<String> projectVersions = metadataRepository.getProjectVersions( session, repoId, namespace, projectId );
             Collection<String> storageProjectVersions =
-                repositoryStorage.listProjectVersions( repoId, namespace, projectId,
-                                                       new ExcludesFilter<String>( projectVersions ) );
+                listStorage( repoId, StorageListingCache.VERSIONS_LISTING + namespace + ":" + projectId,
+                             projectVersions,
+                             filter -> repositoryStorage.listProjectVersions( repoId, namespace, projectId, filter ) );
             if ( storageProjectVersions != null && !storageProjectVersions.isEmpty() )
             {
                 log.debug( "Resolved project versions from storage: {}", storageProjectVersions );
@@ -422,6 +448,10 @@ public Collection<ArtifactMetadata> resolveArtifacts( RepositorySession session,
             MetadataRepository metadataRepository = session.getRepository();
             Collection<ArtifactMetadata> artifacts =
                 metadataRepository.getArtifacts( session, repoId, namespace, projectId, projectVersion );
+            if ( isMetadataOnly( repoId ) )
+            {
+                return artifacts;
+            }
             ExcludesFilter<String> filter = new ExcludesFilter<String>( createArtifactIdList( artifacts ) );
 
             ReadMetadataRequest readMetadataRequest =
@@ -463,6 +493,60 @@ public Collection<ArtifactMetadata> resolveArtifacts( RepositorySession session,
         }
     }
 
+    /**
+     * Returns the entries of the storage, that are not in the metadata repository yet.
+     *
+     * @param repoId the repository
+     * @param listing the kind and path of the listing, used as cache key
+     * @param known the entries of the metadata repository
+     * @param lister lists the storage entries, that are accepted by the filter
+     * @return the additional storage entries
+     */
+    private Collection<String> listStorage( String repoId, String listing, Collection<String> known,
+                                            Function<Filter<String>, Collection<String>> lister )
+    {
+        if ( isMetadataOnly( repoId ) )
+        {
+            return Collections.emptyList();
+        }
+        StorageListingCache.Key key = storageListingCache.getKey( repoId, listing );
+        Collection<String> storageEntries = storageListingCache.get( key );
+        if ( storageEntries == null )
+        {
+            storageEntries = lister.apply( new ExcludesFilter<>( known ) );
+            storageListingCache.put( key, storageEntries == null ? Collections.<String>emptyList() : storageEntries );
+            return storageEntries;
+        }
+        if ( storageEntries.isEmpty() )
+        {
+            return storageEntries;
+        }
+        // the entries may have been added to the metadata repository in the meantime
+        Set<String> knownEntries = new HashSet<>( known );
+        return storageEntries.stream().filter( e -> !knownEntries.contains( e ) ).collect( Collectors.toList() );
+    }
+
+    private boolean isMetadataOnly( String repoId )
+    {
+        return metadataOnlyRepositories.contains( repoId ) || metadataOnlyRepositories.contains( "*" );
+    }
+
+    private static Set<String> parseRepositoryIds( String repositoryIds )
+    {
+        return Arrays.stream( repositoryIds.split( "," ) ).map( String::trim ).filter( id -> !id.isEmpty() )
+            .collect( Collectors.toSet() );
+    }
+
+    public Set<String> getMetadataOnlyRepositories()
+    {
+        return metadataOnlyRepositories;
+    }
+
+    public void setMetadataOnlyRepositories( Set<String> metadataOnlyRepositories )
+    {
+        this.metadataOnlyRepositories = new HashSet<>( metadataOnlyRepositories );
+    }
+
     private Collection<String> createArtifactIdList( Collection<ArtifactMetadata> artifacts )
     {
         Collection<String> artifactIds = new ArrayList<>();
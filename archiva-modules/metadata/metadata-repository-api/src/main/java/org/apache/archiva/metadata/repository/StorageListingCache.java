@@ -0,0 +1,325 @@
+package org.apache.archiva.metadata.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import org.apache.archiva.metadata.audit.AuditListener;
+import org.apache.archiva.metadata.model.facets.AuditEvent;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the entries of the repository storage, that the {@link DefaultMetadataResolver} found in addition to
+ * the entries of the metadata repository, e.g. the namespaces of a namespace. So browsing does not list the
+ * directories of the storage again for each request.
+ *
+ * The listings are invalidated, if the repository content is changed. An upload, a single file scan and the
+ * audit events of removals and proxy downloads invalidate only the listings of the directories, that contain
+ * the changed path. A repository scan invalidates all listings of the repository. Changes without Archiva are
+ * found after the time to live of the entries.
+ *
+ * The listings of a directory are named by the namespace of the Maven 2 layout, e.g.
+ * <code>projects:org.example</code> for the projects in <code>org/example</code>.
+ *
+ * The number of entries is limited, the least recently used entry is removed first.
+ */
+@Service( "storageListingCache#default" )
+public class StorageListingCache
+    implements AuditListener
+{
+    public static final String ROOT_LISTING = "root";
+
+    public static final String NAMESPACES_LISTING = "namespaces:";
+
+    public static final String PROJECTS_LISTING = "projects:";
+
+    public static final String VERSIONS_LISTING = "versions:";
+
+    private final int maxEntries;
+
+    private long timeToLiveMillis = Long.getLong( "archiva.browse.storageListingTtl", 600 ) * 1000;
+
+    private final Map<String, Entry> entries;
+
+    private final Map<String, RepositoryState> repositories = new ConcurrentHashMap<>( );
+
+    private final AtomicLong hits = new AtomicLong( );
+
+    private final AtomicLong misses = new AtomicLong( );
+
+    private static final class Entry
+    {
+        final Collection<String> names;
+
+        final long created;
+
+        Entry( Collection<String> names, long created )
+        {
+            this.names = names;
+            this.created = created;
+        }
+    }
+
+    private static final class RepositoryState
+    {
+        /**
+         * Is changed, if all listings of the repository are invalid.
+         */
+        final AtomicLong generation = new AtomicLong( );
+
+        /**
+         * Is changed with each invalidation, so that a listing is not stored, if the repository was changed
+         * during the listing.
+         */
+        final AtomicLong modifications = new AtomicLong( );
+    }
+
+    /**
+     * The key of a listing.
+     */
+    public static final class Key
+    {
+        private final String repositoryId;
+
+        private final String id;
+
+        private final long modifications;
+
+        private Key( String repositoryId, String id, long modifications )
+        {
+            this.repositoryId = repositoryId;
+            this.id = id;
+            this.modifications = modifications;
+        }
+
+        @Override
+        public String toString( )
+        {
+            return id;
+        }
+    }
+
+    public StorageListingCache( )
+    {
+        this( Integer.getInteger( "archiva.browse.storageListingCacheSize", 10000 ) );
+    }
+
+    public StorageListingCache( int maxEntries )
+    {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true )
+        {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest )
+            {
+                return size( ) > StorageListingCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the key of a listing. The key must be created before the storage is listed, so that a change
+     * during the listing is detected.
+     *
+     * @param repositoryId the repository
+     * @param listing the kind and the namespace of the listing
+     * @return the key
+     */
+    public Key getKey( String repositoryId, String listing )
+    {
+        RepositoryState state = getState( repositoryId );
+        synchronized ( entries )
+        {
+            return new Key( repositoryId, getId( repositoryId, state, listing ), state.modifications.get( ) );
+        }
+    }
+
+    private static String getId( String repositoryId, RepositoryState state, String listing )
+    {
+        return repositoryId + ":" + state.generation.get( ) + ":" + listing;
+    }
+
+    /**
+     * Returns the cached entries.
+     *
+     * @param key the key of the listing
+     * @return the entries or <code>null</code>, if the storage must be listed
+     */
+    public Collection<String> get( Key key )
+    {
+        Entry entry;
+        synchronized ( entries )
+        {
+            entry = entries.get( key.id );
+            if ( entry != null && System.currentTimeMillis( ) - entry.created > timeToLiveMillis )
+            {
+                entries.remove( key.id );
+                entry = null;
+            }
+        }
+        if ( entry == null )
+        {
+            misses.incrementAndGet( );
+            return null;
+        }
+        hits.incrementAndGet( );
+        return entry.names;
+    }
+
+    /**
+     * Stores the entries of a listing. The entries are not stored, if the repository was changed after the
+     * key was created.
+     */
+    public void put( Key key, Collection<String> names )
+    {
+        RepositoryState state = getState( key.repositoryId );
+        synchronized ( entries )
+        {
+            if ( state.modifications.get( ) == key.modifications )
+            {
+                entries.put( key.id, new Entry( Collections.unmodifiableList( new ArrayList<>( names ) ),
+                                                System.currentTimeMillis( ) ) );
+            }
+        }
+    }
+
+    /**
+     * Invalidates all listings of the repository, after its content has changed.
+     *
+     * @param repositoryId the repository
+     */
+    public void invalidate( String repositoryId )
+    {
+        RepositoryState state = getState( repositoryId );
+        synchronized ( entries )
+        {
+            // the old entries are not found anymore and are removed by the size limit
+            state.generation.incrementAndGet( );
+            state.modifications.incrementAndGet( );
+        }
+    }
+
+    /**
+     * Invalidates the listings of the directories, that contain the given path.
+     *
+     * @param repositoryId the repository
+     * @param path the path of the changed file or directory, relative to the repository root
+     */
+    public void invalidate( String repositoryId, String path )
+    {
+        RepositoryState state = getState( repositoryId );
+        List<String> listings = getListings( path );
+        synchronized ( entries )
+        {
+            state.modifications.incrementAndGet( );
+            for ( String listing : listings )
+            {
+                entries.remove( getId( repositoryId, state, listing ) );
+            }
+        }
+    }
+
+    /**
+     * Returns the listings, that may contain the given path or one of its parent directories.
+     */
+    static List<String> getListings( String path )
+    {
+        List<String> segments =
+            Arrays.stream( path.split( "/" ) ).filter( s -> !s.isEmpty( ) ).collect( Collectors.toList( ) );
+        List<String> listings = new ArrayList<>( );
+        listings.add( ROOT_LISTING );
+        // the last segment is the changed entry, the other segments are the directories that list it
+        for ( int i = 0; i < segments.size( ) - 1; i++ )
+        {
+            String namespace = String.join( ".", segments.subList( 0, i + 1 ) );
+            listings.add( NAMESPACES_LISTING + namespace );
+            listings.add( PROJECTS_LISTING + namespace );
+            if ( i > 0 )
+            {
+                listings.add(
+                    VERSIONS_LISTING + String.join( ".", segments.subList( 0, i ) ) + ":" + segments.get( i ) );
+            }
+        }
+        return listings;
+    }
+
+    @Override
+    public void auditEvent( AuditEvent event )
+    {
+        if ( event.getRepositoryId( ) == null )
+        {
+            return;
+        }
+        if ( event.getResource( ) != null )
+        {
+            invalidate( event.getRepositoryId( ), event.getResource( ) );
+        }
+        else
+        {
+            invalidate( event.getRepositoryId( ) );
+        }
+    }
+
+    private RepositoryState getState( String repositoryId )
+    {
+        return repositories.computeIfAbsent( repositoryId, id -> new RepositoryState( ) );
+    }
+
+    public void clear( )
+    {
+        synchronized ( entries )
+        {
+            entries.clear( );
+        }
+    }
+
+    public int size( )
+    {
+        synchronized ( entries )
+        {
+            return entries.size( );
+        }
+    }
+
+    public long getHits( )
+    {
+        return hits.get( );
+    }
+
+    public long getMisses( )
+    {
+        return misses.get( );
+    }
+
+    public void setTimeToLiveMillis( long timeToLiveMillis )
+    {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+}
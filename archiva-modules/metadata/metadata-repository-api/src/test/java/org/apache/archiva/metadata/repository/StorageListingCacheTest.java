@@ -0,0 +1,146 @@
+package org.apache.archiva.metadata.repository;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+import org.apache.archiva.metadata.model.facets.AuditEvent;
+import org.apache.archiva.test.utils.ArchivaBlockJUnit4ClassRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+/**
+ * StorageListingCacheTest
+ */
+@RunWith( ArchivaBlockJUnit4ClassRunner.class )
+public class StorageListingCacheTest
+    extends TestCase
+{
+    @Test
+    public void testListingIsCached( )
+    {
+        StorageListingCache cache = new StorageListingCache( 10 );
+        StorageListingCache.Key key = cache.getKey( "internal", "namespaces:org" );
+        assertNull( cache.get( key ) );
+
+        cache.put( key, Arrays.asList( "apache", "codehaus" ) );
+
+        assertEquals( Arrays.asList( "apache", "codehaus" ), cache.get( cache.getKey( "internal", "namespaces:org" ) ) );
+        assertNull( cache.get( cache.getKey( "snapshots", "namespaces:org" ) ) );
+        assertEquals( 1, cache.getHits( ) );
+        assertEquals( 2, cache.getMisses( ) );
+    }
+
+    @Test
+    public void testAuditEventInvalidatesRepository( )
+    {
+        StorageListingCache cache = new StorageListingCache( 10 );
+        cache.put( cache.getKey( "internal", "root" ), Arrays.asList( "org" ) );
+        cache.put( cache.getKey( "snapshots", "root" ), Arrays.asList( "com" ) );
+
+        cache.auditEvent( new AuditEvent( "internal", "user", "org/example/1.0/example-1.0.jar",
+                                          AuditEvent.UPLOAD_FILE ) );
+
+        assertNull( cache.get( cache.getKey( "internal", "root" ) ) );
+        assertNotNull( cache.get( cache.getKey( "snapshots", "root" ) ) );
+    }
+
+    @Test
+    public void testPathInvalidatesParentListings( )
+    {
+        StorageListingCache cache = new StorageListingCache( 10 );
+        cache.put( cache.getKey( "internal", "root" ), Arrays.asList( "org" ) );
+        cache.put( cache.getKey( "internal", "namespaces:org.example" ), Arrays.asList( "sub" ) );
+        cache.put( cache.getKey( "internal", "projects:org.example" ), Arrays.asList( "project" ) );
+        cache.put( cache.getKey( "internal", "versions:org.example:project" ), Arrays.asList( "1.0" ) );
+        cache.put( cache.getKey( "internal", "projects:com.example" ), Arrays.asList( "other" ) );
+        cache.put( cache.getKey( "internal", "versions:org.example:other" ), Arrays.asList( "2.0" ) );
+
+        cache.invalidate( "internal", "/org/example/project/1.0/project-1.0.jar" );
+
+        assertNull( cache.get( cache.getKey( "internal", "root" ) ) );
+        assertNull( cache.get( cache.getKey( "internal", "namespaces:org.example" ) ) );
+        assertNull( cache.get( cache.getKey( "internal", "projects:org.example" ) ) );
+        assertNull( cache.get( cache.getKey( "internal", "versions:org.example:project" ) ) );
+        assertNotNull( cache.get( cache.getKey( "internal", "projects:com.example" ) ) );
+        assertNotNull( cache.get( cache.getKey( "internal", "versions:org.example:other" ) ) );
+    }
+
+    @Test
+    public void testListingsOfPath( )
+    {
+        assertEquals( Arrays.asList( "root", "namespaces:org", "projects:org", "namespaces:org.example",
+                                     "projects:org.example", "versions:org:example" ),
+                      StorageListingCache.getListings( "org/example/example-1.0.jar" ) );
+        assertEquals( Arrays.asList( "root" ), StorageListingCache.getListings( "/org" ) );
+    }
+
+    @Test
+    public void testRepositoryInvalidatesAllListings( )
+    {
+        StorageListingCache cache = new StorageListingCache( 10 );
+        cache.put( cache.getKey( "internal", "projects:org.example" ), Arrays.asList( "project" ) );
+        cache.put( cache.getKey( "snapshots", "projects:org.example" ), Arrays.asList( "project" ) );
+
+        cache.invalidate( "internal" );
+
+        assertNull( cache.get( cache.getKey( "internal", "projects:org.example" ) ) );
+        assertNotNull( cache.get( cache.getKey( "snapshots", "projects:org.example" ) ) );
+    }
+
+    @Test
+    public void testListingIsNotStoredAfterChange( )
+    {
+        StorageListingCache cache = new StorageListingCache( 10 );
+        StorageListingCache.Key key = cache.getKey( "internal", "projects:com.example" );
+
+        // the storage is changed, while it is listed
+        cache.invalidate( "internal", "org/example/project/1.0/project-1.0.jar" );
+        cache.put( key, Arrays.asList( "project" ) );
+
+        assertNull( cache.get( cache.getKey( "internal", "projects:com.example" ) ) );
+        assertEquals( 0, cache.size( ) );
+    }
+
+    @Test
+    public void testExpiredListingIsRemoved( )
+    {
+        StorageListingCache cache = new StorageListingCache( 10 );
+        cache.setTimeToLiveMillis( -1 );
+        StorageListingCache.Key key = cache.getKey( "internal", "root" );
+        cache.put( key, Arrays.asList( "org" ) );
+
+        assertNull( cache.get( key ) );
+        assertEquals( 0, cache.size( ) );
+    }
+
+    @Test
+    public void testSizeIsLimited( )
+    {
+        StorageListingCache cache = new StorageListingCache( 2 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            cache.put( cache.getKey( "internal", "projects:org" + i ), Arrays.asList( "project" ) );
+        }
+        assertEquals( 2, cache.size( ) );
+        assertNotNull( cache.get( cache.getKey( "internal", "projects:org4" ) ) );
+    }
+}
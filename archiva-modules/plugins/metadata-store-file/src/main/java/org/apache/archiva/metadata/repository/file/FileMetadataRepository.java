@@ -68,11 +68,15 @@
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -80,6 +84,10 @@
  * File implementation of the metadata repository. It uses property files in a separate directory tree.
  * The implementation has no fulltext index. So fulltext queries are not supported.
  *
+ * The artifacts are indexed by checksum in a separate directory tree, with one property file per checksum,
+ * that lists the coordinates of the artifacts. The index is updated with the artifacts and rebuilt
+ * from the artifacts, if it does not exist.
+ *
  * Some retrieval methods may not be very efficient.
  */
 @ParametersAreNonnullByDefault
@@ -98,12 +106,28 @@
 
     private static final String METADATA_KEY = "metadata";
 
+    private static final String CHECKSUM_INDEX_KEY = "checksum-index";
+
+    private static final String CHECKSUM_PROPERTY_PREFIX = "artifact:checksum:";
+
+    /**
+     * Only checksums with these characters are indexed, because they are used as file names.
+     */
+    private static final Pattern INDEXED_CHECKSUM = Pattern.compile("[A-Za-z0-9]+");
+
     private Map<String, Path> baseDirectory = new HashMap<>();
 
+    private final Object[] checksumLocks = new Object[64];
+
+    private final Map<String, Object> checksumIndexLocks = new ConcurrentHashMap<>();
+
     public FileMetadataRepository(MetadataService metadataService,
                                   ArchivaConfiguration configuration) {
         super(metadataService);
         this.configuration = configuration;
+        for (int i = 0; i < checksumLocks.length; i++) {
+            checksumLocks[i] = new Object();
+        }
     }
 
     private Path getBaseDirectory(String repoId)
@@ -594,16 +618,171 @@ private void updateArtifactFacets(ArtifactMetadata artifact, Properties properti
     public List<ArtifactMetadata> getArtifactsByChecksum(RepositorySession session, String repositoryId, String checksum)
             throws MetadataRepositoryException {
         try {
-            // TODO: this is quite slow - if we are to persist with this repository implementation we should build an index
-            //  of this information (eg. in Lucene, as before)
-            // alternatively, we could build a referential tree in the content repository, however it would need some levels
-            // of depth to avoid being too broad to be useful (eg. /repository/checksums/a/ab/abcdef1234567)
-
-            return getArtifactStream( session, repositoryId ).filter(
-                a -> a.hasChecksum( checksum )
-            ).collect( Collectors.toList() );
+            if (!isIndexedChecksum(checksum)) {
+                return getArtifactStream(session, repositoryId).filter(
+                        a -> a.hasChecksum(checksum)
+                ).collect(Collectors.toList());
+            }
+            ensureChecksumIndex(session, repositoryId);
+
+            Properties references;
+            synchronized (getChecksumLock(checksum)) {
+                references = readOrCreateProperties(getChecksumDirectory(repositoryId, checksum), checksum);
+            }
+            List<ArtifactMetadata> artifacts = new ArrayList<>();
+            Map<String, List<ArtifactMetadata>> versionArtifacts = new HashMap<>();
+            for (String reference : new TreeSet<>(references.stringPropertyNames())) {
+                ArtifactMetadata artifact = null;
+                boolean stale = true;
+                String[] coordinates = reference.split(":", 4);
+                if (coordinates.length == 4) {
+                    String version = coordinates[0] + ":" + coordinates[1] + ":" + coordinates[2];
+                    List<ArtifactMetadata> candidates = versionArtifacts.get(version);
+                    if (candidates == null) {
+                        candidates = getArtifacts(session, repositoryId, coordinates[0], coordinates[1], coordinates[2]);
+                        versionArtifacts.put(version, candidates);
+                    }
+                    for (ArtifactMetadata candidate : candidates) {
+                        if (candidate.getId().equals(coordinates[3])) {
+                            // the index file may be shared by checksums, that differ in case only
+                            stale = candidate.getChecksums().values().stream().noneMatch(checksum::equalsIgnoreCase);
+                            if (candidate.hasChecksum(checksum)) {
+                                artifact = candidate;
+                            }
+                        }
+                    }
+                }
+                if (artifact != null) {
+                    artifacts.add(artifact);
+                } else if (stale) {
+                    // the artifact or its version has been removed
+                    updateChecksumIndex(repositoryId, checksum, reference, false);
+                }
+            }
+            return artifacts;
         } catch (MetadataResolutionException e) {
             throw new MetadataRepositoryException(e.getMessage(), e);
+        } catch (IOException e) {
+            throw new MetadataRepositoryException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rebuilds the checksum index of the repository from the stored artifacts.
+     *
+     * @param session the repository session
+     * @param repositoryId the repository
+     * @throws MetadataRepositoryException if the index could not be written
+     */
+    public void rebuildChecksumIndex(RepositorySession session, String repositoryId)
+            throws MetadataRepositoryException {
+        synchronized (getChecksumIndexLock(repositoryId)) {
+            try {
+                Path indexDirectory = getChecksumIndexDirectory(repositoryId);
+                org.apache.archiva.common.utils.FileUtils.deleteDirectory(indexDirectory);
+                try (Stream<ArtifactMetadata> artifacts = getArtifactStream(session, repositoryId)) {
+                    for (ArtifactMetadata artifact : (Iterable<ArtifactMetadata>) artifacts::iterator) {
+                        String reference = getChecksumReference(artifact.getNamespace(), artifact.getProject(),
+                                artifact.getProjectVersion(), artifact.getId());
+                        for (String checksum : new HashSet<>(artifact.getChecksums().values())) {
+                            updateChecksumIndex(repositoryId, checksum, reference, true);
+                        }
+                    }
+                }
+                Properties properties = new Properties();
+                properties.setProperty("built", Long.toString(System.currentTimeMillis()));
+                writeProperties(properties, indexDirectory, CHECKSUM_INDEX_KEY);
+            } catch (MetadataResolutionException | IOException e) {
+                throw new MetadataRepositoryException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void ensureChecksumIndex(RepositorySession session, String repositoryId)
+            throws IOException, MetadataRepositoryException {
+        Path marker = getChecksumIndexDirectory(repositoryId).resolve(CHECKSUM_INDEX_KEY + ".properties");
+        if (!Files.exists(marker)) {
+            synchronized (getChecksumIndexLock(repositoryId)) {
+                if (!Files.exists(marker)) {
+                    log.info("Building the checksum index of repository {}", repositoryId);
+                    rebuildChecksumIndex(session, repositoryId);
+                }
+            }
+        }
+    }
+
+    private Object getChecksumIndexLock(String repositoryId) {
+        return checksumIndexLocks.computeIfAbsent(repositoryId, id -> new Object());
+    }
+
+    private Object getChecksumLock(String checksum) {
+        return checksumLocks[(checksum.toLowerCase(Locale.ROOT).hashCode() & 0x7fffffff) % checksumLocks.length];
+    }
+
+    private static boolean isIndexedChecksum(String checksum) {
+        return checksum != null && INDEXED_CHECKSUM.matcher(checksum).matches();
+    }
+
+    private static String getChecksumReference(String namespace, String projectId, String projectVersion, String id) {
+        return namespace + ":" + projectId + ":" + projectVersion + ":" + id;
+    }
+
+    private Path getChecksumIndexDirectory(String repoId)
+            throws IOException {
+        return getBaseDirectory(repoId).resolve("checksums");
+    }
+
+    private Path getChecksumDirectory(String repoId, String checksum)
+            throws IOException {
+        String prefix = checksum.toLowerCase(Locale.ROOT);
+        return getChecksumIndexDirectory(repoId).resolve(prefix.length() > 2 ? prefix.substring(0, 2) : prefix);
+    }
+
+    /**
+     * Adds the artifact reference to the index file of the checksum or removes it.
+     */
+    private void updateChecksumIndex(String repoId, String checksum, String reference, boolean add)
+            throws IOException {
+        if (!isIndexedChecksum(checksum)) {
+            return;
+        }
+        Path directory = getChecksumDirectory(repoId, checksum);
+        synchronized (getChecksumLock(checksum)) {
+            Properties properties = readOrCreateProperties(directory, checksum);
+            if (add ? properties.setProperty(reference, "") != null : properties.remove(reference) == null) {
+                return;
+            }
+            if (properties.isEmpty()) {
+                Files.deleteIfExists(directory.resolve(checksum + ".properties"));
+            } else {
+                writeProperties(properties, directory, checksum);
+            }
+        }
+    }
+
+    /**
+     * Returns the checksums of the stored artifacts of a version by artifact id.
+     */
+    private static Map<String, Set<String>> getStoredChecksums(Properties properties) {
+        Map<String, Set<String>> checksums = new HashMap<>();
+        for (String property : properties.stringPropertyNames()) {
+            int algorithmStart = property.lastIndexOf(':');
+            if (property.startsWith(CHECKSUM_PROPERTY_PREFIX) && algorithmStart > CHECKSUM_PROPERTY_PREFIX.length()) {
+                String id = property.substring(CHECKSUM_PROPERTY_PREFIX.length(), algorithmStart);
+                checksums.computeIfAbsent(id, k -> new HashSet<>()).add(properties.getProperty(property));
+            }
+        }
+        return checksums;
+    }
+
+    private void removeFromChecksumIndex(String repoId, String namespace, String projectId, String projectVersion,
+                                         String id, Set<String> checksums)
+            throws IOException {
+        if (checksums != null) {
+            String reference = getChecksumReference(namespace, projectId, projectVersion, id);
+            for (String checksum : checksums) {
+                updateChecksumIndex(repoId, checksum, reference, false);
+            }
         }
     }
 
@@ -634,6 +813,7 @@ public void removeTimestampedArtifact( RepositorySession session, ArtifactMetada
             Properties properties = readOrCreateProperties(directory, PROJECT_VERSION_METADATA_KEY);
 
             String id = artifactMetadata.getId();
+            Set<String> storedChecksums = getStoredChecksums(properties).get(id);
 
             properties.remove("artifact:updated:" + id);
             properties.remove("artifact:whenGathered:" + id);
@@ -652,6 +832,9 @@ public void removeTimestampedArtifact( RepositorySession session, ArtifactMetada
             }
 
             writeProperties(properties, directory, PROJECT_VERSION_METADATA_KEY);
+
+            removeFromChecksumIndex(artifactMetadata.getRepositoryId(), artifactMetadata.getNamespace(),
+                    artifactMetadata.getProject(), baseVersion, id, storedChecksums);
         } catch (IOException e) {
             throw new MetadataRepositoryException(e.getMessage(), e);
         }
@@ -665,6 +848,7 @@ public void removeArtifact(RepositorySession session, String repoId, String name
             Path directory = getDirectory(repoId).resolve(namespace + "/" + project + "/" + version);
 
             Properties properties = readOrCreateProperties(directory, PROJECT_VERSION_METADATA_KEY);
+            Map<String, Set<String>> storedChecksums = getStoredChecksums(properties);
 
             properties.remove("artifact:updated:" + id);
             properties.remove("artifact:whenGathered:" + id);
@@ -684,6 +868,12 @@ public void removeArtifact(RepositorySession session, String repoId, String name
 
             org.apache.archiva.common.utils.FileUtils.deleteDirectory(directory);
             //writeProperties( properties, directory, PROJECT_VERSION_METADATA_KEY );
+
+            // the artifacts of the whole version are removed
+            for (Map.Entry<String, Set<String>> artifactChecksums : storedChecksums.entrySet()) {
+                removeFromChecksumIndex(repoId, namespace, project, version, artifactChecksums.getKey(),
+                        artifactChecksums.getValue());
+            }
         } catch (IOException e) {
             throw new MetadataRepositoryException(e.getMessage(), e);
         }
@@ -713,6 +903,7 @@ public void removeRepository(RepositorySession session, String repoId)
         try {
             Path dir = getDirectory(repoId);
             org.apache.archiva.common.utils.FileUtils.deleteDirectory(dir);
+            org.apache.archiva.common.utils.FileUtils.deleteDirectory(getChecksumIndexDirectory(repoId));
         } catch (IOException e) {
             throw new MetadataRepositoryException(e.getMessage(), e);
         }
@@ -776,6 +967,7 @@ public void updateArtifact(RepositorySession session, String repoId, String name
                     "artifact:facet:" + artifact.getId() + ":");
 
             String id = artifact.getId();
+            Set<String> previousChecksums = getStoredChecksums(properties).getOrDefault(id, Collections.emptySet());
             properties.setProperty("artifact:updated:" + id,
                     Long.toString(artifact.getFileLastModified().toInstant().toEpochMilli()));
             properties.setProperty("artifact:whenGathered:" + id,
@@ -793,6 +985,17 @@ public void updateArtifact(RepositorySession session, String repoId, String name
             updateArtifactFacets(artifact, properties);
 
             writeProperties(properties, directory, PROJECT_VERSION_METADATA_KEY);
+
+            Set<String> checksums = getStoredChecksums(properties).getOrDefault(id, Collections.emptySet());
+            String reference = getChecksumReference(namespace, projectId, projectVersion, id);
+            for (String checksum : previousChecksums) {
+                if (!checksums.contains(checksum)) {
+                    updateChecksumIndex(repoId, checksum, reference, false);
+                }
+            }
+            for (String checksum : checksums) {
+                updateChecksumIndex(repoId, checksum, reference, true);
+            }
         } catch (IOException e) {
             // TODO
             log.error(e.getMessage(), e);
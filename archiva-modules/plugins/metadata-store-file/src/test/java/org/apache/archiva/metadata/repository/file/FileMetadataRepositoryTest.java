@@ -22,17 +22,22 @@
 import org.apache.archiva.configuration.ArchivaConfiguration;
 import org.apache.archiva.configuration.Configuration;
 import org.apache.archiva.configuration.ManagedRepositoryConfiguration;
+import org.apache.archiva.metadata.model.ArtifactMetadata;
 import org.apache.archiva.metadata.model.MetadataFacetFactory;
 import org.apache.archiva.metadata.repository.AbstractMetadataRepositoryTest;
 import org.apache.archiva.metadata.repository.MetadataRepository;
 import org.apache.archiva.metadata.repository.MetadataService;
+import org.apache.archiva.metadata.repository.RepositorySession;
 import org.apache.archiva.metadata.repository.RepositorySessionFactory;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Test;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.ZonedDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -43,6 +48,10 @@
     extends AbstractMetadataRepositoryTest
 {
 
+    private static final String CHECKSUM = "0123456789abcdef0123456789abcdef01234567";
+
+    private Path directory;
+
     private FileMetadataRepository repository;
     private RepositorySessionFactory sessionFactory = new FileRepositorySessionFactory();
 
@@ -67,7 +76,7 @@ public void setUp()
         assertMaxTries = 1;
         assertRetrySleepMs = 10;
 
-        Path directory = Paths.get( "target/test-repositories" );
+        directory = Paths.get( "target/test-repositories" );
         if (Files.exists(directory))
         {
             org.apache.archiva.common.utils.FileUtils.deleteDirectory( directory );
@@ -176,6 +185,68 @@ public void testSearchArtifactsFullTextByFacet()
         // TODO not implemented
     }
 
+    @Test
+    public void testChecksumIndexIsRebuilt( )
+        throws Exception
+    {
+        try ( RepositorySession session = getSessionFactory( ).createSession( ) )
+        {
+            ArtifactMetadata artifact = createChecksumArtifact( );
+            repository.updateArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION,
+                                       artifact );
+            assertEquals( Collections.singletonList( artifact ),
+                          repository.getArtifactsByChecksum( session, TEST_REPO_ID, CHECKSUM ) );
+
+            Path indexDirectory = directory.resolve( TEST_REPO_ID + "/.archiva/checksums" );
+            assertTrue( Files.exists( indexDirectory.resolve( "01/" + CHECKSUM + ".properties" ) ) );
+
+            org.apache.archiva.common.utils.FileUtils.deleteDirectory( indexDirectory );
+            assertEquals( Collections.singletonList( artifact ),
+                          repository.getArtifactsByChecksum( session, TEST_REPO_ID, CHECKSUM ) );
+        }
+    }
+
+    @Test
+    public void testChecksumIndexOfRemovedArtifacts( )
+        throws Exception
+    {
+        try ( RepositorySession session = getSessionFactory( ).createSession( ) )
+        {
+            ArtifactMetadata artifact = createChecksumArtifact( );
+            repository.updateArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION,
+                                       artifact );
+            repository.rebuildChecksumIndex( session, TEST_REPO_ID );
+
+            repository.removeArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION,
+                                       artifact.getId( ) );
+            assertTrue( repository.getArtifactsByChecksum( session, TEST_REPO_ID, CHECKSUM ).isEmpty( ) );
+
+            // removed without an update of the index
+            repository.updateArtifact( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT, TEST_PROJECT_VERSION,
+                                       artifact );
+            repository.removeProjectVersion( session, TEST_REPO_ID, TEST_NAMESPACE, TEST_PROJECT,
+                                             TEST_PROJECT_VERSION );
+            assertTrue( repository.getArtifactsByChecksum( session, TEST_REPO_ID, CHECKSUM ).isEmpty( ) );
+            assertFalse( Files.exists( directory.resolve(
+                TEST_REPO_ID + "/.archiva/checksums/01/" + CHECKSUM + ".properties" ) ) );
+        }
+    }
+
+    private static ArtifactMetadata createChecksumArtifact( )
+    {
+        ArtifactMetadata artifact = new ArtifactMetadata( );
+        artifact.setId( TEST_PROJECT + "-" + TEST_PROJECT_VERSION + ".jar" );
+        artifact.setWhenGathered( ZonedDateTime.now( ) );
+        artifact.setNamespace( TEST_NAMESPACE );
+        artifact.setProject( TEST_PROJECT );
+        artifact.setRepositoryId( TEST_REPO_ID );
+        artifact.setFileLastModified( System.currentTimeMillis( ) );
+        artifact.setVersion( TEST_PROJECT_VERSION );
+        artifact.setProjectVersion( TEST_PROJECT_VERSION );
+        artifact.setSha1( CHECKSUM );
+        return artifact;
+    }
+
     protected static ArchivaConfiguration createTestConfiguration( Path directory )
     {
         ArchivaConfiguration config = mock( ArchivaConfiguration.class );
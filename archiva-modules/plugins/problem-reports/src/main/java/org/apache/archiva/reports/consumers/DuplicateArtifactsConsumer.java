@@ -20,6 +20,7 @@
  */
 
 import org.apache.archiva.checksum.ChecksumAlgorithm;
+import org.apache.archiva.checksum.ChecksumCache;
 import org.apache.archiva.checksum.ChecksummedFile;
 import org.apache.archiva.configuration.ArchivaConfiguration;
 import org.apache.archiva.configuration.ConfigurationNames;
@@ -40,6 +41,7 @@
 import org.apache.commons.collections4.CollectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 
@@ -97,6 +99,9 @@
     @Named ( value = "repositoryPathTranslator#maven2" )
     private RepositoryPathTranslator pathTranslator;
 
+    @Autowired( required = false )
+    private ChecksumCache checksumCache;
+
 
     private RepositorySession repositorySession;
 
@@ -158,7 +163,8 @@ public void processFile( String path )
         //  alternatively this could come straight from the storage resolver, which could populate the artifact metadata
         //  in the later parse call with the desired checksum and use that
         String checksumSha1;
-        ChecksummedFile checksummedFile = new ChecksummedFile( artifactFile);
+        ChecksummedFile checksummedFile =
+            new ChecksummedFile( artifactFile, Collections.emptyList( ), checksumCache );
         try
         {
             checksumSha1 = checksummedFile.calculateChecksum( ChecksumAlgorithm.SHA1 );